@@ -0,0 +1,64 @@
+package com.example.aiassistantcoder;
+
+import android.os.Bundle;
+import android.view.View;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark build only: the chat list with a long synthetic conversation of
+ * multi-file answers, no sign-in or network. Scrolled by :macrobenchmark's
+ * ChatScrollBenchmark.
+ */
+public class ChatScrollActivity extends AppCompatActivity {
+
+    static final String EXTRA_TURNS = "turns";
+    private static final int DEFAULT_TURNS = 40;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.fragment_chat);
+        findViewById(R.id.input_layout).setVisibility(View.GONE);
+
+        RecyclerView list = findViewById(R.id.chat_recycler_view);
+        list.setLayoutManager(new LinearLayoutManager(this));
+        list.setAdapter(new ChatAdapter(conversation(getIntent().getIntExtra(EXTRA_TURNS, DEFAULT_TURNS)), this));
+    }
+
+    // every answer differs, as in a real chat, so nothing is shared between rows
+    private static List<Message> conversation(int turns) {
+        List<Message> out = new ArrayList<>();
+        for (int t = 0; t < turns; t++) {
+            out.add(new Message("Add feature #" + t + " and keep the tests green", "user"));
+            out.add(new Message(answer(t), "model"));
+        }
+        return out;
+    }
+
+    private static String answer(int t) {
+        StringBuilder py = new StringBuilder();
+        StringBuilder js = new StringBuilder();
+        StringBuilder java = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            py.append("def step_").append(t).append('_').append(i).append("(items):\n")
+                    .append("    # keep only the ones we need\n")
+                    .append("    return [x * ").append(i).append(" for x in items if x % 2 == 0]\n");
+            js.append("export function step").append(t).append('_').append(i).append("(items) {\n")
+                    .append("  return items.filter((x) => x > ").append(i).append(").map(String);\n")
+                    .append("}\n");
+            java.append("    static int step").append(i).append("(int[] a) { int s = ").append(t)
+                    .append("; for (int x : a) s += x; return s; }\n");
+        }
+        return "Here is feature **#" + t + "**, split across three files:\n\n"
+                + "```python\n" + py + "```\n\n"
+                + "```javascript\n" + js + "```\n\n"
+                + "```java\nclass Steps" + t + " {\n" + java + "}\n```\n\n"
+                + "Run `python main.py` to try it.";
+    }
+}
@@ -0,0 +1,159 @@
+// Evaluated before the entry file of a local (on-device) run: console, timers,
+// process and a CommonJS require over the editor's files.
+// Natives installed by LocalJsRunner:
+//   __write(fd, text)     fd 1 = stdout, 2 = stderr
+//   __read(path)          file source, or null if the project has no such file
+//   __compile(path, src)  the module wrapper function for src, named after path
+//   __exit(code)          process.exit; ends the run at once
+(function (g) {
+    var write = g.__write, read = g.__read, compile = g.__compile, exit = g.__exit;
+    delete g.__write;
+    delete g.__read;
+    delete g.__compile;
+    delete g.__exit;
+
+    // ---------- console ----------
+    function fmt(v) {
+        if (typeof v === 'string') return v;
+        if (v instanceof Error) return v.stack ? v.name + ': ' + v.message + '\n' + v.stack : String(v);
+        if (typeof v === 'object' && v !== null) {
+            try {
+                return JSON.stringify(v, null, 2);
+            } catch (e) {
+                return String(v);
+            }
+        }
+        return String(v);
+    }
+
+    function line(args) {
+        return Array.prototype.map.call(args, fmt).join(' ') + '\n';
+    }
+
+    g.console = {
+        log: function () { write(1, line(arguments)); },
+        info: function () { write(1, line(arguments)); },
+        debug: function () { write(1, line(arguments)); },
+        warn: function () { write(2, line(arguments)); },
+        error: function () { write(2, line(arguments)); }
+    };
+
+    // ---------- timers (fired by the host loop once the entry file returns) ----------
+    var timers = [], nextId = 1;
+
+    function addTimer(fn, ms, args, every) {
+        var id = nextId++;
+        timers.push({ id: id, at: Date.now() + Math.max(0, ms | 0), fn: fn, args: args, every: every });
+        return id;
+    }
+
+    g.setTimeout = function (fn, ms) {
+        return addTimer(fn, ms, Array.prototype.slice.call(arguments, 2), 0);
+    };
+    g.setInterval = function (fn, ms) {
+        return addTimer(fn, ms, Array.prototype.slice.call(arguments, 2), Math.max(1, ms | 0));
+    };
+    g.setImmediate = function (fn) {
+        return addTimer(fn, 0, Array.prototype.slice.call(arguments, 1), 0);
+    };
+    g.clearTimeout = g.clearInterval = g.clearImmediate = function (id) {
+        timers = timers.filter(function (t) { return t.id !== id; });
+    };
+
+    // due first; equal times fire in the order they were set
+    function earliest() {
+        var best = null;
+        for (var i = 0; i < timers.length; i++) {
+            if (best === null || timers[i].at < best.at) best = timers[i];
+        }
+        return best;
+    }
+
+    // ms until the next timer is due, or -1 when none are left
+    g.__nextTimer = function () {
+        var t = earliest();
+        return t === null ? -1 : Math.max(0, t.at - Date.now());
+    };
+
+    g.__fireTimer = function () {
+        var t = earliest();
+        if (t === null) return;
+        if (t.every > 0) {
+            t.at += t.every;
+        } else {
+            g.clearTimeout(t.id);
+        }
+        t.fn.apply(null, t.args);
+    };
+
+    // ---------- process ----------
+    g.process = {
+        argv: ['local'],
+        env: {},
+        platform: 'local',
+        exit: function (code) { exit(code | 0); },
+        stdout: { write: function (s) { write(1, String(s)); return true; } },
+        stderr: { write: function (s) { write(2, String(s)); return true; } }
+    };
+
+    // ---------- modules ----------
+    var cache = {};
+
+    function dirname(p) {
+        var i = p.lastIndexOf('/');
+        return i < 0 ? '' : p.slice(0, i);
+    }
+
+    function normalize(p) {
+        var out = [];
+        p.split('/').forEach(function (part) {
+            if (part === '' || part === '.') return;
+            if (part === '..') out.pop(); else out.push(part);
+        });
+        return out.join('/');
+    }
+
+    function candidates(from, req) {
+        var base;
+        if (req.charAt(0) === '/') {
+            base = normalize(req);
+        } else if (req.indexOf('./') === 0 || req.indexOf('../') === 0) {
+            base = normalize(dirname(from) + '/' + req);
+        } else {
+            // bare names only resolve to files vendored into node_modules
+            base = 'node_modules/' + normalize(req);
+        }
+        return [base, base + '.js', base + '.cjs', base + '.json', base + '/index.js'];
+    }
+
+    function makeRequire(from) {
+        return function require(req) {
+            var list = candidates(from, req);
+            for (var i = 0; i < list.length; i++) {
+                var id = list[i];
+                if (cache[id]) return cache[id].exports;
+                var src = read(id);
+                if (src !== null) return load(id, src);
+            }
+            throw new Error("Cannot find module '" + req + "' from '" + (from || '.') + "'");
+        };
+    }
+
+    function load(id, src) {
+        var module = { id: id, exports: {} };
+        cache[id] = module;
+        if (/\.json$/.test(id)) {
+            module.exports = JSON.parse(src);
+            return module.exports;
+        }
+        var fn = compile(id, src);
+        fn.call(module.exports, module.exports, makeRequire(id), module, id, dirname(id));
+        return module.exports;
+    }
+
+    g.require = makeRequire('');
+    g.__main = function (entry) {
+        g.process.argv.push(entry);
+        return g.require('/' + entry);
+    };
+})(this);
@@ -53,23 +53,55 @@ public class AiUpdateViewModel extends ViewModel {
         public final String entrypoint;
         public final List<ProjectFile> files;
         public final String notes;
+        // streamed responses: partial updates carry only the files finished so far,
+        // the final one (partial = false) the whole list; all share a streamId
+        public final boolean partial;
+        public final long streamId;
 
         public ProjectUpdate(String language,
                              String runtime,
                              String entrypoint,
                              List<ProjectFile> files,
                              String notes) {
+            this(language, runtime, entrypoint, files, notes, false, 0L);
+        }
+
+        public ProjectUpdate(String language,
+                             String runtime,
+                             String entrypoint,
+                             List<ProjectFile> files,
+                             String notes,
+                             boolean partial,
+                             long streamId) {
             this.language = language == null ? "" : language;
             this.runtime = runtime == null ? "" : runtime;
             this.entrypoint = entrypoint == null ? "" : entrypoint;
             this.files = files == null ? new ArrayList<>() : files;
             this.notes = notes == null ? "" : notes;
+            this.partial = partial;
+            this.streamId = streamId;
+        }
+    }
+
+    /** A file as it currently is in the editor, for building chat context. */
+    public static class EditorFile {
+        public final String path;
+        public final String content;
+        public final long lastEditedAt;   // 0 if untouched this session
+        public final boolean open;        // the tab being shown
+
+        public EditorFile(@NonNull String path, @NonNull String content, long lastEditedAt, boolean open) {
+            this.path = path;
+            this.content = content;
+            this.lastEditedAt = lastEditedAt;
+            this.open = open;
         }
     }
 
     // existing
     private final MutableLiveData<CodeUpdate> updates = new MutableLiveData<>();
     private final MutableLiveData<String> editorCode = new MutableLiveData<>("");
+    private final MutableLiveData<List<EditorFile>> editorFiles = new MutableLiveData<>(new ArrayList<>());
 
     // NEW
     private final MutableLiveData<ProjectUpdate> projectUpdates = new MutableLiveData<>();
@@ -91,6 +123,14 @@ public class AiUpdateViewModel extends ViewModel {
         return editorCode;
     }
 
+    public void publishEditorFiles(@NonNull List<EditorFile> files) {
+        editorFiles.postValue(files);
+    }
+
+    public LiveData<List<EditorFile>> getEditorFiles() {
+        return editorFiles;
+    }
+
     // --- NEW methods for project ---
     public LiveData<ProjectUpdate> getProjectUpdates() {
         return projectUpdates;
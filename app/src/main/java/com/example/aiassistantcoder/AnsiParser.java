@@ -0,0 +1,237 @@
+package com.example.aiassistantcoder;
+
+import android.graphics.Typeface;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.StyleSpan;
+import android.text.style.UnderlineSpan;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Minimal ANSI/SGR handling for console lines.
+ * <p>
+ * {@link #scan} only tracks the colour state (cheap, done when a line arrives
+ * so state can carry over to the next line); {@link #style} builds the spans
+ * and is meant to be called once per line, with the result cached.
+ * Non-SGR escape sequences are stripped; '\r' keeps the text after it.
+ */
+final class AnsiParser {
+
+    private AnsiParser() {
+    }
+
+    private static final char ESC = 0x1B;
+
+    // xterm-ish palette, readable on the dark console background
+    private static final int[] PALETTE = {
+            0xFF4D4D4D, 0xFFE06C75, 0xFF98C379, 0xFFE5C07B,
+            0xFF61AFEF, 0xFFC678DD, 0xFF56B6C2, 0xFFD0D0D0,
+            // bright
+            0xFF7F7F7F, 0xFFFF7A85, 0xFFB5E890, 0xFFFFD68A,
+            0xFF82C4FF, 0xFFE29EF0, 0xFF7FDCE8, 0xFFFFFFFF,
+    };
+
+    static final int NONE = 0;
+
+    /** SGR state at a line boundary. Immutable. */
+    static final class State {
+        static final State DEFAULT = new State(NONE, NONE, false, false, false);
+
+        final int fg, bg;          // ARGB, NONE = default
+        final boolean bold, italic, underline;
+
+        State(int fg, int bg, boolean bold, boolean italic, boolean underline) {
+            this.fg = fg;
+            this.bg = bg;
+            this.bold = bold;
+            this.italic = italic;
+            this.underline = underline;
+        }
+
+        boolean isDefault() {
+            return fg == NONE && bg == NONE && !bold && !italic && !underline;
+        }
+    }
+
+    /** True if the line has anything worth parsing. */
+    static boolean hasEscapes(@NonNull String line) {
+        return line.indexOf(ESC) >= 0 || line.indexOf('\r') >= 0;
+    }
+
+    /** State after {@code line}, without building spans. */
+    @NonNull
+    static State scan(@NonNull String line, @NonNull State start) {
+        if (line.indexOf(ESC) < 0) return start;
+        return parse(line, start, null);
+    }
+
+    /** Styled text for {@code line}, starting from {@code start}. */
+    @NonNull
+    static CharSequence style(@NonNull String line, @NonNull State start) {
+        if (start.isDefault() && !hasEscapes(line)) return line;
+        SpannableStringBuilder out = new SpannableStringBuilder();
+        parse(line, start, out);
+        return out;
+    }
+
+    // ---------- internals ----------
+    private static final class Cursor {
+        int fg, bg;
+        boolean bold, italic, underline;
+
+        Cursor(State s) {
+            fg = s.fg;
+            bg = s.bg;
+            bold = s.bold;
+            italic = s.italic;
+            underline = s.underline;
+        }
+
+        State freeze() {
+            return new State(fg, bg, bold, italic, underline);
+        }
+    }
+
+    private static State parse(String line, State start, @Nullable SpannableStringBuilder out) {
+        // carriage return: a terminal would overwrite from column 0
+        int cr = line.lastIndexOf('\r');
+        String text = cr >= 0 ? line.substring(cr + 1) : line;
+
+        Cursor c = new Cursor(start);
+        int runStart = 0;
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            char ch = text.charAt(i);
+            if (ch != ESC) {
+                if (out != null) out.append(ch);
+                i++;
+                continue;
+            }
+            // flush the run styled with the state before this escape
+            if (out != null) {
+                applySpans(out, runStart, out.length(), c);
+                runStart = out.length();
+            }
+            if (i + 1 < n && text.charAt(i + 1) == '[') {
+                int j = i + 2;
+                while (j < n && !isCsiFinal(text.charAt(j))) j++;
+                if (j < n && text.charAt(j) == 'm') {
+                    applySgr(c, text.substring(i + 2, j));
+                }
+                i = Math.min(n, j + 1);
+            } else {
+                // lone ESC or a non-CSI sequence: drop ESC and the next char
+                i = Math.min(n, i + 2);
+            }
+        }
+        if (out != null) applySpans(out, runStart, out.length(), c);
+        return c.freeze();
+    }
+
+    private static boolean isCsiFinal(char ch) {
+        return ch >= 0x40 && ch <= 0x7E;
+    }
+
+    private static void applySpans(SpannableStringBuilder out, int from, int to, Cursor c) {
+        if (from >= to) return;
+        int flags = Spanned.SPAN_EXCLUSIVE_EXCLUSIVE;
+        if (c.fg != NONE) out.setSpan(new ForegroundColorSpan(c.fg), from, to, flags);
+        if (c.bg != NONE) out.setSpan(new BackgroundColorSpan(c.bg), from, to, flags);
+        if (c.bold && c.italic) out.setSpan(new StyleSpan(Typeface.BOLD_ITALIC), from, to, flags);
+        else if (c.bold) out.setSpan(new StyleSpan(Typeface.BOLD), from, to, flags);
+        else if (c.italic) out.setSpan(new StyleSpan(Typeface.ITALIC), from, to, flags);
+        if (c.underline) out.setSpan(new UnderlineSpan(), from, to, flags);
+    }
+
+    private static void applySgr(Cursor c, String params) {
+        if (params.isEmpty()) {
+            reset(c);
+            return;
+        }
+        String[] parts = params.split(";", -1);
+        for (int k = 0; k < parts.length; k++) {
+            int p = parseInt(parts[k]);
+            if (p == 0) reset(c);
+            else if (p == 1) c.bold = true;
+            else if (p == 3) c.italic = true;
+            else if (p == 4) c.underline = true;
+            else if (p == 22) c.bold = false;
+            else if (p == 23) c.italic = false;
+            else if (p == 24) c.underline = false;
+            else if (p >= 30 && p <= 37) c.fg = PALETTE[p - 30];
+            else if (p >= 90 && p <= 97) c.fg = PALETTE[p - 90 + 8];
+            else if (p == 39) c.fg = NONE;
+            else if (p >= 40 && p <= 47) c.bg = PALETTE[p - 40];
+            else if (p >= 100 && p <= 107) c.bg = PALETTE[p - 100 + 8];
+            else if (p == 49) c.bg = NONE;
+            else if (p == 38 || p == 48) {
+                int[] color = new int[1];
+                k = extendedColor(parts, k, color);
+                if (color[0] != NONE) {
+                    if (p == 38) c.fg = color[0];
+                    else c.bg = color[0];
+                }
+            }
+        }
+    }
+
+    // 38;5;n  or  38;2;r;g;b  -> returns the index of the last consumed part
+    private static int extendedColor(String[] parts, int k, int[] out) {
+        if (k + 1 >= parts.length) return k;
+        int mode = parseInt(parts[k + 1]);
+        if (mode == 5 && k + 2 < parts.length) {
+            out[0] = xterm256(parseInt(parts[k + 2]));
+            return k + 2;
+        }
+        if (mode == 2 && k + 4 < parts.length) {
+            int r = clamp(parseInt(parts[k + 2]));
+            int g = clamp(parseInt(parts[k + 3]));
+            int b = clamp(parseInt(parts[k + 4]));
+            out[0] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            return k + 4;
+        }
+        return k + 1;
+    }
+
+    private static int xterm256(int n) {
+        if (n < 0 || n > 255) return NONE;
+        if (n < 16) return PALETTE[n];
+        if (n >= 232) {
+            int v = 8 + (n - 232) * 10;
+            return 0xFF000000 | (v << 16) | (v << 8) | v;
+        }
+        n -= 16;
+        int r = n / 36, g = (n / 6) % 6, b = n % 6;
+        return 0xFF000000 | (cube(r) << 16) | (cube(g) << 8) | cube(b);
+    }
+
+    private static int cube(int v) {
+        return v == 0 ? 0 : 55 + v * 40;
+    }
+
+    private static void reset(Cursor c) {
+        c.fg = NONE;
+        c.bg = NONE;
+        c.bold = false;
+        c.italic = false;
+        c.underline = false;
+    }
+
+    private static int parseInt(String s) {
+        if (s.isEmpty()) return 0;
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int clamp(int v) {
+        return Math.max(0, Math.min(255, v));
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.aiassistantcoder;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write-behind autosave for the editor.
+ * <p>
+ * Files are saved only when their {@link OpenFile#isDirty()} flag says they
+ * changed since the last acknowledged save. Every request writes the local
+ * copy right away; at most one remote save is in flight, and requests
+ * arriving meanwhile collapse into a single follow-up save with the latest
+ * content, so repeated saves of the same file merge.
+ * <p>
+ * Offline, a Firestore commit is queued on the device and its task does not
+ * complete until the server is reachable again. A save unanswered after
+ * {@link #STALL_MS} stops holding the queue; its acknowledgement, whenever it
+ * arrives, still marks what it carried as saved.
+ * Main thread only.
+ */
+public class AutosaveQueue {
+
+    private static final String TAG = "AutosaveQueue";
+
+    static final long STALL_MS = 10_000L;
+
+    public interface Host {
+        @Nullable
+        Project project();
+
+        @NonNull
+        List<OpenFile> files();
+
+        @NonNull
+        String code();
+
+        void onSaved(long latencyMs, @NonNull ProjectRepository.SaveStats stats);
+
+        void onSaveError(@NonNull Exception e);
+    }
+
+    private final Host host;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private boolean inFlight = false;
+    // numbers saves; only the newest one holds the queue, only newer acks move lastSavedCode
+    private int saveSeq = 0;
+    private int ackedSeq = 0;
+    private boolean again = false;
+    // files were added / removed / renamed since the last save
+    private boolean structureChanged = false;
+    private @Nullable String lastSavedCode = null;
+
+    public AutosaveQueue(@NonNull Host host) {
+        this.host = host;
+    }
+
+    public void markStructureChanged() {
+        structureChanged = true;
+    }
+
+    /** Baseline after a project is (re)loaded into the editor. */
+    public void markClean(@Nullable String code) {
+        lastSavedCode = code;
+        structureChanged = false;
+        for (OpenFile f : host.files()) f.savedVersion = f.editVersion;
+    }
+
+    public boolean isIdle() {
+        return !inFlight && !again;
+    }
+
+    /** Save whatever is dirty now: locally at once, remotely now or right after the save in flight. */
+    public void request() {
+        Project project = host.project();
+        if (project == null) return;
+
+        List<OpenFile> files = host.files();
+        String code = host.code();
+
+        // remember which edit of each file this save carries
+        Map<OpenFile, Integer> sent = new IdentityHashMap<>();
+        for (OpenFile f : files) {
+            if (f.isDirty()) sent.put(f, f.editVersion);
+        }
+        boolean codeChanged = !code.equals(lastSavedCode);
+        if (sent.isEmpty() && !codeChanged && !structureChanged) return;
+
+        List<ProjectFile> projectFiles = new ArrayList<>(files.size());
+        for (OpenFile f : files) {
+            projectFiles.add(new ProjectFile(f.id, f.content != null ? f.content : ""));
+        }
+        project.setCode(code);
+        project.setFiles(projectFiles);
+
+        // the device copy never waits for the server
+        ProjectRepository.getInstance().saveLocalCopy(project);
+        if (inFlight) {
+            again = true;
+            return;
+        }
+
+        inFlight = true;
+        structureChanged = false;
+        final int seq = ++saveSeq;
+        final long started = SystemClock.elapsedRealtime();
+        handler.postDelayed(stalled, STALL_MS);
+
+        ProjectRepository.getInstance().saveProjectToFirestore(
+                project,
+                new ProjectRepository.ProjectSaveCallback() {
+                    @Override
+                    public void onSaved(String projectId) {
+                        // stats variant below is the one the repository calls
+                    }
+
+                    @Override
+                    public void onSaved(String projectId, ProjectRepository.SaveStats stats) {
+                        for (Map.Entry<OpenFile, Integer> e : sent.entrySet()) {
+                            OpenFile f = e.getKey();
+                            f.savedVersion = Math.max(f.savedVersion, e.getValue());
+                        }
+                        if (seq > ackedSeq) {
+                            ackedSeq = seq;
+                            lastSavedCode = code;
+                        }
+                        host.onSaved(SystemClock.elapsedRealtime() - started, stats);
+                        done(seq);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        // dirty flags are untouched; make sure the retry re-sends the file list
+                        structureChanged = true;
+                        host.onSaveError(e);
+                        done(seq);
+                    }
+                });
+    }
+
+    private final Runnable stalled = () -> {
+        if (!inFlight) return;
+        Log.d(TAG, "save " + saveSeq + " unanswered after " + STALL_MS + "ms, not waiting");
+        finish();
+    };
+
+    // a stalled save answering late no longer holds the queue
+    private void done(int seq) {
+        if (seq != saveSeq || !inFlight) return;
+        handler.removeCallbacks(stalled);
+        finish();
+    }
+
+    private void finish() {
+        inFlight = false;
+        if (again) {
+            again = false;
+            request();
+        }
+    }
+}
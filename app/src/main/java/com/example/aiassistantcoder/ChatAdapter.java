@@ -5,6 +5,10 @@ import android.content.ClipboardManager;
 import android.content.Context;
 import android.graphics.Typeface;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.Spanned;
 import android.text.TextUtils;
 import android.util.Log;
 import android.view.Gravity;
@@ -19,26 +23,39 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.annotations.SerializedName;
-
-import java.util.ArrayList;
+
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.noties.markwon.AbstractMarkwonPlugin;
+import io.noties.markwon.LinkResolverDef;
 import io.noties.markwon.Markwon;
+import io.noties.markwon.MarkwonConfiguration;
 import io.noties.markwon.image.ImagesPlugin;
 
+/**
+ * Chat bubbles. Parsing and markdown rendering happen once per message
+ * content on a background thread ({@link ChatRenderModel}); a message bound
+ * before its model is ready shows its plain text and is re-bound when the
+ * model arrives. A message whose text changed keeps showing its old model
+ * until the new one is built, so streamed answers don't flicker.
+ * <p>
+ * Rendered markdown (with TextMate-highlighted code blocks) comes from the
+ * size-bounded {@link ChatRenderCache}; after an eviction the bubble shows
+ * the markdown source until it has been rendered again.
+ * Long code blocks are collapsed to a preview; their expand / copy links are
+ * handled here per message.
+ */
 public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder> {
 
     private static final String TAG = "ChatAdapter";
@@ -46,11 +63,49 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder
     private final List<Message> messages;
     private final Markwon markwon;
 
+    // ---- render models (main thread only) ----
+    private final Map<Message, ChatRenderModel> models = new WeakHashMap<>();
+    private final Set<Message> building = Collections.newSetFromMap(new WeakHashMap<>());
+    private final ExecutorService renderer = Executors.newSingleThreadExecutor();
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final ChatRenderCache renderCache = ChatRenderCache.get();
+    private final Set<String> rendering = new HashSet<>();
+    private final Set<String> overBudget = new HashSet<>();   // bigger than the whole cache: stays plain
+
+    // ---- expanded code blocks (main thread only) ----
+    private final Map<Message, Set<Integer>> expandedBlocks = new WeakHashMap<>();
+    private final Map<Message, String> expandedSource = new WeakHashMap<>();
+
     public ChatAdapter(List<Message> messages, Context context) {
         this.messages = messages;
+        CodeHighlighter highlighter = new CodeHighlighter(renderCache);
         this.markwon = Markwon.builder(context)
                 .usePlugin(ImagesPlugin.create())
+                .usePlugin(new AbstractMarkwonPlugin() {
+                    @Override
+                    public void configureConfiguration(@NonNull MarkwonConfiguration.Builder builder) {
+                        builder.syntaxHighlight(highlighter);
+                        builder.linkResolver((view, link) -> {
+                            if (link.startsWith(ChatRenderModel.BLOCK_LINK)) {
+                                onBlockLink(view, link);
+                            } else {
+                                new LinkResolverDef().resolve(view, link);
+                            }
+                        });
+                    }
+                })
                 .build();
+
+        // grammars first: the render thread runs tasks in order
+        Context app = context.getApplicationContext();
+        renderer.execute(() -> {
+            try {
+                TextMateGrammars.ensureLoaded(app);
+            } catch (Throwable t) {
+                Log.w(TAG, "TextMate grammars unavailable; code blocks stay plain", t);
+            }
+        });
+        for (Message m : messages) prepare(m);
     }
 
     @NonNull
@@ -63,7 +118,17 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder
 
     @Override
     public void onBindViewHolder(@NonNull ChatViewHolder holder, int position) {
-        holder.bind(messages.get(position), markwon);
+        Message m = messages.get(position);
+        ChatRenderModel model = models.get(m);
+        if (model == null || !model.isFor(m)) prepare(m);
+
+        Spanned markdown = null;
+        if (model != null && model.kind == ChatRenderModel.Kind.MARKDOWN) {
+            String source = sourceOf(m, model);
+            markdown = renderCache.markdown(source);
+            if (markdown == null && !overBudget.contains(source)) render(source);
+        }
+        holder.bind(m, model, markdown, markwon);
     }
 
     @Override
@@ -71,6 +136,115 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder
         return messages.size();
     }
 
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        renderer.shutdownNow();
+        renderCache.logStats();
+    }
+
+    // builds the model for the message's current content, then re-binds it
+    private void prepare(Message m) {
+        if (building.contains(m) || renderer.isShutdown()) return;
+        building.add(m);
+        final String role = m.getRole();
+        final String text = m.getText();
+        renderer.execute(() -> {
+            long t0 = SystemClock.elapsedRealtime();
+            ChatRenderModel model = ChatRenderModel.build(role, text, markwon, renderCache);
+            long ms = SystemClock.elapsedRealtime() - t0;
+            if (ms > 16) Log.d(TAG, "render model " + model.kind + " took " + ms + "ms");
+            main.post(() -> {
+                building.remove(m);
+                ChatRenderModel old = models.put(m, model);
+                if (old != null && old.contentKey != model.contentKey) {
+                    // block indexes refer to the old text
+                    expandedBlocks.remove(m);
+                    expandedSource.remove(m);
+                }
+                if (!model.isFor(m)) {
+                    prepare(m);     // text changed while building
+                }
+                int at = messages.indexOf(m);
+                if (at >= 0) notifyItemChanged(at);
+            });
+        });
+    }
+
+    // markdown evicted from the cache since its model was built
+    private void render(String source) {
+        if (!rendering.add(source) || renderer.isShutdown()) return;
+        renderer.execute(() -> {
+            renderCache.renderMarkdown(source, markwon);
+            boolean kept = renderCache.markdown(source) != null;
+            main.post(() -> {
+                rendering.remove(source);
+                if (!kept) {
+                    overBudget.add(source);
+                    return;
+                }
+                for (int i = 0; i < messages.size(); i++) {
+                    Message m = messages.get(i);
+                    ChatRenderModel model = models.get(m);
+                    if (model != null && source.equals(sourceOf(m, model))) notifyItemChanged(i);
+                }
+            });
+        });
+    }
+
+    private String sourceOf(Message m, ChatRenderModel model) {
+        String expanded = expandedSource.get(m);
+        return expanded != null ? expanded : model.markdownSource;
+    }
+
+    // chatblock:<expand|collapse|copy>/<index>, from a bubble's markdown
+    private void onBlockLink(View view, String link) {
+        if (!(view.getTag() instanceof Message)) return;
+        Message m = (Message) view.getTag();
+        ChatRenderModel model = models.get(m);
+        if (model == null) return;
+
+        String[] parts = link.substring(ChatRenderModel.BLOCK_LINK.length()).split("/");
+        int index;
+        try {
+            index = Integer.parseInt(parts[1]);
+        } catch (RuntimeException e) {
+            return;
+        }
+
+        if ("copy".equals(parts[0])) {
+            ChatViewHolder.copyToClipboard(view.getContext(), model.code(index), "Code copied");
+            return;
+        }
+
+        Set<Integer> open = expandedBlocks.get(m);
+        open = open != null ? new HashSet<>(open) : new HashSet<>();
+        if ("expand".equals(parts[0])) open.add(index);
+        else open.remove(index);
+
+        if (open.isEmpty()) {
+            expandedBlocks.remove(m);
+            expandedSource.remove(m);
+            int at = messages.indexOf(m);
+            if (at >= 0) notifyItemChanged(at);
+            return;
+        }
+        expandedBlocks.put(m, open);
+        final Set<Integer> wanted = open;
+        if (renderer.isShutdown()) return;
+        // the full block text is only copied out (and rendered) here
+        renderer.execute(() -> {
+            String source = model.markdownFor(wanted);
+            renderCache.renderMarkdown(source, markwon);
+            main.post(() -> {
+                if (expandedBlocks.get(m) != wanted) return;    // toggled again meanwhile
+                expandedSource.put(m, source);
+                int at = messages.indexOf(m);
+                if (at >= 0) notifyItemChanged(at);
+            });
+        });
+    }
+
     // --------------------------------------------------
     // ViewHolder
     // --------------------------------------------------
@@ -106,11 +280,6 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder
         private final TextView jsonText;
         private final ImageButton btnCopyJson, btnExpandJson;
 
-        // meta-line matcher for pretty-for-chat output
-        private static final Pattern META_LINE =
-                Pattern.compile("^\\*\\*(Language|Runtime|Entrypoint|File):\\*\\*\\s*(.+)$",
-                        Pattern.CASE_INSENSITIVE);
-
         ChatViewHolder(@NonNull View itemView) {
             super(itemView);
 
@@ -148,14 +317,11 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder
             btnExpandJson = itemView.findViewById(R.id.btn_expand_json);
         }
 
-        void bind(Message message, Markwon markwon) {
+        void bind(Message message, @Nullable ChatRenderModel model,
+                  @Nullable Spanned markdown, Markwon markwon) {
             final boolean isUser = "user".equals(message.getRole());
             final String text = message.getText() == null ? "" : message.getText();
 
-            Log.d(TAG, "bind(): role=" + message.getRole()
-                    + " textLen=" + text.length()
-                    + " hasImage=" + (message.getImageUri() != null));
-
             // alignment + bubble bg
             messageRoot.setGravity(isUser ? Gravity.END : Gravity.START);
             bubbleLayout.setBackgroundResource(isUser
@@ -172,129 +338,71 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder
                 messageImage.setVisibility(View.GONE);
             }
 
-            // JSON extraction (only assistant messages)
-            String json = (!isUser) ? extractFirstJson(text) : null;
-            if (!isUser) {
-                Log.d(TAG, "bind(): extracted JSON=" + (json == null ? "null" : ("len=" + json.length())));
+            if (model == null) {
+                // not parsed yet: plain text until the model arrives
+                showPlainText(text);
+                return;
             }
 
-            if (!isUser && !TextUtils.isEmpty(json)) {
-                // structured payload path
-                hideRunInfo();
-                AiPayload payload = tryParsePayload(json);
-                Log.d(TAG, "bind(): payload parsed=" + (payload != null));
-
-                if (payload != null) {
-                    showParsedCard(payload);
-                } else {
-                    showRawJsonCard(json);
-                }
-
-            } else {
-                // normal markdown / plain text path
-                parsedContainer.setVisibility(View.GONE);
-                jsonContainer.setVisibility(View.GONE);
-                messageText.setVisibility(View.VISIBLE);
-
-                if (isUser) {
-                    hideRunInfo();
-                    Log.d(TAG, "bind(): user message, plain text");
-                    messageText.setText(text);
-                    copyButton.setVisibility(View.GONE);
-                    copyCodeButton.setVisibility(View.GONE);
-                } else {
-                    Log.d(TAG, "bind(): model message, markdown path");
-
-                    // Extract run info from top of the message (if present)
-                    RunInfo runInfo = parseRunInfo(text);
-                    if (runInfo != null) {
-                        showRunInfo(runInfo);
+            switch (model.kind) {
+                case PARSED_CARD:
+                    showParsedCard(model.payload);
+                    break;
+                case RAW_JSON:
+                    showRawJsonCard(model.prettyJson);
+                    break;
+                case MARKDOWN:
+                    parsedContainer.setVisibility(View.GONE);
+                    jsonContainer.setVisibility(View.GONE);
+                    messageText.setVisibility(View.VISIBLE);
+
+                    if (model.runInfo != null) {
+                        showRunInfo(model.runInfo);
                     } else {
                         hideRunInfo();
                     }
 
-                    String display = (runInfo != null && runInfo.body != null)
-                            ? runInfo.body
-                            : text;
-
-                    markwon.setMarkdown(messageText, display);
+                    messageText.setTag(message);   // for the code-block links
+                    if (markdown != null) {
+                        markwon.setParsedMarkdown(messageText, markdown);
+                    } else {
+                        messageText.setText(model.markdownSource);   // placeholder until rendered
+                    }
 
                     copyButton.setVisibility(View.VISIBLE);
                     copyButton.setOnClickListener(v ->
-                            copyToClipboard(v.getContext(), text, "Message copied"));
+                            copyToClipboard(v.getContext(), model.text, "Message copied"));
 
-                    String code = extractCode(text);
-                    if (!code.isEmpty()) {
+                    if (!model.blocks.isEmpty() && model.blocks.get(0).to > model.blocks.get(0).from) {
                         copyCodeButton.setVisibility(View.VISIBLE);
                         copyCodeButton.setOnClickListener(v ->
-                                copyToClipboard(v.getContext(), code, "Code copied"));
+                                copyToClipboard(v.getContext(), model.code(0), "Code copied"));
                     } else {
                         copyCodeButton.setVisibility(View.GONE);
                     }
-                }
+                    break;
+                case USER_TEXT:
+                default:
+                    showPlainText(model.text);
+                    break;
             }
         }
 
+        private void showPlainText(String text) {
+            parsedContainer.setVisibility(View.GONE);
+            jsonContainer.setVisibility(View.GONE);
+            messageText.setVisibility(View.VISIBLE);
+            hideRunInfo();
+            messageText.setText(text);
+            copyButton.setVisibility(View.GONE);
+            copyCodeButton.setVisibility(View.GONE);
+        }
+
         // --------------------------------------------------
         // RUN INFO helpers
         // --------------------------------------------------
 
-        /**
-         * Parsed metadata from pretty-for-chat text.
-         */
-        static class RunInfo {
-            String language;
-            String runtime;
-            String entrypoint;
-            List<String> files = new ArrayList<>();
-            String body; // markdown without the meta lines
-        }
-
-        /**
-         * Parse Language/Runtime/Entrypoint/File lines and return remaining body.
-         */
-        private RunInfo parseRunInfo(String input) {
-            if (input == null || input.isEmpty()) return null;
-
-            String[] lines = input.split("\\r?\\n");
-            RunInfo info = new RunInfo();
-            StringBuilder body = new StringBuilder();
-            boolean sawMeta = false;
-
-            for (String line : lines) {
-                String trimmed = line.trim();
-                Matcher m = META_LINE.matcher(trimmed);
-                if (m.find()) {
-                    sawMeta = true;
-                    String label = m.group(1).toLowerCase();
-                    String value = m.group(2).trim();
-
-                    switch (label) {
-                        case "language":
-                            info.language = value;
-                            break;
-                        case "runtime":
-                            info.runtime = value;
-                            break;
-                        case "entrypoint":
-                            info.entrypoint = value;
-                            break;
-                        case "file":
-                            info.files.add(value);
-                            break;
-                    }
-                } else {
-                    body.append(line).append('\n');
-                }
-            }
-
-            if (!sawMeta) return null;
-
-            info.body = body.toString().trim();
-            return info;
-        }
-
-        private void showRunInfo(RunInfo info) {
+        private void showRunInfo(ChatRenderModel.RunInfo info) {
             runInfoContainer.setVisibility(View.VISIBLE);
             runInfoTitle.setVisibility(View.VISIBLE);
 
@@ -342,80 +450,30 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder
             // FILES
             filesList.removeAllViews();
 
-            if (info.files != null && !info.files.isEmpty()) {
+            if (!info.fileTree.isEmpty()) {
                 filesLabel.setVisibility(View.VISIBLE);
-
-                FileNode root = buildFileTree(info.files);
-                renderTree(root, "", true, itemView.getContext());
-
+                for (ChatRenderModel.TreeLine line : info.fileTree) {
+                    filesList.addView(treeLineView(line, ctx));
+                }
             } else {
                 filesLabel.setVisibility(View.GONE);
             }
         }
 
-        private void renderTree(FileNode node, String prefix, boolean last, Context ctx) {
-            List<FileNode> children = new ArrayList<>(node.children.values());
-
-            // Sort: folders first, then files alphabetically
-            Collections.sort(children, (a, b) -> {
-                if (a.isFile && !b.isFile) return 1;
-                if (!a.isFile && b.isFile) return -1;
-                return a.name.compareToIgnoreCase(b.name);
-            });
-
-            int count = children.size();
-            for (int i = 0; i < count; i++) {
-                FileNode child = children.get(i);
-                boolean isLast = (i == count - 1);
-
-                String branch = isLast ? "└── " : "├── ";
-                String line = prefix + branch + child.name + (child.isFile ? "" : "/");
-
-                TextView tv = new TextView(ctx);
-                tv.setText(line);
-                tv.setTextSize(11f);
-                tv.setTypeface(
-                        Typeface.MONOSPACE,
-                        child.isFile ? Typeface.NORMAL : Typeface.BOLD
-                );
-
-                // Folder color highlight
-                tv.setTextColor(ctx.getColor(
-                        child.isFile ? R.color.colorOnPrimary : R.color.colorOnPrimary
-                ));
-
-                filesList.addView(tv);
-
-                // Recursion
-                if (!child.isFile) {
-                    String newPrefix = prefix + (isLast ? "    " : "│   ");
-                    renderTree(child, newPrefix, isLast, ctx);
-                }
-            }
-        }
-
-        private FileNode buildFileTree(List<String> files) {
-            FileNode root = new FileNode("", false);
-
-            for (String path : files) {
-                if (path == null || path.trim().isEmpty()) continue;
-
-                String[] parts = path.split("/");
-                FileNode current = root;
-
-                for (int i = 0; i < parts.length; i++) {
-                    String part = parts[i];
-                    boolean isFile = (i == parts.length - 1);
-
-                    // Create child if missing
-                    current.children.putIfAbsent(part,
-                            new FileNode(part, isFile));
-
-                    current = current.children.get(part);
-                }
-            }
+        private static TextView treeLineView(ChatRenderModel.TreeLine line, Context ctx) {
+            TextView tv = new TextView(ctx);
+            tv.setText(line.text);
+            tv.setTextSize(11f);
+            tv.setTypeface(
+                    Typeface.MONOSPACE,
+                    line.isFile ? Typeface.NORMAL : Typeface.BOLD
+            );
 
-            return root;
+            // Folder color highlight
+            tv.setTextColor(ctx.getColor(
+                    line.isFile ? R.color.colorOnPrimary : R.color.colorOnPrimary
+            ));
+            return tv;
         }
 
         private void stylePill(TextView pill, int backgroundColorRes, int textColorRes) {
@@ -437,42 +495,26 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder
         // --------------------------------------------------
         // UI branches for JSON payloads
         // --------------------------------------------------
-        private void showParsedCard(AiPayload p) {
-            Log.d(TAG, "showParsedCard(): lang=" + p.language
-                    + " runtime=" + p.runtime
-                    + " codeLen=" + (p.code == null ? 0 : p.code.length())
-                    + " filePath=" + p.filePath);
-
+        private void showParsedCard(ChatRenderModel.Payload p) {
             parsedContainer.setVisibility(View.VISIBLE);
             jsonContainer.setVisibility(View.GONE);
             messageText.setVisibility(View.GONE);
             hideRunInfo();
 
-            String lang = safe(p.language);
-            String rt = safe(p.runtime);
-            String notes = safe(p.notes);
-            if (notes.isEmpty()) notes = safe(p.runnerHint);
-
-            if (!rt.isEmpty() && !lang.toLowerCase().contains(rt.toLowerCase())) {
-                badgeLanguage.setText("Language: " + lang);
-                badgeRuntime.setText("Runtime: " + rt);
+            badgeLanguage.setText(p.languageBadge);
+            if (p.runtimeBadge != null) {
+                badgeRuntime.setText(p.runtimeBadge);
                 badgeRuntime.setVisibility(View.VISIBLE);
             } else {
-                badgeLanguage.setText("Language: " + (rt.isEmpty() ? lang : (lang + " " + rt)));
                 badgeRuntime.setVisibility(View.GONE);
             }
 
-            parsedNotes.setText(notes.isEmpty() ? "No notes provided." : notes);
+            parsedNotes.setText(p.notes);
 
-            String code = safe(p.code);
+            String code = p.code;
             parsedCode.setText(code);
 
-            if (p.filePath != null && !p.filePath.isEmpty()) {
-                String current = parsedNotes.getText().toString();
-                parsedNotes.setText(current + "\n\nFile: " + normalizeFilePath("", p.filePath));
-            }
-
-            boolean tooLong = countLines(code) > 16;
+            boolean tooLong = p.codeLines > 16;
             parsedCode.setMaxLines(tooLong ? 16 : Integer.MAX_VALUE);
             codeFade.setVisibility(tooLong ? View.VISIBLE : View.GONE);
             btnExpandCode.setImageResource(
@@ -501,17 +543,12 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder
                     copyToClipboard(v.getContext(), code, "Code copied"));
         }
 
-        private void showRawJsonCard(String json) {
-            Log.d(TAG, "showRawJsonCard(): rawJsonLen=" + (json == null ? 0 : json.length()));
-
+        private void showRawJsonCard(String pretty) {
             parsedContainer.setVisibility(View.GONE);
             jsonContainer.setVisibility(View.VISIBLE);
             messageText.setVisibility(View.GONE);
             hideRunInfo();
 
-            String pretty = prettyJson(json);
-            Log.d(TAG, "showRawJsonCard(): prettyJsonLen=" + pretty.length());
-
             jsonText.setText(pretty);
             jsonText.setMaxLines(14);
 
@@ -534,194 +571,5 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder
             cm.setPrimaryClip(ClipData.newPlainText("copied", s));
             Toast.makeText(ctx, toast, Toast.LENGTH_SHORT).show();
         }
-
-        // --------------------------------------------------
-        // JSON helpers
-        // --------------------------------------------------
-        private String extractFirstJson(String s) {
-            if (s == null) return null;
-
-            Log.d(TAG, "extractFirstJson(): inputLen=" + s.length());
-
-            // fenced ```json
-            int fenceStart = s.indexOf("```json");
-            if (fenceStart == -1) fenceStart = s.indexOf("```JSON");
-            if (fenceStart != -1) {
-                int codeStart = s.indexOf('\n', fenceStart);
-                int fenceEnd = s.indexOf("```", codeStart + 1);
-                if (codeStart != -1 && fenceEnd != -1) {
-                    String fenced = s.substring(codeStart + 1, fenceEnd).trim();
-                    Log.d(TAG, "extractFirstJson(): fenced JSON len=" + fenced.length());
-                    return fenced;
-                }
-            }
-
-            // whole message is JSON
-            String trimmed = s.trim();
-            if (trimmed.startsWith("{") || trimmed.startsWith("[")) {
-                int end = findMatchingJsonEnd(trimmed, 0);
-                if (end != -1) {
-                    String result = trimmed.substring(0, end + 1).trim();
-                    Log.d(TAG, "extractFirstJson(): top-level JSON len=" + result.length());
-                    return result;
-                }
-            }
-
-            Log.d(TAG, "extractFirstJson(): no JSON detected");
-            return null;
-        }
-
-        private int findMatchingJsonEnd(String text, int start) {
-            int depth = 0;
-            boolean inStr = false;
-            char quote = 0;
-            boolean esc = false;
-
-            for (int i = start; i < text.length(); i++) {
-                char c = text.charAt(i);
-                if (inStr) {
-                    if (esc) {
-                        esc = false;
-                    } else if (c == '\\') {
-                        esc = true;
-                    } else if (c == quote) {
-                        inStr = false;
-                    }
-                    continue;
-                }
-                if (c == '"' || c == '\'') {
-                    inStr = true;
-                    quote = c;
-                    continue;
-                }
-                if (c == '{' || c == '[') depth++;
-                else if (c == '}' || c == ']') {
-                    depth--;
-                    if (depth == 0) return i;
-                }
-            }
-            return -1;
-        }
-
-        private String prettyJson(String raw) {
-            String t = raw.replace('“', '"').replace('”', '"').replace('’', '\'');
-            t = t.replaceAll(",(\\s*[}\\]])", "$1");
-            try {
-                JsonElement el = JsonParser.parseString(t);
-                Gson g = new GsonBuilder()
-                        .setPrettyPrinting()
-                        .disableHtmlEscaping()
-                        .create();
-                return g.toJson(el);
-            } catch (Exception e) {
-                Log.w(TAG, "prettyJson(): failed to parse, returning raw", e);
-                return raw;
-            }
-        }
-
-        private String extractCode(String text) {
-            if (text == null) return "";
-            java.util.regex.Matcher m = java.util.regex.Pattern
-                    .compile("```(.*?\\n)?([\\s\\S]*?)```")
-                    .matcher(text);
-            return m.find() ? (m.group(2) == null ? "" : m.group(2)) : "";
-        }
-
-        private static int countLines(String s) {
-            if (s == null || s.isEmpty()) return 0;
-            int n = 1;
-            for (int i = 0; i < s.length(); i++) if (s.charAt(i) == '\n') n++;
-            return n;
-        }
-
-        private static String safe(String s) {
-            return s == null ? "" : s;
-        }
-
-        private AiPayload tryParsePayload(String json) {
-            try {
-                String t = json.replace('“', '"').replace('”', '"').replace('’', '\'');
-                t = t.replaceAll(",(\\s*[}\\]])", "$1");
-
-                JsonElement el = JsonParser.parseString(t);
-                if (!el.isJsonObject()) return null;
-
-                JsonObject obj = el.getAsJsonObject();
-                AiPayload p = new AiPayload();
-
-                p.language = obj.has("language") ? obj.get("language").getAsString() : "";
-                p.runtime = obj.has("runtime") ? obj.get("runtime").getAsString() : "";
-                p.notes = obj.has("notes") ? obj.get("notes").getAsString() : "";
-
-                if (obj.has("files") && obj.get("files").isJsonArray()
-                        && obj.get("files").getAsJsonArray().size() > 0) {
-
-                    JsonObject f0 = obj.get("files").getAsJsonArray()
-                            .get(0).getAsJsonObject();
-
-                    String path = f0.has("path") ? f0.get("path").getAsString() : "";
-                    String filename = f0.has("filename") ? f0.get("filename").getAsString() : "";
-                    String content = f0.has("content") ? f0.get("content").getAsString() : "";
-
-                    p.code = content != null ? content : "";
-                    p.filePath = normalizeFilePath(path, filename);
-
-                } else {
-                    p.code = obj.has("code") ? obj.get("code").getAsString() : "";
-                }
-
-                if ((p.code == null || p.code.isEmpty())
-                        && (p.language == null || p.language.isEmpty())
-                        && (p.runtime == null || p.runtime.isEmpty())) {
-                    return null;
-                }
-
-                return p;
-            } catch (Exception ignored) {
-                Log.w(TAG, "tryParsePayload(): failed to parse JSON payload");
-                return null;
-            }
-        }
-
-        private String normalizeFilePath(String path, String filename) {
-            String p = path == null ? "" : path.trim();
-            String f = filename == null ? "" : filename.trim();
-
-            // Remove leading ./ or / (repeated if needed)
-            p = p.replaceAll("^([./]+)", "");
-            f = f.replaceAll("^([./]+)", "");
-
-            // Replace any double/multi slashes with a single slash
-            p = p.replaceAll("/+", "/");
-            f = f.replaceAll("/+", "/");
-
-            if (p.isEmpty()) {
-                return f;
-            }
-            return p + "/" + f;  // Always exactly one slash between
-        }
-
-        static class FileNode {
-            String name;
-            boolean isFile;
-            LinkedHashMap<String, FileNode> children = new LinkedHashMap<>();
-
-            FileNode(String name, boolean isFile) {
-                this.name = name;
-                this.isFile = isFile;
-            }
-        }
-    }
-
-
-    // DTO for parsed AI JSON
-    static class AiPayload {
-        String language;
-        String runtime;
-        String code;
-        String notes;
-        String filePath;
-        @SerializedName("runnerHint")
-        String runnerHint;
     }
 }
@@ -1,12 +1,11 @@
 package com.example.aiassistantcoder;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
-import android.util.Base64;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -37,14 +36,12 @@ import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.annotations.SerializedName;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
@@ -66,27 +63,29 @@ public class ChatFragment extends Fragment {
     // --- App state ---
     private Project currentProject;
     private ChatAdapter chatAdapter;
-    private Bitmap selectedImageBitmap;
+    private @Nullable ImageIngest.Prepared selectedImage;   // downscaled + re-encoded
     private Uri selectedImageUri;
+    private boolean imageLoading = false;
     private String latestEditorCode = "";
+    private List<AiUpdateViewModel.EditorFile> latestEditorFiles = new ArrayList<>();
+    // model bubble filled in while an answer streams
+    private @Nullable Message streamingMessage;
 
     // --- HTTP / JSON ---
-    private final OkHttpClient http = new OkHttpClient.Builder()
-            .connectTimeout(15, TimeUnit.SECONDS)
-            .writeTimeout(60, TimeUnit.SECONDS)
-            .readTimeout(120, TimeUnit.SECONDS)
-            .callTimeout(0, TimeUnit.SECONDS)
-            .build();
+    private final OkHttpClient http = HttpTransport.generationClient();
+    private final Executor imageExecutor = Executors.newSingleThreadExecutor();
     private final Gson gson = new Gson();
     private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
 
     // Backend Gemini proxy endpoint
     private static final String BACKEND_BASE_URL = ApiConfig.BASE_URL;
     private static final String GEMINI_PROXY_ENDPOINT = BACKEND_BASE_URL + "/gemini/generate";
+    private static final String GEMINI_STREAM_ENDPOINT = BACKEND_BASE_URL + "/gemini/stream?alt=sse";
 
 
     // Bus to the editor
     private AiUpdateViewModel aiBus;
+    private ResponseCache responseCache;
 
     public final class ApiConfig {
         private ApiConfig() {}
@@ -100,19 +99,38 @@ public class ChatFragment extends Fragment {
             result -> {
                 requireActivity();
                 if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null) {
-                    selectedImageUri = result.getData().getData();
-                    try {
-                        selectedImageBitmap = MediaStore.Images.Media.getBitmap(requireContext().getContentResolver(), selectedImageUri);
-                        imagePreview.setImageBitmap(selectedImageBitmap);
-                        imagePreviewContainer.setVisibility(View.VISIBLE);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        SnackBarApp.INSTANCE.show(
-                                requireActivity().findViewById(android.R.id.content),
-                                "Error loading image",
-                                SnackBarApp.Type.ERROR
-                        );
-                    }
+                    Uri uri = result.getData().getData();
+                    if (uri == null) return;
+                    selectedImageUri = uri;
+                    selectedImage = null;
+                    imageLoading = true;
+                    Context ctx = requireContext().getApplicationContext();
+                    imageExecutor.execute(() -> {
+                        ImageIngest.Prepared img = null;
+                        try {
+                            img = ImageIngest.prepare(ctx, uri);
+                        } catch (IOException | RuntimeException e) {
+                            Log.e(TAG, "Image load failed", e);
+                        }
+                        ImageIngest.Prepared loaded = img;
+                        if (getActivity() == null) return;
+                        getActivity().runOnUiThread(() -> {
+                            if (!isAdded() || uri != selectedImageUri) return;    // removed or replaced meanwhile
+                            imageLoading = false;
+                            if (loaded == null) {
+                                selectedImageUri = null;
+                                SnackBarApp.INSTANCE.show(
+                                        requireActivity().findViewById(android.R.id.content),
+                                        "Error loading image",
+                                        SnackBarApp.Type.ERROR
+                                );
+                                return;
+                            }
+                            selectedImage = loaded;
+                            imagePreview.setImageBitmap(loaded.bitmap);
+                            imagePreviewContainer.setVisibility(View.VISIBLE);
+                        });
+                    });
                 }
             });
 
@@ -128,9 +146,13 @@ public class ChatFragment extends Fragment {
         chatRecyclerView = view.findViewById(R.id.chat_recycler_view);
 
         aiBus = new ViewModelProvider(requireActivity()).get(AiUpdateViewModel.class);
+        responseCache = ResponseCache.get(requireContext());
         aiBus.getEditorCode().observe(getViewLifecycleOwner(), code -> {
             if (code != null) latestEditorCode = code;
         });
+        aiBus.getEditorFiles().observe(getViewLifecycleOwner(), files -> {
+            if (files != null) latestEditorFiles = files;
+        });
 
         ImageButton sendButton = view.findViewById(R.id.send_button);
         ImageButton imageInputButton = view.findViewById(R.id.image_input_button);
@@ -154,14 +176,23 @@ public class ChatFragment extends Fragment {
         });
 
         removeImageButton.setOnClickListener(v -> {
-            selectedImageBitmap = null;
+            selectedImage = null;
             selectedImageUri = null;
+            imageLoading = false;
             imagePreviewContainer.setVisibility(View.GONE);
         });
 
         sendButton.setOnClickListener(v -> {
             String newText = chatInput.getText().toString().trim();
-            if (newText.isEmpty() && selectedImageBitmap == null) return;
+            if (imageLoading) {
+                SnackBarApp.INSTANCE.show(
+                        requireActivity().findViewById(android.R.id.content),
+                        "Image is still loading",
+                        SnackBarApp.Type.WARNING
+                );
+                return;
+            }
+            if (newText.isEmpty() && selectedImage == null) return;
             sendMessage(newText);
         });
 
@@ -211,70 +242,46 @@ public class ChatFragment extends Fragment {
                         "{ \"language\": string, \"runtime\": string, \"entrypoint\": string, \"files\": [ { \"path\": string, \"filename\": string, \"summary\": string, \"content\": string } ], \"notes\": string }"
         ));
 
-        // last N turns to send
+        // history + relevant files, packed under the token budget
         List<Message> msgs = currentProject.getMessages();
-        int start = Math.max(0, msgs.size() - 8);
+        List<ContextBuilder.Turn> history = new ArrayList<>();
+        for (int i = 0; i < msgs.size() - 1; i++) {
+            ContextBuilder.Turn t = turnOf(msgs.get(i));
+            if (t != null) history.add(t);
+        }
+        ContextBuilder.Turn prompt = turnOf(userMessage);
+        if (prompt == null) prompt = new ContextBuilder.Turn("user", "");
 
         String editorSnapshot = (latestEditorCode != null && !latestEditorCode.isEmpty())
                 ? latestEditorCode
                 : (currentProject.getCode() == null ? "" : currentProject.getCode());
 
-        for (int i = start; i < msgs.size(); i++) {
-            Message m = msgs.get(i);
-            if ("user".equals(m.getRole())) {
-                String textToSend = stripMarkdownFenceIfAny(m.getText());
-                Content c = new Content();
-                c.role = "user";
-                c.parts = new ArrayList<>();
-                c.parts.add(partText(textToSend));
-                req.contents.add(c);
-            } else {
-                // try to grab the raw JSON from our own previous model messages
-                String json = extractFirstJsonObject(m.getText());
-                if (json != null) {
-                    Content c = new Content();
-                    c.role = "model";
-                    c.parts = new ArrayList<>();
-                    c.parts.add(partText(json));
-                    req.contents.add(c);
-                }
-            }
+        ContextBuilder.Packed packed = new ContextBuilder(Prefs.contextTokenBudget(requireContext()))
+                .pack(history, prompt, contextFiles(), editorSnapshot);
+        for (ContextBuilder.Turn t : packed.turns) {
+            req.contents.add(contentOf(t.role, partText(t.text)));
         }
+        Log.d(TAG, packed.describe());
 
-        if (editorSnapshot != null && !editorSnapshot.isEmpty()) {
-            Content editorContent = new Content();
-            editorContent.role = "user";
-            editorContent.parts = new ArrayList<>();
-            editorContent.parts.add(partText(
-                    "Current code in editor:\n```\n" + editorSnapshot + "\n```"
-            ));
-            req.contents.add(editorContent);
-        }
-
-        if (selectedImageBitmap != null) {
+        if (selectedImage != null) {
             Content imgTurn = new Content();
             imgTurn.role = "user";
             imgTurn.parts = new ArrayList<>();
-            imgTurn.parts.add(partInlineImage(selectedImageBitmap, "image/png"));
+            imgTurn.parts.add(partInlineImage(selectedImage));
             req.contents.add(imgTurn);
         }
 
         // clear preview
-        selectedImageBitmap = null;
+        selectedImage = null;
         selectedImageUri = null;
         imagePreviewContainer.setVisibility(View.GONE);
 
         // background call
+        final long streamId = System.nanoTime();
         Executor executor = Executors.newSingleThreadExecutor();
         executor.execute(() -> {
             try {
-                String rawResponse = callGemini(req);
-                if (rawResponse == null) rawResponse = "(no response)";
-
-// debugger
-                Log.d(TAG, "CHAT_RESP (raw from Gemini): " + rawResponse);
-
-                String modelText = extractTextFromCandidates(rawResponse);
+                String modelText = generate(req, streamId);
 
 // debugger
                 Log.d(TAG, "CHAT_MODEL_TEXT (after extractTextFromCandidates): " + modelText);
@@ -298,63 +305,22 @@ public class ChatFragment extends Fragment {
                         aiNotes = safeString(obj, "notes");
                         entrypoint = safeString(obj, "entrypoint");
 
-                        StringBuilder sb = new StringBuilder();
-
-                        if (!aiLanguage.isEmpty())
-                            sb.append("**Language:** ").append(aiLanguage).append("\n");
-                        if (!aiRuntime.isEmpty())
-                            sb.append("**Runtime:** ").append(aiRuntime).append("\n");
-                        if (!entrypoint.isEmpty())
-                            sb.append("**Entrypoint:** ").append(entrypoint).append("\n");
-                        if (!aiNotes.isEmpty()) sb.append("\n").append(aiNotes).append("\n\n");
-
                         if (obj.has("files") && obj.get("files").isJsonArray()) {
                             JsonArray filesArr = obj.getAsJsonArray("files");
 
                             for (int i = 0; i < filesArr.size(); i++) {
                                 if (!filesArr.get(i).isJsonObject()) continue;
-                                JsonObject fObj = filesArr.get(i).getAsJsonObject();
-
-                                String path = safeString(fObj, "path");
-                                String fname = safeString(fObj, "filename");
-                                String summary = safeString(fObj, "summary");
-                                String content = safeString(fObj, "content");
+                                AiUpdateViewModel.ProjectFile pf = projectFileOf(filesArr.get(i).getAsJsonObject());
 
                                 // keep first file’s content for backward-compat single-file editor
                                 if (i == 0) {
-                                    aiCode = content;
-                                }
-
-                                // collect for ViewModel (this is the NEW part)
-                                vmFiles.add(new AiUpdateViewModel.ProjectFile(
-                                        path,
-                                        fname,
-                                        summary,
-                                        content
-                                ));
-
-                                String fullPath;
-                                if (path != null && !path.isEmpty() && !path.equals(".")) {
-                                    fullPath = path + "/" + fname;
-                                } else {
-                                    fullPath = fname;
-                                }
-
-                                sb.append("**File:** ").append(fullPath).append("\n");
-                                if (!summary.isEmpty()) {
-                                    sb.append("*").append(summary).append("*\n\n");
-                                }
-
-                                if (!content.isEmpty()) {
-                                    String fenceLang = aiLanguage != null ? aiLanguage.toLowerCase() : "";
-                                    sb.append("```").append(fenceLang).append("\n");
-                                    sb.append(content).append("\n");
-                                    sb.append("```").append("\n\n");
+                                    aiCode = pf.content;
                                 }
+                                vmFiles.add(pf);
                             }
                         }
 
-                        display = sb.toString().trim();
+                        display = displayFor(aiLanguage, aiRuntime, entrypoint, aiNotes, vmFiles);
                     }
                 } catch (JsonSyntaxException ex) {
                     Log.w(TAG, "Model returned non-JSON; showing raw text");
@@ -377,15 +343,22 @@ public class ChatFragment extends Fragment {
                     loadingIndicator.setVisibility(View.GONE);
                     chatInput.setEnabled(true);
 
-                    // show the "pretty" multi-file text
-                    Message aiMsg = new Message(finalDisplay, "model");
+                    // show the "pretty" multi-file text; a streamed answer already has its bubble
+                    Message aiMsg = streamingMessage != null ? streamingMessage : new Message(finalDisplay, "model");
+                    streamingMessage = null;
 
                     // debugger
                     Log.d(TAG, "CHAT_FINAL_MESSAGE (added to RecyclerView): " + finalDisplay);
 
+                    aiMsg.setText(finalDisplay);
                     aiMsg.setCode(finalAiCode);
-                    currentProject.addMessage(aiMsg);
-                    chatAdapter.notifyItemInserted(currentProject.getMessages().size() - 1);
+                    int at = currentProject.getMessages().indexOf(aiMsg);
+                    if (at >= 0) {
+                        chatAdapter.notifyItemChanged(at);
+                    } else {
+                        currentProject.addMessage(aiMsg);
+                        chatAdapter.notifyItemInserted(currentProject.getMessages().size() - 1);
+                    }
                     chatRecyclerView.scrollToPosition(chatAdapter.getItemCount() - 1);
 
                     // push to editor
@@ -403,7 +376,9 @@ public class ChatFragment extends Fragment {
                                         finalAiRuntime,
                                         finalEntrypoint,
                                         vmFiles,
-                                        finalAiNotes
+                                        finalAiNotes,
+                                        false,
+                                        streamId
                                 )
                         );
                     }
@@ -429,6 +404,19 @@ public class ChatFragment extends Fragment {
                 requireActivity().runOnUiThread(() -> {
                     loadingIndicator.setVisibility(View.GONE);
                     chatInput.setEnabled(true);
+                    // drop the half-streamed bubble
+                    if (streamingMessage != null) {
+                        int at = currentProject.getMessages().indexOf(streamingMessage);
+                        if (at >= 0) {
+                            currentProject.getMessages().remove(at);
+                            chatAdapter.notifyItemRemoved(at);
+                            // an autosave may already have stored the partial bubble
+                            if (FirebaseAuth.getInstance().getCurrentUser() != null) {
+                                ProjectRepository.getInstance().saveProjectToFirestore(currentProject, null);
+                            }
+                        }
+                        streamingMessage = null;
+                    }
                     SnackBarApp.INSTANCE.show(
                             requireActivity().findViewById(android.R.id.content),
                             "Error: " + e.getMessage(),
@@ -440,6 +428,161 @@ public class ChatFragment extends Fragment {
         });
     }
 
+    // ---- Streaming ----
+
+    /**
+     * Model text for {@code req}. Streams when the proxy supports it: fields
+     * and finished files reach the editor and a live chat bubble while the
+     * rest is still being generated. Otherwise one blocking call.
+     */
+    private String generate(GenerateContentRequest req, long streamId) throws IOException {
+        String requestJson = gson.toJson(req);
+        Log.d(TAG, "request body " + requestJson.length() / 1024 + " KB");
+        String cacheKey = ResponseCache.keyOf(requestJson);
+        String cached = responseCache.lookup(cacheKey);
+        if (cached != null) return cached;
+
+        if (!GeminiStream.isUnsupported()) {
+            ProjectJsonStream parser = new ProjectJsonStream(new StreamListener(streamId));
+            try {
+                GeminiStream.Result result = GeminiStream.generate(GEMINI_STREAM_ENDPOINT, requestJson, parser::feed);
+                // a cut-off answer (tokens, safety, stream ended early) is shown but not replayed
+                if (result.complete()) {
+                    responseCache.put(cacheKey, result.text);
+                } else {
+                    Log.d(TAG, "not caching streamed answer, finishReason=" + result.finishReason);
+                }
+                return result.text;
+            } catch (GeminiStream.UnsupportedException e) {
+                Log.d(TAG, "streaming unavailable, using blocking call: " + e.getMessage());
+            }
+        }
+        String rawResponse = callGemini(req);
+        if (rawResponse == null) rawResponse = "(no response)";
+
+// debugger
+        Log.d(TAG, "CHAT_RESP (raw from Gemini): " + rawResponse);
+
+        String text = extractTextFromCandidates(rawResponse);
+        // error bodies come back as text too; only complete answers are cached
+        if (finishedCleanly(rawResponse)) responseCache.put(cacheKey, text);
+        return text;
+    }
+
+    private boolean finishedCleanly(String json) {
+        try {
+            GenerateContentResponse resp = gson.fromJson(json, GenerateContentResponse.class);
+            return resp != null && resp.candidates != null && resp.candidates.length > 0
+                    && resp.candidates[0] != null && "STOP".equals(resp.candidates[0].finishReason);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    // runs on the HTTP thread; UI work is posted
+    private final class StreamListener implements ProjectJsonStream.Listener {
+        private final long streamId;
+        private String language = "", runtime = "", entrypoint = "", notes = "";
+        private final List<AiUpdateViewModel.ProjectFile> files = new ArrayList<>();
+
+        StreamListener(long streamId) {
+            this.streamId = streamId;
+        }
+
+        @Override
+        public void onField(@NonNull String name, @NonNull String value) {
+            switch (name) {
+                case "language":
+                    language = value;
+                    break;
+                case "runtime":
+                    runtime = value;
+                    break;
+                case "entrypoint":
+                    entrypoint = value;
+                    break;
+                case "notes":
+                    notes = value;
+                    break;
+                default:
+                    return;
+            }
+            showPartial(null);
+        }
+
+        @Override
+        public void onFile(int index, @NonNull JsonObject file) {
+            AiUpdateViewModel.ProjectFile pf = projectFileOf(file);
+            files.add(pf);
+            showPartial(new AiUpdateViewModel.ProjectUpdate(
+                    language, runtime, entrypoint,
+                    new ArrayList<>(Collections.singletonList(pf)), notes, true, streamId));
+        }
+
+        private void showPartial(@Nullable AiUpdateViewModel.ProjectUpdate update) {
+            String display = displayFor(language, runtime, entrypoint, notes, files) + "\n\n…";
+            if (getActivity() == null) return;
+            getActivity().runOnUiThread(() -> {
+                if (!isAdded()) return;
+                if (streamingMessage == null) {
+                    streamingMessage = new Message(display, "model");
+                    currentProject.addMessage(streamingMessage);
+                    chatAdapter.notifyItemInserted(currentProject.getMessages().size() - 1);
+                } else {
+                    streamingMessage.setText(display);
+                    int at = currentProject.getMessages().indexOf(streamingMessage);
+                    if (at >= 0) chatAdapter.notifyItemChanged(at);
+                }
+                chatRecyclerView.scrollToPosition(chatAdapter.getItemCount() - 1);
+                if (update != null) aiBus.publishProject(update);
+            });
+        }
+    }
+
+    private static AiUpdateViewModel.ProjectFile projectFileOf(JsonObject fObj) {
+        return new AiUpdateViewModel.ProjectFile(
+                safeString(fObj, "path"),
+                safeString(fObj, "filename"),
+                safeString(fObj, "summary"),
+                safeString(fObj, "content"));
+    }
+
+    // chat text for a (possibly partial) project answer
+    private static String displayFor(String language, String runtime, String entrypoint, String notes,
+                                     List<AiUpdateViewModel.ProjectFile> files) {
+        StringBuilder sb = new StringBuilder();
+
+        if (!language.isEmpty())
+            sb.append("**Language:** ").append(language).append("\n");
+        if (!runtime.isEmpty())
+            sb.append("**Runtime:** ").append(runtime).append("\n");
+        if (!entrypoint.isEmpty())
+            sb.append("**Entrypoint:** ").append(entrypoint).append("\n");
+        if (!notes.isEmpty()) sb.append("\n").append(notes).append("\n\n");
+
+        for (AiUpdateViewModel.ProjectFile f : files) {
+            String fullPath;
+            if (f.path != null && !f.path.isEmpty() && !f.path.equals(".")) {
+                fullPath = f.path + "/" + f.filename;
+            } else {
+                fullPath = f.filename;
+            }
+
+            sb.append("**File:** ").append(fullPath).append("\n");
+            if (!f.summary.isEmpty()) {
+                sb.append("*").append(f.summary).append("*\n\n");
+            }
+
+            if (!f.content.isEmpty()) {
+                String fenceLang = language != null ? language.toLowerCase() : "";
+                sb.append("```").append(fenceLang).append("\n");
+                sb.append(f.content).append("\n");
+                sb.append("```").append("\n\n");
+            }
+        }
+        return sb.toString().trim();
+    }
+
     // ---- REST call ----
     private String callGemini(GenerateContentRequest req) throws IOException {
         String bodyJson = gson.toJson(req);
@@ -487,6 +630,32 @@ public class ChatFragment extends Fragment {
         this.currentProject = project;
     }
 
+    // what a stored message contributes to the request; null for model messages without JSON
+    @Nullable
+    private ContextBuilder.Turn turnOf(Message m) {
+        if ("user".equals(m.getRole())) {
+            String text = stripMarkdownFenceIfAny(m.getText());
+            return new ContextBuilder.Turn("user", text == null ? "" : text);
+        }
+        // try to grab the raw JSON from our own previous model messages
+        String json = extractFirstJsonObject(m.getText());
+        return json != null ? new ContextBuilder.Turn("model", json) : null;
+    }
+
+    // the editor's files; the saved project's when the editor hasn't published any yet
+    private List<AiUpdateViewModel.EditorFile> contextFiles() {
+        if (latestEditorFiles != null && !latestEditorFiles.isEmpty()) return latestEditorFiles;
+        List<AiUpdateViewModel.EditorFile> out = new ArrayList<>();
+        if (currentProject.getFiles() != null) {
+            for (ProjectFile f : currentProject.getFiles()) {
+                if (f == null || f.path == null) continue;
+                out.add(new AiUpdateViewModel.EditorFile(f.path,
+                        f.content != null ? f.content : "", 0, false));
+            }
+        }
+        return out;
+    }
+
     // ---------- JSON formatting helpers (DISPLAY ONLY) ----------
     private String stripMarkdownFenceIfAny(String s) {
         if (s == null) return null;
@@ -754,14 +923,11 @@ public class ChatFragment extends Fragment {
         return p;
     }
 
-    private static Part partInlineImage(Bitmap bmp, String mimeType) {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        bmp.compress(Bitmap.CompressFormat.PNG, 100, out);
-        String b64 = Base64.encodeToString(out.toByteArray(), Base64.NO_WRAP);
+    private static Part partInlineImage(ImageIngest.Prepared img) {
         Part p = new Part();
         p.inlineData = new InlineData();
-        p.inlineData.mimeType = mimeType;
-        p.inlineData.data = b64;
+        p.inlineData.mimeType = img.mimeType;
+        p.inlineData.data = img.base64();
         return p;
     }
 
@@ -0,0 +1,116 @@
+package com.example.aiassistantcoder;
+
+import android.text.Spanned;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Objects;
+
+import io.noties.markwon.Markwon;
+
+/**
+ * Process-wide LRU of rendered chat text: markdown bodies and highlighted
+ * code blocks. Bounded by an estimate of the bytes held (text + spans), so
+ * a chat full of multi-file answers can't grow it without limit; evicted
+ * entries are simply rendered again. Thread-safe.
+ */
+final class ChatRenderCache {
+
+    private static final String TAG = "ChatRenderCache";
+
+    // rough per-span cost: span object + its start/end/flags entries
+    private static final int SPAN_BYTES = 48;
+
+    private static ChatRenderCache instance;
+
+    static synchronized ChatRenderCache get() {
+        if (instance == null) instance = new ChatRenderCache(defaultBudget());
+        return instance;
+    }
+
+    // 1/16 of the heap, at most 8 MB
+    private static int defaultBudget() {
+        return (int) Math.min(Runtime.getRuntime().maxMemory() / 16, 8L * 1024 * 1024);
+    }
+
+    // code blocks are colored by the theme, so a theme switch misses instead of showing old colors
+    private static final class Key {
+        final boolean code;
+        final String theme;
+        final String info;
+        final String text;
+
+        Key(boolean code, String theme, String info, String text) {
+            this.code = code;
+            this.theme = theme;
+            this.info = info;
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return code == k.code && theme.equals(k.theme) && info.equals(k.info) && text.equals(k.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(code, theme, info, text);
+        }
+    }
+
+    private final LruCache<Key, Spanned> cache;
+
+    ChatRenderCache(int maxBytes) {
+        cache = new LruCache<Key, Spanned>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Spanned value) {
+                int spans = value.getSpans(0, value.length(), Object.class).length;
+                return 2 * (key.text.length() + value.length()) + SPAN_BYTES * spans;
+            }
+        };
+    }
+
+    /** Rendered markdown for {@code source}, or null if it has to be rendered. */
+    @Nullable
+    Spanned markdown(@NonNull String source) {
+        return cache.get(new Key(false, "", "", source));
+    }
+
+    /** Renders {@code source} and keeps the result; call off the main thread. */
+    @NonNull
+    Spanned renderMarkdown(@NonNull String source, @NonNull Markwon markwon) {
+        Key key = new Key(false, "", "", source);
+        Spanned hit = cache.get(key);
+        if (hit != null) return hit;
+        Spanned md = markwon.toMarkdown(source);
+        cache.put(key, md);
+        return md;
+    }
+
+    @Nullable
+    Spanned code(@NonNull String theme, @NonNull String info, @NonNull String code) {
+        return cache.get(new Key(true, theme, info, code));
+    }
+
+    void putCode(@NonNull String theme, @NonNull String info, @NonNull String code,
+                 @NonNull Spanned highlighted) {
+        cache.put(new Key(true, theme, info, code), highlighted);
+    }
+
+    @NonNull
+    String stats() {
+        return "hits=" + cache.hitCount()
+                + " misses=" + cache.missCount()
+                + " evictions=" + cache.evictionCount()
+                + " size=" + cache.size() / 1024 + "/" + cache.maxSize() / 1024 + "KB";
+    }
+
+    void logStats() {
+        Log.d(TAG, stats());
+    }
+}
@@ -0,0 +1,540 @@
+package com.example.aiassistantcoder;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.noties.markwon.Markwon;
+
+/**
+ * Everything {@link ChatAdapter} shows for one message, worked out once:
+ * JSON detection and parsing, the run-info header, the first code block and
+ * the markdown to render. Built off the main thread by {@link #build}; binding
+ * then only sets views. Immutable.
+ * <p>
+ * The rendered markdown itself lives in {@link ChatRenderCache}, which has a
+ * memory budget; {@link #build} puts it there so the first bind finds it.
+ * <p>
+ * Fenced code blocks are kept as offsets into the message text. A block
+ * longer than {@link #PREVIEW_LINES} goes into the markdown as a preview
+ * followed by expand / copy links ({@link #BLOCK_LINK}), so a 20-file answer
+ * doesn't become one huge TextView; the full content is only copied out when
+ * a block is expanded ({@link #markdownFor}) or copied ({@link #code}).
+ */
+final class ChatRenderModel {
+
+    private static final String TAG = "ChatRenderModel";
+
+    enum Kind {
+        USER_TEXT,      // plain text
+        MARKDOWN,       // model text, optional run-info header
+        PARSED_CARD,    // model JSON payload
+        RAW_JSON        // model JSON that isn't a payload
+    }
+
+    /** One row of the run-info file tree. */
+    static final class TreeLine {
+        final String text;
+        final boolean isFile;
+
+        TreeLine(String text, boolean isFile) {
+            this.text = text;
+            this.isFile = isFile;
+        }
+    }
+
+    /** Parsed metadata from pretty-for-chat text. */
+    static final class RunInfo {
+        final String language;
+        final String runtime;
+        final String entrypoint;
+        final List<TreeLine> fileTree;
+
+        RunInfo(String language, String runtime, String entrypoint, List<TreeLine> fileTree) {
+            this.language = language;
+            this.runtime = runtime;
+            this.entrypoint = entrypoint;
+            this.fileTree = Collections.unmodifiableList(fileTree);
+        }
+    }
+
+    /** Display strings for the parsed JSON card. */
+    static final class Payload {
+        final String languageBadge;
+        final @Nullable String runtimeBadge;   // null: folded into the language badge
+        final String notes;
+        final String code;
+        final int codeLines;
+
+        Payload(String languageBadge, @Nullable String runtimeBadge, String notes, String code) {
+            this.languageBadge = languageBadge;
+            this.runtimeBadge = runtimeBadge;
+            this.notes = notes;
+            this.code = code;
+            this.codeLines = countLines(code);
+        }
+    }
+
+    /** Blocks with more lines than this are shown collapsed. */
+    static final int PREVIEW_LINES = 16;
+    /** Link scheme of the expand / collapse / copy links: {@code chatblock:<action>/<index>}. */
+    static final String BLOCK_LINK = "chatblock:";
+
+    /** A fenced code block's content (fence lines excluded) in {@link #text}. */
+    static final class CodeBlock {
+        final int from;
+        final int to;
+        final int lines;
+
+        CodeBlock(int from, int to, int lines) {
+            this.from = from;
+            this.to = to;
+            this.lines = lines;
+        }
+
+        boolean collapsible() {
+            return lines > PREVIEW_LINES;
+        }
+    }
+
+    final Kind kind;
+    final int contentKey;               // role + text the model was built from
+    final String text;                  // original text (copy / plain display)
+    final @Nullable RunInfo runInfo;    // MARKDOWN only
+    final String markdownSource;        // MARKDOWN only: body without run-info lines, blocks collapsed
+    final List<CodeBlock> blocks;       // MARKDOWN only
+    final @Nullable Payload payload;    // PARSED_CARD only
+    final String prettyJson;            // RAW_JSON only
+
+    private ChatRenderModel(Kind kind, int contentKey, String text, @Nullable RunInfo runInfo,
+                            String markdownSource, List<CodeBlock> blocks, @Nullable Payload payload,
+                            String prettyJson) {
+        this.kind = kind;
+        this.contentKey = contentKey;
+        this.text = text;
+        this.runInfo = runInfo;
+        this.markdownSource = markdownSource;
+        this.blocks = Collections.unmodifiableList(blocks);
+        this.payload = payload;
+        this.prettyJson = prettyJson;
+    }
+
+    static int contentKeyOf(@Nullable String role, @Nullable String text) {
+        return 31 * (role == null ? 0 : role.hashCode()) + (text == null ? 0 : text.hashCode());
+    }
+
+    /** Whether this model still matches the message's current content. */
+    boolean isFor(@NonNull Message m) {
+        return contentKey == contentKeyOf(m.getRole(), m.getText());
+    }
+
+    /** Parses and renders; safe on a background thread. */
+    @NonNull
+    static ChatRenderModel build(@Nullable String role, @Nullable String rawText,
+                                 @NonNull Markwon markwon, @NonNull ChatRenderCache cache) {
+        final String text = rawText == null ? "" : rawText;
+        final int key = contentKeyOf(role, rawText);
+
+        if ("user".equals(role)) {
+            return new ChatRenderModel(Kind.USER_TEXT, key, text, null, "", Collections.emptyList(), null, "");
+        }
+
+        String json = extractFirstJson(text);
+        if (!TextUtils.isEmpty(json)) {
+            Payload payload = tryParsePayload(json);
+            if (payload != null) {
+                return new ChatRenderModel(Kind.PARSED_CARD, key, text, null, "", Collections.emptyList(), payload, "");
+            }
+            return new ChatRenderModel(Kind.RAW_JSON, key, text, null, "", Collections.emptyList(), null, prettyJson(json));
+        }
+
+        // run info from the top of the message (if present); the rest is markdown
+        RunInfo runInfo = parseRunInfo(text);
+        List<CodeBlock> blocks = scanBlocks(text);
+        String display = markdownFor(text, runInfo != null, blocks, Collections.emptySet());
+        cache.renderMarkdown(display, markwon);
+        return new ChatRenderModel(Kind.MARKDOWN, key, text, runInfo, display, blocks, null, "");
+    }
+
+    /** Full content of block {@code index}. */
+    @NonNull
+    String code(int index) {
+        if (index < 0 || index >= blocks.size()) return "";
+        CodeBlock b = blocks.get(index);
+        return text.substring(b.from, b.to);
+    }
+
+    /** Markdown with the given collapsible blocks shown in full; call off the main thread. */
+    @NonNull
+    String markdownFor(@NonNull Set<Integer> expanded) {
+        return markdownFor(text, runInfo != null, blocks, expanded);
+    }
+
+    // --------------------------------------------------
+    // CODE BLOCKS
+    // --------------------------------------------------
+
+    private static boolean isFence(String t, int s, int e) {
+        int i = s;
+        while (i < e && i - s < 4 && (t.charAt(i) == ' ' || t.charAt(i) == '\t')) i++;
+        return e - i >= 3 && t.startsWith("```", i);
+    }
+
+    private static List<CodeBlock> scanBlocks(String t) {
+        List<CodeBlock> out = new ArrayList<>();
+        int n = t.length(), pos = 0, from = -1, lines = 0;
+        while (pos < n) {
+            int eol = t.indexOf('\n', pos);
+            if (eol < 0) eol = n;
+            if (from < 0) {
+                if (isFence(t, pos, eol)) {
+                    from = Math.min(eol + 1, n);
+                    lines = 0;
+                }
+            } else if (isFence(t, pos, eol)) {
+                out.add(new CodeBlock(from, Math.max(from, pos - 1), lines));
+                from = -1;
+            } else {
+                lines++;
+            }
+            pos = eol + 1;
+        }
+        if (from >= 0) out.add(new CodeBlock(from, n, lines));   // still streaming
+        return out;
+    }
+
+    private static String markdownFor(String t, boolean skipMeta, List<CodeBlock> blocks,
+                                      Set<Integer> expanded) {
+        StringBuilder out = new StringBuilder();
+        int n = t.length(), pos = 0, block = -1, shown = 0;
+        boolean inFence = false, collapsed = false;
+        while (pos < n) {
+            int eol = t.indexOf('\n', pos);
+            if (eol < 0) eol = n;
+            if (!inFence) {
+                if (isFence(t, pos, eol) && block + 1 < blocks.size()) {
+                    inFence = true;
+                    block++;
+                    shown = 0;
+                    collapsed = blocks.get(block).collapsible() && !expanded.contains(block);
+                    out.append(t, pos, eol).append('\n');
+                } else if (!(skipMeta && isMetaLine(t, pos, eol))) {
+                    out.append(t, pos, eol).append('\n');
+                }
+            } else if (isFence(t, pos, eol)) {
+                inFence = false;
+                out.append(t, pos, eol).append('\n');
+                CodeBlock b = blocks.get(block);
+                if (b.collapsible()) out.append(blockLinks(block, b, collapsed)).append('\n');
+            } else if (!collapsed || ++shown <= PREVIEW_LINES) {
+                out.append(t, pos, eol).append('\n');
+            }
+            pos = eol + 1;
+        }
+        return out.toString().trim();
+    }
+
+    private static String blockLinks(int index, CodeBlock b, boolean collapsed) {
+        String toggle = collapsed
+                ? "[Show all " + b.lines + " lines](" + BLOCK_LINK + "expand/" + index + ")"
+                : "[Show less](" + BLOCK_LINK + "collapse/" + index + ")";
+        return toggle + " · [Copy](" + BLOCK_LINK + "copy/" + index + ")";
+    }
+
+    // --------------------------------------------------
+    // RUN INFO
+    // --------------------------------------------------
+
+    private static final Pattern META_LINE =
+            Pattern.compile("^\\*\\*(Language|Runtime|Entrypoint|File):\\*\\*\\s*(.+)$",
+                    Pattern.CASE_INSENSITIVE);
+
+    /** Parse the Language/Runtime/Entrypoint/File lines outside code blocks. */
+    @Nullable
+    private static RunInfo parseRunInfo(String input) {
+        String language = null, runtime = null, entrypoint = null;
+        List<String> files = new ArrayList<>();
+        boolean sawMeta = false;
+        boolean inFence = false;
+
+        int n = input.length(), pos = 0;
+        while (pos < n) {
+            int eol = input.indexOf('\n', pos);
+            if (eol < 0) eol = n;
+            if (isFence(input, pos, eol)) {
+                inFence = !inFence;
+            } else if (!inFence && startsBold(input, pos, eol)) {
+                Matcher m = META_LINE.matcher(input.substring(pos, eol).trim());
+                if (m.find()) {
+                    sawMeta = true;
+                    String value = m.group(2).trim();
+                    switch (m.group(1).toLowerCase(Locale.US)) {
+                        case "language":
+                            language = value;
+                            break;
+                        case "runtime":
+                            runtime = value;
+                            break;
+                        case "entrypoint":
+                            entrypoint = value;
+                            break;
+                        case "file":
+                            files.add(value);
+                            break;
+                    }
+                }
+            }
+            pos = eol + 1;
+        }
+
+        if (!sawMeta) return null;
+        List<TreeLine> tree = new ArrayList<>();
+        flattenTree(buildFileTree(files), "", tree);
+        return new RunInfo(language, runtime, entrypoint, tree);
+    }
+
+    // cheap filter before the regex: meta lines start with "**"
+    private static boolean startsBold(String t, int s, int e) {
+        int i = s;
+        while (i < e && Character.isWhitespace(t.charAt(i))) i++;
+        return e - i >= 2 && t.startsWith("**", i);
+    }
+
+    private static boolean isMetaLine(String t, int s, int e) {
+        return startsBold(t, s, e) && META_LINE.matcher(t.substring(s, e).trim()).find();
+    }
+
+    private static final class FileNode {
+        final String name;
+        final boolean isFile;
+        final LinkedHashMap<String, FileNode> children = new LinkedHashMap<>();
+
+        FileNode(String name, boolean isFile) {
+            this.name = name;
+            this.isFile = isFile;
+        }
+    }
+
+    private static FileNode buildFileTree(List<String> files) {
+        FileNode root = new FileNode("", false);
+
+        for (String path : files) {
+            if (path == null || path.trim().isEmpty()) continue;
+
+            String[] parts = path.split("/");
+            FileNode current = root;
+
+            for (int i = 0; i < parts.length; i++) {
+                String part = parts[i];
+                boolean isFile = (i == parts.length - 1);
+
+                // Create child if missing
+                current.children.putIfAbsent(part, new FileNode(part, isFile));
+                current = current.children.get(part);
+            }
+        }
+
+        return root;
+    }
+
+    private static void flattenTree(FileNode node, String prefix, List<TreeLine> out) {
+        List<FileNode> children = new ArrayList<>(node.children.values());
+
+        // Sort: folders first, then files alphabetically
+        Collections.sort(children, (a, b) -> {
+            if (a.isFile && !b.isFile) return 1;
+            if (!a.isFile && b.isFile) return -1;
+            return a.name.compareToIgnoreCase(b.name);
+        });
+
+        int count = children.size();
+        for (int i = 0; i < count; i++) {
+            FileNode child = children.get(i);
+            boolean isLast = (i == count - 1);
+
+            String branch = isLast ? "└── " : "├── ";
+            out.add(new TreeLine(prefix + branch + child.name + (child.isFile ? "" : "/"), child.isFile));
+
+            if (!child.isFile) {
+                flattenTree(child, prefix + (isLast ? "    " : "│   "), out);
+            }
+        }
+    }
+
+    // --------------------------------------------------
+    // JSON helpers
+    // --------------------------------------------------
+
+    private static final Pattern TRAILING_COMMA = Pattern.compile(",(\\s*[}\\]])");
+    private static final Pattern LEADING_DOTS = Pattern.compile("^([./]+)");
+    private static final Pattern MULTI_SLASH = Pattern.compile("/+");
+
+    @Nullable
+    private static String extractFirstJson(String s) {
+        // fenced ```json
+        int fenceStart = s.indexOf("```json");
+        if (fenceStart == -1) fenceStart = s.indexOf("```JSON");
+        if (fenceStart != -1) {
+            int codeStart = s.indexOf('\n', fenceStart);
+            int fenceEnd = s.indexOf("```", codeStart + 1);
+            if (codeStart != -1 && fenceEnd != -1) {
+                return s.substring(codeStart + 1, fenceEnd).trim();
+            }
+        }
+
+        // whole message is JSON
+        String trimmed = s.trim();
+        if (trimmed.startsWith("{") || trimmed.startsWith("[")) {
+            int end = findMatchingJsonEnd(trimmed, 0);
+            if (end != -1) {
+                return trimmed.substring(0, end + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    private static int findMatchingJsonEnd(String text, int start) {
+        int depth = 0;
+        boolean inStr = false;
+        char quote = 0;
+        boolean esc = false;
+
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inStr) {
+                if (esc) {
+                    esc = false;
+                } else if (c == '\\') {
+                    esc = true;
+                } else if (c == quote) {
+                    inStr = false;
+                }
+                continue;
+            }
+            if (c == '"' || c == '\'') {
+                inStr = true;
+                quote = c;
+                continue;
+            }
+            if (c == '{' || c == '[') depth++;
+            else if (c == '}' || c == ']') {
+                depth--;
+                if (depth == 0) return i;
+            }
+        }
+        return -1;
+    }
+
+    // smart quotes and trailing commas are common in model JSON
+    private static String lenient(String raw) {
+        String t = raw.replace('“', '"').replace('”', '"').replace('’', '\'');
+        return TRAILING_COMMA.matcher(t).replaceAll("$1");
+    }
+
+    private static String prettyJson(String raw) {
+        try {
+            JsonElement el = JsonParser.parseString(lenient(raw));
+            Gson g = new GsonBuilder()
+                    .setPrettyPrinting()
+                    .disableHtmlEscaping()
+                    .create();
+            return g.toJson(el);
+        } catch (Exception e) {
+            Log.w(TAG, "prettyJson(): failed to parse, returning raw", e);
+            return raw;
+        }
+    }
+
+    @Nullable
+    private static Payload tryParsePayload(String json) {
+        try {
+            JsonElement el = JsonParser.parseString(lenient(json));
+            if (!el.isJsonObject()) return null;
+
+            JsonObject obj = el.getAsJsonObject();
+            String language = obj.has("language") ? obj.get("language").getAsString() : "";
+            String runtime = obj.has("runtime") ? obj.get("runtime").getAsString() : "";
+            String notes = obj.has("notes") ? obj.get("notes").getAsString() : "";
+            String code;
+            String filePath = null;
+
+            if (obj.has("files") && obj.get("files").isJsonArray()
+                    && obj.get("files").getAsJsonArray().size() > 0) {
+
+                JsonObject f0 = obj.get("files").getAsJsonArray()
+                        .get(0).getAsJsonObject();
+
+                String path = f0.has("path") ? f0.get("path").getAsString() : "";
+                String filename = f0.has("filename") ? f0.get("filename").getAsString() : "";
+                code = f0.has("content") ? f0.get("content").getAsString() : "";
+                filePath = normalizeFilePath(path, filename);
+            } else {
+                code = obj.has("code") ? obj.get("code").getAsString() : "";
+            }
+
+            if (code.isEmpty() && language.isEmpty() && runtime.isEmpty()) {
+                return null;
+            }
+
+            String languageBadge;
+            String runtimeBadge = null;
+            if (!runtime.isEmpty() && !language.toLowerCase().contains(runtime.toLowerCase())) {
+                languageBadge = "Language: " + language;
+                runtimeBadge = "Runtime: " + runtime;
+            } else {
+                languageBadge = "Language: " + (runtime.isEmpty() ? language : (language + " " + runtime));
+            }
+
+            String shownNotes = notes.isEmpty() ? "No notes provided." : notes;
+            if (filePath != null && !filePath.isEmpty()) {
+                shownNotes += "\n\nFile: " + normalizeFilePath("", filePath);
+            }
+            return new Payload(languageBadge, runtimeBadge, shownNotes, code);
+        } catch (Exception ignored) {
+            Log.w(TAG, "tryParsePayload(): failed to parse JSON payload");
+            return null;
+        }
+    }
+
+    private static String normalizeFilePath(String path, String filename) {
+        String p = path == null ? "" : path.trim();
+        String f = filename == null ? "" : filename.trim();
+
+        // Remove leading ./ or / (repeated if needed)
+        p = LEADING_DOTS.matcher(p).replaceAll("");
+        f = LEADING_DOTS.matcher(f).replaceAll("");
+
+        // Replace any double/multi slashes with a single slash
+        p = MULTI_SLASH.matcher(p).replaceAll("/");
+        f = MULTI_SLASH.matcher(f).replaceAll("/");
+
+        if (p.isEmpty()) {
+            return f;
+        }
+        return p + "/" + f;  // Always exactly one slash between
+    }
+
+    private static int countLines(String s) {
+        if (s == null || s.isEmpty()) return 0;
+        int n = 1;
+        for (int i = 0; i < s.length(); i++) if (s.charAt(i) == '\n') n++;
+        return n;
+    }
+}
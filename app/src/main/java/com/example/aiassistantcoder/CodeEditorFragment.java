@@ -1,11 +1,10 @@
 package com.example.aiassistantcoder;
 
 import android.annotation.SuppressLint;
-import android.content.Context;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
@@ -33,19 +32,10 @@ import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.tabs.TabLayout;
 import com.google.firebase.auth.FirebaseAuth;
 
-import org.eclipse.tm4e.core.registry.IThemeSource;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.lang.reflect.Method;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -61,21 +51,14 @@ import io.github.rosemoe.sora.event.ContentChangeEvent;
 import io.github.rosemoe.sora.event.SubscriptionReceipt;
 import io.github.rosemoe.sora.langs.textmate.TextMateColorScheme;
 import io.github.rosemoe.sora.langs.textmate.TextMateLanguage;
-import io.github.rosemoe.sora.langs.textmate.registry.FileProviderRegistry;
-import io.github.rosemoe.sora.langs.textmate.registry.GrammarRegistry;
 import io.github.rosemoe.sora.langs.textmate.registry.ThemeRegistry;
-import io.github.rosemoe.sora.langs.textmate.registry.model.ThemeModel;
-import io.github.rosemoe.sora.langs.textmate.registry.provider.AssetsFileResolver;
 import io.github.rosemoe.sora.widget.CodeEditor;
 import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
-import okhttp3.WebSocket;
-import okhttp3.WebSocketListener;
-import okio.ByteString;
 
 public class CodeEditorFragment extends Fragment {
 
+    private static final String TAG = "CodeEditorFragment";
+
     // ---- UI ----
     private CodeEditor codeEditor;
     private FloatingActionButton btnRun;
@@ -122,6 +105,8 @@ public class CodeEditorFragment extends Fragment {
         }
     }
 
+    private @Nullable DiffPipeline diffPipeline;
+
     private @Nullable Runnable onAcceptAction;
     private @Nullable String queuedNewCode;
 
@@ -157,25 +142,17 @@ public class CodeEditorFragment extends Fragment {
         if (src == null) src = "";
 
         if (currentProject != null) {
-            currentProject.setCode(src);
-            currentProject.setFiles(buildProjectFilesFromEditor());
             if (FirebaseAuth.getInstance().getCurrentUser() != null) {
-                ProjectRepository.getInstance().saveProjectToFirestore(
-                        currentProject,
-                        new ProjectRepository.ProjectSaveCallback() {
-                            @Override
-                            public void onSaved(String projectId) {
-                                printToConsole("(saved) ✔\n");
-                            }
-
-                            @Override
-                            public void onError(Exception e) {
-                                printToConsole("Save error: " + e.getMessage() + "\n");
-                            }
-                        });
+                // only dirty files go out; merges with a save already in flight
+                autosave.request();
+            } else {
+                currentProject.setCode(src);
+                currentProject.setFiles(buildProjectFilesFromEditor());
             }
         }
 
+        publishEditorState();
+
         // Always cache locally too
         String key = cacheKeyForCurrentProject();
         requireContext().getSharedPreferences(SP_FILE, 0)
@@ -184,22 +161,96 @@ public class CodeEditorFragment extends Fragment {
                 .apply();
     };
 
+    private final AutosaveQueue autosave = new AutosaveQueue(new AutosaveQueue.Host() {
+        @Nullable
+        @Override
+        public Project project() {
+            return currentProject;
+        }
+
+        @NonNull
+        @Override
+        public List<OpenFile> files() {
+            return availableFiles;
+        }
+
+        @NonNull
+        @Override
+        public String code() {
+            return getCode();
+        }
+
+        @Override
+        public void onSaved(long latencyMs, @NonNull ProjectRepository.SaveStats stats) {
+            printToConsole("(saved) ✔\n");
+            showSaveDebug(latencyMs, stats);
+        }
+
+        @Override
+        public void onSaveError(@NonNull Exception e) {
+            printToConsole("Save error: " + e.getMessage() + "\n");
+        }
+    });
+    private @Nullable TextView saveDebugOverlay;
+
+    // syncs the remote project while editing, so Run only starts the session
+    private final LiveWarmer liveWarmer = new LiveWarmer(new LiveWarmer.Host() {
+        @NonNull
+        @Override
+        public LiveRunManager manager() {
+            initLiveManagerIfNeeded();
+            return liveRunManager;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return liveConnecting || liveSocket != null || liveSessionId != null;
+        }
+
+        @Override
+        public boolean wantsLive() {
+            return currentBackend == Backend.LIVE;
+        }
+
+        @NonNull
+        @Override
+        public JSONArray files() {
+            return buildEditorFilesJson();
+        }
+
+        @NonNull
+        @Override
+        public String language() {
+            return liveLanguage();
+        }
+
+        @Nullable
+        @Override
+        public String projectId() {
+            return liveProjectId();
+        }
+    });
+
     // AI hints (optional)
     private String aiLang, aiRuntime, aiRunnerHint;
     private String aiEntrypoint;
 
     // Live runner
     private String liveBaseUrl = "https://pocketcoder-backend.onrender.com";
-    private WebSocket liveSocket;
+    private @Nullable LiveSocket liveSocket;
+    private @Nullable ConsoleBatcher liveOutput;
     private String liveSessionId;
     private boolean liveConnecting = false;
     private OkHttpClient ok;
     private boolean showDiffs = false;
 
     // Backend selection
-    private enum Backend {LIVE, HTML}
+    private enum Backend {LIVE, HTML, LOCAL_JS}
 
     private Backend currentBackend = Backend.LIVE;
+    private final StreamedFiles streamedFiles = new StreamedFiles();
+    private @Nullable String previewPage;     // project path of the previewed page
+    private static final long PREVIEW_DEBOUNCE_MS = 300L;
 
     // Back-compat
     private String pendingCode;
@@ -207,6 +258,10 @@ public class CodeEditorFragment extends Fragment {
     // Live manager
     private LiveRunManager liveRunManager;
 
+    // On-device JavaScript
+    private @Nullable LocalJsRunner localJs;
+    private @Nullable LocalJsRunner.Run localRun;
+
     // For asking the Activity to switch tabs to Console
     public interface PagerNav {
         void goToConsoleTab();
@@ -276,6 +331,7 @@ public class CodeEditorFragment extends Fragment {
 
         btnRun = v.findViewById(R.id.btn_run);
         progress = v.findViewById(R.id.progress);
+        saveDebugOverlay = v.findViewById(R.id.save_debug_overlay);
         initTextMateIfNeeded();
         applyTextMateLanguageFromAi();
 
@@ -287,7 +343,8 @@ public class CodeEditorFragment extends Fragment {
         btnToggleFilesPanel = v.findViewById(R.id.btn_toggle_files_panel);
         btnCloseTab = v.findViewById(R.id.btn_close_tab);
 
-        ok = new OkHttpClient();
+        ok = HttpTransport.liveSocketClient();
+        diffPipeline = new DiffPipeline(this::onFileDiffReady);
         consoleVM = new ViewModelProvider(requireActivity()).get(ConsoleViewModel.class);
 
         if (filesListContainer != null) {
@@ -339,7 +396,14 @@ public class CodeEditorFragment extends Fragment {
 
             String trimmed = cmd.trim();
 
-            if ("/restart".equalsIgnoreCase(trimmed)) {
+            if (currentBackend == Backend.LOCAL_JS) {
+                if ("/restart".equalsIgnoreCase(trimmed)) {
+                    consoleVM.append("(local) restarting…\n");
+                    runLocalJs();
+                } else {
+                    consoleVM.append("(local) on-device runs don't read input; the live runner does\n");
+                }
+            } else if ("/restart".equalsIgnoreCase(trimmed)) {
                 consoleVM.append("(live) restarting…\n");
                 exec.execute(() -> {
                     stopLiveSession("user-restart");
@@ -390,6 +454,8 @@ public class CodeEditorFragment extends Fragment {
             if (update.files == null || update.files.isEmpty()) return;
 
             List<String> incomingIds = new ArrayList<>();
+            List<String> appliedIds = new ArrayList<>();
+            List<DiffPipeline.Job> diffJobs = new ArrayList<>();
 
             for (AiUpdateViewModel.ProjectFile pf : update.files) {
                 String displayName;
@@ -399,6 +465,10 @@ public class CodeEditorFragment extends Fragment {
                     displayName = pf.filename;
                 }
                 incomingIds.add(displayName);
+                // a streamed answer: files already handled from partial updates are skipped at the end
+                if (!streamedFiles.shouldApply(update.streamId, update.partial, displayName)) continue;
+                appliedIds.add(displayName);
+                boolean reviewPending = false;
 
                 if (alreadyHasFile(displayName)) {
                     if (showDiffs) {
@@ -408,13 +478,9 @@ public class CodeEditorFragment extends Fragment {
                         if (oldContent.equals(newContent)) {
                             updateOpenFileContent(displayName, newContent);
                         } else {
-                            List<DiffLine> diff = DiffUtilLite.diffLines(oldContent, newContent);
-                            if (diffDialog != null && diffDialog.isShowing()) {
-                                pendingFileDiffs.add(new PendingFileDiff(displayName, newContent, diff));
-                            } else {
-                                showDiffBottomSheet(displayName, diff,
-                                        () -> updateOpenFileContent(displayName, newContent));
-                            }
+                            // diffed off the main thread, see onFileDiffReady()
+                            diffJobs.add(new DiffPipeline.Job(displayName, oldContent, newContent));
+                            reviewPending = true;
                         }
                     } else {
                         updateOpenFileContent(displayName, pf.content);
@@ -423,11 +489,13 @@ public class CodeEditorFragment extends Fragment {
                     OpenFile of = new OpenFile(displayName, displayName, pf.content);
                     addAvailableFileFromOutside(of);
                 }
+                streamedFiles.applied(update.streamId, update.partial, displayName, reviewPending);
                 aiManagedFiles.put(displayName, Boolean.TRUE);
             }
 
             List<OpenFile> toDelete = new ArrayList<>();
-            for (OpenFile existing : new ArrayList<>(availableFiles)) {
+            // partial updates don't list every file, so nothing is deleted until the end
+            for (OpenFile existing : update.partial ? new ArrayList<OpenFile>() : new ArrayList<>(availableFiles)) {
                 Boolean aiOwned = aiManagedFiles.get(existing.id);
                 if (aiOwned != null && aiOwned) {
                     if (!incomingIds.contains(existing.id)) {
@@ -435,6 +503,13 @@ public class CodeEditorFragment extends Fragment {
                     }
                 }
             }
+            // a newer update supersedes queued reviews of the same files, and only those
+            dropPendingDiffsFor(appliedIds);
+            if (diffPipeline != null) {
+                diffPipeline.cancel(appliedIds);
+                diffPipeline.submit(diffJobs);
+            }
+
             for (OpenFile dead : toDelete) {
                 if (showDiffs) {
                     List<DiffLine> delDiff = new ArrayList<>();
@@ -459,11 +534,14 @@ public class CodeEditorFragment extends Fragment {
                 renderFilesList(filesListContainer);
             }
 
-            if (update.entrypoint != null && !update.entrypoint.isEmpty()) {
+            if (update.entrypoint != null && !update.entrypoint.isEmpty()
+                    && !update.entrypoint.equals(aiEntrypoint)) {
                 printToConsole("Entrypoint: " + update.entrypoint + "\n");
                 aiEntrypoint = update.entrypoint;
             }
 
+            // fields may not have streamed in yet
+            if (update.partial && update.language.isEmpty()) return;
             this.aiLang = update.language;
             this.aiRuntime = update.runtime;
             applyTextMateLanguageFromAi();
@@ -497,6 +575,8 @@ public class CodeEditorFragment extends Fragment {
                 openOrSelectFile(availableFiles.get(0));
             }
         }
+        autosave.markClean(getCode());
+        liveWarmer.onEdited();
 
 
         // Subscribe to editor changes
@@ -505,15 +585,25 @@ public class CodeEditorFragment extends Fragment {
                 (event, publisher) -> {
                     OpenFile cur = getCurrentOpenFile();
                     if (cur != null) {
-                        cur.content = getCode();
+                        String now = getCode();
+                        // setText() from tab switches / loads is not an edit
+                        if (event.getAction() != ContentChangeEvent.ACTION_SET_NEW_TEXT
+                                || !now.equals(cur.content)) {
+                            cur.markEdited();
+                        }
+                        cur.content = now;
                     }
                     saveHandler.removeCallbacks(saveRunnable);
                     saveHandler.postDelayed(saveRunnable, SAVE_DEBOUNCE_MS);
+                    liveWarmer.onEdited();
+                    // live preview: edits reach the open page shortly after typing stops
+                    if (currentBackend == Backend.HTML) {
+                        main.removeCallbacks(previewRunnable);
+                        main.postDelayed(previewRunnable, PREVIEW_DEBOUNCE_MS);
+                    }
                 });
 
-        main.post(() -> {
-            if (aiBus != null) aiBus.publishEditorCode(getCode());
-        });
+        main.post(this::publishEditorState);
 
         // args from parent
         Bundle args = getArguments();
@@ -557,6 +647,8 @@ public class CodeEditorFragment extends Fragment {
             if (looksLikeHtml(src)) {
                 // just publish the preview, don’t start live
                 maybePublishHtmlPreview();
+            } else if (runsOnDevice()) {
+                runLocalJs();
             } else {
                 // always live runner
                 exec.execute(() -> {
@@ -579,6 +671,17 @@ public class CodeEditorFragment extends Fragment {
     public void onDestroyView() {
         super.onDestroyView();
         saveHandler.removeCallbacks(saveRunnable);
+        main.removeCallbacks(previewRunnable);
+        liveWarmer.stop();
+        stopLocalRun();
+        if (localJs != null) {
+            localJs.shutdown();
+            localJs = null;
+        }
+        if (diffPipeline != null) {
+            diffPipeline.shutdown();
+            diffPipeline = null;
+        }
         if (contentSub != null) {
             try {
                 contentSub.unsubscribe();
@@ -656,6 +759,8 @@ public class CodeEditorFragment extends Fragment {
 
     public void addAvailableFileFromOutside(@NonNull OpenFile file) {
         availableFiles.add(file);
+        autosave.markStructureChanged();
+        liveWarmer.onEdited();
 
         if (!aiManagedFiles.containsKey(file.id)) {
             aiManagedFiles.put(file.id, Boolean.TRUE);
@@ -726,6 +831,8 @@ public class CodeEditorFragment extends Fragment {
                     openOrSelectFile(availableFiles.get(0));
                 }
             }
+            autosave.markClean(getCode());
+            liveWarmer.onEdited();
         }
     }
 
@@ -773,6 +880,8 @@ public class CodeEditorFragment extends Fragment {
                     stopLiveSession("code-updated");
                     startLiveSessionForCurrentCode();
                 });
+            } else if (currentBackend == Backend.LOCAL_JS) {
+                runLocalJs();
             }
             return;
         }
@@ -791,6 +900,8 @@ public class CodeEditorFragment extends Fragment {
                     stopLiveSession("code-updated");
                     startLiveSessionForCurrentCode();
                 });
+            } else if (currentBackend == Backend.LOCAL_JS) {
+                runLocalJs();
             }
         });
     }
@@ -906,6 +1017,28 @@ public class CodeEditorFragment extends Fragment {
         }
     }
 
+    // called on main as each file of a project update finishes diffing
+    private void onFileDiffReady(@NonNull String fileId,
+                                 @NonNull String newContent,
+                                 @NonNull List<DiffLine> diff,
+                                 long tookMs) {
+        if (getContext() == null) return;
+        streamedFiles.reviewed(fileId);
+        if (diffDialog != null && diffDialog.isShowing()) {
+            pendingFileDiffs.add(new PendingFileDiff(fileId, newContent, diff));
+        } else {
+            showDiffBottomSheet(fileId, diff, () -> updateOpenFileContent(fileId, newContent));
+        }
+    }
+
+    private void dropPendingDiffsFor(@NonNull List<String> fileIds) {
+        for (int i = pendingFileDiffs.size() - 1; i >= 0; i--) {
+            if (fileIds.contains(pendingFileDiffs.get(i).fileId)) {
+                pendingFileDiffs.remove(i);
+            }
+        }
+    }
+
     private void deleteFileById(@NonNull String id) {
         for (OpenFile f : new ArrayList<>(availableFiles)) {
             if (id.equals(f.id)) {
@@ -979,31 +1112,9 @@ public class CodeEditorFragment extends Fragment {
     }
 
     static final class DiffUtilLite {
+        // linear-space Myers; the old int[n+1][m+1] LCS table OOM'd on big files
         static List<DiffLine> diffLines(String a, String b) {
-            String[] A = a.split("\n", -1);
-            String[] B = b.split("\n", -1);
-            int n = A.length, m = B.length;
-            int[][] dp = new int[n + 1][m + 1];
-            for (int i = n - 1; i >= 0; i--)
-                for (int j = m - 1; j >= 0; j--)
-                    dp[i][j] = A[i].equals(B[j]) ? dp[i + 1][j + 1] + 1 : Math.max(dp[i + 1][j], dp[i][j + 1]);
-
-            List<DiffLine> out = new ArrayList<>();
-            int i = 0, j = 0;
-            while (i < n && j < m) {
-                if (A[i].equals(B[j])) {
-                    out.add(new DiffLine(' ', A[i]));
-                    i++;
-                    j++;
-                } else if (dp[i + 1][j] >= dp[i][j + 1]) {
-                    out.add(new DiffLine('-', A[i++]));
-                } else {
-                    out.add(new DiffLine('+', B[j++]));
-                }
-            }
-            while (i < n) out.add(new DiffLine('-', A[i++]));
-            while (j < m) out.add(new DiffLine('+', B[j++]));
-            return out;
+            return MyersDiff.diffLines(a, b);
         }
     }
 
@@ -1093,90 +1204,262 @@ public class CodeEditorFragment extends Fragment {
         return s.contains("<!doctype html") || s.contains("<html") || s.contains("<head") || s.contains("<body");
     }
 
+    /**
+     * Serves the editor files to the console's WebView from memory. The first
+     * call opens the page; later ones only push the files that changed.
+     */
     private void maybePublishHtmlPreview() {
         String src = getCode();
-        if (!looksLikeHtml(src)) return;
+        boolean onPage = looksLikeHtml(src);
+        // a stylesheet / script edited while previewing still updates the page
+        if (!onPage && (currentBackend != Backend.HTML || previewPage == null)) return;
+        boolean first = currentBackend != Backend.HTML;
+        setBackend(Backend.HTML);
+
+        Map<String, String> files = editorFilesByPath();
+        String page = previewPage;
+        if (onPage) {
+            // the page in the editor is the one previewed
+            OpenFile cur = getCurrentOpenFile();
+            page = cur != null && cur.id != null && cur.id.matches("(?i).*\\.html?$")
+                    ? normalizeLocalPath(cur.id) : "index.html";
+            files.put(page, src);
+        }
+
+        List<String> changed = consoleVM.getPreviewSite().update(files);
+        if (first || !page.equals(previewPage)) {
+            previewPage = page;
+            consoleVM.setPreviewUrl(PreviewSite.urlFor(page));
+            printToConsole("🌐 Preview: " + page + " (on device)\n");
+        } else {
+            consoleVM.publishPreviewChanges(changed);
+        }
+    }
+
+    private final Runnable previewRunnable = this::maybePublishHtmlPreview;
+
+    // ---------- Editor files by path ----------
+    private static String normalizeLocalPath(@NonNull String p) {
+        if (p.startsWith("./")) p = p.substring(2);
+        if (p.startsWith("/")) p = p.substring(1);
+        return p;
+    }
+
+    // what the chat sees as context: the open file's code plus every file with its edit time
+    private void publishEditorState() {
+        if (aiBus == null) return;
+        aiBus.publishEditorCode(getCode());
+        OpenFile cur = getCurrentOpenFile();
+        List<AiUpdateViewModel.EditorFile> files = new ArrayList<>();
+        for (OpenFile f : availableFiles) {
+            String p = f.id != null ? f.id : f.name;
+            if (p == null) continue;
+            files.add(new AiUpdateViewModel.EditorFile(normalizeLocalPath(p),
+                    f.content != null ? f.content : "", f.lastEditedAt, f == cur));
+        }
+        aiBus.publishEditorFiles(files);
+    }
+
+    private Map<String, String> editorFilesByPath() {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (OpenFile f : availableFiles) {
+            String p = f.id != null ? f.id : f.name;
+            if (p == null) continue;
+            out.put(normalizeLocalPath(p), f.content != null ? f.content : "");
+        }
+        return out;
+    }
+
+    // ---------- On-device JavaScript ----------
+    private static boolean isJsLanguage(@Nullable String lang) {
+        if (lang == null) return false;
+        String l = lang.trim().toLowerCase(Locale.US);
+        return l.equals("javascript") || l.equals("js") || l.equals("node") || l.equals("nodejs");
+    }
+
+    private static boolean isJsPath(@Nullable String path) {
+        return path != null && (path.endsWith(".js") || path.endsWith(".cjs"));
+    }
+
+    /** File to run on device, or null if this isn't a JS project. */
+    @Nullable
+    private String localJsEntry(@NonNull Map<String, String> files) {
+        if (aiEntrypoint != null && isJsPath(aiEntrypoint)
+                && files.containsKey(normalizeLocalPath(aiEntrypoint))) {
+            return normalizeLocalPath(aiEntrypoint);
+        }
+        if (!isJsLanguage(aiLang)) {
+            // no language hint: only when the project itself looks like JS
+            if (aiLang != null && !aiLang.isEmpty()) return null;
+            if (!isJsPath(guessEntrypointFromEditorFiles(buildEditorFilesJson()))) return null;
+        }
+
+        String pkg = files.get("package.json");
+        if (pkg != null) {
+            try {
+                String main = normalizeLocalPath(new JSONObject(pkg).optString("main", ""));
+                if (files.containsKey(main)) return main;
+            } catch (Exception ignored) {
+            }
+        }
+        for (String name : new String[]{"index.js", "main.js", "app.js"}) {
+            if (files.containsKey(name)) return name;
+        }
+        for (String path : files.keySet()) {
+            if (isJsPath(path)) return path;
+        }
+        return null;
+    }
+
+    /**
+     * A JS project with no npm packages to install. Syntax the engine can't
+     * parse is found by the runner, which then hands back to the live runner.
+     */
+    private boolean runsOnDevice() {
+        Map<String, String> files = editorFilesByPath();
+        if (localJsEntry(files) == null) return false;
 
-        exec.execute(() -> {
+        String pkg = files.get("package.json");
+        if (pkg != null) {
             try {
-                // 1) create project
-                JSONObject res = httpPostJson(liveBaseUrl + "/projects", new JSONObject());
-                String projectId = res.optString("projectId", null);
-                if (projectId == null) throw new RuntimeException("No projectId");
-
-                // 2) build files[] from your editor model
-                JSONArray filesArr = new JSONArray();
-
-                // include all files from the side panel
-                for (OpenFile f : availableFiles) {
-                    JSONObject jf = new JSONObject();
-                    jf.put("path", f.id != null ? f.id : f.name);
-                    jf.put("content", f.content != null ? f.content : "");
-                    filesArr.put(jf);
+                JSONObject deps = new JSONObject(pkg).optJSONObject("dependencies");
+                if (deps != null && deps.length() > 0) {
+                    printToConsole("(local) project has npm dependencies, using the live runner\n");
+                    return false;
                 }
+            } catch (Exception ignored) {
+            }
+        }
+        return true;
+    }
+
+    private void runLocalJs() {
+        Map<String, String> files = editorFilesByPath();
+        String entry = localJsEntry(files);
+        if (entry == null) {
+            printToConsole("(local) no JavaScript file to run\n");
+            return;
+        }
+        setBackend(Backend.LOCAL_JS);
+        stopLocalRun();
+        if (liveSocket != null || liveSessionId != null) {
+            exec.execute(() -> stopLiveSession("local-run"));
+        }
+        if (localJs == null) localJs = new LocalJsRunner(requireContext());
+
+        printToConsole("⏵ Running " + entry + " on device…\n");
+        setRunning(true);
+        ConsoleBatcher out = new ConsoleBatcher(this::printToConsole);
+        localRun = localJs.run(files, entry, new LocalJsRunner.Output() {
+            @Override
+            public void stdout(@NonNull String text) {
+                out.offer(text);
+            }
+
+            @Override
+            public void stderr(@NonNull String text) {
+                // red, like stderr in a terminal
+                out.offer("\u001b[31m" + text + "\u001b[0m");
+            }
+
+            @Override
+            public void onExit(int code, @Nullable String error, long startMs, long cpuMs, long wallMs) {
+                out.flush();
+                main.post(() -> {
+                    setRunning(false);
+                    if (error != null) printToConsole("\n✖ " + error + "\n");
+                    printToConsole(String.format(Locale.US,
+                            "⏹ exit %d · ready in %dms · took %dms (cpu %dms)\n", code, startMs, wallMs, cpuMs));
+                });
+            }
 
-                // optionally make sure index.html is present/overwritten
-                JSONObject mainFile = new JSONObject();
-                mainFile.put("path", "index.html");
-                mainFile.put("content", src);  // current editor content
-                filesArr.put(mainFile);
-
-                JSONObject bulkReq = new JSONObject();
-                bulkReq.put("files", filesArr);
-
-                // 3) send bulk upload
-                httpPostJson(
-                        liveBaseUrl + "/projects/" + projectId + "/files/bulk",
-                        bulkReq
-                );
-
-                // 4) preview
-                String preview = liveBaseUrl + "/preview/" + projectId + "/index.html";
-                consoleVM.setPreviewUrl(preview);
-                printToConsole("🌐 Preview: " + preview + "\n");
-            } catch (Exception e) {
-                printToConsole("HTML preview error: " + e.getMessage() + "\n");
+            @Override
+            public void onUnsupported(@NonNull String why) {
+                main.post(() -> {
+                    setRunning(false);
+                    if (localJs == null) return;   // view destroyed meanwhile
+                    printToConsole("(local) can't run on device (" + why + "), using the live runner\n");
+                    exec.execute(() -> {
+                        stopLiveSession("local-unsupported");
+                        startLiveSessionForCurrentCode();
+                    });
+                });
             }
         });
     }
 
+    private void stopLocalRun() {
+        if (localRun != null) {
+            localRun.cancel();
+            localRun = null;
+        }
+    }
 
     // ---------- Live session helpers ----------
     private void connectLiveWebSocket(String wsUrl) {
-        Request req = new Request.Builder().url(wsUrl).build();
-        liveSocket = ok.newWebSocket(req, new WebSocketListener() {
+        // program output is batched per frame tick before it reaches the console
+        ConsoleBatcher out = new ConsoleBatcher(this::printToConsole);
+        liveOutput = out;
+        // reattaches to the same session if the connection drops
+        LiveSocket[] self = new LiveSocket[1];
+        self[0] = new LiveSocket(ok, wsUrl, new LiveSocket.Listener() {
+            private boolean gotOutput = false;
+
             @Override
-            public void onOpen(WebSocket webSocket, Response response) {
-                printToConsole("Live connected.\n");
-                liveConnecting = false;
-                setRunning(false);
-                FragmentActivity a = requireActivity();
-                if (a instanceof PagerNav) ((PagerNav) a).goToConsoleTab();
+            public void onOpen(boolean resumed) {
+                main.post(() -> {
+                    printToConsole(resumed ? "\n↻ Live reconnected.\n" : "Live connected.\n");
+                    if (resumed) return;
+                    liveConnecting = false;
+                    setRunning(false);
+                    FragmentActivity a = getActivity();
+                    if (a instanceof PagerNav) ((PagerNav) a).goToConsoleTab();
+                });
             }
 
             @Override
-            public void onMessage(WebSocket webSocket, String text) {
-                printToConsole(text);
+            public void onOutput(@NonNull String text) {
+                if (!gotOutput) {
+                    gotOutput = true;
+                    main.post(() -> {
+                        String line = liveWarmer.onFirstOutput();
+                        if (line != null) printToConsole(line);
+                    });
+                }
+                out.offer(text);
             }
 
             @Override
-            public void onMessage(WebSocket webSocket, ByteString bytes) {
-                printToConsole(bytes.utf8());
+            public void onReconnecting(int attempt, long delayMs, @NonNull String why) {
+                main.post(() -> printToConsole("\n⚠ Live connection lost (" + why + "), retry "
+                        + attempt + "/" + LiveSocket.MAX_ATTEMPTS + " in " + delayMs + "ms…\n"));
             }
 
             @Override
-            public void onClosing(WebSocket webSocket, int code, String reason) {
-                printToConsole("\n⏹ Live closing (" + code + "): " + reason + "\n");
-                webSocket.close(1000, null);
-                liveSocket = null;
+            public void onClosed(int code, @NonNull String reason) {
+                out.flush();
+                Log.d(TAG, "live output: " + out.statsLine());
+                main.post(() -> {
+                    printToConsole("\n⏹ Live closing (" + code + "): " + reason + "\n");
+                    if (liveSocket == self[0]) liveSocket = null;
+                });
             }
 
             @Override
-            public void onFailure(WebSocket webSocket, Throwable t, @Nullable Response r) {
-                printToConsole("\n✖ Live socket error: " + t.getMessage() + "\n");
-                liveSocket = null;
+            public void onLost(@NonNull String why) {
+                out.flush();
+                Log.d(TAG, "live output: " + out.statsLine());
+                main.post(() -> {
+                    printToConsole("\n✖ Live session lost: " + why + "\n");
+                    if (liveSocket != self[0]) return;
+                    liveSocket = null;
+                    liveConnecting = false;
+                    setRunning(false);
+                });
             }
         });
+        liveSocket = self[0];
+        liveSocket.connect();
     }
 
     private void initLiveManagerIfNeeded() {
@@ -1219,6 +1502,7 @@ public class CodeEditorFragment extends Fragment {
 
     private void startLiveSessionForCurrentCode() {
         setBackend(Backend.LIVE);
+        main.post(this::stopLocalRun);
 
         if (liveConnecting) {
             printToConsole("Live is already connecting…\n");
@@ -1231,6 +1515,7 @@ public class CodeEditorFragment extends Fragment {
 
         setRunning(true);
         liveConnecting = true;
+        liveWarmer.onRunRequested();
         printToConsole("⏵ Starting live session…\n");
 
         initLiveManagerIfNeeded();
@@ -1239,7 +1524,7 @@ public class CodeEditorFragment extends Fragment {
         JSONArray filesJson = buildEditorFilesJson();
 
         // 2) pick language
-        String language = (aiLang != null && !aiLang.isEmpty()) ? aiLang : "python";
+        String language = liveLanguage();
 
         // 3) pick entrypoint
         String entry = aiEntrypoint;
@@ -1261,11 +1546,27 @@ public class CodeEditorFragment extends Fragment {
                 language,
                 entry != null ? entry : "main.py",
                 true,
-                true
+                true,
+                liveProjectId()
         );
     }
 
+    private String liveLanguage() {
+        return (aiLang != null && !aiLang.isEmpty()) ? aiLang : "python";
+    }
+
+    // same editor project -> same remote project, only changed files re-sent;
+    // an unsaved project has no id yet and uploads everything
+    @Nullable
+    private String liveProjectId() {
+        return currentProject != null ? currentProject.getId() : null;
+    }
+
     private void stopLiveSession(@Nullable String reason) {
+        if (liveOutput != null) {
+            liveOutput.flush();
+            liveOutput = null;
+        }
         try {
             if (liveSocket != null) {
                 liveSocket.close(1000, reason == null ? "closed" : reason);
@@ -1343,7 +1644,8 @@ public class CodeEditorFragment extends Fragment {
                             language,
                             chosen,
                             true,
-                            true
+                            true,
+                            liveProjectId()
                     );
                 })
                 .setNegativeButton("Cancel", null)
@@ -1356,6 +1658,18 @@ public class CodeEditorFragment extends Fragment {
         }
     }
 
+    // debug builds: last autosave latency / payload over the editor
+    private void showSaveDebug(long latencyMs, @NonNull ProjectRepository.SaveStats stats) {
+        if (!BuildConfig.DEBUG || saveDebugOverlay == null) return;
+        saveDebugOverlay.setVisibility(View.VISIBLE);
+        saveDebugOverlay.setText(String.format(Locale.US,
+                "save %dms · %d file(s) · %.1f KB%s",
+                latencyMs,
+                stats.filesWritten + stats.filesDeleted,
+                stats.bytesWritten / 1024f,
+                autosave.isIdle() ? "" : " · queued"));
+    }
+
     private void setRunning(boolean running) {
         if (progress == null) return;
         if (Looper.myLooper() == Looper.getMainLooper()) {
@@ -1742,6 +2056,8 @@ public class CodeEditorFragment extends Fragment {
         int idx = availableFiles.indexOf(file);
         if (idx >= 0) {
             availableFiles.remove(idx);
+            autosave.markStructureChanged();
+            liveWarmer.onEdited();
         }
 
         boolean wasCurrent = false;
@@ -1816,34 +2132,9 @@ public class CodeEditorFragment extends Fragment {
     // ---------- TextMate init + apply from AI ----------
     private void initTextMateIfNeeded() {
         try {
-            FileProviderRegistry.getInstance().addFileProvider(
-                    new AssetsFileResolver(requireContext().getAssets())
-            );
-
-            GrammarRegistry.getInstance().loadGrammars("tm/languages.json");
-
-            SharedPreferences prefs =
-                    requireContext().getSharedPreferences("prefs", Context.MODE_PRIVATE);
-            boolean dark = prefs.getBoolean("dark_theme", false);
-
-            String themeName = dark ? "dark" : "light";
-            String themePath = "themes/" + themeName + ".json";
-
-            ThemeRegistry themeRegistry = ThemeRegistry.getInstance();
-
-            ThemeModel model = new ThemeModel(
-                    IThemeSource.fromInputStream(
-                            FileProviderRegistry.getInstance().tryGetInputStream(themePath),
-                            themePath,
-                            null
-                    ),
-                    themeName
-            );
-
-            themeRegistry.loadTheme(model);
-            themeRegistry.setTheme(themeName);
+            TextMateGrammars.ensureLoaded(requireContext());
 
-            codeEditor.setColorScheme(TextMateColorScheme.create(themeRegistry));
+            codeEditor.setColorScheme(TextMateColorScheme.create(ThemeRegistry.getInstance()));
             codeEditor.setEditorLanguage(TextMateLanguage.create("source.python", true));
 
         } catch (Throwable t) {
@@ -1854,23 +2145,10 @@ public class CodeEditorFragment extends Fragment {
 
     private void applyTextMateTheme(@NonNull String themeName) {
         try {
-            ThemeRegistry themeRegistry = ThemeRegistry.getInstance();
-            String themePath = "themes/" + themeName + ".json";
-
-            ThemeModel model = new ThemeModel(
-                    IThemeSource.fromInputStream(
-                            FileProviderRegistry.getInstance().tryGetInputStream(themePath),
-                            themePath,
-                            null
-                    ),
-                    themeName
-            );
-
-            themeRegistry.loadTheme(model);
-            themeRegistry.setTheme(themeName);
+            TextMateGrammars.applyTheme(themeName);
 
             if (codeEditor != null) {
-                codeEditor.setColorScheme(TextMateColorScheme.create(themeRegistry));
+                codeEditor.setColorScheme(TextMateColorScheme.create(ThemeRegistry.getInstance()));
             }
         } catch (Throwable t) {
             t.printStackTrace();
@@ -1881,39 +2159,8 @@ public class CodeEditorFragment extends Fragment {
     private void applyTextMateLanguageFromAi() {
         if (codeEditor == null) return;
 
-        String scope;
-        if (aiLang == null || aiLang.trim().isEmpty()) {
-            scope = "source.js";
-        } else {
-            String lang = aiLang.trim().toLowerCase();
-            if (lang.contains("python") || lang.equals("py")) {
-                scope = "source.python";
-            } else if (lang.contains("typescript") || lang.equals("ts")) {
-                scope = "source.ts";
-            } else if (lang.contains("javascript") || lang.equals("js") || lang.contains("node")) {
-                if (lang.contains("react") || lang.contains("jsx")) {
-                    scope = "source.jsx";
-                } else {
-                    scope = "source.js";
-                }
-            } else if (lang.contains("html")) {
-                scope = "text.html.basic";
-            } else if (lang.contains("css")) {
-                scope = "source.css";
-            } else if (lang.contains("java")) {
-                scope = "source.java";
-            } else if (lang.contains("kotlin")) {
-                scope = "source.kotlin";
-            } else if (lang.contains("php")) {
-                scope = "source.php";
-            } else if (lang.contains("c#") || lang.contains("csharp")) {
-                scope = "source.cs";
-            } else if (lang.contains("c++") || lang.contains("cpp")) {
-                scope = "source.cpp";
-            } else {
-                scope = "source.js";
-            }
-        }
+        String scope = TextMateGrammars.scopeFor(aiLang);
+        if (scope == null) scope = "source.js";
 
         try {
             codeEditor.setEditorLanguage(TextMateLanguage.create(scope, true));
@@ -1995,6 +2242,7 @@ public class CodeEditorFragment extends Fragment {
     private void updateOpenFileContent(@NonNull String id, @NonNull String newContent) {
         for (OpenFile f : availableFiles) {
             if (id.equals(f.id)) {
+                if (!newContent.equals(f.content)) f.markEdited();
                 f.content = newContent;
                 break;
             }
@@ -2002,6 +2250,7 @@ public class CodeEditorFragment extends Fragment {
         if (openTabs.containsKey(id)) {
             OpenFile f = openTabs.get(id);
             if (f != null) {
+                if (!newContent.equals(f.content)) f.markEdited();
                 f.content = newContent;
                 if (tabLayout != null) {
                     TabLayout.Tab tab = tabLayout.getTabAt(tabLayout.getSelectedTabPosition());
@@ -2156,6 +2405,7 @@ public class CodeEditorFragment extends Fragment {
      */
     private void sendToLive(@NonNull String text) {
         if (liveSocket != null) {
+            // queued while the socket is reconnecting
             liveSocket.send(text);
         } else {
             printToConsole("(live not connected)\n");
@@ -2180,85 +2430,4 @@ public class CodeEditorFragment extends Fragment {
         }
         return out;
     }
-
-    // ---------- tiny HTTP helpers ----------
-    private JSONObject httpPostJson(String urlStr, JSONObject json) throws Exception {
-        HttpURLConnection conn = (HttpURLConnection) new URL(urlStr).openConnection();
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setConnectTimeout(15000);
-        conn.setReadTimeout(60000);
-        conn.setDoOutput(true);
-
-        OutputStream os = conn.getOutputStream();
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
-        writer.write(json.toString());
-        writer.flush();
-        writer.close();
-        os.close();
-
-        int code = conn.getResponseCode();
-        InputStream is = (code >= 200 && code < 300) ? conn.getInputStream() : conn.getErrorStream();
-        String body = readAll(is);
-        conn.disconnect();
-        if (code < 200 || code >= 300) {
-            throw new RuntimeException("POST " + urlStr + " -> " + code + ": " + body);
-        }
-        return new JSONObject(body);
-    }
-
-    private JSONObject httpPutJson(String urlStr, JSONObject json) throws Exception {
-        HttpURLConnection conn = (HttpURLConnection) new URL(urlStr).openConnection();
-        conn.setRequestMethod("PUT");
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setConnectTimeout(15000);
-        conn.setReadTimeout(60000);
-        conn.setDoOutput(true);
-
-        OutputStream os = conn.getOutputStream();
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
-        writer.write(json.toString());
-        writer.flush();
-        writer.close();
-        os.close();
-
-        int code = conn.getResponseCode();
-        InputStream is = (code >= 200 && code < 300) ? conn.getInputStream() : conn.getErrorStream();
-        String body = readAll(is);
-        conn.disconnect();
-        if (code < 200 || code >= 300) {
-            throw new RuntimeException("PUT " + urlStr + " -> " + code + ": " + body);
-        }
-        return new JSONObject(body);
-    }
-
-    private JSONArray httpGetJsonArray(String urlStr) throws Exception {
-        HttpURLConnection conn = (HttpURLConnection) new URL(urlStr).openConnection();
-        conn.setRequestMethod("GET");
-        conn.setConnectTimeout(15000);
-        conn.setReadTimeout(30000);
-        conn.connect();
-
-        int code = conn.getResponseCode();
-        InputStream is = (code >= 200 && code < 300) ? conn.getInputStream() : conn.getErrorStream();
-        String body = readAll(is);
-        conn.disconnect();
-
-        if (code < 200 || code >= 300) {
-            throw new RuntimeException("GET " + urlStr + " -> " + code + ": " + body);
-        }
-        return new JSONArray(body);
-    }
-
-    private String readAll(InputStream is) throws Exception {
-        if (is == null) return "";
-        BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-        StringBuilder sb = new StringBuilder();
-        String line;
-        while ((line = br.readLine()) != null) {
-            sb.append(line).append('\n');
-        }
-        br.close();
-        return sb.toString();
-    }
 }
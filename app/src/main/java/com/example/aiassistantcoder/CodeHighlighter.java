@@ -0,0 +1,124 @@
+package com.example.aiassistantcoder;
+
+import android.graphics.Color;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.eclipse.tm4e.core.grammar.IGrammar;
+import org.eclipse.tm4e.core.grammar.IStateStack;
+import org.eclipse.tm4e.core.grammar.ITokenizeLineResult;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.rosemoe.sora.langs.textmate.registry.GrammarRegistry;
+import io.github.rosemoe.sora.langs.textmate.registry.ThemeRegistry;
+import io.github.rosemoe.sora.langs.textmate.registry.model.ThemeModel;
+import io.noties.markwon.syntax.SyntaxHighlight;
+
+/**
+ * Colors fenced code blocks in chat markdown with the editor's TextMate
+ * grammars and current theme. Results go through {@link ChatRenderCache}.
+ * Blocks in an unknown language, or longer than {@link #MAX_LINES}, stay plain.
+ * Runs wherever Markwon renders, i.e. the chat's background thread.
+ */
+final class CodeHighlighter implements SyntaxHighlight {
+
+    private static final String TAG = "CodeHighlighter";
+
+    static final int MAX_LINES = 2000;
+    // a pathological line gives up instead of stalling the render thread
+    private static final Duration LINE_TIME_LIMIT = Duration.ofMillis(20);
+
+    private final ChatRenderCache cache;
+
+    CodeHighlighter(@NonNull ChatRenderCache cache) {
+        this.cache = cache;
+    }
+
+    @NonNull
+    @Override
+    public CharSequence highlight(@Nullable String info, @NonNull String code) {
+        String lang = info == null ? "" : info.trim();
+        String scope = TextMateGrammars.scopeFor(lang);
+        if (scope == null || code.isEmpty()) return code;
+        // read once: the editor may switch themes while this block renders
+        ThemeModel theme = ThemeRegistry.getInstance().getCurrentThemeModel();
+        if (theme == null) return code;
+        String themeName = theme.getName();
+
+        Spanned hit = cache.code(themeName, lang, code);
+        if (hit != null) return hit;
+
+        Spanned colored = tokenize(scope, theme, code);
+        if (colored == null) return code;
+        cache.putCode(themeName, lang, code, colored);
+        return colored;
+    }
+
+    @Nullable
+    private static Spanned tokenize(String scope, ThemeModel theme, String code) {
+        try {
+            IGrammar grammar = GrammarRegistry.getInstance().findGrammar(scope);
+            if (grammar == null) return null;
+            List<String> colorMap = theme.getTheme().getColorMap();
+
+            String[] lines = code.split("\n", -1);
+            if (lines.length > MAX_LINES) return null;
+
+            SpannableStringBuilder out = new SpannableStringBuilder(code);
+            Map<Integer, Integer> colors = new HashMap<>();
+            IStateStack state = null;
+            int lineStart = 0;
+            for (String line : lines) {
+                ITokenizeLineResult<int[]> r = grammar.tokenizeLine2(line, state, LINE_TIME_LIMIT);
+                int[] tokens = r.getTokens();
+                for (int i = 0; i < tokens.length; i += 2) {
+                    int start = tokens[i];
+                    int end = i + 2 < tokens.length ? tokens[i + 2] : line.length();
+                    // 0 = unset, 1 = default foreground: leave the TextView's color
+                    int fg = TokenAttributes.foreground(tokens[i + 1]);
+                    if (fg <= 1 || end <= start || fg >= colorMap.size()) continue;
+                    Integer color = colors.get(fg);
+                    if (color == null) {
+                        color = parseColor(colorMap.get(fg));
+                        colors.put(fg, color);
+                    }
+                    if (color != 0) {
+                        out.setSpan(new ForegroundColorSpan(color),
+                                lineStart + start, lineStart + Math.min(end, line.length()),
+                                Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                    }
+                }
+                state = r.getRuleStack();
+                lineStart += line.length() + 1;
+            }
+            return out;
+        } catch (Throwable t) {
+            Log.w(TAG, "highlight failed for " + scope, t);
+            return null;
+        }
+    }
+
+    // TextMate colors are #RGB, #RRGGBB or #RRGGBBAA; 0 = unusable
+    private static int parseColor(@Nullable String hex) {
+        if (hex == null || !hex.startsWith("#")) return 0;
+        String h = hex.substring(1);
+        try {
+            if (h.length() == 3) {
+                h = "" + h.charAt(0) + h.charAt(0) + h.charAt(1) + h.charAt(1) + h.charAt(2) + h.charAt(2);
+            }
+            if (h.length() == 6) return Color.parseColor("#" + h);
+            if (h.length() == 8) return Color.parseColor("#" + h.substring(6) + h.substring(0, 6));
+        } catch (IllegalArgumentException ignored) {
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.aiassistantcoder;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One row per console line, mirrored from {@link ConsoleLog} through deltas.
+ * The partial (not yet '\n'-terminated) line is shown as the last row.
+ * Styled text is built on first bind and kept on the row.
+ */
+public class ConsoleAdapter extends RecyclerView.Adapter<ConsoleAdapter.VH> {
+
+    private static final class Row {
+        final String raw;
+        final AnsiParser.State start;
+        @Nullable CharSequence styled;
+
+        Row(String raw, AnsiParser.State start) {
+            this.raw = raw;
+            this.start = start;
+        }
+
+        CharSequence styled() {
+            if (styled == null) styled = AnsiParser.style(raw, start);
+            return styled;
+        }
+    }
+
+    private final List<Row> rows = new ArrayList<>();
+    private @Nullable Row tailRow;
+
+    // position in ConsoleLog coordinates
+    private int epoch = -1;
+    private long firstLine = 0;
+    private long nextLine = 0;
+    // SGR state after the last completed line
+    private AnsiParser.State endState = AnsiParser.State.DEFAULT;
+
+    /** Line index to ask the log for next, or -1 after a clear. */
+    public long nextLineFor(@NonNull ConsoleLog log) {
+        return epoch == log.epoch() ? nextLine : -1;
+    }
+
+    public void applyDelta(@NonNull ConsoleLog.Delta d) {
+        if (d.epoch != epoch || d.reset) {
+            int old = getItemCount();
+            rows.clear();
+            tailRow = null;
+            endState = AnsiParser.State.DEFAULT;
+            epoch = d.epoch;
+            firstLine = d.fromLine;
+            if (old > 0) notifyItemRangeRemoved(0, old);
+        }
+
+        // the tail row becomes a completed line (or goes away) below
+        boolean hadTail = tailRow != null;
+        if (hadTail) {
+            tailRow = null;
+            notifyItemRemoved(rows.size());
+        }
+
+        int insertAt = rows.size();
+        for (String line : d.lines) {
+            rows.add(new Row(line, endState));
+            endState = AnsiParser.scan(line, endState);
+        }
+        if (!d.tail.isEmpty()) tailRow = new Row(d.tail, endState);
+        nextLine = d.nextLine;
+
+        int added = rows.size() - insertAt + (tailRow != null ? 1 : 0);
+        if (added > 0) notifyItemRangeInserted(insertAt, added);
+
+        // mirror evictions
+        int evict = (int) Math.min(rows.size(), d.firstLine - firstLine);
+        if (evict > 0) {
+            rows.subList(0, evict).clear();
+            firstLine += evict;
+            notifyItemRangeRemoved(0, evict);
+        }
+    }
+
+    @NonNull
+    @Override
+    public VH onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View row = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_console_line, parent, false);
+        return new VH(row);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull VH h, int position) {
+        Row r = position < rows.size() ? rows.get(position) : tailRow;
+        h.text.setText(r != null ? r.styled() : "");
+    }
+
+    @Override
+    public int getItemCount() {
+        return rows.size() + (tailRow != null ? 1 : 0);
+    }
+
+    static final class VH extends RecyclerView.ViewHolder {
+        final TextView text;
+
+        VH(@NonNull View v) {
+            super(v);
+            text = v.findViewById(R.id.console_line_text);
+        }
+    }
+}
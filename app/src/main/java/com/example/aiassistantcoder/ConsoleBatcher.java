@@ -0,0 +1,120 @@
+package com.example.aiassistantcoder;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sits between the live WebSocket and the console.
+ * <p>
+ * Frames are collected and handed to the sink at most once per ~16 ms tick.
+ * If a program prints faster than the console can take it, frames past
+ * {@link #MAX_PENDING_CHARS} in one tick are dropped and replaced by a single
+ * "N lines elided" marker.
+ */
+public class ConsoleBatcher {
+
+    public interface Sink {
+        void accept(@NonNull String batch);
+    }
+
+    static final long TICK_MS = 16L;
+    static final int MAX_PENDING_CHARS = 64 * 1024;
+
+    private final Sink sink;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final Object lock = new Object();
+    private final StringBuilder pending = new StringBuilder();
+    private long elidedLines = 0;
+    private boolean scheduled = false;
+
+    // counters
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong charsReceived = new AtomicLong();
+    private final AtomicLong batchesFlushed = new AtomicLong();
+    private final AtomicLong linesElided = new AtomicLong();
+
+    private final Runnable flushRunnable = this::flush;
+
+    public ConsoleBatcher(@NonNull Sink sink) {
+        this.sink = sink;
+    }
+
+    /** Called from the socket thread for each text frame. */
+    public void offer(@Nullable String frame) {
+        if (frame == null || frame.isEmpty()) return;
+        framesReceived.incrementAndGet();
+        charsReceived.addAndGet(frame.length());
+
+        synchronized (lock) {
+            if (pending.length() + frame.length() > MAX_PENDING_CHARS) {
+                long lines = countLines(frame);
+                elidedLines += lines;
+                linesElided.addAndGet(lines);
+            } else {
+                pending.append(frame);
+            }
+            if (!scheduled) {
+                scheduled = true;
+                handler.postDelayed(flushRunnable, TICK_MS);
+            }
+        }
+    }
+
+    /** Push whatever is pending now (e.g. before printing a close message). */
+    public void flush() {
+        String out;
+        synchronized (lock) {
+            handler.removeCallbacks(flushRunnable);
+            scheduled = false;
+            if (pending.length() == 0 && elidedLines == 0) return;
+
+            if (elidedLines > 0) {
+                if (pending.length() > 0 && pending.charAt(pending.length() - 1) != '\n') {
+                    pending.append('\n');
+                }
+                pending.append("… ").append(elidedLines).append(" line(s) elided …\n");
+                elidedLines = 0;
+            }
+            out = pending.toString();
+            pending.setLength(0);
+        }
+        batchesFlushed.incrementAndGet();
+        sink.accept(out);
+    }
+
+    public long framesReceived() {
+        return framesReceived.get();
+    }
+
+    public long charsReceived() {
+        return charsReceived.get();
+    }
+
+    public long batchesFlushed() {
+        return batchesFlushed.get();
+    }
+
+    public long linesElided() {
+        return linesElided.get();
+    }
+
+    @NonNull
+    public String statsLine() {
+        return String.format(Locale.US,
+                "frames=%d chars=%d batches=%d elided=%d",
+                framesReceived(), charsReceived(), batchesFlushed(), linesElided());
+    }
+
+    private static long countLines(String s) {
+        long n = 0;
+        for (int i = 0; i < s.length(); i++) if (s.charAt(i) == '\n') n++;
+        return Math.max(1, n);
+    }
+}
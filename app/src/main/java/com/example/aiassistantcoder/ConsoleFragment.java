@@ -5,27 +5,36 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.inputmethod.EditorInfo;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebView;
+import android.webkit.WebViewClient;
 import android.widget.EditText;
 import android.widget.ImageButton;
-import android.widget.ScrollView;
-import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.json.JSONArray;
 
 public class ConsoleFragment extends Fragment {
 
     private WebView preview;
-    private TextView consoleText;
-    private ScrollView consoleScroll;
+    private RecyclerView consoleList;
+    private LinearLayoutManager consoleLayout;
+    private ConsoleAdapter consoleAdapter;
     private EditText input;
     private ImageButton btnSend;
 
     private ConsoleViewModel vm;
 
+    // auto-scroll only while the user hasn't scrolled up
+    private boolean stickToBottom = true;
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater,
@@ -34,24 +43,69 @@ public class ConsoleFragment extends Fragment {
         View v = inflater.inflate(R.layout.fragment_console, container, false);
 
         preview = v.findViewById(R.id.preview_webview);
-        consoleText = v.findViewById(R.id.console_text);
-        consoleScroll = v.findViewById(R.id.console_scroll);
+        consoleList = v.findViewById(R.id.console_list);
         input = v.findViewById(R.id.input_command);
         btnSend = v.findViewById(R.id.btn_send);
 
         vm = new ViewModelProvider(requireActivity()).get(ConsoleViewModel.class);
 
-        // Show logs + autoscroll
-        vm.getLogs().observe(getViewLifecycleOwner(), text -> {
-            consoleText.setText(text);
-            consoleScroll.post(() -> consoleScroll.fullScroll(View.FOCUS_DOWN));
+        consoleLayout = new LinearLayoutManager(requireContext());
+        consoleLayout.setStackFromEnd(true);
+        consoleAdapter = new ConsoleAdapter();
+        consoleList.setLayoutManager(consoleLayout);
+        consoleList.setAdapter(consoleAdapter);
+        consoleList.setItemAnimator(null);   // thousands of inserts/s, no animations
+        consoleList.getRecycledViewPool().setMaxRecycledViews(0, 48);
+        consoleList.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView rv, int newState) {
+                // settled after a user drag/fling: sticky again only if at the bottom
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    stickToBottom = !rv.canScrollVertically(1);
+                }
+            }
+
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                if (rv.getScrollState() != RecyclerView.SCROLL_STATE_IDLE) {
+                    stickToBottom = !rv.canScrollVertically(1);
+                }
+            }
         });
 
-        // Optional preview
+        // Show logs: pull only the delta since the last render
+        vm.getLogRevision().observe(getViewLifecycleOwner(), rev -> {
+            ConsoleLog log = vm.getLog();
+            consoleAdapter.applyDelta(log.since(consoleAdapter.nextLineFor(log)));
+            if (stickToBottom && consoleAdapter.getItemCount() > 0) {
+                consoleList.scrollToPosition(consoleAdapter.getItemCount() - 1);
+            }
+        });
+
+        // Optional preview: project pages come from memory (PreviewSite), the rest from the web
         preview.getSettings().setJavaScriptEnabled(true);
+        PreviewSite site = vm.getPreviewSite();
+        preview.setWebViewClient(new WebViewClient() {
+            @Override
+            public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+                WebResourceResponse local = site.serve(request.getUrl());
+                return local != null ? local : super.shouldInterceptRequest(view, request);
+            }
+        });
         vm.getPreviewUrl().observe(getViewLifecycleOwner(), url -> {
             if (url != null && !url.isEmpty()) preview.loadUrl(url);
         });
+        // edits while previewing: patch the open page, reload only if it can't be patched
+        vm.getPreviewChanges().observe(getViewLifecycleOwner(), paths -> {
+            if (paths == null || paths.isEmpty()) return;
+            String url = preview.getUrl();
+            if (url == null || !url.startsWith(PreviewSite.ROOT)) return;
+            preview.evaluateJavascript(
+                    "window.__pcHot ? __pcHot(" + new JSONArray(paths) + ") : false",
+                    handled -> {
+                        if (!"true".equals(handled)) preview.reload();
+                    });
+        });
 
         Runnable sendNow = () -> {
             String cmd = input.getText().toString();
@@ -0,0 +1,176 @@
+package com.example.aiassistantcoder;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bounded console output store.
+ * <p>
+ * Completed lines live in a ring of fixed capacity; the line currently being
+ * written (no trailing '\n' yet) is kept apart as the "tail". Every completed
+ * line gets an absolute index, so a view that has shown everything up to
+ * index N can ask for {@link #since(long)} and only append what is new.
+ * <p>
+ * Oldest lines are evicted when either the line cap or the char cap is hit.
+ * All methods are thread-safe; producers append from any thread.
+ */
+public class ConsoleLog {
+
+    // a single line longer than this is wrapped into several
+    static final int MAX_LINE_CHARS = 8 * 1024;
+
+    public static final class Delta {
+        /** bumped by clear(); a different epoch means "start over" */
+        public final int epoch;
+        /** absolute index of lines.get(0) */
+        public final long fromLine;
+        /** absolute index of the oldest line still retained */
+        public final long firstLine;
+        /** pass this to the next since() call */
+        public final long nextLine;
+        public final List<String> lines;
+        public final String tail;
+        /** caller's position fell out of the buffer; lines holds everything retained */
+        public final boolean reset;
+
+        Delta(int epoch, long fromLine, long firstLine, long nextLine,
+              List<String> lines, String tail, boolean reset) {
+            this.epoch = epoch;
+            this.fromLine = fromLine;
+            this.firstLine = firstLine;
+            this.nextLine = nextLine;
+            this.lines = lines;
+            this.tail = tail;
+            this.reset = reset;
+        }
+    }
+
+    private final int maxLines;
+    private final long maxChars;
+
+    private final String[] ring;
+    private int head = 0;          // slot of the oldest line
+    private int count = 0;
+    private long firstLine = 0;    // absolute index of ring[head]
+    private long chars = 0;        // chars held by completed lines
+    private final StringBuilder tail = new StringBuilder();
+
+    private int epoch = 0;
+    private long revision = 0;
+
+    public ConsoleLog(int maxLines, long maxChars) {
+        if (maxLines <= 0) throw new IllegalArgumentException("maxLines must be > 0");
+        this.maxLines = maxLines;
+        this.maxChars = Math.max(MAX_LINE_CHARS, maxChars);
+        this.ring = new String[maxLines];
+    }
+
+    /**
+     * Append raw output. Returns the new revision (changes on every append).
+     */
+    public synchronized long append(@Nullable CharSequence chunk) {
+        if (chunk == null || chunk.length() == 0) return revision;
+
+        int start = 0;
+        int len = chunk.length();
+        for (int i = 0; i < len; i++) {
+            if (chunk.charAt(i) == '\n') {
+                tail.append(chunk, start, i);
+                commitTail();
+                start = i + 1;
+            } else if (tail.length() + (i - start) >= MAX_LINE_CHARS) {
+                tail.append(chunk, start, i);
+                commitTail();
+                start = i;
+            }
+        }
+        if (start < len) tail.append(chunk, start, len);
+        return ++revision;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(ring, null);
+        firstLine += count;
+        head = 0;
+        count = 0;
+        chars = 0;
+        tail.setLength(0);
+        epoch++;
+        revision++;
+    }
+
+    /**
+     * Lines completed at or after {@code fromLine}, plus the current tail.
+     * Pass {@code -1} (or a line from another epoch) to get everything.
+     */
+    @NonNull
+    public synchronized Delta since(long fromLine) {
+        long next = firstLine + count;
+        boolean reset = fromLine < firstLine;
+        long from = reset ? firstLine : Math.min(fromLine, next);
+
+        int n = (int) (next - from);
+        List<String> out = new ArrayList<>(n);
+        int slot = (head + (int) (from - firstLine)) % maxLines;
+        for (int i = 0; i < n; i++) {
+            out.add(ring[slot]);
+            slot = (slot + 1) % maxLines;
+        }
+        return new Delta(epoch, from, firstLine, next, out, tail.toString(), reset);
+    }
+
+    /** Whole buffer as one string (copy / share). */
+    @NonNull
+    public synchronized String snapshot() {
+        StringBuilder sb = new StringBuilder((int) Math.min(Integer.MAX_VALUE, chars + count + tail.length()));
+        int slot = head;
+        for (int i = 0; i < count; i++) {
+            sb.append(ring[slot]).append('\n');
+            slot = (slot + 1) % maxLines;
+        }
+        return sb.append(tail).toString();
+    }
+
+    public synchronized long revision() {
+        return revision;
+    }
+
+    public synchronized int epoch() {
+        return epoch;
+    }
+
+    public synchronized int lineCount() {
+        return count;
+    }
+
+    /** Slots in the ring; fixed at construction. */
+    synchronized int capacity() {
+        return ring.length;
+    }
+
+    // ---------- internals ----------
+    private void commitTail() {
+        String line = tail.toString();
+        tail.setLength(0);
+
+        if (count == maxLines) evictOldest();
+        int slot = (head + count) % maxLines;
+        ring[slot] = line;
+        count++;
+        chars += line.length();
+
+        while (chars > maxChars && count > 1) evictOldest();
+    }
+
+    private void evictOldest() {
+        chars -= ring[head].length();
+        ring[head] = null;
+        head = (head + 1) % maxLines;
+        count--;
+        firstLine++;
+    }
+}
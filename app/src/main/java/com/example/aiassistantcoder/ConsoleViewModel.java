@@ -1,37 +1,74 @@
 package com.example.aiassistantcoder;
 
+import androidx.annotation.NonNull;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import java.util.List;
+
 public class ConsoleViewModel extends ViewModel {
-    private final MutableLiveData<String> logs = new MutableLiveData<>("");
+    // Console retention caps
+    public static final int MAX_LINES = 5_000;
+    public static final long MAX_CHARS = 2L * 1024 * 1024;
+
+    private final ConsoleLog log = new ConsoleLog(MAX_LINES, MAX_CHARS);
+
+    // Revision of the log; observers pull deltas from getLog().since(...)
+    private final MutableLiveData<Long> logRevision = new MutableLiveData<>(0L);
     private final MutableLiveData<String> previewUrl = new MutableLiveData<>(null);
 
+    // HTML preview served on device; changes are applied to the open page in place
+    private final PreviewSite previewSite = new PreviewSite();
+    private final MutableLiveData<List<String>> previewChanges = new MutableLiveData<>();
+
     // Outgoing commands entered in console
     private final MutableLiveData<String> commandOut = new MutableLiveData<>();
 
-    public LiveData<String> getLogs() {
-        return logs;
+    @NonNull
+    public ConsoleLog getLog() {
+        return log;
+    }
+
+    /**
+     * Ticks whenever output is appended or cleared. postValue coalesces, so a
+     * burst of appends wakes the UI once.
+     */
+    public LiveData<Long> getLogRevision() {
+        return logRevision;
     }
 
     public LiveData<String> getPreviewUrl() {
         return previewUrl;
     }
 
+    @NonNull
+    public PreviewSite getPreviewSite() {
+        return previewSite;
+    }
+
+    /** Paths of the preview site that changed while its page stays open. */
+    public LiveData<List<String>> getPreviewChanges() {
+        return previewChanges;
+    }
+
     public LiveData<String> getCommandOut() {
         return commandOut;
     }
 
-    public synchronized void append(String chunk) {
-        String prev = logs.getValue();
-        logs.postValue((prev == null ? "" : prev) + (chunk == null ? "" : chunk));
+    public void append(String chunk) {
+        if (chunk == null || chunk.isEmpty()) return;
+        logRevision.postValue(log.append(chunk));
     }
 
     public void setPreviewUrl(String url) {
         previewUrl.postValue(url);
     }
 
+    public void publishPreviewChanges(@NonNull List<String> paths) {
+        if (!paths.isEmpty()) previewChanges.postValue(paths);
+    }
+
     /**
      * Emit a command typed by the user
      */
@@ -43,6 +80,7 @@ public class ConsoleViewModel extends ViewModel {
 
     // ✅ Add this method to allow /clear command to work
     public void clearConsole() {
-        logs.postValue(""); // clears the console logs
+        log.clear();
+        logRevision.postValue(log.revision());
     }
 }
@@ -0,0 +1,311 @@
+package com.example.aiassistantcoder;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Assembles what a chat prompt is sent with, under a rough token budget
+ * ({@link Prefs#contextTokenBudget}). Files come first, at most
+ * {@link #FILE_SHARE} of the budget, and only the relevant ones: mentioned
+ * in the prompt or recent turns, open in the editor, or edited this session,
+ * in that order, newest edit first. History fills what is left, newest turn
+ * first; model answers lose their file contents when the editor's files are
+ * attached (those are what counts) or when they don't fit whole, and turns that
+ * still don't fit are folded into one summary line.
+ * The prompt itself is always sent whole.
+ */
+final class ContextBuilder {
+
+    // share of the budget files may take; history gets the rest
+    static final float FILE_SHARE = 0.6f;
+    // quoted from each dropped user turn in the summary
+    private static final int SUMMARY_QUOTE_CHARS = 80;
+    private static final int SUMMARY_MAX_QUOTES = 6;
+    // turns looked at for file mentions, besides the prompt
+    private static final int MENTION_LOOKBACK = 4;
+
+    private static final Gson gson = new Gson();
+
+    /** One message as it goes to Gemini; role is "user" or "model". */
+    static final class Turn {
+        final String role;
+        final String text;
+
+        Turn(@NonNull String role, @NonNull String text) {
+            this.role = role;
+            this.text = text;
+        }
+    }
+
+    /** The packed context, in send order, plus what was left out. */
+    static final class Packed {
+        final List<Turn> turns = new ArrayList<>();
+        final int budget;
+        int tokens;
+        int chars;
+        int turnsSent;
+        int turnsCompacted;
+        int turnsSummarized;
+        int filesSent;
+        int filesTruncated;
+        int filesListed;
+
+        Packed(int budget) {
+            this.budget = budget;
+        }
+
+        void add(Turn t) {
+            turns.add(t);
+            tokens += estimateTokens(t.text);
+            chars += t.text.length();
+        }
+
+        @NonNull
+        String describe() {
+            return String.format(Locale.US,
+                    "context ~%d/%d tokens (%d chars): turns %d sent, %d compacted, %d summarized;"
+                            + " files %d sent, %d truncated, %d listed",
+                    tokens, budget, chars, turnsSent, turnsCompacted, turnsSummarized,
+                    filesSent, filesTruncated, filesListed);
+        }
+    }
+
+    private final int budget;
+
+    ContextBuilder(int budget) {
+        this.budget = Math.max(1, budget);
+    }
+
+    /**
+     * Roughly what Gemini's tokenizer would count: ~4 ASCII chars per token,
+     * anything else about one each. Good enough to budget with, and free.
+     */
+    static int estimateTokens(@Nullable String s) {
+        if (s == null || s.isEmpty()) return 0;
+        int ascii = 0, other = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) < 128) ascii++;
+            else other++;
+        }
+        return (ascii + 3) / 4 + other;
+    }
+
+    /**
+     * @param history  earlier turns, oldest first, not including the prompt
+     * @param files    editor files; when empty, {@code snapshot} stands in as the open file
+     * @param snapshot the editor's code as one string, may be empty
+     */
+    @NonNull
+    Packed pack(@NonNull List<Turn> history, @NonNull Turn prompt,
+                @NonNull List<AiUpdateViewModel.EditorFile> files, @Nullable String snapshot) {
+        Packed out = new Packed(budget);
+        int left = budget - estimateTokens(prompt.text);
+
+        // ---- files ----
+        Turn filesTurn = null;
+        if (!files.isEmpty()) {
+            filesTurn = packFiles(rank(files, prompt, history), (int) (Math.max(0, left) * FILE_SHARE), out);
+        } else if (snapshot != null && !snapshot.isEmpty()) {
+            String code = fit(snapshot, (int) (Math.max(0, left) * FILE_SHARE), out);
+            filesTurn = new Turn("user", "Current code in editor:\n```\n" + code + "\n```");
+        }
+        if (filesTurn != null) left -= estimateTokens(filesTurn.text);
+
+        // ---- history, newest first ----
+        List<Turn> kept = new ArrayList<>();
+        int compactedKept = 0;
+        int i = history.size() - 1;
+        for (; i >= 0; i--) {
+            Turn t = history.get(i);
+            boolean compacted = false;
+            if ("model".equals(t.role)) {
+                // with editor files attached, the files in old answers are superseded
+                if (!files.isEmpty() || estimateTokens(t.text) > left) {
+                    Turn c = compact(t);
+                    if (c != null) {
+                        t = c;
+                        compacted = true;
+                    }
+                }
+            }
+            int cost = estimateTokens(t.text);
+            if (cost > left) break;
+            kept.add(t);
+            left -= cost;
+            if (compacted) compactedKept++;
+        }
+
+        Turn summary = null;
+        if (i >= 0) {
+            // the summary is budgeted too: fold in more of the oldest kept turns until it fits
+            summary = summarize(history.subList(0, i + 1));
+            while (estimateTokens(summary.text) > left && !kept.isEmpty()) {
+                Turn dropped = kept.remove(kept.size() - 1);
+                if (dropped != history.get(i + 1)) compactedKept--;
+                left += estimateTokens(dropped.text);
+                i++;
+                summary = summarize(history.subList(0, i + 1));
+            }
+            out.turnsSummarized = i + 1;
+        }
+        Collections.reverse(kept);
+
+        if (summary != null) out.add(summary);
+        for (Turn t : kept) out.add(t);
+        out.turnsSent = kept.size();
+        out.turnsCompacted = compactedKept;
+        out.add(prompt);
+        if (filesTurn != null) out.add(filesTurn);
+        return out;
+    }
+
+    // ---------- files ----------
+
+    private static final class Ranked {
+        final AiUpdateViewModel.EditorFile file;
+        final int score;
+
+        Ranked(AiUpdateViewModel.EditorFile file, int score) {
+            this.file = file;
+            this.score = score;
+        }
+    }
+
+    // relevant files, best first; falls back to the first file so there's always something
+    private static List<Ranked> rank(List<AiUpdateViewModel.EditorFile> files, Turn prompt, List<Turn> history) {
+        String asked = prompt.text.toLowerCase(Locale.ROOT);
+        StringBuilder recent = new StringBuilder();
+        for (int i = Math.max(0, history.size() - MENTION_LOOKBACK); i < history.size(); i++) {
+            if ("user".equals(history.get(i).role)) {
+                recent.append(history.get(i).text.toLowerCase(Locale.ROOT)).append('\n');
+            }
+        }
+
+        List<Ranked> out = new ArrayList<>();
+        for (AiUpdateViewModel.EditorFile f : files) {
+            int score = 0;
+            if (mentions(asked, f.path)) score += 100;
+            if (f.open) score += 40;
+            if (mentions(recent, f.path)) score += 20;
+            if (f.lastEditedAt > 0) score += 10;
+            if (score > 0) out.add(new Ranked(f, score));
+        }
+        if (out.isEmpty()) out.add(new Ranked(files.get(0), 0));
+        Collections.sort(out, (a, b) -> a.score != b.score
+                ? Integer.compare(b.score, a.score)
+                : Long.compare(b.file.lastEditedAt, a.file.lastEditedAt));
+        return out;
+    }
+
+    private static boolean mentions(CharSequence text, String path) {
+        if (path.isEmpty()) return false;
+        String p = path.toLowerCase(Locale.ROOT);
+        String s = text.toString();
+        if (s.contains(p)) return true;
+        int slash = p.lastIndexOf('/');
+        String name = slash >= 0 ? p.substring(slash + 1) : p;
+        // bare names like "a.js" match too much
+        return name.length() >= 4 && name.indexOf('.') > 0 && s.contains(name);
+    }
+
+    private Turn packFiles(List<Ranked> ranked, int allowance, Packed out) {
+        StringBuilder sb = new StringBuilder("Current project files:\n");
+        List<String> skipped = new ArrayList<>();
+        int left = allowance - estimateTokens(sb.toString());
+        for (Ranked r : ranked) {
+            String block = fileBlock(r.file.path, r.file.content);
+            int cost = estimateTokens(block);
+            if (cost <= left) {
+                sb.append(block);
+                left -= cost;
+                out.filesSent++;
+            } else if (out.filesSent == 0) {
+                // the best match goes in even if it has to be cut
+                String head = fit(r.file.content, left - estimateTokens(fileBlock(r.file.path, "")), out);
+                sb.append(fileBlock(r.file.path, head));
+                left = 0;
+                out.filesSent++;
+            } else {
+                skipped.add(r.file.path);
+            }
+        }
+        if (!skipped.isEmpty()) {
+            out.filesListed = skipped.size();
+            sb.append("\nAlso relevant but not included: ").append(String.join(", ", skipped)).append('\n');
+        }
+        return new Turn("user", sb.toString());
+    }
+
+    private static String fileBlock(String path, String content) {
+        return "\n### " + path + "\n```\n" + content + "\n```\n";
+    }
+
+    // whole lines from the top of code that fit in tokens, with a marker for the rest
+    private static String fit(String code, int tokens, Packed out) {
+        if (estimateTokens(code) <= tokens) return code;
+        out.filesTruncated++;
+        String[] lines = code.split("\n", -1);
+        StringBuilder sb = new StringBuilder();
+        int used = 0, n = 0;
+        for (; n < lines.length; n++) {
+            int cost = estimateTokens(lines[n]) + 1;
+            if (used + cost > tokens) break;
+            sb.append(lines[n]).append('\n');
+            used += cost;
+        }
+        sb.append("... (truncated, ").append(lines.length - n).append(" more lines)");
+        return sb.toString();
+    }
+
+    // ---------- history ----------
+
+    // a model answer without file contents: paths, summaries and notes are what the thread needs
+    @Nullable
+    private static Turn compact(Turn t) {
+        try {
+            JsonObject obj = gson.fromJson(t.text, JsonObject.class);
+            if (obj == null || !obj.has("files") || !obj.get("files").isJsonArray()) return null;
+            JsonArray files = new JsonArray();
+            for (JsonElement el : obj.getAsJsonArray("files")) {
+                if (!el.isJsonObject()) continue;
+                JsonObject f = el.getAsJsonObject().deepCopy();
+                f.remove("content");
+                files.add(f);
+            }
+            JsonObject c = obj.deepCopy();
+            c.add("files", files);
+            return new Turn(t.role, gson.toJson(c));
+        } catch (JsonParseException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private static Turn summarize(List<Turn> dropped) {
+        StringBuilder sb = new StringBuilder("(")
+                .append(dropped.size())
+                .append(" earlier messages omitted to save space.");
+        int quoted = 0;
+        // the most recent of the dropped requests say the most about where things stand
+        for (int i = dropped.size() - 1; i >= 0 && quoted < SUMMARY_MAX_QUOTES; i--) {
+            Turn t = dropped.get(i);
+            if (!"user".equals(t.role)) continue;
+            String q = t.text.trim().replaceAll("\\s+", " ");
+            if (q.isEmpty()) continue;
+            if (q.length() > SUMMARY_QUOTE_CHARS) q = q.substring(0, SUMMARY_QUOTE_CHARS) + "...";
+            sb.append(quoted == 0 ? " Earlier requests, newest first: \"" : "; \"").append(q).append('"');
+            quoted++;
+        }
+        return new Turn("user", sb.append(")").toString());
+    }
+}
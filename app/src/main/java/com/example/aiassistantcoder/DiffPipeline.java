@@ -0,0 +1,181 @@
+package com.example.aiassistantcoder;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes per-file diffs for a multi-file AI update on a small worker pool.
+ * <p>
+ * Work is keyed by file id: a new job for a file cancels the one still queued
+ * or running for that same file, and nothing else, so an update touching B
+ * never discards A's review. Finished files are delivered on the main thread
+ * one by one, so the diff sheet can open as soon as the first file is ready
+ * instead of after the whole project.
+ */
+public class DiffPipeline {
+
+    private static final String TAG = "DiffPipeline";
+
+    public interface Listener {
+        void onFileDiff(@NonNull String fileId,
+                        @NonNull String newContent,
+                        @NonNull List<CodeEditorFragment.DiffLine> diff,
+                        long tookMs);
+
+        default void onAllDone(int files, long totalMs) {
+        }
+    }
+
+    public static final class Job {
+        final String fileId;
+        final String oldContent;
+        final String newContent;
+
+        public Job(@NonNull String fileId, @Nullable String oldContent, @Nullable String newContent) {
+            this.fileId = fileId;
+            this.oldContent = oldContent != null ? oldContent : "";
+            this.newContent = newContent != null ? newContent : "";
+        }
+    }
+
+    // one submit(); done once each of its jobs was delivered or superseded
+    private static final class Batch {
+        final int size;
+        final long started = SystemClock.elapsedRealtime();
+        final AtomicInteger remaining;
+
+        Batch(int size) {
+            this.size = size;
+            this.remaining = new AtomicInteger(size);
+        }
+    }
+
+    private static final class Running {
+        final Batch batch;
+        Future<?> future;
+
+        Running(Batch batch) {
+            this.batch = batch;
+        }
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final Executor deliver;
+    private final Listener listener;
+
+    // fileId -> its latest job; guarded by this
+    private final Map<String, Running> inFlight = new HashMap<>();
+
+    public DiffPipeline(@NonNull Listener listener) {
+        this(listener, new Handler(Looper.getMainLooper())::post);
+    }
+
+    DiffPipeline(@NonNull Listener listener, @NonNull Executor deliver) {
+        this.listener = listener;
+        this.deliver = deliver;
+        // bounded: never more than 4 diff threads, idle threads die after 30s
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        AtomicInteger n = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(
+                threads, threads,
+                30L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "diff-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Diff all jobs in parallel. Earlier work for the same file ids is dropped;
+     * other files keep going.
+     */
+    public synchronized void submit(@NonNull List<Job> jobs) {
+        if (jobs.isEmpty()) return;
+        Batch batch = new Batch(jobs.size());
+
+        for (Job job : jobs) {
+            drop(job.fileId);
+            Running run = new Running(batch);
+            inFlight.put(job.fileId, run);
+            run.future = pool.submit(() -> {
+                if (!isCurrent(job.fileId, run)) return;
+
+                long t0 = SystemClock.elapsedRealtime();
+                List<CodeEditorFragment.DiffLine> diff =
+                        CodeEditorFragment.DiffUtilLite.diffLines(job.oldContent, job.newContent);
+                long took = SystemClock.elapsedRealtime() - t0;
+
+                if (!isCurrent(job.fileId, run) || Thread.currentThread().isInterrupted()) return;
+                Log.d(TAG, "diff " + job.fileId + ": " + diff.size() + " line(s) in " + took + "ms");
+
+                deliver.execute(() -> {
+                    synchronized (DiffPipeline.this) {
+                        if (inFlight.get(job.fileId) != run) return;
+                        inFlight.remove(job.fileId);
+                    }
+                    listener.onFileDiff(job.fileId, job.newContent, diff, took);
+                    finishOne(batch);
+                });
+            });
+        }
+    }
+
+    /**
+     * Drop queued and running work for these files; results already posted are discarded too.
+     */
+    public synchronized void cancel(@NonNull Collection<String> fileIds) {
+        for (String id : fileIds) drop(id);
+    }
+
+    /**
+     * Drop all queued and running work.
+     */
+    public synchronized void cancel() {
+        for (Running run : inFlight.values()) run.future.cancel(true);
+        inFlight.clear();
+    }
+
+    public void shutdown() {
+        cancel();
+        pool.shutdownNow();
+    }
+
+    private synchronized boolean isCurrent(String fileId, Running run) {
+        return inFlight.get(fileId) == run;
+    }
+
+    private void drop(String fileId) {
+        Running old = inFlight.remove(fileId);
+        if (old == null) return;
+        old.future.cancel(true);
+        // superseded jobs count as done for their batch
+        finishOne(old.batch);
+    }
+
+    private void finishOne(Batch batch) {
+        if (batch.remaining.decrementAndGet() != 0) return;
+        long total = SystemClock.elapsedRealtime() - batch.started;
+        Log.d(TAG, "update diffed: " + batch.size + " file(s) in " + total + "ms");
+        deliver.execute(() -> listener.onAllDone(batch.size, total));
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.aiassistantcoder;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * Server-sent-events call to the proxy's streaming endpoint
+ * ({@code streamGenerateContent?alt=sse} style): each {@code data:} event is
+ * a partial GenerateContentResponse, and the text of its first candidate is
+ * handed on as soon as the event arrives. Blocking; call off the main thread.
+ */
+final class GeminiStream {
+
+    private GeminiStream() {
+    }
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    /** The proxy has no streaming endpoint (404 / 405); use the blocking call. */
+    static final class UnsupportedException extends IOException {
+        UnsupportedException(String message) {
+            super(message);
+        }
+    }
+
+    interface TextSink {
+        void onText(@NonNull String chunk);
+    }
+
+    /** The whole text and why the model stopped (null if no event said). */
+    static final class Result {
+        @NonNull
+        final String text;
+        @Nullable
+        final String finishReason;
+
+        Result(@NonNull String text, @Nullable String finishReason) {
+            this.text = text;
+            this.finishReason = finishReason;
+        }
+
+        /** The model finished on its own; not cut off by tokens, safety or a dropped stream. */
+        boolean complete() {
+            return "STOP".equals(finishReason);
+        }
+    }
+
+    // remembered per process so a proxy without streaming is only asked once
+    private static volatile boolean unsupported = false;
+
+    static boolean isUnsupported() {
+        return unsupported;
+    }
+
+    /** Streams the model text into {@code sink}; returns the whole text. */
+    @NonNull
+    static Result generate(@NonNull String url,
+                           @NonNull String requestJson,
+                           @NonNull TextSink sink) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Accept", "text/event-stream")
+                .post(RequestBody.create(requestJson, JSON))
+                .build();
+
+        try (Response resp = HttpTransport.generationClient().newCall(request).execute()) {
+            ResponseBody body = resp.body();
+            if (resp.code() == 404 || resp.code() == 405) {
+                unsupported = true;
+                throw new UnsupportedException("no streaming endpoint (" + resp.code() + ")");
+            }
+            if (!resp.isSuccessful() || body == null) {
+                String err = body != null ? body.string() : "";
+                throw new IOException("HTTP " + resp.code() + (err.isEmpty() ? "" : ": " + err));
+            }
+
+            StringBuilder all = new StringBuilder();
+            String[] finishReason = {null};
+            StringBuilder data = new StringBuilder();
+            BufferedSource src = body.source();
+            String line;
+            while ((line = src.readUtf8Line()) != null) {
+                if (line.isEmpty()) {
+                    // blank line ends an event
+                    if (!dispatch(data, all, finishReason, sink)) break;
+                    data.setLength(0);
+                } else if (line.startsWith("data:")) {
+                    if (data.length() > 0) data.append('\n');
+                    data.append(line.startsWith("data: ") ? line.substring(6) : line.substring(5));
+                }
+                // "event:", "id:", ":" comments / keep-alives are ignored
+            }
+            dispatch(data, all, finishReason, sink);
+            return new Result(all.toString(), finishReason[0]);
+        }
+    }
+
+    // false once the stream says it is finished
+    private static boolean dispatch(StringBuilder data, StringBuilder all, String[] finishReason,
+                                    TextSink sink) throws IOException {
+        if (data.length() == 0) return true;
+        String payload = data.toString();
+        if ("[DONE]".equals(payload.trim())) return false;
+
+        JsonObject event;
+        try {
+            JsonElement el = JsonParser.parseString(payload);
+            if (!el.isJsonObject()) return true;
+            event = el.getAsJsonObject();
+        } catch (RuntimeException e) {
+            return true;    // not JSON: nothing for us in it
+        }
+        if (event.has("error")) {
+            JsonElement err = event.get("error");
+            String msg = err.isJsonObject() && err.getAsJsonObject().has("message")
+                    ? err.getAsJsonObject().get("message").getAsString()
+                    : err.toString();
+            throw new IOException(msg);
+        }
+        String text = textOf(event);
+        if (text != null && !text.isEmpty()) {
+            all.append(text);
+            sink.onText(text);
+        }
+        // only the last event carries it
+        String reason = finishReasonOf(event);
+        if (reason != null) finishReason[0] = reason;
+        return true;
+    }
+
+    @Nullable
+    private static JsonObject firstCandidate(JsonObject event) {
+        JsonArray candidates = event.has("candidates") && event.get("candidates").isJsonArray()
+                ? event.getAsJsonArray("candidates") : null;
+        if (candidates == null || candidates.size() == 0 || !candidates.get(0).isJsonObject()) return null;
+        return candidates.get(0).getAsJsonObject();
+    }
+
+    @Nullable
+    private static String finishReasonOf(JsonObject event) {
+        JsonObject candidate = firstCandidate(event);
+        if (candidate == null || !candidate.has("finishReason")) return null;
+        JsonElement r = candidate.get("finishReason");
+        return r.isJsonPrimitive() ? r.getAsString() : null;
+    }
+
+    @Nullable
+    private static String textOf(JsonObject event) {
+        JsonObject candidate = firstCandidate(event);
+        if (candidate == null) return null;
+        JsonObject content = candidate.getAsJsonObject("content");
+        if (content == null || !content.has("parts")) return null;
+        StringBuilder sb = new StringBuilder();
+        for (JsonElement p : content.getAsJsonArray("parts")) {
+            if (p.isJsonObject() && p.getAsJsonObject().has("text")) {
+                sb.append(p.getAsJsonObject().get("text").getAsString());
+            }
+        }
+        return sb.toString();
+    }
+}
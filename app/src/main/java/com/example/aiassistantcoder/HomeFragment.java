@@ -5,11 +5,9 @@ import static android.app.Activity.RESULT_OK;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
-import android.util.Base64;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
@@ -38,11 +36,9 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
@@ -63,14 +59,10 @@ public class HomeFragment extends Fragment {
     private ProgressBar loadingIndicator;
     private ImageView imagePreview;
     private RelativeLayout imagePreviewContainer;
-    private Bitmap selectedImageBitmap;
-
-    private final OkHttpClient http = new OkHttpClient.Builder()
-            .connectTimeout(15, TimeUnit.SECONDS)
-            .writeTimeout(60, TimeUnit.SECONDS)
-            .readTimeout(120, TimeUnit.SECONDS)
-            .callTimeout(0, TimeUnit.SECONDS)
-            .build();
+    private @Nullable ImageIngest.Prepared selectedImage;    // downscaled + re-encoded
+    private @Nullable Uri loadingImage;                       // being prepared
+
+    private final OkHttpClient http = HttpTransport.generationClient();
     private final Gson gson = new Gson();
     private final Executor bg = Executors.newSingleThreadExecutor();
 
@@ -89,20 +81,35 @@ public class HomeFragment extends Fragment {
             result -> {
                 if (result.getResultCode() == RESULT_OK && result.getData() != null) {
                     Uri imageUri = result.getData().getData();
-                    try {
-                        selectedImageBitmap = MediaStore.Images.Media.getBitmap(
-                                requireContext().getContentResolver(), imageUri);
-                        imagePreview.setImageBitmap(selectedImageBitmap);
-                        imagePreviewContainer.setVisibility(View.VISIBLE);
-                    } catch (IOException e) {
-                        Log.e(TAG, "Image load failed", e);
-                        SnackBarApp.INSTANCE.show(
-                                requireActivity().findViewById(android.R.id.content),
-                                "Image load failed",
-                                SnackBarApp.Type.ERROR
-                        );
-
-                    }
+                    if (imageUri == null) return;
+                    selectedImage = null;
+                    loadingImage = imageUri;
+                    Context ctx = requireContext().getApplicationContext();
+                    bg.execute(() -> {
+                        ImageIngest.Prepared img = null;
+                        try {
+                            img = ImageIngest.prepare(ctx, imageUri);
+                        } catch (IOException | RuntimeException e) {
+                            Log.e(TAG, "Image load failed", e);
+                        }
+                        ImageIngest.Prepared loaded = img;
+                        if (getActivity() == null) return;
+                        getActivity().runOnUiThread(() -> {
+                            if (!isAdded() || loadingImage != imageUri) return;    // removed or replaced meanwhile
+                            loadingImage = null;
+                            if (loaded == null) {
+                                SnackBarApp.INSTANCE.show(
+                                        requireActivity().findViewById(android.R.id.content),
+                                        "Image load failed",
+                                        SnackBarApp.Type.ERROR
+                                );
+                                return;
+                            }
+                            selectedImage = loaded;
+                            imagePreview.setImageBitmap(loaded.bitmap);
+                            imagePreviewContainer.setVisibility(View.VISIBLE);
+                        });
+                    });
                 }
             });
 
@@ -142,7 +149,8 @@ public class HomeFragment extends Fragment {
         // ---- Remove image button ----
         removeImageButton.setOnClickListener(v -> {
             Log.d(TAG, "Remove image clicked");
-            selectedImageBitmap = null;
+            selectedImage = null;
+            loadingImage = null;
             imagePreviewContainer.setVisibility(View.GONE);
         });
 
@@ -183,9 +191,17 @@ public class HomeFragment extends Fragment {
     private void submitToGemini() {
         String userText = searchBar.getText().toString().trim();
         // debugger
-        Log.d(TAG, "submitToGemini: user text = " + userText + ", hasImage=" + (selectedImageBitmap != null));
+        Log.d(TAG, "submitToGemini: user text = " + userText + ", hasImage=" + (selectedImage != null));
 
-        if (userText.isEmpty() && selectedImageBitmap == null) {
+        if (loadingImage != null) {
+            SnackBarApp.INSTANCE.show(
+                    requireActivity().findViewById(android.R.id.content),
+                    "Image is still loading",
+                    SnackBarApp.Type.WARNING
+            );
+            return;
+        }
+        if (userText.isEmpty() && selectedImage == null) {
             SnackBarApp.INSTANCE.show(
                     requireActivity().findViewById(android.R.id.content),
                     "Please enter some text or select an image",
@@ -243,11 +259,10 @@ public class HomeFragment extends Fragment {
         userTextPart.addProperty("text", userText);
         userParts.add(userTextPart);
 
-        if (selectedImageBitmap != null) {
-            String b64 = bitmapToBase64(selectedImageBitmap);
+        if (selectedImage != null) {
             JsonObject inlineData = new JsonObject();
-            inlineData.addProperty("mimeType", "image/png");
-            inlineData.addProperty("data", b64);
+            inlineData.addProperty("mimeType", selectedImage.mimeType);
+            inlineData.addProperty("data", selectedImage.base64());
             JsonObject imagePart = new JsonObject();
             imagePart.add("inlineData", inlineData);
             userParts.add(imagePart);
@@ -277,39 +292,22 @@ public class HomeFragment extends Fragment {
         // debugger
         Log.d(TAG, "submitToGemini: final JSON payload -> " + gson.toJson(payload));
 
+        String payloadJson = gson.toJson(payload);
+        Log.d(TAG, "submitToGemini: request body " + payloadJson.length() / 1024 + " KB");
         RequestBody body = RequestBody.create(
-                gson.toJson(payload),
+                payloadJson,
                 MediaType.parse("application/json; charset=utf-8")
         );
         Request request = new Request.Builder().url(url).post(body).build();
+        ResponseCache cache = ResponseCache.get(requireContext());
+        String cacheKey = ResponseCache.keyOf(payloadJson);
 
         bg.execute(() -> {
-            try (Response resp = http.newCall(request).execute()) {
-
-                // debugger
-                Log.d(TAG, "submitToGemini: HTTP code=" + resp.code());
-
-                if (!resp.isSuccessful()) {
-                    String errBody = resp.body() != null ? resp.body().string() : "";
-                    Log.e(TAG, "Gemini error HTTP " + resp.code() + ": " + errBody);
-
-                    if (resp.code() == 503) {
-                        postError("Gemini is overloaded right now. Try the same request again.");
-                    } else {
-                        postError("HTTP " + resp.code() + ": " + errBody);
-                    }
-                    return;
-                }
-
-                String json = resp.body() != null ? resp.body().string() : "";
-
-                // debugger
-                Log.d(TAG, "submitToGemini: RAW response from Gemini -> " + json);
-
-                String modelText = extractTextFromCandidates(json);
-
-                // debugger
-                Log.d(TAG, "submitToGemini: modelText (first part text) -> " + modelText);
+            try {
+                String cached = cache.lookup(cacheKey);
+                String modelText = cached != null ? cached : fetchModelText(request);
+                if (modelText == null) return;    // error already shown
+                if (cached == null) cache.put(cacheKey, modelText);
 
                 String aiCode = "";
                 String aiLanguage = "";
@@ -447,7 +445,7 @@ public class HomeFragment extends Fragment {
                         startActivity(intent);
                     }
 
-                    selectedImageBitmap = null;
+                    selectedImage = null;
                     imagePreviewContainer.setVisibility(View.GONE);
                 });
 
@@ -460,6 +458,40 @@ public class HomeFragment extends Fragment {
 
     }
 
+    // null after reporting an HTTP error
+    @Nullable
+    private String fetchModelText(Request request) throws IOException {
+        try (Response resp = http.newCall(request).execute()) {
+
+            // debugger
+            Log.d(TAG, "submitToGemini: HTTP code=" + resp.code());
+
+            if (!resp.isSuccessful()) {
+                String errBody = resp.body() != null ? resp.body().string() : "";
+                Log.e(TAG, "Gemini error HTTP " + resp.code() + ": " + errBody);
+
+                if (resp.code() == 503) {
+                    postError("Gemini is overloaded right now. Try the same request again.");
+                } else {
+                    postError("HTTP " + resp.code() + ": " + errBody);
+                }
+                return null;
+            }
+
+            String json = resp.body() != null ? resp.body().string() : "";
+
+            // debugger
+            Log.d(TAG, "submitToGemini: RAW response from Gemini -> " + json);
+
+            String modelText = extractTextFromCandidates(json);
+
+            // debugger
+            Log.d(TAG, "submitToGemini: modelText (first part text) -> " + modelText);
+
+            return modelText;
+        }
+    }
+
     private void pushAiExtras(Intent intent, String code, String language, String runtime, String notes) {
         // debugger
         Log.d(TAG, "pushAiExtras: codeLen=" + (code != null ? code.length() : 0) + " lang=" + language + " rt=" + runtime);
@@ -560,12 +592,6 @@ public class HomeFragment extends Fragment {
         return schema;
     }
 
-    private String bitmapToBase64(Bitmap bmp) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        bmp.compress(Bitmap.CompressFormat.PNG, 100, baos);
-        return Base64.encodeToString(baos.toByteArray(), Base64.NO_WRAP);
-    }
-
     private String extractTextFromCandidates(String json) {
         try {
             JsonObject root = gson.fromJson(json, JsonObject.class);
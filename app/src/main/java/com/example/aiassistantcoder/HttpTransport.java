@@ -0,0 +1,206 @@
+package com.example.aiassistantcoder;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.stream.JsonWriter;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+
+/**
+ * The app's one HTTP stack.
+ * <p>
+ * Every client handed out here shares a connection pool and dispatcher, so a
+ * create-project, bulk-upload, start-session sequence goes over one warm
+ * (HTTP/2 where the server offers it) connection. OkHttp asks for gzip and
+ * unpacks it transparently. JSON request bodies are written straight into
+ * the socket instead of being built as one string first.
+ */
+public final class HttpTransport {
+
+    private HttpTransport() {
+    }
+
+    public static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    /** Non-2xx answer; {@link #code} tells e.g. "gone" (404/410) from a server error. */
+    public static final class HttpStatusException extends IOException {
+        public final int code;
+
+        HttpStatusException(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+
+        public boolean isGone() {
+            return code == 404 || code == 410;
+        }
+    }
+
+    /** Streams one JSON value into a request body. */
+    public interface JsonBody {
+        void writeTo(@NonNull JsonWriter w) throws IOException;
+    }
+
+    private static final OkHttpClient BASE = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .retryOnConnectionFailure(true)
+            .connectTimeout(15, TimeUnit.SECONDS)
+            .writeTimeout(60, TimeUnit.SECONDS)
+            .readTimeout(60, TimeUnit.SECONDS)
+            .build();
+
+    // model calls can take a while before the first byte
+    private static final OkHttpClient GENERATION = BASE.newBuilder()
+            .readTimeout(120, TimeUnit.SECONDS)
+            .callTimeout(0, TimeUnit.SECONDS)
+            .build();
+
+    // a WebSocket has no read timeout once upgraded; unanswered pings are
+    // what notice a connection that dropped without a FIN
+    private static final OkHttpClient LIVE_SOCKET = BASE.newBuilder()
+            .pingInterval(LiveSocket.PING_INTERVAL_MS, TimeUnit.MILLISECONDS)
+            .build();
+
+    /** Live runner backend REST calls. */
+    @NonNull
+    public static OkHttpClient client() {
+        return BASE;
+    }
+
+    /** The live session's WebSocket; same pool, pinged so a dead link fails. */
+    @NonNull
+    public static OkHttpClient liveSocketClient() {
+        return LIVE_SOCKET;
+    }
+
+    /** Gemini proxy; same pool, longer read timeout. */
+    @NonNull
+    public static OkHttpClient generationClient() {
+        return GENERATION;
+    }
+
+    // ---------- JSON calls (blocking; call off the main thread) ----------
+    @NonNull
+    public static JSONObject getJson(@NonNull String url) throws IOException, JSONException {
+        return new JSONObject(execute(new Request.Builder().url(url).get().build()));
+    }
+
+    @NonNull
+    public static JSONArray getJsonArray(@NonNull String url) throws IOException, JSONException {
+        return new JSONArray(execute(new Request.Builder().url(url).get().build()));
+    }
+
+    @NonNull
+    public static JSONObject postJson(@NonNull String url, @NonNull JSONObject body)
+            throws IOException, JSONException {
+        return postJson(url, w -> writeValue(w, body));
+    }
+
+    @NonNull
+    public static JSONObject postJson(@NonNull String url, @NonNull JsonBody body)
+            throws IOException, JSONException {
+        return new JSONObject(execute(new Request.Builder().url(url).post(jsonBody(body)).build()));
+    }
+
+    @NonNull
+    public static JSONObject putJson(@NonNull String url, @NonNull JSONObject body)
+            throws IOException, JSONException {
+        RequestBody rb = jsonBody(w -> writeValue(w, body));
+        return new JSONObject(execute(new Request.Builder().url(url).put(rb).build()));
+    }
+
+    /** POST a prepared body, e.g. {@link TarUpload#gzipBody}; the answer is JSON. */
+    @NonNull
+    public static JSONObject postForJson(@NonNull String url,
+                                         @NonNull RequestBody body,
+                                         @Nullable String contentEncoding)
+            throws IOException, JSONException {
+        Request.Builder b = new Request.Builder().url(url).post(body);
+        if (contentEncoding != null) b.header("Content-Encoding", contentEncoding);
+        return new JSONObject(execute(b.build()));
+    }
+
+    public static void delete(@NonNull String url) throws IOException {
+        execute(new Request.Builder().url(url).delete().build());
+    }
+
+    @NonNull
+    public static RequestBody jsonBody(@NonNull JsonBody body) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return JSON;
+            }
+
+            @Override
+            public void writeTo(@NonNull BufferedSink sink) throws IOException {
+                // not closed: closing would close the sink OkHttp owns
+                JsonWriter w = new JsonWriter(new OutputStreamWriter(sink.outputStream(), StandardCharsets.UTF_8));
+                body.writeTo(w);
+                w.flush();
+            }
+        };
+    }
+
+    /** Writes an org.json value (object, array, primitive, NULL). */
+    public static void writeValue(@NonNull JsonWriter w, Object v) throws IOException {
+        if (v == null || v == JSONObject.NULL) {
+            w.nullValue();
+        } else if (v instanceof JSONObject) {
+            JSONObject o = (JSONObject) v;
+            w.beginObject();
+            Iterator<String> keys = o.keys();
+            while (keys.hasNext()) {
+                String k = keys.next();
+                w.name(k);
+                writeValue(w, o.opt(k));
+            }
+            w.endObject();
+        } else if (v instanceof JSONArray) {
+            JSONArray a = (JSONArray) v;
+            w.beginArray();
+            for (int i = 0; i < a.length(); i++) writeValue(w, a.opt(i));
+            w.endArray();
+        } else if (v instanceof Boolean) {
+            w.value((Boolean) v);
+        } else if (v instanceof Number) {
+            w.value((Number) v);
+        } else {
+            w.value(v.toString());
+        }
+    }
+
+    // the body is always consumed, so the connection goes back to the pool
+    private static String execute(Request req) throws IOException {
+        try (Response resp = BASE.newCall(req).execute()) {
+            ResponseBody rb = resp.body();
+            String body = rb != null ? rb.string() : "";
+            if (!resp.isSuccessful()) {
+                throw new HttpStatusException(resp.code(),
+                        req.method() + " " + req.url() + " -> " + resp.code() + ": " + body);
+            }
+            return body;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.aiassistantcoder;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageDecoder;
+import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
+import android.provider.OpenableColumns;
+import android.util.Base64;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * Turns a picked image into what we send to Gemini: decoded already scaled
+ * down to {@link Prefs#imageMaxEdge} (inSampleSize / ImageDecoder target
+ * size, so the full-resolution bitmap never exists), then re-encoded as
+ * JPEG, or lossy WebP when the image has transparency.
+ * A 12 MP photo goes from a ~30 MB PNG/base64 body to a few hundred KB.
+ * Blocking; call off the main thread.
+ */
+public final class ImageIngest {
+
+    private static final String TAG = "ImageIngest";
+
+    static final int JPEG_QUALITY = 85;
+    static final int WEBP_QUALITY = 80;
+
+    private ImageIngest() {
+    }
+
+    /** An image ready to inline into a request. */
+    public static final class Prepared {
+        public final Bitmap bitmap;         // scaled; also used for the preview
+        public final byte[] bytes;          // encoded
+        public final String mimeType;
+        final long sourceBytes;             // picked file, -1 if unknown
+        final int sourceWidth;
+        final int sourceHeight;
+
+        Prepared(Bitmap bitmap, byte[] bytes, String mimeType,
+                 long sourceBytes, int sourceWidth, int sourceHeight) {
+            this.bitmap = bitmap;
+            this.bytes = bytes;
+            this.mimeType = mimeType;
+            this.sourceBytes = sourceBytes;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+        }
+
+        @NonNull
+        public String base64() {
+            return Base64.encodeToString(bytes, Base64.NO_WRAP);
+        }
+
+        /** What the old path would have sent: lossless PNG of the full image, as base64. */
+        long legacyRequestEstimate() {
+            // PNG of a photo is roughly 2.5 bytes/pixel; base64 adds a third
+            return (long) sourceWidth * sourceHeight * 5 / 2 * 4 / 3;
+        }
+
+        @NonNull
+        String describe() {
+            return String.format(Locale.US,
+                    "%dx%d (%s picked, ~%s as full-size PNG) -> %dx%d %s %s, %s base64",
+                    sourceWidth, sourceHeight, kb(sourceBytes), kb(legacyRequestEstimate()),
+                    bitmap.getWidth(), bitmap.getHeight(), mimeType,
+                    kb(bytes.length), kb((bytes.length + 2L) / 3 * 4));
+        }
+    }
+
+    @NonNull
+    public static Prepared prepare(@NonNull Context context, @NonNull Uri uri) throws IOException {
+        final long t0 = SystemClock.elapsedRealtime();
+        final int maxEdge = Prefs.imageMaxEdge(context);
+        ContentResolver cr = context.getContentResolver();
+
+        int[] size = new int[2];
+        Bitmap bmp = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                ? decodeWithImageDecoder(cr, uri, maxEdge, size)
+                : decodeSampled(cr, uri, maxEdge, size);
+
+        // inSampleSize only halves; finish the scale exactly
+        int edge = Math.max(bmp.getWidth(), bmp.getHeight());
+        if (edge > maxEdge) {
+            float k = maxEdge / (float) edge;
+            Bitmap scaled = Bitmap.createScaledBitmap(bmp,
+                    Math.max(1, Math.round(bmp.getWidth() * k)),
+                    Math.max(1, Math.round(bmp.getHeight() * k)), true);
+            if (scaled != bmp) bmp.recycle();
+            bmp = scaled;
+        }
+
+        String mime;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (bmp.hasAlpha()) {
+            mime = "image/webp";
+            bmp.compress(Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                    ? Bitmap.CompressFormat.WEBP_LOSSY
+                    : webpLegacy(), WEBP_QUALITY, out);
+        } else {
+            mime = "image/jpeg";
+            bmp.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        }
+
+        Prepared p = new Prepared(bmp, out.toByteArray(), mime, sourceSize(cr, uri), size[0], size[1]);
+        Log.d(TAG, "image " + p.describe() + " in " + (SystemClock.elapsedRealtime() - t0) + "ms");
+        return p;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webpLegacy() {
+        return Bitmap.CompressFormat.WEBP;
+    }
+
+    // API 28+: honours EXIF rotation and decodes straight to the target size
+    @RequiresApi(Build.VERSION_CODES.P)
+    private static Bitmap decodeWithImageDecoder(ContentResolver cr, Uri uri, int maxEdge, int[] size)
+            throws IOException {
+        ImageDecoder.Source src = ImageDecoder.createSource(cr, uri);
+        return ImageDecoder.decodeBitmap(src, (decoder, info, s) -> {
+            int w = info.getSize().getWidth(), h = info.getSize().getHeight();
+            size[0] = w;
+            size[1] = h;
+            int edge = Math.max(w, h);
+            if (edge > maxEdge) {
+                float k = maxEdge / (float) edge;
+                decoder.setTargetSize(Math.max(1, Math.round(w * k)), Math.max(1, Math.round(h * k)));
+            }
+            // software bitmap: it gets compressed
+            decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+        });
+    }
+
+    private static Bitmap decodeSampled(ContentResolver cr, Uri uri, int maxEdge, int[] size)
+            throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = cr.openInputStream(uri)) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        size[0] = bounds.outWidth;
+        size[1] = bounds.outHeight;
+
+        int sample = 1;
+        int edge = Math.max(bounds.outWidth, bounds.outHeight);
+        while (edge / (sample * 2) >= maxEdge) sample *= 2;
+
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inSampleSize = sample;
+        try (InputStream in = cr.openInputStream(uri)) {
+            Bitmap bmp = BitmapFactory.decodeStream(in, null, opts);
+            if (bmp == null) throw new IOException("unsupported image");
+            return bmp;
+        }
+    }
+
+    private static long sourceSize(ContentResolver cr, Uri uri) {
+        try (Cursor c = cr.query(uri, new String[]{OpenableColumns.SIZE}, null, null, null)) {
+            if (c != null && c.moveToFirst() && !c.isNull(0)) return c.getLong(0);
+        } catch (RuntimeException ignored) {
+            // some providers don't answer size queries
+        }
+        return -1;
+    }
+
+    private static String kb(long bytes) {
+        if (bytes < 0) return "?";
+        if (bytes >= 1024 * 1024) return String.format(Locale.US, "%.1f MB", bytes / (1024f * 1024f));
+        return (bytes / 1024) + " KB";
+    }
+}
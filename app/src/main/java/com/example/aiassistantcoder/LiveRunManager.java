@@ -1,25 +1,35 @@
 package com.example.aiassistantcoder;
 
+import android.os.SystemClock;
+import android.util.Log;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LiveRunManager {
 
+    private static final String TAG = "LiveRunManager";
+
     public interface Listener {
         void log(String msg);
 
@@ -48,65 +58,491 @@ public class LiveRunManager {
                               @NonNull String entrypoint,
                               boolean readOnlyFs,
                               boolean verifyUpload) {
+        startLiveBulk(files, language, entrypoint, readOnlyFs, verifyUpload, null);
+    }
+
+    /**
+     * @param editorProjectId the editor project's id; with it the remote
+     *                        project is reused and only changed files are sent
+     */
+    public void startLiveBulk(@NonNull JSONArray files,
+                              @NonNull String language,
+                              @NonNull String entrypoint,
+                              boolean readOnlyFs,
+                              boolean verifyUpload,
+                              @Nullable String editorProjectId) {
+        String manifestKey = manifestKey(editorProjectId);
         exec.execute(() -> {
+            String sessionId = null;
             try {
-                listener.log("⏵ creating project…\n");
-                String projectId = createProject();
-
-                listener.log("⏵ uploading " + files.length() + " file(s)…\n");
-                uploadFilesBulk(projectId, files);
-
-                // ✅ best-effort verification of each uploaded file
-                if (verifyUpload) {
-                    for (int i = 0; i < files.length(); i++) {
-                        JSONObject f = files.getJSONObject(i);
-
-                        // the server only requires "path" + "content"
-                        String rawPath = f.optString("path", "");
-                        String filename = f.optString("filename", "");
-
-                        String relPath;
-
-                        if (!rawPath.isEmpty()) {
-                            if (!rawPath.endsWith("/")) {
-                                if (!filename.isEmpty()) {
-                                    relPath = rawPath + "/" + filename;
-                                } else {
-                                    relPath = rawPath;
-                                }
-                            } else {
-                                relPath = rawPath + filename;
-                            }
-                        } else {
-                            relPath = filename;
-                        }
-
-                        if (relPath != null && !relPath.isEmpty()) {
-                            verifyFileExists(projectId, relPath);
-                        }
-                    }
-                }
-
+                long t0 = SystemClock.elapsedRealtime();
+                Synced synced = syncProject(files, language, manifestKey, true);
+                String projectId = synced.projectId;
+                lastRunWarm = synced.warm();
+                if (lastRunWarm) listener.log("⏵ remote project already up to date\n");
+                long tCreate = t0 + synced.createMs;
+                long tUpload = SystemClock.elapsedRealtime();
+                long bytes = synced.bytes;
+
+                // The bulk upload has been acknowledged, so the session can start
+                // while the checks run; it is only handed out once they pass.
+                Verification verification = verifyUpload ? verifyAll(projectId, files) : null;
 
                 listener.log("⏵ starting session (" + entrypoint + ")…\n");
                 JSONObject session = startSession(projectId, language, entrypoint, readOnlyFs);
+                long tSession = SystemClock.elapsedRealtime();
 
-                String sessionId = session.optString("id", null);
+                sessionId = session.optString("id", null);
                 String wsPath = session.optString("ws", null);
                 if (wsPath == null) {
                     throw new RuntimeException("Bad /session response: no ws");
                 }
 
+                StringBuilder timings = new StringBuilder("⏱ create ")
+                        .append(tCreate - t0).append("ms · upload ")
+                        .append(tUpload - tCreate).append("ms (").append(bytes)
+                        .append(" bytes) · session ")
+                        .append(tSession - tUpload).append("ms");
+                if (verification != null) {
+                    int bad = verification.await();
+                    timings.append(" · verify ").append(verification.tookMs).append("ms (")
+                            .append(verification.checks.size()).append(" file(s), ")
+                            .append(verification.parallelism).append(" parallel)");
+                    if (bad > 0) {
+                        // server state is unknown now; next run uploads everything
+                        if (manifestKey != null) MANIFESTS.remove(manifestKey);
+                        lastRunWarm = false;
+                        listener.log(timings.append('\n').toString());
+                        throw new RuntimeException(bad + " file(s) failed upload verification");
+                    }
+                }
+                listener.log(timings.append('\n').toString());
+
                 String wsUrl = toWsUrl(wsPath);
                 listener.log("✅ session ready\n");
                 listener.onSessionReady(wsUrl, sessionId);
 
             } catch (Exception e) {
+                // don't leave a container running that nobody will connect to
+                if (sessionId != null) stopSession(sessionId);
                 listener.onError("Live session error: " + e.getMessage());
             }
+            // queued behind this run, so it never delays the session start
+            exec.execute(() -> topUpSpares(language));
+        });
+    }
+
+    /** True if the last run found its files already on the server (pre-warmed). */
+    public boolean lastRunWasWarm() {
+        return lastRunWarm;
+    }
+
+    // ------------------------------------------------------------------------
+    //  remote project sync (shared by Run and pre-warming)
+    // ------------------------------------------------------------------------
+
+    private static final class Synced {
+        final String projectId;
+        final boolean reused;
+        final int changed;
+        final long bytes;
+        final long createMs;
+
+        Synced(String projectId, boolean reused, int changed, long bytes, long createMs) {
+            this.projectId = projectId;
+            this.reused = reused;
+            this.changed = changed;
+            this.bytes = bytes;
+            this.createMs = createMs;
+        }
+
+        boolean warm() {
+            return reused && changed == 0;
+        }
+    }
+
+    private volatile boolean lastRunWarm = false;
+
+    /**
+     * Makes the remote project hold {@code files}: reuses the one in the
+     * manifest and sends only changed files, or takes a spare / creates one
+     * and uploads everything. Calls for one manifest key never overlap.
+     */
+    private Synced syncProject(@NonNull JSONArray files,
+                               @NonNull String language,
+                               @Nullable String manifestKey,
+                               boolean verbose) throws Exception {
+        Object lock = manifestKey != null ? lockFor(manifestKey) : new Object();
+        synchronized (lock) {
+            long t0 = SystemClock.elapsedRealtime();
+            Map<String, String> hashes = hashesOf(files);
+            UploadManifest manifest = manifestKey != null ? MANIFESTS.get(manifestKey) : null;
+
+            // removed files can't be deleted remotely, so those runs start fresh
+            if (manifest != null && hashes.keySet().containsAll(manifest.hashes.keySet())) {
+                JSONArray changed = changedFiles(files, manifest.hashes);
+                if (verbose && changed.length() > 0) {
+                    listener.log("⏵ reusing remote project: " + changed.length() + " of "
+                            + files.length() + " file(s) changed…\n");
+                }
+                try {
+                    if (changed.length() > 0) uploadFilesBulk(manifest.remoteProjectId, changed);
+                    MANIFESTS.put(manifestKey, new UploadManifest(manifest.remoteProjectId, hashes));
+                    return new Synced(manifest.remoteProjectId, true, changed.length(), bytesOf(changed), 0);
+                } catch (HttpTransport.HttpStatusException e) {
+                    if (!e.isGone()) throw e;
+                    if (verbose) listener.log("⏵ remote project is gone, uploading everything…\n");
+                    MANIFESTS.remove(manifestKey);
+                }
+            }
+
+            String projectId = takeSpare(language);
+            if (projectId == null) {
+                if (verbose) listener.log("⏵ creating project…\n");
+                projectId = createProject();
+            }
+            long createMs = SystemClock.elapsedRealtime() - t0;
+
+            if (verbose) listener.log("⏵ uploading " + files.length() + " file(s)…\n");
+            try {
+                uploadFilesBulk(projectId, files);
+            } catch (HttpTransport.HttpStatusException e) {
+                // a spare the server already dropped
+                if (!e.isGone()) throw e;
+                projectId = createProject();
+                uploadFilesBulk(projectId, files);
+            }
+            if (manifestKey != null) {
+                MANIFESTS.put(manifestKey, new UploadManifest(projectId, hashes));
+            }
+            return new Synced(projectId, false, files.length(), bytesOf(files), createMs);
+        }
+    }
+
+    private static final Map<String, Object> SYNC_LOCKS = new ConcurrentHashMap<>();
+
+    private static Object lockFor(String manifestKey) {
+        Object lock = SYNC_LOCKS.get(manifestKey);
+        if (lock == null) {
+            Object fresh = new Object();
+            lock = SYNC_LOCKS.putIfAbsent(manifestKey, fresh);
+            if (lock == null) lock = fresh;
+        }
+        return lock;
+    }
+
+    // ------------------------------------------------------------------------
+    //  pre-warming: project synced and a spare ready before Run is tapped
+    // ------------------------------------------------------------------------
+
+    /** Spare remote projects kept per language; unknown languages get one. */
+    private static final Map<String, Integer> SPARES_PER_LANGUAGE = new HashMap<>();
+
+    static {
+        SPARES_PER_LANGUAGE.put("python", 2);
+        SPARES_PER_LANGUAGE.put("javascript", 1);
+        SPARES_PER_LANGUAGE.put("java", 1);
+    }
+
+    // the backend reaps untouched projects; don't hand out old spares
+    static final long SPARE_TTL_MS = 10 * 60_000L;
+
+    private static final class Spare {
+        final String projectId;
+        final long createdAt = SystemClock.elapsedRealtime();
+
+        Spare(String projectId) {
+            this.projectId = projectId;
+        }
+    }
+
+    // per backend + language
+    private static final Map<String, ArrayDeque<Spare>> SPARES = new ConcurrentHashMap<>();
+
+    static int sparesFor(@NonNull String language) {
+        Integer n = SPARES_PER_LANGUAGE.get(language.toLowerCase(Locale.US));
+        return n != null ? n : 1;
+    }
+
+    private ArrayDeque<Spare> sparesOf(String language) {
+        String key = baseUrl + "|" + language.toLowerCase(Locale.US);
+        ArrayDeque<Spare> q = SPARES.get(key);
+        if (q == null) {
+            ArrayDeque<Spare> fresh = new ArrayDeque<>();
+            q = SPARES.putIfAbsent(key, fresh);
+            if (q == null) q = fresh;
+        }
+        return q;
+    }
+
+    @Nullable
+    private String takeSpare(String language) {
+        ArrayDeque<Spare> q = sparesOf(language);
+        synchronized (q) {
+            long now = SystemClock.elapsedRealtime();
+            Spare s;
+            while ((s = q.pollFirst()) != null) {
+                if (now - s.createdAt < SPARE_TTL_MS) return s.projectId;
+            }
+            return null;
+        }
+    }
+
+    /** Creates spare projects until the language's pool is full. Blocking. */
+    private void topUpSpares(String language) {
+        ArrayDeque<Spare> q = sparesOf(language);
+        int want;
+        synchronized (q) {
+            long now = SystemClock.elapsedRealtime();
+            q.removeIf(s -> now - s.createdAt >= SPARE_TTL_MS);
+            want = sparesFor(language) - q.size();
+        }
+        for (int i = 0; i < want; i++) {
+            try {
+                String id = createProject();
+                synchronized (q) {
+                    q.addLast(new Spare(id));
+                }
+            } catch (Exception e) {
+                Log.d(TAG, "spare project failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Deletes this backend's unused spares, e.g. when the editor goes away.
+     * Spares left by a killed process are reaped by the server once untouched
+     * for a while (see {@link #SPARE_TTL_MS}).
+     */
+    public void releaseSpares() {
+        exec.execute(() -> {
+            String prefix = baseUrl + "|";
+            List<String> ids = new ArrayList<>();
+            for (Map.Entry<String, ArrayDeque<Spare>> e : SPARES.entrySet()) {
+                if (!e.getKey().startsWith(prefix)) continue;
+                ArrayDeque<Spare> q = e.getValue();
+                synchronized (q) {
+                    for (Spare s : q) ids.add(s.projectId);
+                    q.clear();
+                }
+            }
+            for (String id : ids) {
+                try {
+                    HttpTransport.delete(baseUrl + "/projects/" + id);
+                } catch (Exception e) {
+                    Log.d(TAG, "spare " + id + " not deleted: " + e.getMessage());
+                }
+            }
         });
     }
 
+    /**
+     * Speculative, quiet version of the first half of a run: syncs the files
+     * to the remote project and fills the spare pool. With nothing to upload
+     * it just touches the project, which keeps the connection and the backend
+     * awake and notices a project the server has dropped.
+     */
+    public void prepare(@NonNull JSONArray files,
+                        @NonNull String language,
+                        @NonNull String editorProjectId) {
+        String manifestKey = manifestKey(editorProjectId);
+        exec.execute(() -> {
+            long t0 = SystemClock.elapsedRealtime();
+            try {
+                Synced synced = syncProject(files, language, manifestKey, false);
+                if (synced.warm() && !touch(synced.projectId, files)) {
+                    MANIFESTS.remove(manifestKey);
+                    synced = syncProject(files, language, manifestKey, false);
+                }
+                Log.d(TAG, "warm " + manifestKey + ": " + synced.changed + " file(s), "
+                        + synced.bytes + " bytes in " + (SystemClock.elapsedRealtime() - t0) + "ms");
+                topUpSpares(language);
+            } catch (Exception e) {
+                Log.d(TAG, "warm failed: " + e.getMessage());
+            }
+        });
+    }
+
+    // false if the server no longer has the project
+    private boolean touch(String projectId, JSONArray files) throws Exception {
+        JSONObject f = files.length() > 0 ? files.optJSONObject(0) : null;
+        if (f == null) return true;
+        try {
+            HttpTransport.getJson(baseUrl + "/projects/" + projectId + "/files?path="
+                    + URLEncoder.encode(relPathOf(f), "UTF-8") + "&stat=1");
+            return true;
+        } catch (HttpTransport.HttpStatusException e) {
+            if (e.isGone()) return false;
+            throw e;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //  delta upload: what each remote project is known to hold
+    // ------------------------------------------------------------------------
+
+    private static final class UploadManifest {
+        final String remoteProjectId;
+        final Map<String, String> hashes;     // relPath -> sha256 of content
+
+        UploadManifest(String remoteProjectId, Map<String, String> hashes) {
+            this.remoteProjectId = remoteProjectId;
+            this.hashes = hashes;
+        }
+    }
+
+    // per backend and editor project, for the life of the process
+    private static final Map<String, UploadManifest> MANIFESTS = new ConcurrentHashMap<>();
+
+    @Nullable
+    private String manifestKey(@Nullable String editorProjectId) {
+        return editorProjectId != null ? baseUrl + "|" + editorProjectId : null;
+    }
+
+    private static Map<String, String> hashesOf(JSONArray files) {
+        Map<String, String> out = new HashMap<>();
+        for (int i = 0; i < files.length(); i++) {
+            JSONObject f = files.optJSONObject(i);
+            if (f == null) continue;
+            out.put(relPathOf(f), sha256Hex(f.optString("content", "").getBytes(StandardCharsets.UTF_8)));
+        }
+        return out;
+    }
+
+    private static JSONArray changedFiles(JSONArray files, Map<String, String> known) {
+        JSONArray out = new JSONArray();
+        for (int i = 0; i < files.length(); i++) {
+            JSONObject f = files.optJSONObject(i);
+            if (f == null) continue;
+            String hash = sha256Hex(f.optString("content", "").getBytes(StandardCharsets.UTF_8));
+            if (!hash.equals(known.get(relPathOf(f)))) out.put(f);
+        }
+        return out;
+    }
+
+    private static long bytesOf(JSONArray files) {
+        long n = 0;
+        for (int i = 0; i < files.length(); i++) {
+            JSONObject f = files.optJSONObject(i);
+            if (f != null) n += f.optString("content", "").getBytes(StandardCharsets.UTF_8).length;
+        }
+        return n;
+    }
+
+    // ------------------------------------------------------------------------
+    //  upload verification
+    // ------------------------------------------------------------------------
+
+    // verification GETs in flight at once
+    static final int VERIFY_PARALLELISM = 4;
+
+    private final class Verification {
+        final List<Future<String>> checks = new ArrayList<>();   // null = ok, else a reason
+        final ExecutorService pool;
+        final int parallelism;
+        final long started = SystemClock.elapsedRealtime();
+        long tookMs;
+
+        Verification(int parallelism) {
+            this.parallelism = parallelism;
+            AtomicInteger n = new AtomicInteger();
+            this.pool = Executors.newFixedThreadPool(parallelism, r -> {
+                Thread t = new Thread(r, "verify-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        /** Blocks until every check is done; returns how many failed. */
+        int await() throws InterruptedException {
+            int bad = 0;
+            try {
+                for (Future<String> f : checks) {
+                    String problem;
+                    try {
+                        problem = f.get();
+                    } catch (ExecutionException e) {
+                        Throwable c = e.getCause() != null ? e.getCause() : e;
+                        problem = c.getMessage();
+                    }
+                    if (problem != null) {
+                        bad++;
+                        listener.log("⚠ " + problem + "\n");
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+                tookMs = SystemClock.elapsedRealtime() - started;
+            }
+            return bad;
+        }
+    }
+
+    private Verification verifyAll(@NonNull String projectId, @NonNull JSONArray files) {
+        int n = files.length();
+        Verification v = new Verification(Math.max(1, Math.min(VERIFY_PARALLELISM, n)));
+        for (int i = 0; i < n; i++) {
+            JSONObject f = files.optJSONObject(i);
+            if (f == null) continue;
+            String relPath = relPathOf(f);
+            if (relPath.isEmpty()) continue;
+            String content = f.optString("content", "");
+            v.checks.add(v.pool.submit(() -> verifyFile(projectId, relPath, content)));
+        }
+        return v;
+    }
+
+    // "path" may be a directory ("src/") with the name in "filename"
+    static String relPathOf(JSONObject f) {
+        String rawPath = f.optString("path", "");
+        String filename = f.optString("filename", "");
+        if (rawPath.isEmpty()) return filename;
+        if (rawPath.endsWith("/")) return rawPath + filename;
+        return filename.isEmpty() ? rawPath : rawPath + "/" + filename;
+    }
+
+    /**
+     * Asks for the file's stat (size / sha256). A server that ignores
+     * {@code stat=1} answers with the content, which is hashed here instead.
+     * Returns null when the server copy matches.
+     */
+    @Nullable
+    private String verifyFile(@NonNull String projectId,
+                              @NonNull String relPath,
+                              @NonNull String content) throws Exception {
+        byte[] local = content.getBytes(StandardCharsets.UTF_8);
+        String url = baseUrl + "/projects/" + projectId + "/files?path="
+                + URLEncoder.encode(relPath, "UTF-8") + "&stat=1";
+        JSONObject obj = HttpTransport.getJson(url);
+
+        String remoteHash = obj.optString("sha256", null);
+        if (remoteHash != null) {
+            return remoteHash.equalsIgnoreCase(sha256Hex(local))
+                    ? null : relPath + ": hash mismatch";
+        }
+        if (obj.has("size")) {
+            long size = obj.optLong("size", -1);
+            return size == local.length
+                    ? null : relPath + ": size " + size + " != " + local.length;
+        }
+        String c = obj.optString("content", null);
+        if (c == null) return relPath + ": missing on server";
+        return sha256Hex(c.getBytes(StandardCharsets.UTF_8)).equals(sha256Hex(local))
+                ? null : relPath + ": content mismatch";
+    }
+
+    static String sha256Hex(byte[] data) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder sb = new StringBuilder(d.length * 2);
+            for (byte b : d) sb.append(String.format(Locale.US, "%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
 
     /**
      * stop/cleanup remote container
@@ -117,7 +553,7 @@ public class LiveRunManager {
         }
         exec.execute(() -> {
             try {
-                httpDelete(baseUrl + "/session/" + sessionId);
+                HttpTransport.delete(baseUrl + "/session/" + sessionId);
                 listener.log("⏹ remote session closed\n");
                 listener.onStopped();
             } catch (Exception e) {
@@ -128,52 +564,48 @@ public class LiveRunManager {
     }
 
     // ------------------------------------------------------------------------
-    //  internal HTTP helpers (moved from fragment)
+    //  backend calls (HttpTransport: shared pool, one warm connection)
     // ------------------------------------------------------------------------
 
     private String createProject() throws Exception {
-        JSONObject res = httpPostJson(baseUrl + "/projects", new JSONObject());
+        JSONObject res = HttpTransport.postJson(baseUrl + "/projects", new JSONObject());
         String id = res.optString("projectId", null);
         if (id == null) throw new RuntimeException("No projectId");
         return id;
     }
 
-    private void uploadFile(@NonNull String projectId,
-                            @NonNull String relPath,
-                            @NonNull String content) throws Exception {
-        JSONObject body = new JSONObject();
-        body.put("path", relPath);
-        body.put("content", content);
-        httpPutJson(baseUrl + "/projects/" + projectId + "/files", body);
-    }
+    // per backend: does /files/bulk take tar+gzip? (absent = not tried yet)
+    private static final Map<String, Boolean> TAR_SUPPORTED = new ConcurrentHashMap<>();
 
     private void uploadFilesBulk(@NonNull String projectId,
                                  @NonNull JSONArray files) throws Exception {
-        JSONObject body = new JSONObject();
-        body.put("files", files);
-        httpPostJson(baseUrl + "/projects/" + projectId + "/files/bulk", body);
-    }
+        String url = baseUrl + "/projects/" + projectId + "/files/bulk";
 
-    private boolean verifyFileExists(@NonNull String projectId,
-                                     @NonNull String relPath) {
-        try {
-            String encodedPath;
-            // Old overload: works on all API levels you support
-            encodedPath = URLEncoder.encode(relPath, StandardCharsets.UTF_8);
-
-            String url = baseUrl + "/projects/" + projectId + "/files?path=" + encodedPath;
-            JSONObject obj = httpGetJsonObject(url);
-            String c = obj.optString("content", null);
-            if (c != null) {
-                listener.log("Uploaded " + relPath + " (" + c.length() + " bytes)\n");
-                return true;
+        if (!Boolean.FALSE.equals(TAR_SUPPORTED.get(baseUrl)) && TarUpload.canEncode(files)) {
+            try {
+                JSONObject res = HttpTransport.postForJson(url, TarUpload.gzipBody(files), "gzip");
+                // only trust it if the server says it unpacked a tar
+                if (TarUpload.FORMAT.equals(res.optString("format"))) {
+                    TAR_SUPPORTED.put(baseUrl, true);
+                    return;
+                }
+                TAR_SUPPORTED.put(baseUrl, false);
+            } catch (HttpTransport.HttpStatusException e) {
+                if (e.isGone()) throw e;
+                if (e.code != 400 && e.code != 415 && e.code != 422) throw e;
+                TAR_SUPPORTED.put(baseUrl, false);
             }
-        } catch (Exception e) {
-            listener.onError("verifyFileExists: " + e.getMessage());
+            listener.log("⏵ server has no tar upload, sending JSON\n");
         }
-        return false;
-    }
 
+        // streamed: file contents go to the socket without one big JSON string
+        HttpTransport.postJson(url, w -> {
+            w.beginObject();
+            w.name("files");
+            HttpTransport.writeValue(w, files);
+            w.endObject();
+        });
+    }
 
     private JSONObject startSession(@NonNull String projectId,
                                     @NonNull String language,
@@ -186,7 +618,7 @@ public class LiveRunManager {
         body.put("mainPath", mainPath);
         body.put("projectId", projectId);
         body.put("readOnlyFs", readOnlyFs);
-        return httpPostJson(baseUrl + "/session", body);
+        return HttpTransport.postJson(baseUrl + "/session", body);
     }
 
     private String toWsUrl(String wsPath) {
@@ -194,94 +626,4 @@ public class LiveRunManager {
                 ? baseUrl.replaceFirst("^https://", "wss://")
                 : baseUrl.replaceFirst("^http://", "ws://")) + wsPath;
     }
-
-    // ---------- raw HTTP ----------
-    private JSONObject httpGetJsonObject(String urlStr) throws Exception {
-        HttpURLConnection conn = (HttpURLConnection) new URL(urlStr).openConnection();
-        conn.setRequestMethod("GET");
-        conn.setConnectTimeout(15000);
-        conn.setReadTimeout(30000);
-        conn.connect();
-        int code = conn.getResponseCode();
-        InputStream is = (code >= 200 && code < 300) ? conn.getInputStream() : conn.getErrorStream();
-        String body = readAll(is);
-        conn.disconnect();
-        if (code < 200 || code >= 300)
-            throw new RuntimeException("GET " + urlStr + " -> " + code + ": " + body);
-        return new JSONObject(body);
-    }
-
-    private JSONObject httpPostJson(String urlStr, JSONObject json) throws Exception {
-        HttpURLConnection conn = (HttpURLConnection) new URL(urlStr).openConnection();
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setConnectTimeout(15000);
-        conn.setReadTimeout(60000);
-        conn.setDoOutput(true);
-
-        OutputStream os = conn.getOutputStream();
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
-        writer.write(json.toString());
-        writer.flush();
-        writer.close();
-        os.close();
-
-        int code = conn.getResponseCode();
-        InputStream is = (code >= 200 && code < 300) ? conn.getInputStream() : conn.getErrorStream();
-        String body = readAll(is);
-        conn.disconnect();
-        if (code < 200 || code >= 300)
-            throw new RuntimeException("POST " + urlStr + " -> " + code + ": " + body);
-        return new JSONObject(body);
-    }
-
-    private JSONObject httpPutJson(String urlStr, JSONObject json) throws Exception {
-        HttpURLConnection conn = (HttpURLConnection) new URL(urlStr).openConnection();
-        conn.setRequestMethod("PUT");
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setConnectTimeout(15000);
-        conn.setReadTimeout(60000);
-        conn.setDoOutput(true);
-
-        OutputStream os = conn.getOutputStream();
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
-        writer.write(json.toString());
-        writer.flush();
-        writer.close();
-        os.close();
-
-        int code = conn.getResponseCode();
-        InputStream is = (code >= 200 && code < 300) ? conn.getInputStream() : conn.getErrorStream();
-        String body = readAll(is);
-        conn.disconnect();
-        if (code < 200 || code >= 300)
-            throw new RuntimeException("PUT " + urlStr + " -> " + code + ": " + body);
-        return new JSONObject(body);
-    }
-
-    private void httpDelete(String urlStr) throws Exception {
-        HttpURLConnection conn = (HttpURLConnection) new URL(urlStr).openConnection();
-        conn.setRequestMethod("DELETE");
-        conn.setConnectTimeout(15000);
-        conn.setReadTimeout(30000);
-        conn.connect();
-        int code = conn.getResponseCode();
-        InputStream is = (code >= 200 && code < 300) ? conn.getInputStream() : conn.getErrorStream();
-        if (is != null) {
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-                while (br.readLine() != null) { /* drain */ }
-            }
-        }
-        conn.disconnect();
-    }
-
-    private String readAll(InputStream is) throws Exception {
-        if (is == null) return "";
-        BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-        StringBuilder sb = new StringBuilder();
-        String line;
-        while ((line = br.readLine()) != null) sb.append(line).append('\n');
-        br.close();
-        return sb.toString();
-    }
 }
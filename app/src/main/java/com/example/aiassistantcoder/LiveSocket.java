@@ -0,0 +1,250 @@
+package com.example.aiassistantcoder;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okio.ByteString;
+
+/**
+ * The live session's WebSocket, kept attached across network drops.
+ * <p>
+ * When the socket fails it redials the same session URL with exponential
+ * backoff. Resuming needs frames the server tags as
+ * {@code {"seq":N,"data":"..."}}: the redial asks for output after the last
+ * tag seen ({@code resume=N}) and replayed tags are dropped. Plain text
+ * frames are passed through but can't be resumed from, so a session that
+ * only sent those redials without {@code resume}. Input typed while the
+ * socket is down is queued and sent, in order, once it is back.
+ * The session is only given up when the server says it is gone (the
+ * handshake answers 404 / 410) or the retries run out. A link that goes
+ * silent is noticed by the client's ping interval
+ * ({@link HttpTransport#liveSocketClient()}): a missed pong fails the
+ * socket like any other drop.
+ * <p>
+ * Callbacks arrive on OkHttp / scheduler threads.
+ */
+public class LiveSocket {
+
+    private static final String TAG = "LiveSocket";
+
+    public interface Listener {
+        /** @param resumed true when this is a reconnect to the same session */
+        void onOpen(boolean resumed);
+
+        void onOutput(@NonNull String text);
+
+        void onReconnecting(int attempt, long delayMs, @NonNull String why);
+
+        /** Server closed the session (program exited or it was stopped). */
+        void onClosed(int code, @NonNull String reason);
+
+        /** Not coming back; start a new session to continue. */
+        void onLost(@NonNull String why);
+    }
+
+    static final long BACKOFF_START_MS = 500L;
+    static final long BACKOFF_MAX_MS = 8_000L;
+    static final int MAX_ATTEMPTS = 6;
+    // a pong missing by the next ping fails the socket, so a dead link is seen in 15-30 s
+    static final long PING_INTERVAL_MS = 15_000L;
+    // stdin kept while disconnected; older input is dropped past this
+    static final int MAX_QUEUED_CHARS = 16 * 1024;
+
+    private final OkHttpClient client;
+    private final String wsUrl;
+    private final Listener listener;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "live-reconnect");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // guarded by this
+    private @Nullable WebSocket socket;
+    private boolean open = false;
+    private boolean closed = false;
+    private boolean everOpened = false;
+    private int attempt = 0;
+    private long lastSeq = 0;     // last seq tag seen; 0 = nothing to resume from
+    private final ArrayDeque<String> pendingInput = new ArrayDeque<>();
+    private int pendingChars = 0;
+
+    public LiveSocket(@NonNull OkHttpClient client,
+                      @NonNull String wsUrl,
+                      @NonNull Listener listener) {
+        this.client = client;
+        this.wsUrl = wsUrl;
+        this.listener = listener;
+    }
+
+    public synchronized void connect() {
+        if (closed) return;
+        String url = wsUrl;
+        if (lastSeq > 0) url += (wsUrl.contains("?") ? "&" : "?") + "resume=" + lastSeq;
+        socket = client.newWebSocket(new Request.Builder().url(url).build(), new Callbacks());
+    }
+
+    /** Sends stdin now, or once the socket is back. */
+    public synchronized void send(@NonNull String text) {
+        if (closed) return;
+        if (open && socket != null && pendingInput.isEmpty() && socket.send(text)) return;
+        pendingInput.addLast(text);
+        pendingChars += text.length();
+        while (pendingChars > MAX_QUEUED_CHARS && pendingInput.size() > 1) {
+            pendingChars -= pendingInput.removeFirst().length();
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    public synchronized void close(int code, @Nullable String reason) {
+        closed = true;
+        open = false;
+        timer.shutdownNow();
+        if (socket != null) {
+            try {
+                socket.close(code, reason);
+            } catch (Throwable ignore) {
+            }
+            socket = null;
+        }
+    }
+
+    // ---- internals ----
+
+    private synchronized void flushInput(WebSocket ws) {
+        while (!pendingInput.isEmpty()) {
+            String next = pendingInput.peekFirst();
+            if (!ws.send(next)) return;
+            pendingInput.removeFirst();
+            pendingChars -= next.length();
+        }
+    }
+
+    // null = drop (a frame replayed from before lastSeq)
+    @Nullable
+    private synchronized String accept(@NonNull String frame) {
+        if (frame.startsWith("{\"seq\"")) {
+            try {
+                JSONObject o = new JSONObject(frame);
+                long seq = o.getLong("seq");
+                if (seq <= lastSeq) return null;
+                lastSeq = seq;
+                return o.optString("data", "");
+            } catch (Exception ignored) {
+                // not ours; plain output that happens to look like JSON
+            }
+        }
+        // untagged: counting these would resume at a position the server never named
+        return frame;
+    }
+
+    private void scheduleReconnect(@NonNull String why) {
+        long delay;
+        int n;
+        synchronized (this) {
+            if (closed) return;
+            open = false;
+            socket = null;
+            n = ++attempt;
+            if (n > MAX_ATTEMPTS) {
+                closed = true;
+                timer.shutdownNow();
+                listener.onLost(why);
+                return;
+            }
+            long base = Math.min(BACKOFF_MAX_MS, BACKOFF_START_MS << (n - 1));
+            // jitter so several clients don't redial in lockstep
+            delay = base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+        }
+        Log.d(TAG, "reconnect #" + n + " in " + delay + "ms: " + why);
+        listener.onReconnecting(n, delay, why);
+        try {
+            timer.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+        } catch (Exception ignored) {
+            // closed meanwhile
+        }
+    }
+
+    private synchronized void lost(@NonNull String why) {
+        if (closed) return;
+        closed = true;
+        open = false;
+        socket = null;
+        timer.shutdownNow();
+        listener.onLost(why);
+    }
+
+    private synchronized boolean isCurrent(WebSocket ws) {
+        return ws == socket && !closed;
+    }
+
+    private final class Callbacks extends WebSocketListener {
+        @Override
+        public void onOpen(@NonNull WebSocket ws, @NonNull Response response) {
+            boolean resumed;
+            synchronized (LiveSocket.this) {
+                if (!isCurrent(ws)) return;
+                resumed = everOpened;
+                everOpened = true;
+                open = true;
+                attempt = 0;
+                flushInput(ws);
+            }
+            listener.onOpen(resumed);
+        }
+
+        @Override
+        public void onMessage(@NonNull WebSocket ws, @NonNull String text) {
+            if (!isCurrent(ws)) return;
+            String out = accept(text);
+            if (out != null && !out.isEmpty()) listener.onOutput(out);
+        }
+
+        @Override
+        public void onMessage(@NonNull WebSocket ws, @NonNull ByteString bytes) {
+            onMessage(ws, bytes.utf8());
+        }
+
+        @Override
+        public void onClosing(@NonNull WebSocket ws, int code, @NonNull String reason) {
+            ws.close(1000, null);
+            synchronized (LiveSocket.this) {
+                if (!isCurrent(ws)) return;
+                closed = true;
+                open = false;
+                socket = null;
+                timer.shutdownNow();
+            }
+            listener.onClosed(code, reason);
+        }
+
+        @Override
+        public void onFailure(@NonNull WebSocket ws, @NonNull Throwable t, @Nullable Response r) {
+            if (!isCurrent(ws)) return;
+            // the handshake was answered: the session itself is gone
+            if (r != null && (r.code() == 404 || r.code() == 410)) {
+                lost("session ended on the server (" + r.code() + ")");
+                return;
+            }
+            scheduleReconnect(t.getMessage() != null ? t.getMessage() : t.toString());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.aiassistantcoder;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+
+import java.util.Locale;
+
+/**
+ * Gets the live runner ready while the user edits.
+ * <p>
+ * A short pause in typing syncs the editor files to the remote project (see
+ * {@link LiveRunManager#prepare}), so tapping Run only has to start the
+ * session. While the editor stays open the project is touched every
+ * {@link #KEEPALIVE_MS}, which keeps the pooled connection and the backend
+ * awake; after {@link #IDLE_TIMEOUT_MS} without edits warming stops until the
+ * next edit. Also records Run-to-first-output times, split warm / cold.
+ * Main thread only.
+ */
+public class LiveWarmer {
+
+    private static final String TAG = "LiveWarmer";
+
+    public interface Host {
+        @NonNull
+        LiveRunManager manager();
+
+        /** A session is starting or connected; its files must not change under it. */
+        boolean isRunning();
+
+        /** False while the project runs elsewhere (HTML preview); nothing is warmed then. */
+        boolean wantsLive();
+
+        @NonNull
+        JSONArray files();
+
+        @NonNull
+        String language();
+
+        /** The editor project's id; null until it has one, and nothing is warmed. */
+        @Nullable
+        String projectId();
+    }
+
+    static final long WARM_DEBOUNCE_MS = 2_000L;
+    // under the HTTP pool's 5 minute keep-alive
+    static final long KEEPALIVE_MS = 4 * 60_000L;
+    static final long IDLE_TIMEOUT_MS = 15 * 60_000L;
+
+    private final Host host;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private long lastEditAt = 0;
+
+    // ---- first-output metrics ----
+    private long runStartedAt = 0;
+    private int warmRuns, coldRuns;
+    private long warmTotalMs, coldTotalMs;
+
+    private final Runnable warm = this::warmNow;
+
+    public LiveWarmer(@NonNull Host host) {
+        this.host = host;
+    }
+
+    /** Editor content or file list changed. */
+    public void onEdited() {
+        lastEditAt = SystemClock.elapsedRealtime();
+        handler.removeCallbacks(warm);
+        handler.postDelayed(warm, WARM_DEBOUNCE_MS);
+    }
+
+    /**
+     * Editor went away; the next {@link #onEdited()} starts again. Spare
+     * projects nobody is going to run are deleted on the server.
+     */
+    public void stop() {
+        handler.removeCallbacks(warm);
+        host.manager().releaseSpares();
+    }
+
+    private void warmNow() {
+        handler.removeCallbacks(warm);
+        if (SystemClock.elapsedRealtime() - lastEditAt > IDLE_TIMEOUT_MS) {
+            Log.d(TAG, "idle, warming paused");
+            return;
+        }
+        if (!host.wantsLive()) {
+            Log.d(TAG, "not a live project, warming paused");
+            return;
+        }
+        String projectId = host.projectId();
+        JSONArray files = host.files();
+        if (projectId != null && files.length() > 0 && !host.isRunning()) {
+            host.manager().prepare(files, host.language(), projectId);
+        }
+        handler.postDelayed(warm, KEEPALIVE_MS);
+    }
+
+    // ---- Run-to-first-output ----
+
+    public void onRunRequested() {
+        runStartedAt = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * First frame of program output arrived; returns a line for the console,
+     * or null if no run was being timed.
+     */
+    @Nullable
+    public String onFirstOutput() {
+        if (runStartedAt == 0) return null;
+        long ms = SystemClock.elapsedRealtime() - runStartedAt;
+        runStartedAt = 0;
+
+        boolean wasWarm = host.manager().lastRunWasWarm();
+        if (wasWarm) {
+            warmRuns++;
+            warmTotalMs += ms;
+        } else {
+            coldRuns++;
+            coldTotalMs += ms;
+        }
+        Log.d(TAG, String.format(Locale.US, "first output %dms (%s) · avg warm %s · avg cold %s",
+                ms, wasWarm ? "warm" : "cold",
+                avg(warmTotalMs, warmRuns), avg(coldTotalMs, coldRuns)));
+        return String.format(Locale.US, "⏱ first output after %dms (%s)\n", ms, wasWarm ? "warm" : "cold");
+    }
+
+    private static String avg(long total, int n) {
+        return n == 0 ? "-" : (total / n) + "ms/" + n;
+    }
+}
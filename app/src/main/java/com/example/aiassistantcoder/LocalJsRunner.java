@@ -0,0 +1,337 @@
+package com.example.aiassistantcoder;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONObject;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.LambdaFunction;
+import org.mozilla.javascript.RhinoException;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs JavaScript projects on the device with Rhino, no network involved.
+ * <p>
+ * Each run gets a fresh scope on one worker thread. {@code require} reads
+ * from a snapshot of the editor files (see assets/localjs/bootstrap.js),
+ * console output is streamed to {@link Output}, and the run is stopped when
+ * it exceeds {@link #CPU_LIMIT_MS} of thread CPU time, {@link #WALL_LIMIT_MS}
+ * overall (pending timers included), {@link #MEMORY_LIMIT_BYTES} of heap
+ * growth or {@link #MAX_STACK_DEPTH} nested calls, or when it is cancelled.
+ * <p>
+ * Rhino parses ES2015 only in part (no classes, default parameters, async or
+ * ES modules). Every file is parsed before the run starts; a project that
+ * doesn't parse, or a device where the engine can't load, gets
+ * {@link Output#onUnsupported} so the caller can use the live runner.
+ */
+public class LocalJsRunner {
+
+    private static final String TAG = "LocalJsRunner";
+
+    public interface Output {
+        void stdout(@NonNull String text);
+
+        void stderr(@NonNull String text);
+
+        /** @param error null for a normal exit */
+        void onExit(int code, @Nullable String error, long startMs, long cpuMs, long wallMs);
+
+        /** Nothing was run; the project needs the live runner. */
+        void onUnsupported(@NonNull String why);
+    }
+
+    static final long CPU_LIMIT_MS = 5_000L;
+    static final long WALL_LIMIT_MS = 60_000L;
+    static final long MEMORY_LIMIT_BYTES = 64L * 1024 * 1024;
+    static final int MAX_STACK_DEPTH = 2_000;
+    // limits and cancellation are checked every this many interpreter instructions
+    static final int CHECK_EVERY = 10_000;
+
+    static final int EXIT_CANCELLED = 130;
+    static final int EXIT_LIMIT = 124;
+
+    private final @Nullable android.content.Context appContext;
+    private final LongSupplier threadCpuNanos;
+    private @Nullable String bootstrap;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        // natives called from JS (Array.prototype.map, require) recurse on this thread
+        Thread t = new Thread(null, r, "local-js", 16L * 1024 * 1024);
+        t.setDaemon(true);
+        return t;
+    });
+
+    public LocalJsRunner(@NonNull android.content.Context context) {
+        this.appContext = context.getApplicationContext();
+        this.threadCpuNanos = Debug::threadCpuTimeNanos;
+    }
+
+    LocalJsRunner(@NonNull String bootstrap, @NonNull LongSupplier threadCpuNanos) {
+        this.appContext = null;
+        this.bootstrap = bootstrap;
+        this.threadCpuNanos = threadCpuNanos;
+    }
+
+    /** A started run; {@link #cancel()} stops it at the next limit check. */
+    public static final class Run {
+        private volatile boolean cancelled = false;
+        private Future<?> future;
+
+        public void cancel() {
+            cancelled = true;
+            if (future != null) future.cancel(true);   // wakes a timer sleep
+        }
+
+        public boolean isDone() {
+            return future != null && future.isDone();
+        }
+    }
+
+    /**
+     * @param files path -> content; copied, so the editor can keep changing
+     * @param entry path of the file to run, relative to the project root
+     */
+    @NonNull
+    public Run run(@NonNull Map<String, String> files,
+                   @NonNull String entry,
+                   @NonNull Output out) {
+        Map<String, String> snapshot = new HashMap<>(files);
+        Run run = new Run();
+        run.future = worker.submit(() -> execute(run, snapshot, entry, out));
+        return run;
+    }
+
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    // ------------------------------------------------------------------------
+
+    // Thrown from the instruction observer and process.exit; a Java Error, so
+    // script try/catch can't swallow it.
+    private static final class Stop extends Error {
+        final int code;
+        final @Nullable String why;
+
+        Stop(int code, @Nullable String why) {
+            super(why, null, false, false);
+            this.code = code;
+            this.why = why;
+        }
+    }
+
+    private final class Limits extends ContextFactory {
+        private final Run run;
+        private final long cpu0, wall0, heap0;
+
+        Limits(Run run, long cpu0, long wall0) {
+            this.run = run;
+            this.cpu0 = cpu0;
+            this.wall0 = wall0;
+            this.heap0 = heapUsed();
+        }
+
+        @Override
+        protected void observeInstructionCount(Context cx, int instructionCount) {
+            if (run.cancelled || Thread.currentThread().isInterrupted()) {
+                throw new Stop(EXIT_CANCELLED, "cancelled");
+            }
+            if (cpuMs(cpu0) > CPU_LIMIT_MS) {
+                throw new Stop(EXIT_LIMIT, "CPU limit (" + CPU_LIMIT_MS / 1000 + "s) exceeded");
+            }
+            if (SystemClock.elapsedRealtime() - wall0 > WALL_LIMIT_MS) {
+                throw new Stop(EXIT_LIMIT, "time limit (" + WALL_LIMIT_MS / 1000 + "s) exceeded");
+            }
+            if (heapUsed() - heap0 > MEMORY_LIMIT_BYTES) {
+                throw new Stop(EXIT_LIMIT, memoryLimitMessage());
+            }
+        }
+    }
+
+    private void execute(Run run, Map<String, String> files, String entry, Output out) {
+        final long wall0 = SystemClock.elapsedRealtime();
+        final long cpu0 = threadCpuNanos.getAsLong();
+        long startMs = 0;
+        int code = 0;
+        String error = null;
+
+        Context cx;
+        try {
+            cx = new Limits(run, cpu0, wall0).enterContext();
+        } catch (LinkageError e) {
+            Log.d(TAG, "engine unavailable: " + e);
+            out.onUnsupported("JavaScript engine unavailable on this device");
+            return;
+        }
+        try {
+            configure(cx);
+            cx.setInstructionObserverThreshold(CHECK_EVERY);
+            cx.setMaximumInterpreterStackDepth(MAX_STACK_DEPTH);
+
+            String why = firstParseError(cx, files);
+            if (why != null) {
+                out.onUnsupported(why);
+                return;
+            }
+
+            ScriptableObject scope = cx.initStandardObjects();
+            installNatives(scope, files, out);
+            cx.evaluateString(scope, bootstrap(), "bootstrap.js", 1, null);
+            startMs = SystemClock.elapsedRealtime() - wall0;
+
+            cx.evaluateString(scope, "__main(" + JSONObject.quote(entry) + ")", "<main>", 1, null);
+            cx.processMicrotasks();
+
+            // event loop: only timers; there is no I/O to wait on
+            while (!run.cancelled) {
+                long wait = (long) Context.toNumber(
+                        cx.evaluateString(scope, "__nextTimer()", "<timers>", 1, null));
+                if (wait < 0) break;
+                if (SystemClock.elapsedRealtime() - wall0 + wait > WALL_LIMIT_MS) {
+                    code = EXIT_LIMIT;
+                    error = "time limit (" + WALL_LIMIT_MS / 1000 + "s) reached with timers pending";
+                    break;
+                }
+                if (wait > 0) Thread.sleep(wait);
+                cx.evaluateString(scope, "__fireTimer()", "<timers>", 1, null);
+                cx.processMicrotasks();
+            }
+            if (run.cancelled && error == null) {
+                code = EXIT_CANCELLED;
+                error = "cancelled";
+            }
+        } catch (Stop s) {
+            code = s.code;
+            error = s.why;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            code = EXIT_CANCELLED;
+            error = "cancelled";
+        } catch (RhinoException e) {
+            code = 1;
+            error = describe(e);
+        } catch (RuntimeException e) {
+            code = 1;
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+        } catch (OutOfMemoryError e) {
+            // one allocation bigger than the heap; the scope is dropped with the run
+            code = EXIT_LIMIT;
+            error = memoryLimitMessage();
+        } finally {
+            Context.exit();
+        }
+
+        long cpuMs = cpuMs(cpu0);
+        long wallMs = SystemClock.elapsedRealtime() - wall0;
+        Log.d(TAG, "run " + entry + ": exit " + code + ", start " + startMs + "ms, cpu "
+                + cpuMs + "ms, wall " + wallMs + "ms");
+        out.onExit(code, error, startMs, cpuMs, wallMs);
+    }
+
+    // interpreted (Android can't load generated classes), newest syntax Rhino has
+    private static void configure(Context cx) {
+        cx.setOptimizationLevel(-1);
+        cx.setLanguageVersion(Context.VERSION_ES6);
+    }
+
+    /** "path:line: message" for the first .js file Rhino can't parse, or null. */
+    @Nullable
+    static String firstParseError(@NonNull Context cx, @NonNull Map<String, String> files) {
+        for (Map.Entry<String, String> f : files.entrySet()) {
+            String path = f.getKey();
+            if (!path.endsWith(".js") && !path.endsWith(".cjs")) continue;
+            try {
+                cx.compileString(moduleWrapper(f.getValue()), path, 1, null);
+            } catch (EvaluatorException e) {
+                return path + ":" + e.lineNumber() + ": " + e.details();
+            }
+        }
+        return null;
+    }
+
+    // same shape bootstrap.js runs a module in; starts on line 1 so line numbers match
+    private static String moduleWrapper(String src) {
+        return "function __module(exports, require, module, __filename, __dirname) {"
+                + src.replaceFirst("^#!.*", "") + "\n}";
+    }
+
+    private static void installNatives(ScriptableObject scope, Map<String, String> files, Output out) {
+        ScriptableObject.putProperty(scope, "__write", new LambdaFunction(scope, "__write", 2,
+                (cx, s, self, args) -> {
+                    int fd = args.length > 0 ? (int) Context.toNumber(args[0]) : 1;
+                    String text = args.length > 1 ? Context.toString(args[1]) : "";
+                    if (fd == 2) out.stderr(text);
+                    else out.stdout(text);
+                    return Undefined.instance;
+                }));
+
+        ScriptableObject.putProperty(scope, "__read", new LambdaFunction(scope, "__read", 1,
+                (cx, s, self, args) -> {
+                    String path = args.length > 0 ? Context.toString(args[0]) : "";
+                    String src = files.get(path);
+                    return src != null ? src : null;
+                }));
+
+        // compiled under the module's own path, so errors and stacks name it
+        ScriptableObject.putProperty(scope, "__compile", new LambdaFunction(scope, "__compile", 2,
+                (cx, s, self, args) -> cx.compileFunction(s, moduleWrapper(Context.toString(args[1])),
+                        Context.toString(args[0]), 1, null)));
+
+        ScriptableObject.putProperty(scope, "__exit", new LambdaFunction(scope, "__exit", 1,
+                (cx, s, self, args) -> {
+                    throw new Stop(args.length > 0 ? (int) Context.toNumber(args[0]) : 0, null);
+                }));
+    }
+
+    private static String describe(RhinoException e) {
+        StringBuilder sb = new StringBuilder(e.details());
+        String stack = e.getScriptStackTrace();
+        if (stack != null && !stack.isEmpty()) sb.append('\n').append(stack.trim());
+        return sb.toString();
+    }
+
+    private static String memoryLimitMessage() {
+        return "memory limit (" + MEMORY_LIMIT_BYTES / (1024 * 1024) + " MB) exceeded";
+    }
+
+    private static long heapUsed() {
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private long cpuMs(long cpu0) {
+        return (threadCpuNanos.getAsLong() - cpu0) / 1_000_000L;
+    }
+
+    private synchronized String bootstrap() {
+        if (bootstrap == null && appContext != null) {
+            try (InputStream in = appContext.getAssets().open("localjs/bootstrap.js")) {
+                ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                byte[] chunk = new byte[8192];
+                int n;
+                while ((n = in.read(chunk)) > 0) buf.write(chunk, 0, n);
+                bootstrap = new String(buf.toByteArray(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new IllegalStateException("missing localjs/bootstrap.js", e);
+            }
+        }
+        return bootstrap;
+    }
+}
@@ -0,0 +1,361 @@
+package com.example.aiassistantcoder;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-device copy of the user's projects, read before Firestore answers.
+ * <p>
+ * Every file row carries two timestamps: {@code local_mtime} (last local
+ * write) and {@code synced_at} (last time this content was known to match the
+ * server). A file is dirty when local_mtime > synced_at; a file whose remote
+ * copy also moved on since synced_at is a conflict (see ProjectReconciler).
+ * A conflict flag stays on the row until the file is edited again.
+ * Messages are an append-only log; rows not yet on the server have synced = 0.
+ * <p>
+ * All methods block; call them off the main thread.
+ */
+public class LocalProjectStore extends SQLiteOpenHelper {
+
+    private static final String DB_NAME = "projects.db";
+    private static final int DB_VERSION = 1;
+
+    private static final String T_PROJECTS = "projects";
+    private static final String T_FILES = "files";
+    private static final String T_MESSAGES = "messages";
+
+    public static final class FileRow {
+        public final String path;
+        public final String content;
+        public final long localMtime;
+        public final long syncedAt;
+        public final boolean conflict;
+
+        public FileRow(String path, String content, long localMtime, long syncedAt, boolean conflict) {
+            this.path = path;
+            this.content = content;
+            this.localMtime = localMtime;
+            this.syncedAt = syncedAt;
+            this.conflict = conflict;
+        }
+
+        public boolean isDirty() {
+            return localMtime > syncedAt;
+        }
+    }
+
+    /** Stored content of one project. */
+    public static final class Content {
+        public String code;
+        public boolean codeDirty;
+        public final List<FileRow> files = new ArrayList<>();
+        public final List<Message> messages = new ArrayList<>();
+        public int syncedMessages;      // messages [0, n) are on the server
+    }
+
+    public LocalProjectStore(@NonNull Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + T_PROJECTS + " ("
+                + "id TEXT PRIMARY KEY, "
+                + "owner TEXT NOT NULL, "
+                + "title TEXT, "
+                + "created_at INTEGER, "
+                + "updated_at INTEGER, "
+                + "file_count INTEGER NOT NULL DEFAULT 0, "
+                + "code TEXT, "
+                + "code_mtime INTEGER NOT NULL DEFAULT 0, "
+                + "code_synced_at INTEGER NOT NULL DEFAULT 0, "
+                + "has_content INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX projects_owner ON " + T_PROJECTS + "(owner, created_at)");
+        db.execSQL("CREATE TABLE " + T_FILES + " ("
+                + "project_id TEXT NOT NULL REFERENCES " + T_PROJECTS + "(id) ON DELETE CASCADE, "
+                + "path TEXT NOT NULL, "
+                + "content TEXT NOT NULL, "
+                + "local_mtime INTEGER NOT NULL, "
+                + "synced_at INTEGER NOT NULL DEFAULT 0, "
+                + "conflict INTEGER NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (project_id, path))");
+        db.execSQL("CREATE TABLE " + T_MESSAGES + " ("
+                + "project_id TEXT NOT NULL REFERENCES " + T_PROJECTS + "(id) ON DELETE CASCADE, "
+                + "seq INTEGER NOT NULL, "
+                + "role TEXT, "
+                + "text TEXT, "
+                + "image_uri TEXT, "
+                + "synced INTEGER NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (project_id, seq))");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // a cache of server data plus unsynced edits; nothing older to migrate yet
+    }
+
+    // ---------- list ----------
+    @NonNull
+    public List<ProjectSummary> loadSummaries(@NonNull String owner) {
+        List<ProjectSummary> out = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(T_PROJECTS,
+                new String[]{"id", "title", "created_at", "file_count", "updated_at"},
+                "owner = ?", new String[]{owner}, null, null, "created_at DESC")) {
+            while (c.moveToNext()) {
+                out.add(new ProjectSummary(
+                        c.getString(0),
+                        c.getString(1),
+                        c.isNull(2) ? null : new Date(c.getLong(2)),
+                        c.getInt(3),
+                        c.isNull(4) ? null : new Date(c.getLong(4))));
+            }
+        }
+        return out;
+    }
+
+    /** List fields only; stored content is left alone. */
+    public void putSummary(@NonNull String owner, @NonNull ProjectSummary s) {
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues v = new ContentValues();
+        v.put("owner", owner);
+        v.put("title", s.getTitle());
+        v.put("created_at", s.getCreatedAt() != null ? s.getCreatedAt().getTime() : null);
+        v.put("updated_at", s.getLastActivity() != null ? s.getLastActivity().getTime() : null);
+        v.put("file_count", s.getFileCount());
+        if (db.update(T_PROJECTS, v, "id = ?", new String[]{s.getId()}) == 0) {
+            v.put("id", s.getId());
+            db.insert(T_PROJECTS, null, v);
+        }
+    }
+
+    public void deleteProject(@NonNull String id) {
+        getWritableDatabase().delete(T_PROJECTS, "id = ?", new String[]{id});
+    }
+
+    public void clear(@NonNull String owner) {
+        getWritableDatabase().delete(T_PROJECTS, "owner = ?", new String[]{owner});
+    }
+
+    // ---------- content ----------
+    @Nullable
+    public Content loadContent(@NonNull String projectId) {
+        SQLiteDatabase db = getReadableDatabase();
+        String[] args = {projectId};
+        Content out = new Content();
+        try (Cursor c = db.query(T_PROJECTS,
+                new String[]{"code", "code_mtime", "code_synced_at"},
+                "id = ? AND has_content = 1", args, null, null, null)) {
+            if (!c.moveToFirst()) return null;
+            out.code = c.getString(0);
+            out.codeDirty = c.getLong(1) > c.getLong(2);
+        }
+        try (Cursor c = db.query(T_FILES,
+                new String[]{"path", "content", "local_mtime", "synced_at", "conflict"},
+                "project_id = ?", args, null, null, "rowid")) {
+            while (c.moveToNext()) {
+                out.files.add(new FileRow(c.getString(0), c.getString(1),
+                        c.getLong(2), c.getLong(3), c.getInt(4) != 0));
+            }
+        }
+        try (Cursor c = db.query(T_MESSAGES,
+                new String[]{"role", "text", "image_uri", "synced"},
+                "project_id = ?", args, null, null, "seq")) {
+            boolean synced = true;
+            while (c.moveToNext()) {
+                Message m = new Message();
+                m.setRole(c.getString(0));
+                m.setText(c.getString(1));
+                m.setImageUri(c.getString(2));
+                out.messages.add(m);
+                // the synced rows always form a prefix
+                synced &= c.getInt(3) != 0;
+                if (synced) out.syncedMessages++;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Record the editor's current state. Only files whose content changed get
+     * a new local_mtime; messages past the stored ones are appended unsynced.
+     */
+    public void writeLocal(@NonNull String owner,
+                           @NonNull ProjectSummary project,
+                           @Nullable String code,
+                           @NonNull Map<String, String> files,
+                           @NonNull List<Message> messages,
+                           long now) {
+        SQLiteDatabase db = getWritableDatabase();
+        String id = project.getId();
+        String[] args = {id};
+        db.beginTransaction();
+        try {
+            ensureProjectRow(db, owner, project, files.size());
+
+            String oldCode = null;
+            try (Cursor c = db.query(T_PROJECTS, new String[]{"code"}, "id = ?",
+                    args, null, null, null)) {
+                if (c.moveToFirst()) oldCode = c.getString(0);
+            }
+            ContentValues pv = new ContentValues();
+            pv.put("has_content", 1);
+            pv.put("file_count", files.size());
+            if (code != null && !code.equals(oldCode)) {
+                pv.put("code", code);
+                pv.put("code_mtime", now);
+            }
+            db.update(T_PROJECTS, pv, "id = ?", args);
+
+            Map<String, String> stored = new HashMap<>();
+            try (Cursor c = db.query(T_FILES, new String[]{"path", "content"},
+                    "project_id = ?", args, null, null, null)) {
+                while (c.moveToNext()) stored.put(c.getString(0), c.getString(1));
+            }
+            for (Map.Entry<String, String> e : files.entrySet()) {
+                String old = stored.remove(e.getKey());
+                if (e.getValue().equals(old)) continue;
+                ContentValues fv = new ContentValues();
+                fv.put("project_id", id);
+                fv.put("path", e.getKey());
+                fv.put("content", e.getValue());
+                fv.put("local_mtime", now);
+                fv.put("conflict", 0);
+                if (old == null) {
+                    db.insert(T_FILES, null, fv);
+                } else {
+                    db.update(T_FILES, fv, "project_id = ? AND path = ?",
+                            new String[]{id, e.getKey()});
+                }
+            }
+            for (String gone : stored.keySet()) {
+                db.delete(T_FILES, "project_id = ? AND path = ?", new String[]{id, gone});
+            }
+
+            long count;
+            try (Cursor c = db.rawQuery("SELECT COUNT(*) FROM " + T_MESSAGES
+                    + " WHERE project_id = ?", args)) {
+                count = c.moveToFirst() ? c.getLong(0) : 0;
+            }
+            for (int i = (int) count; i < messages.size(); i++) {
+                insertMessage(db, id, i, messages.get(i), false);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * The server acknowledged this content. Rows edited again since the save
+     * started keep their newer content and stay dirty.
+     */
+    public void markSynced(@NonNull String projectId,
+                           @Nullable String code,
+                           @NonNull Map<String, String> files,
+                           int messages,
+                           long at) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (code != null) {
+                ContentValues pv = new ContentValues();
+                pv.put("code_synced_at", at);
+                db.update(T_PROJECTS, pv, "id = ? AND code = ?", new String[]{projectId, code});
+            }
+            ContentValues fv = new ContentValues();
+            fv.put("synced_at", at);
+            for (Map.Entry<String, String> e : files.entrySet()) {
+                db.update(T_FILES, fv, "project_id = ? AND path = ? AND content = ?",
+                        new String[]{projectId, e.getKey(), e.getValue()});
+            }
+            ContentValues mv = new ContentValues();
+            mv.put("synced", 1);
+            db.update(T_MESSAGES, mv, "project_id = ? AND seq < ?",
+                    new String[]{projectId, String.valueOf(messages)});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Replace a project's content with the result of a reconcile. */
+    public void replaceContent(@NonNull String owner,
+                               @NonNull ProjectSummary project,
+                               @NonNull Content content,
+                               long at) {
+        SQLiteDatabase db = getWritableDatabase();
+        String id = project.getId();
+        String[] args = {id};
+        db.beginTransaction();
+        try {
+            ensureProjectRow(db, owner, project, content.files.size());
+            ContentValues pv = new ContentValues();
+            pv.put("has_content", 1);
+            pv.put("file_count", content.files.size());
+            pv.put("code", content.code);
+            pv.put("code_mtime", content.codeDirty ? at : 0);
+            pv.put("code_synced_at", content.codeDirty ? 0 : at);
+            db.update(T_PROJECTS, pv, "id = ?", args);
+
+            db.delete(T_FILES, "project_id = ?", args);
+            for (FileRow f : content.files) {
+                ContentValues fv = new ContentValues();
+                fv.put("project_id", id);
+                fv.put("path", f.path);
+                fv.put("content", f.content);
+                fv.put("local_mtime", f.localMtime);
+                fv.put("synced_at", f.syncedAt);
+                fv.put("conflict", f.conflict ? 1 : 0);
+                db.insert(T_FILES, null, fv);
+            }
+
+            db.delete(T_MESSAGES, "project_id = ?", args);
+            for (int i = 0; i < content.messages.size(); i++) {
+                insertMessage(db, id, i, content.messages.get(i), i < content.syncedMessages);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // ---------- internals ----------
+    private static void ensureProjectRow(SQLiteDatabase db, String owner, ProjectSummary p, int fileCount) {
+        ContentValues v = new ContentValues();
+        v.put("id", p.getId());
+        v.put("owner", owner);
+        v.put("title", p.getTitle());
+        v.put("created_at", p.getCreatedAt() != null ? p.getCreatedAt().getTime() : null);
+        v.put("file_count", fileCount);
+        db.insertWithOnConflict(T_PROJECTS, null, v, SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    private static void insertMessage(SQLiteDatabase db, String projectId, int seq,
+                                      Message m, boolean synced) {
+        ContentValues v = new ContentValues();
+        v.put("project_id", projectId);
+        v.put("seq", seq);
+        v.put("role", m.getRole());
+        v.put("text", m.getText());
+        v.put("image_uri", m.getImageUri());
+        v.put("synced", synced ? 1 : 0);
+        db.insertWithOnConflict(T_MESSAGES, null, v, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+}
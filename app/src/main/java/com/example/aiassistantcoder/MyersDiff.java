@@ -0,0 +1,169 @@
+package com.example.aiassistantcoder;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Linear-space Myers line diff (divide & conquer on the middle snake).
+ * <p>
+ * Lines are interned to int ids first so the inner loops compare ints, and the
+ * common prefix / suffix is trimmed before any snake search. Memory is O(n + m)
+ * instead of the O(n·m) LCS table DiffUtilLite used to allocate.
+ * <p>
+ * Output follows the old contract: ' ' kept, '-' removed, '+' added, and inside
+ * a changed block removals come before additions.
+ */
+final class MyersDiff {
+
+    private MyersDiff() {
+    }
+
+    @NonNull
+    static List<CodeEditorFragment.DiffLine> diffLines(@NonNull String a, @NonNull String b) {
+        String[] aLines = a.split("\n", -1);
+        String[] bLines = b.split("\n", -1);
+
+        // intern: equal lines -> equal id
+        Map<String, Integer> ids = new HashMap<>();
+        int[] aIds = intern(aLines, ids);
+        int[] bIds = intern(bLines, ids);
+
+        boolean[] keptA = new boolean[aIds.length];
+        boolean[] keptB = new boolean[bIds.length];
+        new Solver(aIds, bIds, keptA, keptB).diff(0, aIds.length, 0, bIds.length);
+
+        List<CodeEditorFragment.DiffLine> out = new ArrayList<>(Math.max(aIds.length, bIds.length));
+        int i = 0, j = 0;
+        while (i < aIds.length || j < bIds.length) {
+            if (i < aIds.length && !keptA[i]) {
+                out.add(new CodeEditorFragment.DiffLine('-', aLines[i++]));
+            } else if (j < bIds.length && !keptB[j]) {
+                out.add(new CodeEditorFragment.DiffLine('+', bLines[j++]));
+            } else {
+                // both sides sit on a matched line
+                out.add(new CodeEditorFragment.DiffLine(' ', aLines[i]));
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    private static int[] intern(String[] lines, Map<String, Integer> ids) {
+        int[] out = new int[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            Integer id = ids.get(lines[i]);
+            if (id == null) {
+                id = ids.size();
+                ids.put(lines[i], id);
+            }
+            out[i] = id;
+        }
+        return out;
+    }
+
+    // ---------- core ----------
+    private static final class Solver {
+        private final int[] a, b;
+        private final boolean[] keptA, keptB;
+        private final int[] vf, vb;
+
+        Solver(int[] a, int[] b, boolean[] keptA, boolean[] keptB) {
+            this.a = a;
+            this.b = b;
+            this.keptA = keptA;
+            this.keptB = keptB;
+            // diagonals -max-1 .. max+1, shared by every recursion level
+            int size = a.length + b.length + 3;
+            this.vf = new int[size];
+            this.vb = new int[size];
+        }
+
+        void diff(int aLo, int aHi, int bLo, int bHi) {
+            // common prefix
+            while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+                keptA[aLo++] = true;
+                keptB[bLo++] = true;
+            }
+            // common suffix
+            while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+                keptA[--aHi] = true;
+                keptB[--bHi] = true;
+            }
+            // pure insert / delete: nothing more to match
+            if (aLo == aHi || bLo == bHi) return;
+
+            int[] snake = middleSnake(aLo, aHi, bLo, bHi);
+            int x0 = snake[0], y0 = snake[1], x1 = snake[2], y1 = snake[3];
+
+            diff(aLo, aLo + x0, bLo, bLo + y0);
+            for (int x = x0, y = y0; x < x1; x++, y++) {
+                keptA[aLo + x] = true;
+                keptB[bLo + y] = true;
+            }
+            diff(aLo + x1, aHi, bLo + y1, bHi);
+        }
+
+        /**
+         * Returns {x0, y0, x1, y1} of the middle snake, relative to (aLo, bLo).
+         */
+        private int[] middleSnake(int aLo, int aHi, int bLo, int bHi) {
+            final int n = aHi - aLo;
+            final int m = bHi - bLo;
+            final int delta = n - m;
+            final boolean odd = (delta & 1) != 0;
+            final int max = (n + m + 1) / 2;
+            final int off = max + 1;
+
+            vf[off + 1] = 0;
+            vb[off + 1] = 0;
+
+            for (int d = 0; d <= max; d++) {
+                // forward pass
+                for (int k = -d; k <= d; k += 2) {
+                    int x = (k == -d || (k != d && vf[off + k - 1] < vf[off + k + 1]))
+                            ? vf[off + k + 1]
+                            : vf[off + k - 1] + 1;
+                    int y = x - k;
+                    int sx = x, sy = y;
+                    while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                        x++;
+                        y++;
+                    }
+                    vf[off + k] = x;
+                    if (odd) {
+                        int bk = delta - k;
+                        if (bk >= -(d - 1) && bk <= d - 1 && x + vb[off + bk] >= n) {
+                            return new int[]{sx, sy, x, y};
+                        }
+                    }
+                }
+                // backward pass (coordinates measured from the end)
+                for (int k = -d; k <= d; k += 2) {
+                    int x = (k == -d || (k != d && vb[off + k - 1] < vb[off + k + 1]))
+                            ? vb[off + k + 1]
+                            : vb[off + k - 1] + 1;
+                    int y = x - k;
+                    int sx = x, sy = y;
+                    while (x < n && y < m && a[aHi - 1 - x] == b[bHi - 1 - y]) {
+                        x++;
+                        y++;
+                    }
+                    vb[off + k] = x;
+                    if (!odd) {
+                        int fk = delta - k;
+                        if (fk >= -d && fk <= d && x + vf[off + fk] >= n) {
+                            return new int[]{n - x, m - y, n - sx, m - sy};
+                        }
+                    }
+                }
+            }
+            // both ranges are non-empty here, so a snake is always found
+            throw new IllegalStateException("no middle snake");
+        }
+    }
+}
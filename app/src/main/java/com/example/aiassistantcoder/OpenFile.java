@@ -5,9 +5,24 @@ public class OpenFile {
     public String name;
     public String content;
 
+    // bumped on every edit; equal to savedVersion once that edit is stored
+    public int editVersion = 0;
+    public int savedVersion = 0;
+    // wall-clock time of the last edit, 0 if untouched this session
+    public long lastEditedAt = 0;
+
     public OpenFile(String id, String name, String content) {
         this.id = id;
         this.name = name;
         this.content = content;
     }
+
+    public boolean isDirty() {
+        return editVersion != savedVersion;
+    }
+
+    public void markEdited() {
+        editVersion++;
+        lastEditedAt = System.currentTimeMillis();
+    }
 }
@@ -13,6 +13,9 @@ public final class Prefs {
     // Toggles
     private static final String K_AUTO_APPLY = "auto_apply_ai_code";
     private static final String K_SHOW_DIFFS = "show_diffs_before_apply";
+    private static final String K_BYPASS_RESPONSE_CACHE = "bypass_response_cache";
+    private static final String K_IMAGE_MAX_EDGE = "image_max_edge";
+    private static final String K_CONTEXT_TOKEN_BUDGET = "context_token_budget";
 
     // Fonts
     public static final String KEY_EDITOR_FONT_FAMILY = "editor_font_family";   // "monospace", "jetbrains", etc
@@ -42,6 +45,33 @@ public final class Prefs {
         sp(c).edit().putBoolean(K_SHOW_DIFFS, v).apply();
     }
 
+    // always ask Gemini, even for a prompt answered before (see ResponseCache)
+    public static boolean bypassResponseCache(Context c) {
+        return sp(c).getBoolean(K_BYPASS_RESPONSE_CACHE, false); // default OFF
+    }
+
+    public static void setBypassResponseCache(Context c, boolean v) {
+        sp(c).edit().putBoolean(K_BYPASS_RESPONSE_CACHE, v).apply();
+    }
+
+    // longest side, in px, of images sent to the model (see ImageIngest)
+    public static int imageMaxEdge(Context c) {
+        return sp(c).getInt(K_IMAGE_MAX_EDGE, 1536);
+    }
+
+    public static void setImageMaxEdge(Context c, int px) {
+        sp(c).edit().putInt(K_IMAGE_MAX_EDGE, Math.max(256, px)).apply();
+    }
+
+    // rough token budget for history + files sent with each chat prompt (see ContextBuilder)
+    public static int contextTokenBudget(Context c) {
+        return sp(c).getInt(K_CONTEXT_TOKEN_BUDGET, 8000);
+    }
+
+    public static void setContextTokenBudget(Context c, int tokens) {
+        sp(c).edit().putInt(K_CONTEXT_TOKEN_BUDGET, Math.max(1000, tokens)).apply();
+    }
+
     // --- editor font ---
     public static String editorFont(Context c) {
         return sp(c).getString(KEY_EDITOR_FONT_FAMILY, "monospace");
@@ -0,0 +1,162 @@
+package com.example.aiassistantcoder;
+
+import android.net.Uri;
+import android.webkit.MimeTypeMap;
+import android.webkit.WebResourceResponse;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The editor's files as a web site for the preview WebView, served from
+ * memory through request interception: no upload, works offline.
+ * <p>
+ * Pages get a small script that applies changed files in place (stylesheets
+ * and images are swapped, the open page's body is re-rendered) so an edit
+ * doesn't cost a full reload; script changes still reload the page, other
+ * pages are picked up when navigated to.
+ * Updated from the editor, read on the WebView's IO thread.
+ */
+public final class PreviewSite {
+
+    // reserved for apps by WebView (same host WebViewAssetLoader uses), never hits the network
+    static final String HOST = "appassets.androidplatform.net";
+    static final String ROOT_PATH = "/preview/";
+    static final String ROOT = "https://" + HOST + ROOT_PATH;
+
+    private static final Map<String, String> NO_STORE = Collections.singletonMap("Cache-Control", "no-store");
+
+    private Map<String, String> files = Collections.emptyMap();
+
+    @NonNull
+    static String urlFor(@NonNull String path) {
+        return ROOT + Uri.encode(path, "/");
+    }
+
+    /** Replaces the site's files; returns the paths that changed, were added or removed. */
+    @NonNull
+    public synchronized List<String> update(@NonNull Map<String, String> next) {
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, String> e : next.entrySet()) {
+            if (!Objects.equals(files.get(e.getKey()), e.getValue())) changed.add(e.getKey());
+        }
+        for (String path : files.keySet()) {
+            if (!next.containsKey(path)) changed.add(path);
+        }
+        files = new HashMap<>(next);
+        return changed;
+    }
+
+    @Nullable
+    private synchronized String get(String path) {
+        return files.get(path);
+    }
+
+    /** Response for a preview URL, or null to let the WebView load it itself. */
+    @Nullable
+    public WebResourceResponse serve(@NonNull Uri url) {
+        if (!HOST.equals(url.getHost())) return null;
+        String p = url.getPath();
+        if (p == null || !p.startsWith(ROOT_PATH)) return null;
+
+        String path = p.substring(ROOT_PATH.length());
+        if (path.isEmpty() || path.endsWith("/")) path += "index.html";
+
+        String content = get(path);
+        if (content == null) {
+            return new WebResourceResponse("text/plain", "UTF-8", 404, "Not Found", NO_STORE,
+                    new ByteArrayInputStream(("not in project: " + path).getBytes(StandardCharsets.UTF_8)));
+        }
+        String mime = mimeOf(path);
+        if ("text/html".equals(mime)) content = withHotReload(content);
+        return new WebResourceResponse(mime, "UTF-8", 200, "OK", NO_STORE,
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String mimeOf(String path) {
+        int dot = path.lastIndexOf('.');
+        String ext = dot >= 0 ? path.substring(dot + 1).toLowerCase(Locale.US) : "";
+        switch (ext) {
+            case "html":
+            case "htm":
+                return "text/html";
+            case "js":
+            case "mjs":
+                return "text/javascript";
+            case "css":
+                return "text/css";
+            case "json":
+                return "application/json";
+            case "svg":
+                return "image/svg+xml";
+            default:
+                String m = MimeTypeMap.getSingleton().getMimeTypeFromExtension(ext);
+                return m != null ? m : "text/plain";
+        }
+    }
+
+    private static String withHotReload(String html) {
+        int at = html.toLowerCase(Locale.US).lastIndexOf("</body>");
+        return at >= 0
+                ? html.substring(0, at) + HOT_RELOAD + html.substring(at)
+                : html + HOT_RELOAD;
+    }
+
+    /**
+     * {@code __pcHot(paths)} returns false when the page has to reload: a
+     * script changed, or a stylesheet the page doesn't link.
+     */
+    static final String HOT_RELOAD = "<script>(function () {\n"
+            + "  var root = location.origin + '" + ROOT_PATH + "';\n"
+            + "  function base(u) { return u.split('?')[0].split('#')[0]; }\n"
+            + "  function swap(sel, attr, url) {\n"
+            + "    var hit = false;\n"
+            + "    document.querySelectorAll(sel).forEach(function (el) {\n"
+            + "      if (base(el[attr]) === url) { el[attr] = url + '?v=' + Date.now(); hit = true; }\n"
+            + "    });\n"
+            + "    return hit;\n"
+            + "  }\n"
+            + "  function rerender(url) {\n"
+            + "    fetch(url + '?v=' + Date.now()).then(function (r) { return r.text(); }).then(function (html) {\n"
+            + "      var doc = new DOMParser().parseFromString(html, 'text/html');\n"
+            + "      document.title = doc.title;\n"
+            + "      document.head.querySelectorAll('style').forEach(function (s) { s.remove(); });\n"
+            + "      doc.head.querySelectorAll('style').forEach(function (s) { document.head.appendChild(s); });\n"
+            + "      document.body.replaceWith(document.adoptNode(doc.body));\n"
+            + "      // parsed scripts are inert; re-create them so they run\n"
+            + "      document.body.querySelectorAll('script').forEach(function (old) {\n"
+            + "        var s = document.createElement('script');\n"
+            + "        Array.prototype.forEach.call(old.attributes, function (a) { s.setAttribute(a.name, a.value); });\n"
+            + "        s.text = old.text;\n"
+            + "        old.replaceWith(s);\n"
+            + "      });\n"
+            + "    });\n"
+            + "  }\n"
+            + "  window.__pcHot = function (paths) {\n"
+            + "    var page = base(location.href);\n"
+            + "    for (var i = 0; i < paths.length; i++) {\n"
+            + "      var url = root + encodeURI(paths[i]);\n"
+            + "      if (/\\.css$/i.test(url)) {\n"
+            + "        if (!swap('link[rel~=\"stylesheet\"]', 'href', url)) return false;\n"
+            + "      } else if (/\\.(png|jpe?g|gif|svg|webp)$/i.test(url)) {\n"
+            + "        swap('img', 'src', url);\n"
+            + "      } else if (url === page || (page === root && /index\\.html$/i.test(url))) {\n"
+            + "        rerender(url);\n"
+            + "      } else if (/\\.(js|mjs)$/i.test(url)) {\n"
+            + "        return false;\n"
+            + "      }\n"
+            + "    }\n"
+            + "    return true;\n"
+            + "  };\n"
+            + "})();</script>";
+}
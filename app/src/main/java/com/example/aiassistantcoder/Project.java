@@ -19,6 +19,9 @@ public class Project implements Serializable {
 
     private List<ProjectFile> files;
 
+    // messages/files have been read from storage (they load lazily on open)
+    private transient boolean contentLoaded = false;
+
     public Project() {
         this.messages = new ArrayList<>();
         this.tags = new ArrayList<>();
@@ -95,6 +98,14 @@ public class Project implements Serializable {
         this.files = files;
     }
 
+    public boolean isContentLoaded() {
+        return contentLoaded;
+    }
+
+    public void setContentLoaded(boolean contentLoaded) {
+        this.contentLoaded = contentLoaded;
+    }
+
     public void addMessage(Message message) {
         if (this.messages == null) {
             this.messages = new ArrayList<>();
@@ -8,18 +8,34 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.text.SimpleDateFormat;
-import java.util.List;
 import java.util.Locale;
 
-public class ProjectAdapter extends RecyclerView.Adapter<ProjectAdapter.ProjectViewHolder> {
+/**
+ * Projects list. Updates go through {@link #submitList}; rows are matched by
+ * project id and only rows whose summary changed are re-bound.
+ */
+public class ProjectAdapter extends ListAdapter<ProjectSummary, ProjectAdapter.ProjectViewHolder> {
 
-    private final List<Project> projectList;
+    private static final DiffUtil.ItemCallback<ProjectSummary> DIFF =
+            new DiffUtil.ItemCallback<ProjectSummary>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull ProjectSummary a, @NonNull ProjectSummary b) {
+                    return a.getId().equals(b.getId());
+                }
 
-    public ProjectAdapter(List<Project> projectList) {
-        this.projectList = projectList;
+                @Override
+                public boolean areContentsTheSame(@NonNull ProjectSummary a, @NonNull ProjectSummary b) {
+                    return a.equals(b);
+                }
+            };
+
+    public ProjectAdapter() {
+        super(DIFF);
     }
 
     @NonNull
@@ -32,12 +48,14 @@ public class ProjectAdapter extends RecyclerView.Adapter<ProjectAdapter.ProjectV
 
     @Override
     public void onBindViewHolder(@NonNull ProjectViewHolder holder, int position) {
-        Project project = projectList.get(position);
+        ProjectSummary project = getItem(position);
         holder.projectTitle.setText(project.getTitle());
 
         if (project.getCreatedAt() != null) {
             String formattedDate = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault())
                     .format(project.getCreatedAt());
+            int n = project.getFileCount();
+            if (n > 0) formattedDate += " · " + n + (n == 1 ? " file" : " files");
             holder.projectDate.setText(formattedDate);
         } else {
             holder.projectDate.setText("");
@@ -47,6 +65,7 @@ public class ProjectAdapter extends RecyclerView.Adapter<ProjectAdapter.ProjectV
         holder.itemView.setOnClickListener(v -> {
             Context context = v.getContext();
             Intent intent = new Intent(context, ResponseActivity.class);
+            intent.putExtra("projectId", project.getId());
             intent.putExtra("projectTitle", project.getTitle());
             context.startActivity(intent);
         });
@@ -56,12 +75,8 @@ public class ProjectAdapter extends RecyclerView.Adapter<ProjectAdapter.ProjectV
     }
 
     @Override
-    public int getItemCount() {
-        return projectList.size();
-    }
-
-    public Project getItem(int position) {
-        return projectList.get(position);
+    public ProjectSummary getItem(int position) {
+        return super.getItem(position);
     }
 
     public static class ProjectViewHolder extends RecyclerView.ViewHolder {
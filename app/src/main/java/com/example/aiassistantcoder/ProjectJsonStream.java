@@ -0,0 +1,146 @@
+package com.example.aiassistantcoder;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Incremental reader for the model's project JSON
+ * ({@code {"language", "runtime", "entrypoint", "files": [...], "notes"}})
+ * while it is still being generated.
+ * <p>
+ * Text is fed in arbitrary pieces. A single pass tracks nesting and string
+ * state; as soon as a top-level string field or one {@code files[i]} object
+ * is closed, just that slice is parsed and reported. Nothing is re-scanned,
+ * and everything before the first '{' (e.g. a code fence) is skipped.
+ */
+final class ProjectJsonStream {
+
+    interface Listener {
+        /** A top-level string field is complete. */
+        void onField(@NonNull String name, @NonNull String value);
+
+        /** {@code files[index]} is complete. */
+        void onFile(int index, @NonNull JsonObject file);
+    }
+
+    private final Listener listener;
+    private final StringBuilder text = new StringBuilder();
+
+    private int pos = 0;            // next char to scan
+    private boolean started = false;
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escape = false;
+
+    // top level (depth 1) bookkeeping
+    private boolean expectKey = true;
+    private int stringStart = -1;
+    private String key = null;
+    private boolean inFiles = false;
+    private int fileStart = -1;
+    private int fileIndex = 0;
+
+    ProjectJsonStream(@NonNull Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Everything fed so far. */
+    @NonNull
+    String text() {
+        return text.toString();
+    }
+
+    void feed(@NonNull CharSequence chunk) {
+        text.append(chunk);
+        for (; pos < text.length(); pos++) {
+            char c = text.charAt(pos);
+
+            if (!started) {
+                if (c == '{') {
+                    started = true;
+                    depth = 1;
+                    expectKey = true;
+                }
+                continue;
+            }
+
+            if (inString) {
+                if (escape) {
+                    escape = false;
+                } else if (c == '\\') {
+                    escape = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (depth == 1) closeTopLevelString();
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '"':
+                    inString = true;
+                    if (depth == 1) stringStart = pos;
+                    break;
+                case '{':
+                case '[':
+                    depth++;
+                    if (inFiles && depth == 3 && c == '{') fileStart = pos;
+                    if (depth == 2 && c == '[' && "files".equals(key)) inFiles = true;
+                    break;
+                case '}':
+                case ']':
+                    if (inFiles && depth == 3 && c == '}' && fileStart >= 0) {
+                        emitFile(fileStart, pos + 1);
+                        fileStart = -1;
+                    }
+                    depth--;
+                    if (depth == 1) inFiles = false;
+                    if (depth == 0) started = false;    // done; ignore trailing text
+                    break;
+                case ':':
+                    if (depth == 1) expectKey = false;
+                    break;
+                case ',':
+                    if (depth == 1) {
+                        expectKey = true;
+                        key = null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void closeTopLevelString() {
+        String value = decode(stringStart, pos + 1);
+        stringStart = -1;
+        if (value == null) return;
+        if (expectKey) {
+            key = value;
+        } else if (key != null) {
+            listener.onField(key, value);
+        }
+    }
+
+    private void emitFile(int from, int to) {
+        try {
+            JsonElement el = JsonParser.parseString(text.substring(from, to));
+            if (el.isJsonObject()) listener.onFile(fileIndex, el.getAsJsonObject());
+        } catch (RuntimeException ignored) {
+            // malformed element; the final parse of the whole text decides
+        }
+        fileIndex++;
+    }
+
+    private String decode(int from, int to) {
+        try {
+            return JsonParser.parseString(text.substring(from, to)).getAsString();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.aiassistantcoder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges a project's on-device copy ({@link LocalProjectStore}) with what the
+ * server holds; {@link ProjectRepository} applies the result. Pure, so it can
+ * be tested without Firestore.
+ */
+final class ProjectReconciler {
+
+    private ProjectReconciler() {
+    }
+
+    /** Server copy of a project's content. */
+    static final class Remote {
+        String code;
+        boolean legacy;
+        final Map<String, String> files = new LinkedHashMap<>();
+        final Map<String, Long> fileUpdated = new HashMap<>();   // path -> millis, 0 = unknown
+        final List<Message> messages = new ArrayList<>();
+    }
+
+    static final class Merge {
+        final LocalProjectStore.Content content = new LocalProjectStore.Content();
+        boolean remoteWins;     // the server had something the local copy did not
+        boolean localWins;      // local edits still have to be pushed
+    }
+
+    /**
+     * Per file: equal -> synced; only one side changed since the last sync ->
+     * that side; both changed -> the later write wins and the row is flagged.
+     * Messages: the server's log, then local messages it has not seen yet.
+     * Local timestamps are device time, remote ones server time.
+     */
+    static Merge reconcile(LocalProjectStore.Content mine, Remote r, long now) {
+        Merge m = new Merge();
+        LocalProjectStore.Content out = m.content;
+
+        if (mine == null) {
+            out.code = r.code;
+            for (Map.Entry<String, String> e : r.files.entrySet()) {
+                out.files.add(new LocalProjectStore.FileRow(e.getKey(), e.getValue(), now, now, false));
+            }
+            out.messages.addAll(r.messages);
+            out.syncedMessages = r.messages.size();
+            return m;
+        }
+
+        if (mine.codeDirty) {
+            out.code = mine.code;
+            out.codeDirty = true;
+            m.localWins = true;
+        } else {
+            out.code = r.code;
+            if (r.code != null && !r.code.equals(mine.code)) m.remoteWins = true;
+        }
+
+        Map<String, LocalProjectStore.FileRow> byPath = new LinkedHashMap<>();
+        for (LocalProjectStore.FileRow f : mine.files) byPath.put(f.path, f);
+
+        for (Map.Entry<String, String> e : r.files.entrySet()) {
+            String path = e.getKey();
+            String theirs = e.getValue();
+            LocalProjectStore.FileRow f = byPath.remove(path);
+            Long updated = r.fileUpdated.get(path);
+            long remoteAt = updated != null ? updated : 0L;
+
+            if (f == null || f.content.equals(theirs)) {
+                if (f == null) m.remoteWins = true;
+                out.files.add(new LocalProjectStore.FileRow(path, theirs, now, now, false));
+            } else if (f.isDirty() && remoteAt > f.syncedAt) {
+                // edited on both sides
+                if (f.localMtime >= remoteAt) {
+                    out.files.add(new LocalProjectStore.FileRow(path, f.content, f.localMtime, f.syncedAt, true));
+                    m.localWins = true;
+                } else {
+                    out.files.add(new LocalProjectStore.FileRow(path, theirs, now, now, true));
+                    m.remoteWins = true;
+                }
+            } else if (f.isDirty()) {
+                out.files.add(f);
+                m.localWins = true;
+            } else {
+                out.files.add(new LocalProjectStore.FileRow(path, theirs, now, now, false));
+                m.remoteWins = true;
+            }
+        }
+        // only here: created offline (keep) or deleted on the server (drop)
+        for (LocalProjectStore.FileRow f : byPath.values()) {
+            if (f.isDirty()) {
+                out.files.add(f);
+                m.localWins = true;
+            } else {
+                m.remoteWins = true;
+            }
+        }
+
+        out.messages.addAll(r.messages);
+        out.syncedMessages = r.messages.size();
+        if (r.messages.size() != mine.syncedMessages) m.remoteWins = true;
+        for (int i = mine.syncedMessages; i < mine.messages.size(); i++) {
+            out.messages.add(mine.messages.get(i));
+            m.localWins = true;
+        }
+        return m;
+    }
+}
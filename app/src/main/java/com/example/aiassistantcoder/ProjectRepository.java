@@ -1,36 +1,96 @@
 package com.example.aiassistantcoder;
 
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.aiassistantcoder.ProjectWrites.StoredMessage;
+import com.example.aiassistantcoder.ProjectWrites.SyncState;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 public class ProjectRepository {
+    private static final String TAG = "ProjectRepository";
     private static final ProjectRepository INSTANCE = new ProjectRepository();
 
     public static ProjectRepository getInstance() {
         return INSTANCE;
     }
 
-    private final List<Project> projects = new ArrayList<>();
+    // list screen: kept in query order by the realtime listener
+    private final List<ProjectSummary> summaries = new ArrayList<>();
+    // full projects that have been opened / saved this session, by id
+    private final Map<String, Project> projects = new HashMap<>();
     private final FirebaseFirestore db = FirebaseFirestore.getInstance();
 
+    /*
+     * Storage layout (LAYOUT_SPLIT):
+     *   users/{uid}/projects/{projectId}            title, createdAt, tags, code, counts
+     *   users/{uid}/projects/{projectId}/files/{fileId}       path, content
+     *   users/{uid}/projects/{projectId}/messages/{msgId}     seq, role, text, imageUri
+     *
+     * Older documents kept "messages" and "files" as arrays on the project doc.
+     * They are still read, and moved into the subcollections on their first save.
+     */
+    static final String FILES = ProjectWrites.FILES;
+    static final String MESSAGES = ProjectWrites.MESSAGES;
+    static final String F_LAYOUT = "layout";
+    static final long LAYOUT_SPLIT = 2;
+
+    // what the server is known to hold per loaded project (see ProjectWrites)
+    private final Map<String, SyncState> syncStates = new HashMap<>();
+
+    // on-device copy (LocalProjectStore); null until init()
+    private LocalProjectStore local;
+    private final ExecutorService io = Executors.newSingleThreadExecutor();
+    private final Handler main = new Handler(Looper.getMainLooper());
+    // how long an open waits for Firestore before showing the local copy
+    static final long LOCAL_GRACE_MS = 800;
+
+    public void init(Context context) {
+        if (local == null) local = new LocalProjectStore(context.getApplicationContext());
+    }
+
+    private void onIo(Runnable r) {
+        io.execute(() -> {
+            try {
+                r.run();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "local store", e);
+            }
+        });
+    }
+
     public interface ProjectsListener {
-        void onChanged(List<Project> projects);
+        void onChanged(List<ProjectSummary> projects);
     }
 
     private final List<ProjectsListener> listeners = new ArrayList<>();
@@ -44,30 +104,48 @@ public class ProjectRepository {
     }
 
     private void notifyListeners() {
-        for (var l : listeners) l.onChanged(Collections.unmodifiableList(projects));
+        for (var l : listeners) l.onChanged(Collections.unmodifiableList(summaries));
     }
 
-    public List<Project> getProjects() {
-        return projects;
+    public List<ProjectSummary> getProjects() {
+        return Collections.unmodifiableList(summaries);
     }
 
     /**
-     * Local add (optional for anonymous use)
+     * Project to open: the in-memory one if we have it, otherwise a bare
+     * project built from its summary (see {@link #loadProjectContent}).
      */
-    public void addProject(Project p) {
-        projects.add(p);
-        notifyListeners();
+    public Project getProject(String id) {
+        if (id == null) return null;
+        Project p = projects.get(id);
+        if (p != null) return p;
+        for (ProjectSummary s : summaries) {
+            if (id.equals(s.getId())) return open(s);
+        }
+        return null;
     }
 
     public Project getProjectByTitle(String title) {
-        for (Project p : projects) {
+        if (title == null) return null;
+        for (Project p : projects.values()) {
             if (p.getTitle() != null && p.getTitle().equalsIgnoreCase(title)) {
                 return p;
             }
         }
+        for (ProjectSummary s : summaries) {
+            if (s.getTitle() != null && s.getTitle().equalsIgnoreCase(title)) {
+                return open(s);
+            }
+        }
         return null;
     }
 
+    private Project open(ProjectSummary s) {
+        Project p = s.toProject();
+        projects.put(p.getId(), p);
+        return p;
+    }
+
     /**
      * Save to Firestore under users/{uid}/projects and keep repo in sync
      */
@@ -75,6 +153,28 @@ public class ProjectRepository {
         void onSaved(String projectId);
 
         void onError(Exception e);
+
+        default void onSaved(String projectId, SaveStats stats) {
+            onSaved(projectId);
+        }
+    }
+
+    /** What a save actually sent. */
+    public static final class SaveStats {
+        public final int filesWritten;
+        public final int filesDeleted;
+        public final int messagesWritten;
+        public final int messagesDeleted;
+        public final long bytesWritten;   // content chars sent (files, messages, code)
+
+        SaveStats(int filesWritten, int filesDeleted, int messagesWritten, int messagesDeleted,
+                  long bytesWritten) {
+            this.filesWritten = filesWritten;
+            this.filesDeleted = filesDeleted;
+            this.messagesWritten = messagesWritten;
+            this.messagesDeleted = messagesDeleted;
+            this.bytesWritten = bytesWritten;
+        }
     }
 
     public void saveProjectToFirestore(Project project, ProjectSaveCallback cb) {
@@ -84,73 +184,355 @@ public class ProjectRepository {
             return;
         }
 
-        Map<String, Object> data = new HashMap<>();
-        data.put("title", project.getTitle());
-        data.put("createdAt", FieldValue.serverTimestamp());
-        data.put("tags", project.getTags());
-        data.put("code", project.getCode());
-
-        // messages
-        List<Map<String, Object>> msgs = new ArrayList<>();
-        for (Message m : project.getMessages()) {
-            Map<String, Object> mm = new HashMap<>();
-            mm.put("role", m.getRole());
-            mm.put("text", m.getText());
-            mm.put("imageUri", m.getImageUri());
-            msgs.add(mm);
+        CollectionReference projectsCollection = projectsOf(u);
+        boolean isNew = project.getId() == null;
+        DocumentReference doc = isNew
+                ? projectsCollection.document()
+                : projectsCollection.document(project.getId());
+
+        SyncState prev = isNew ? new SyncState() : syncStates.get(doc.getId());
+        // content we never loaded (e.g. a list entry) is left alone: metadata only
+        boolean writeContent = prev != null;
+
+        // snapshot now; the editor keeps mutating the project while we write
+        Map<String, String> files = filesOf(project);
+        List<Message> msgs = project.getMessages() != null
+                ? new ArrayList<>(project.getMessages())
+                : new ArrayList<>();
+        // messages are mutable; what this save writes is what they say now
+        List<StoredMessage> sentMsgs = ProjectWrites.storedOf(msgs);
+
+        String code = project.getCode();
+        // without a SyncState (never loaded, or detached because the server
+        // moved on) the server's code is left alone like the rest of the content
+        boolean codeChanged = writeContent && (prev.code == null || !prev.code.equals(code));
+
+        // local copy first: it survives going offline or the app dying mid-save
+        boolean keepLocal = local != null && (isNew || project.isContentLoaded());
+        if (keepLocal) writeLocal(u.getUid(), doc.getId(), project, code, files, msgs);
+
+        Map<String, Object> meta = new HashMap<>();
+        meta.put("title", project.getTitle());
+        meta.put("tags", project.getTags());
+        if (codeChanged) meta.put("code", code);
+        meta.put("updatedAt", FieldValue.serverTimestamp());
+        if (isNew) meta.put("createdAt", FieldValue.serverTimestamp());
+
+        List<WriteOp> ops = new ArrayList<>();
+        SaveStats stats;
+        boolean migrating = false;
+        long codeBytes = codeChanged && code != null ? code.length() : 0;
+
+        if (writeContent) {
+            meta.put(F_LAYOUT, LAYOUT_SPLIT);
+            meta.put("fileCount", files.size());
+            meta.put("messageCount", msgs.size());
+            ProjectWrites.Plan plan = ProjectWrites.plan(prev, files, sentMsgs);
+            migrating = plan.migrating;
+            if (migrating) {
+                // planned last: the arrays go only with the subcollections written
+                meta.put(MESSAGES, FieldValue.delete());
+                meta.put(FILES, FieldValue.delete());
+            }
+            for (ProjectWrites.Write w : plan.writes) ops.add(opFor(doc, w, meta));
+            stats = new SaveStats(plan.filesWritten, plan.filesDeleted, plan.messagesWritten,
+                    plan.messagesDeleted, codeBytes + plan.bytesWritten);
+        } else {
+            ops.add(b -> b.set(doc, meta, SetOptions.merge()));
+            stats = new SaveStats(0, 0, 0, 0, codeBytes);
         }
-        data.put("messages", msgs);
 
-        List<Map<String, Object>> filesData = new ArrayList<>();
+        commitInBatches(ops, migrating)
+                .addOnSuccessListener(aVoid -> {
+                    if (writeContent) {
+                        SyncState acked = new SyncState();
+                        acked.files.putAll(files);
+                        acked.messages.addAll(sentMsgs);
+                        acked.code = code;
+                        syncStates.put(doc.getId(), acked);
+                    }
+                    if (keepLocal) {
+                        long at = System.currentTimeMillis();
+                        onIo(() -> local.markSynced(doc.getId(), code,
+                                writeContent ? files : Collections.emptyMap(),
+                                writeContent ? msgs.size() : 0, at));
+                    }
+
+                    if (isNew) {
+                        project.setId(doc.getId());
+                        project.setCreatedAt(new Date());
+                        project.setContentLoaded(true);
+                    }
+                    projects.put(doc.getId(), project);
+                    putLocalSummary(ProjectSummary.of(project));
+                    if (cb != null) cb.onSaved(doc.getId(), stats);
+                })
+                .addOnFailureListener(e -> {
+                    if (cb != null) cb.onError(e);
+                });
+    }
+
+    /**
+     * Store the project's current content on the device only. Autosave calls
+     * this on every debounced save, so edits are kept while a remote commit
+     * is still in flight or can't reach the server.
+     */
+    public void saveLocalCopy(Project project) {
+        FirebaseUser u = FirebaseAuth.getInstance().getCurrentUser();
+        if (u == null || local == null || project.getId() == null || !project.isContentLoaded()) return;
+        Map<String, String> files = filesOf(project);
+        List<Message> msgs = project.getMessages() != null
+                ? new ArrayList<>(project.getMessages())
+                : new ArrayList<>();
+        writeLocal(u.getUid(), project.getId(), project, project.getCode(), files, msgs);
+    }
+
+    private static Map<String, String> filesOf(Project project) {
+        Map<String, String> files = new LinkedHashMap<>();
         if (project.getFiles() != null) {
             for (ProjectFile f : project.getFiles()) {
-                Map<String, Object> fm = new HashMap<>();
-                fm.put("path", f.path);
-                fm.put("content", f.content);
-                filesData.add(fm);
+                if (f.path == null) continue;
+                files.put(f.path, f.content != null ? f.content : "");
             }
         }
-        data.put("files", filesData);
-
-        CollectionReference projectsCollection =
-                db.collection("users").document(u.getUid()).collection("projects");
-
-        if (project.getId() != null) {
-            // ← UPDATE EXISTING DOC
-            projectsCollection.document(project.getId()).set(data)
-                    .addOnSuccessListener(aVoid -> {
-                        // update in-memory copy too
-                        for (int i = 0; i < projects.size(); i++) {
-                            if (projects.get(i).getId().equals(project.getId())) {
-                                projects.set(i, project);  // now includes files
-                                break;
-                            }
-                        }
-                        notifyListeners();
-                        if (cb != null) cb.onSaved(project.getId());
-                    })
-                    .addOnFailureListener(e -> {
-                        if (cb != null) cb.onError(e);
-                    });
-        } else {
-            projectsCollection.add(data)
-                    .addOnSuccessListener(ref -> {
-                        project.setId(ref.getId());
-                        project.setCreatedAt(new Date());
-                        projects.add(0, project);
-                        notifyListeners();
-                        if (cb != null) cb.onSaved(ref.getId());
-                    })
-                    .addOnFailureListener(e -> {
-                        if (cb != null) cb.onError(e);
-                    });
+        return files;
+    }
+
+    // unchanged rows keep their local_mtime, so writing the same content twice is free
+    private void writeLocal(String owner, String id, Project project, String code,
+                            Map<String, String> files, List<Message> msgs) {
+        long now = System.currentTimeMillis();
+        ProjectSummary row = new ProjectSummary(id, project.getTitle(),
+                project.getCreatedAt() != null ? project.getCreatedAt() : new Date(),
+                files.size(), new Date(now));
+        onIo(() -> local.writeLocal(owner, row, code, files, msgs, now));
+    }
+
+    /**
+     * Load messages and files of a project (subcollections, or the legacy
+     * inline arrays). Call before opening a project; a no-op once loaded.
+     * <p>
+     * With a local copy, Firestore gets {@link #LOCAL_GRACE_MS} to answer;
+     * after that (or when offline) the local copy is shown and reconciled
+     * when the server does answer.
+     */
+    public interface ProjectLoadCallback {
+        void onLoaded(Project project);
+
+        void onError(Exception e);
+
+        /** The server copy changed after the local one was shown; reopening merges them. */
+        default void onRemoteChanged(Project project) {
+        }
+    }
+
+    public void loadProjectContent(Project project, ProjectLoadCallback cb) {
+        FirebaseUser u = FirebaseAuth.getInstance().getCurrentUser();
+        if (project.isContentLoaded() || u == null || project.getId() == null) {
+            if (cb != null) cb.onLoaded(project);
+            return;
+        }
+
+        DocumentReference doc = projectsOf(u).document(project.getId());
+        if (local != null) {
+            new LocalFirstLoad(u.getUid(), project, doc, cb).start();
+            return;
+        }
+        fetchRemote(doc, new RemoteCallback() {
+            @Override
+            public void onRemote(ProjectReconciler.Remote r) {
+                applyMerge(null, project, ProjectReconciler.reconcile(null, r, System.currentTimeMillis()), r);
+                if (cb != null) cb.onLoaded(project);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (cb != null) cb.onError(e);
+            }
+        });
+    }
+
+    // Main thread only; each step() call re-checks what has arrived.
+    private final class LocalFirstLoad {
+        final String owner;
+        final Project project;
+        final DocumentReference doc;
+        final ProjectLoadCallback cb;
+
+        LocalProjectStore.Content stored;
+        boolean storedDone;
+        ProjectReconciler.Remote remote;
+        Exception remoteError;
+        boolean remoteDone;
+        boolean graceOver;
+        boolean delivered;
+        boolean lateHandled;
+
+        LocalFirstLoad(String owner, Project project, DocumentReference doc, ProjectLoadCallback cb) {
+            this.owner = owner;
+            this.project = project;
+            this.doc = doc;
+            this.cb = cb;
+        }
+
+        void start() {
+            String id = project.getId();
+            onIo(() -> {
+                LocalProjectStore.Content c = local.loadContent(id);
+                main.post(() -> {
+                    stored = c;
+                    storedDone = true;
+                    step();
+                });
+            });
+            fetchRemote(doc, new RemoteCallback() {
+                @Override
+                public void onRemote(ProjectReconciler.Remote r) {
+                    remote = r;
+                    remoteDone = true;
+                    step();
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    remoteError = e;
+                    remoteDone = true;
+                    step();
+                }
+            });
+            main.postDelayed(() -> {
+                graceOver = true;
+                step();
+            }, LOCAL_GRACE_MS);
+        }
+
+        void step() {
+            if (delivered) {
+                if (remote != null && !lateHandled) {
+                    lateHandled = true;
+                    lateRemote();
+                }
+                return;
+            }
+            if (!storedDone) return;
+
+            if (remote != null) {
+                ProjectReconciler.Merge m = ProjectReconciler.reconcile(stored, remote, System.currentTimeMillis());
+                applyMerge(owner, project, m, remote);
+                delivered = lateHandled = true;
+                if (cb != null) cb.onLoaded(project);
+                if (m.localWins) saveProjectToFirestore(project, null);
+            } else if (stored != null && (remoteDone || graceOver)) {
+                // offline or slow: show the local copy, no SyncState until the server answers
+                applyLocal(project, stored);
+                delivered = true;
+                if (remoteError != null) Log.w(TAG, "showing local copy", remoteError);
+                if (cb != null) cb.onLoaded(project);
+            } else if (remoteDone) {
+                delivered = true;
+                if (cb != null) cb.onError(remoteError);
+            }
+        }
+
+        void lateRemote() {
+            ProjectReconciler.Merge m = ProjectReconciler.reconcile(stored, remote, System.currentTimeMillis());
+            if (m.remoteWins) {
+                // Leave the project detached: saves keep going to the local
+                // store (as dirty rows) and are reconciled on the next open.
+                if (cb != null) cb.onRemoteChanged(project);
+                return;
+            }
+            syncStates.put(project.getId(), ProjectWrites.syncStateOf(remote));
+            long at = System.currentTimeMillis();
+            String id = project.getId();
+            onIo(() -> local.markSynced(id, remote.code, remote.files, remote.messages.size(), at));
+            if (m.localWins) saveProjectToFirestore(project, null);
+        }
+    }
+
+    // ---------- reconcile ----------
+    private void applyMerge(String owner, Project project, ProjectReconciler.Merge m, ProjectReconciler.Remote r) {
+        LocalProjectStore.Content c = m.content;
+        applyLocal(project, c);
+        syncStates.put(project.getId(), ProjectWrites.syncStateOf(r));
+        if (local != null && owner != null) {
+            ProjectSummary row = new ProjectSummary(project.getId(), project.getTitle(),
+                    project.getCreatedAt(), c.files.size(), null);
+            long at = System.currentTimeMillis();
+            onIo(() -> local.replaceContent(owner, row, c, at));
         }
     }
 
-    public void deleteProject(Project project) {
+    private static void applyLocal(Project project, LocalProjectStore.Content c) {
+        project.setCode(c.code);
+        List<ProjectFile> fileList = new ArrayList<>(c.files.size());
+        for (LocalProjectStore.FileRow f : c.files) fileList.add(new ProjectFile(f.path, f.content));
+        project.setFiles(fileList);
+        project.setMessages(new ArrayList<>(c.messages));
+        project.setContentLoaded(true);
+    }
+
+    private interface RemoteCallback {
+        void onRemote(ProjectReconciler.Remote r);
+
+        void onError(Exception e);
+    }
+
+    private void fetchRemote(DocumentReference doc, RemoteCallback cb) {
+        doc.get()
+                .addOnSuccessListener(d -> {
+                    ProjectReconciler.Remote r = new ProjectReconciler.Remote();
+                    r.code = d.getString("code");
+                    Timestamp docUpdated = d.getTimestamp("updatedAt");
+
+                    if (!isSplitLayout(d)) {
+                        Project tmp = new Project();
+                        readLegacyContent(d, tmp);
+                        r.legacy = true;
+                        for (ProjectFile f : tmp.getFiles()) {
+                            if (f.path == null) continue;
+                            r.files.put(f.path, f.content != null ? f.content : "");
+                            if (docUpdated != null) r.fileUpdated.put(f.path, docUpdated.toDate().getTime());
+                        }
+                        r.messages.addAll(tmp.getMessages());
+                        cb.onRemote(r);
+                        return;
+                    }
+
+                    Task<QuerySnapshot> filesTask = doc.collection(FILES).get();
+                    Task<QuerySnapshot> msgsTask = doc.collection(MESSAGES).orderBy("seq").get();
+                    Tasks.whenAllSuccess(filesTask, msgsTask)
+                            .addOnSuccessListener(results -> {
+                                for (DocumentSnapshot f : filesTask.getResult().getDocuments()) {
+                                    String path = f.getString("path");
+                                    if (path == null) continue;
+                                    String content = f.getString("content");
+                                    r.files.put(path, content != null ? content : "");
+                                    Timestamp ts = f.getTimestamp("updatedAt");
+                                    if (ts != null) r.fileUpdated.put(path, ts.toDate().getTime());
+                                }
+                                for (DocumentSnapshot m : msgsTask.getResult().getDocuments()) {
+                                    Message msg = new Message();
+                                    msg.setText(m.getString("text"));
+                                    msg.setRole(m.getString("role"));
+                                    msg.setImageUri(m.getString("imageUri"));
+                                    r.messages.add(msg);
+                                }
+                                cb.onRemote(r);
+                            })
+                            .addOnFailureListener(cb::onError);
+                })
+                .addOnFailureListener(cb::onError);
+    }
+
+    public void deleteProject(String projectId) {
         FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
-        if (user != null && project.getId() != null) {
-            db.collection("users").document(user.getUid()).collection("projects").document(project.getId()).delete();
+        if (user != null && projectId != null) {
+            deleteProjectDoc(projectsOf(user).document(projectId));
+            syncStates.remove(projectId);
+            projects.remove(projectId);
+            if (local != null) onIo(() -> local.deleteProject(projectId));
+            removeLocalSummary(projectId);
         }
     }
 
@@ -158,53 +540,127 @@ public class ProjectRepository {
      * Real-time list sync for ProjectsFragment
      */
     private ListenerRegistration liveReg;
+    private int syncGeneration = 0;
 
     public void startRealtimeSync() {
         FirebaseUser u = FirebaseAuth.getInstance().getCurrentUser();
         if (u == null) return;
         if (liveReg != null) liveReg.remove();
 
+        // the first snapshot reports every document as ADDED; until it
+        // arrives the list shows the local copy
+        summaries.clear();
+        final boolean[] firstSnapshot = {true};
+        final int gen = ++syncGeneration;
+        String owner = u.getUid();
+        if (local != null) {
+            onIo(() -> {
+                List<ProjectSummary> cached = local.loadSummaries(owner);
+                main.post(() -> {
+                    if (gen != syncGeneration || !firstSnapshot[0] || cached.isEmpty()) return;
+                    summaries.addAll(cached);
+                    notifyListeners();
+                });
+            });
+        }
         liveReg = db.collection("users").document(u.getUid())
                 .collection("projects")
                 .orderBy("createdAt", Query.Direction.DESCENDING)
                 .addSnapshotListener((snap, err) -> {
                     if (err != null || snap == null) return;
-                    projects.clear();
-                    for (DocumentSnapshot d : snap.getDocuments()) {
-                        Project p = new Project();
-                        p.setId(d.getId());
-                        p.setTitle(d.getString("title"));
-                        Timestamp ts = d.getTimestamp("createdAt");
-                        p.setCreatedAt(ts != null ? ts.toDate() : new Date());
-                        p.setCode(d.getString("code"));
-
-                        List<Map<String, Object>> msgsData = (List<Map<String, Object>>) d.get("messages");
-                        if (msgsData != null) {
-                            for (Map<String, Object> msgMap : msgsData) {
-                                Message msg = new Message();
-                                msg.setText((String) msgMap.get("text"));
-                                msg.setRole((String) msgMap.get("role"));
-                                msg.setImageUri((String) msgMap.get("imageUri"));
-                                p.addMessage(msg);
-                            }
-                        }
-                        projects.add(p);
-                        List<Map<String, Object>> filesData = (List<Map<String, Object>>) d.get("files");
-                        if (filesData != null) {
-                            List<ProjectFile> fileList = new ArrayList<>();
-                            for (Map<String, Object> fMap : filesData) {
-                                String path = (String) fMap.get("path");
-                                String content = (String) fMap.get("content");
-                                fileList.add(new ProjectFile(path, content));
-                            }
-                            p.setFiles(fileList);
+                    if (firstSnapshot[0]) {
+                        firstSnapshot[0] = false;
+                        summaries.clear();
+                    }
+                    List<DocumentChange> changes = snap.getDocumentChanges();
+                    if (changes.isEmpty()) return;
+                    List<ProjectSummary> upserts = new ArrayList<>();
+                    List<String> removed = new ArrayList<>();
+                    // indices are relative to the list after the previous change
+                    for (DocumentChange c : changes) {
+                        switch (c.getType()) {
+                            case ADDED:
+                                ProjectSummary added = summaryOf(c.getDocument());
+                                summaries.add(c.getNewIndex(), added);
+                                upserts.add(added);
+                                break;
+                            case MODIFIED:
+                                ProjectSummary s = summaryOf(c.getDocument());
+                                if (c.getOldIndex() == c.getNewIndex()) {
+                                    summaries.set(c.getNewIndex(), s);
+                                } else {
+                                    summaries.remove(c.getOldIndex());
+                                    summaries.add(c.getNewIndex(), s);
+                                }
+                                upserts.add(s);
+                                break;
+                            case REMOVED:
+                                summaries.remove(c.getOldIndex());
+                                removed.add(c.getDocument().getId());
+                                break;
                         }
                     }
                     notifyListeners();
+                    if (local != null) {
+                        onIo(() -> {
+                            for (ProjectSummary s : upserts) local.putSummary(owner, s);
+                            for (String id : removed) local.deleteProject(id);
+                        });
+                    }
                 });
     }
 
+    // only the list fields are read; content is loaded on open (loadProjectContent)
+    private static ProjectSummary summaryOf(DocumentSnapshot d) {
+        Timestamp created = d.getTimestamp("createdAt",
+                DocumentSnapshot.ServerTimestampBehavior.ESTIMATE);
+        Timestamp updated = d.getTimestamp("updatedAt",
+                DocumentSnapshot.ServerTimestampBehavior.ESTIMATE);
+
+        int fileCount;
+        if (isSplitLayout(d)) {
+            Long n = d.getLong("fileCount");
+            fileCount = n != null ? n.intValue() : 0;
+        } else {
+            Object files = d.get(FILES);
+            fileCount = files instanceof List ? ((List<?>) files).size() : 0;
+        }
+        return new ProjectSummary(
+                d.getId(),
+                d.getString("title"),
+                created != null ? created.toDate() : new Date(),
+                fileCount,
+                updated != null ? updated.toDate() : null);
+    }
+
+    // Without a live listener local changes are applied to the list by hand;
+    // with one, the listener's own (latency-compensated) snapshot does it.
+    private void putLocalSummary(ProjectSummary s) {
+        if (liveReg != null) return;
+        for (int i = 0; i < summaries.size(); i++) {
+            if (summaries.get(i).getId().equals(s.getId())) {
+                summaries.set(i, s);
+                notifyListeners();
+                return;
+            }
+        }
+        summaries.add(0, s);
+        notifyListeners();
+    }
+
+    private void removeLocalSummary(String projectId) {
+        if (liveReg != null) return;
+        for (int i = 0; i < summaries.size(); i++) {
+            if (summaries.get(i).getId().equals(projectId)) {
+                summaries.remove(i);
+                notifyListeners();
+                return;
+            }
+        }
+    }
+
     public void stopRealtimeSync() {
+        syncGeneration++;
         if (liveReg != null) {
             liveReg.remove();
             liveReg = null;
@@ -218,11 +674,17 @@ public class ProjectRepository {
                     .get()
                     .addOnSuccessListener(queryDocumentSnapshots -> {
                         for (QueryDocumentSnapshot doc : queryDocumentSnapshots) {
-                            doc.getReference().delete();
+                            deleteProjectDoc(doc.getReference());
                         }
                     });
+            if (local != null) {
+                String owner = user.getUid();
+                onIo(() -> local.clear(owner));
+            }
         }
         projects.clear();
+        summaries.clear();
+        syncStates.clear();
         notifyListeners();
     }
 
@@ -239,8 +701,9 @@ public class ProjectRepository {
         data.put("createdAt", FieldValue.serverTimestamp());
         data.put("tags", new ArrayList<String>());
         data.put("code", "");
-        data.put("messages", new ArrayList<>());  // empty
-        data.put("files", new ArrayList<>());     // empty
+        data.put(F_LAYOUT, LAYOUT_SPLIT);          // messages / files go to subcollections
+        data.put("fileCount", 0);
+        data.put("messageCount", 0);
 
         db.collection("users").document(u.getUid())
                 .collection("projects")
@@ -248,8 +711,10 @@ public class ProjectRepository {
                 .addOnSuccessListener(ref -> {
                     p.setId(ref.getId());
                     p.setCreatedAt(new Date());
-                    projects.add(0, p);
-                    notifyListeners();
+                    p.setContentLoaded(true);
+                    syncStates.put(ref.getId(), new SyncState());
+                    projects.put(ref.getId(), p);
+                    putLocalSummary(ProjectSummary.of(p));
                     if (cb != null) cb.onSaved(ref.getId());
                 })
                 .addOnFailureListener(e -> {
@@ -257,36 +722,130 @@ public class ProjectRepository {
                 });
     }
 
-    public void renameProject(Project project, String newTitle, ProjectSaveCallback cb) {
+    public void renameProject(String projectId, String newTitle, ProjectSaveCallback cb) {
         FirebaseUser u = FirebaseAuth.getInstance().getCurrentUser();
         if (u == null) {
             if (cb != null) cb.onError(new IllegalStateException("Not signed in"));
             return;
         }
-        if (project.getId() == null) {
+        if (projectId == null) {
             if (cb != null) cb.onError(new IllegalStateException("Project has no id"));
             return;
         }
 
         db.collection("users").document(u.getUid())
                 .collection("projects")
-                .document(project.getId())
-                .update("title", newTitle)
+                .document(projectId)
+                .update("title", newTitle, "updatedAt", FieldValue.serverTimestamp())
                 .addOnSuccessListener(aVoid -> {
-                    // update local object
-                    project.setTitle(newTitle);
-                    // also update the list entry
-                    for (int i = 0; i < projects.size(); i++) {
-                        if (projects.get(i).getId().equals(project.getId())) {
-                            projects.set(i, project);
+                    // update the open copy, if any
+                    Project open = projects.get(projectId);
+                    if (open != null) open.setTitle(newTitle);
+                    for (ProjectSummary s : summaries) {
+                        if (s.getId().equals(projectId)) {
+                            putLocalSummary(new ProjectSummary(projectId, newTitle,
+                                    s.getCreatedAt(), s.getFileCount(), new Date()));
                             break;
                         }
                     }
-                    notifyListeners();
-                    if (cb != null) cb.onSaved(project.getId());
+                    if (cb != null) cb.onSaved(projectId);
                 })
                 .addOnFailureListener(e -> {
                     if (cb != null) cb.onError(e);
                 });
     }
-}
\ No newline at end of file
+
+    // ---------- layout helpers ----------
+    private CollectionReference projectsOf(FirebaseUser u) {
+        return db.collection("users").document(u.getUid()).collection("projects");
+    }
+
+    private interface WriteOp {
+        void apply(WriteBatch batch);
+    }
+
+    private static WriteOp opFor(DocumentReference doc, ProjectWrites.Write w, Map<String, Object> meta) {
+        if (w.isMeta()) return b -> b.set(doc, meta, SetOptions.merge());
+        DocumentReference ref = doc.collection(w.collection).document(w.docId);
+        if (w.isDelete()) return b -> b.delete(ref);
+        Map<String, Object> fields = w.fields;
+        if (FILES.equals(w.collection)) fields.put("updatedAt", FieldValue.serverTimestamp());
+        return b -> b.set(ref, fields);
+    }
+
+    private Task<Void> commitInBatches(List<WriteOp> ops) {
+        return commitInBatches(ops, false);
+    }
+
+    // inOrder: each batch only after the previous one landed, so a failed
+    // batch can't leave a later one (e.g. a migration's array delete) applied
+    private Task<Void> commitInBatches(List<WriteOp> ops, boolean inOrder) {
+        List<Task<Void>> commits = new ArrayList<>();
+        Task<Void> last = Tasks.forResult(null);
+        for (List<WriteOp> chunk : ProjectWrites.inBatches(ops)) {
+            if (inOrder) {
+                last = last.onSuccessTask(v -> commit(chunk));
+            } else {
+                commits.add(commit(chunk));
+            }
+        }
+        return inOrder ? last : Tasks.whenAll(commits);
+    }
+
+    private Task<Void> commit(List<WriteOp> chunk) {
+        WriteBatch batch = db.batch();
+        for (WriteOp op : chunk) op.apply(batch);
+        return batch.commit();
+    }
+
+    // subcollections are not removed with their parent document
+    private void deleteProjectDoc(DocumentReference doc) {
+        Task<QuerySnapshot> filesTask = doc.collection(FILES).get();
+        Task<QuerySnapshot> msgsTask = doc.collection(MESSAGES).get();
+        Tasks.whenAllComplete(filesTask, msgsTask).addOnCompleteListener(t -> {
+            List<WriteOp> ops = new ArrayList<>();
+            for (Task<QuerySnapshot> q : Arrays.asList(filesTask, msgsTask)) {
+                if (!q.isSuccessful() || q.getResult() == null) continue;
+                for (DocumentSnapshot d : q.getResult().getDocuments()) {
+                    DocumentReference ref = d.getReference();
+                    ops.add(b -> b.delete(ref));
+                }
+            }
+            ops.add(b -> b.delete(doc));
+            commitInBatches(ops);
+        });
+    }
+
+    static boolean isSplitLayout(DocumentSnapshot d) {
+        Long layout = d.getLong(F_LAYOUT);
+        return layout != null && layout >= LAYOUT_SPLIT;
+    }
+
+    @SuppressWarnings("unchecked")
+    static void readLegacyContent(DocumentSnapshot d, Project p) {
+        List<Map<String, Object>> msgsData = (List<Map<String, Object>>) d.get(MESSAGES);
+        List<Message> msgList = new ArrayList<>();
+        if (msgsData != null) {
+            for (Map<String, Object> msgMap : msgsData) {
+                Message msg = new Message();
+                msg.setText((String) msgMap.get("text"));
+                msg.setRole((String) msgMap.get("role"));
+                msg.setImageUri((String) msgMap.get("imageUri"));
+                msgList.add(msg);
+            }
+        }
+        p.setMessages(msgList);
+
+        List<Map<String, Object>> filesData = (List<Map<String, Object>>) d.get(FILES);
+        List<ProjectFile> fileList = new ArrayList<>();
+        if (filesData != null) {
+            for (Map<String, Object> fMap : filesData) {
+                String path = (String) fMap.get("path");
+                String content = (String) fMap.get("content");
+                fileList.add(new ProjectFile(path, content));
+            }
+        }
+        p.setFiles(fileList);
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.example.aiassistantcoder;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * What the projects list needs about a project. Messages and files are not
+ * part of it; the full {@link Project} is loaded when one is opened.
+ */
+public final class ProjectSummary {
+    private final String id;
+    private final String title;
+    private final Date createdAt;
+    private final int fileCount;
+    private final Date lastActivity;
+
+    public ProjectSummary(@NonNull String id,
+                          @Nullable String title,
+                          @Nullable Date createdAt,
+                          int fileCount,
+                          @Nullable Date lastActivity) {
+        this.id = id;
+        this.title = title;
+        this.createdAt = createdAt;
+        this.fileCount = fileCount;
+        this.lastActivity = lastActivity != null ? lastActivity : createdAt;
+    }
+
+    /** Summary of a project held in memory (saved while the list isn't synced). */
+    @NonNull
+    static ProjectSummary of(@NonNull Project p) {
+        return new ProjectSummary(
+                p.getId(),
+                p.getTitle(),
+                p.getCreatedAt(),
+                p.getFiles() != null ? p.getFiles().size() : 0,
+                new Date());
+    }
+
+    @NonNull
+    public String getId() {
+        return id;
+    }
+
+    @Nullable
+    public String getTitle() {
+        return title;
+    }
+
+    @Nullable
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    @Nullable
+    public Date getLastActivity() {
+        return lastActivity;
+    }
+
+    public String getDate() {
+        if (createdAt == null) {
+            return "";
+        }
+        return new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(createdAt);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ProjectSummary)) return false;
+        ProjectSummary s = (ProjectSummary) o;
+        return fileCount == s.fileCount
+                && id.equals(s.id)
+                && Objects.equals(title, s.title)
+                && Objects.equals(createdAt, s.createdAt)
+                && Objects.equals(lastActivity, s.lastActivity);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, title, createdAt, fileCount, lastActivity);
+    }
+
+    /** Bare project to open; messages / files come from loadProjectContent. */
+    @NonNull
+    Project toProject() {
+        Project p = new Project(title);
+        p.setId(id);
+        p.setCreatedAt(createdAt);
+        return p;
+    }
+}
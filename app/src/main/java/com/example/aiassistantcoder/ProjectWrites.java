@@ -0,0 +1,180 @@
+package com.example.aiassistantcoder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The Firestore writes one save sends for the split layout (see
+ * {@link ProjectRepository}): only files and messages that differ from what
+ * the server is known to hold, split into batches. Pure, so it can be tested
+ * without Firestore; the repository turns each {@link Write} into a
+ * WriteBatch call.
+ */
+final class ProjectWrites {
+
+    private ProjectWrites() {
+    }
+
+    static final String FILES = "files";
+    static final String MESSAGES = "messages";
+
+    // Firestore caps a batch at 500 writes
+    static final int MAX_BATCH_OPS = 450;
+
+    // What the server is known to hold for a loaded project, so saves only send changes
+    static final class SyncState {
+        final Map<String, String> files = new HashMap<>();   // path -> content last written
+        final List<StoredMessage> messages = new ArrayList<>(); // message doc i, as last written
+        String code = null;                                  // "code" field last written
+        boolean legacy = false;                              // still on the array layout
+    }
+
+    // A message as written; the strings are shared with the Message, not copied.
+    // Messages change after they are added (a streamed answer's bubble), so
+    // each save compares every index instead of only appending.
+    static final class StoredMessage {
+        final String role;
+        final String text;
+        final String imageUri;
+
+        StoredMessage(Message m) {
+            this.role = m.getRole();
+            this.text = m.getText();
+            this.imageUri = m.getImageUri();
+        }
+
+        boolean sameAs(StoredMessage o) {
+            return Objects.equals(text, o.text)
+                    && Objects.equals(role, o.role)
+                    && Objects.equals(imageUri, o.imageUri);
+        }
+    }
+
+    static List<StoredMessage> storedOf(List<Message> msgs) {
+        List<StoredMessage> out = new ArrayList<>(msgs.size());
+        for (Message m : msgs) out.add(new StoredMessage(m));
+        return out;
+    }
+
+    /** What the server holds after loading {@code r}. */
+    static SyncState syncStateOf(ProjectReconciler.Remote r) {
+        SyncState s = new SyncState();
+        s.code = r.code;
+        s.legacy = r.legacy;
+        // a legacy project's subcollections are still empty: nothing there to diff against
+        if (r.legacy) return s;
+        s.files.putAll(r.files);
+        s.messages.addAll(storedOf(r.messages));
+        return s;
+    }
+
+    /** One document write; {@code collection} null = the project document, {@code fields} null = delete. */
+    static final class Write {
+        final String collection;
+        final String docId;
+        final Map<String, Object> fields;
+
+        Write(String collection, String docId, Map<String, Object> fields) {
+            this.collection = collection;
+            this.docId = docId;
+            this.fields = fields;
+        }
+
+        boolean isMeta() {
+            return collection == null;
+        }
+
+        boolean isDelete() {
+            return fields == null;
+        }
+    }
+
+    static final class Plan {
+        /** In commit order; exactly one meta write. */
+        final List<Write> writes = new ArrayList<>();
+        /** The project doc still has the inline arrays; the meta write drops them. */
+        boolean migrating;
+        int filesWritten, filesDeleted, messagesWritten, messagesDeleted;
+        long bytesWritten;
+    }
+
+    /**
+     * Writes that take the server from {@code prev} to {@code files} /
+     * {@code msgs}. A legacy project gets every file and message, and its
+     * meta write (which drops the inline arrays) comes last, after them.
+     */
+    static Plan plan(SyncState prev, Map<String, String> files, List<StoredMessage> msgs) {
+        Plan p = new Plan();
+        p.migrating = prev.legacy;
+        // the arrays are all the server has until this save lands
+        Map<String, String> prevFiles = prev.legacy ? Collections.emptyMap() : prev.files;
+        List<StoredMessage> prevMsgs = prev.legacy ? Collections.emptyList() : prev.messages;
+
+        Write meta = new Write(null, null, new HashMap<>());
+        if (!p.migrating) p.writes.add(meta);
+
+        // changed / new files
+        for (Map.Entry<String, String> e : files.entrySet()) {
+            String old = prevFiles.get(e.getKey());
+            if (old != null && old.equals(e.getValue())) continue;
+            Map<String, Object> fm = new HashMap<>();
+            fm.put("path", e.getKey());
+            fm.put("content", e.getValue());
+            p.writes.add(new Write(FILES, fileDocId(e.getKey()), fm));
+            p.filesWritten++;
+            p.bytesWritten += e.getValue().length();
+        }
+        // removed files
+        for (String path : prevFiles.keySet()) {
+            if (files.containsKey(path)) continue;
+            p.writes.add(new Write(FILES, fileDocId(path), null));
+            p.filesDeleted++;
+        }
+        // new or changed messages; usually just the tail
+        for (int i = 0; i < msgs.size(); i++) {
+            StoredMessage m = msgs.get(i);
+            if (i < prevMsgs.size() && prevMsgs.get(i).sameAs(m)) continue;
+            Map<String, Object> mm = new HashMap<>();
+            mm.put("seq", i);
+            mm.put("role", m.role);
+            mm.put("text", m.text);
+            mm.put("imageUri", m.imageUri);
+            p.writes.add(new Write(MESSAGES, messageDocId(i), mm));
+            p.messagesWritten++;
+            if (m.text != null) p.bytesWritten += m.text.length();
+        }
+        // removed messages (e.g. a failed answer's bubble)
+        for (int i = msgs.size(); i < prevMsgs.size(); i++) {
+            p.writes.add(new Write(MESSAGES, messageDocId(i), null));
+            p.messagesDeleted++;
+        }
+
+        if (p.migrating) p.writes.add(meta);
+        return p;
+    }
+
+    /** {@code ops} cut into commits of at most {@link #MAX_BATCH_OPS}, order kept. */
+    static <T> List<List<T>> inBatches(List<T> ops) {
+        List<List<T>> out = new ArrayList<>();
+        for (int from = 0; from < ops.size(); from += MAX_BATCH_OPS) {
+            out.add(ops.subList(from, Math.min(ops.size(), from + MAX_BATCH_OPS)));
+        }
+        return out;
+    }
+
+    // "src/main.py" -> "src%2Fmain.py" ('/' is not allowed in a document id)
+    static String fileDocId(String path) {
+        String id = path.replace("%", "%25").replace("/", "%2F");
+        if (id.isEmpty() || id.equals(".") || id.equals("..")) id = "%" + id;
+        return id;
+    }
+
+    static String messageDocId(int seq) {
+        return String.format(Locale.US, "%06d", seq);
+    }
+}
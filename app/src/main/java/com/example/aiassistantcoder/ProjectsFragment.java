@@ -3,6 +3,8 @@ package com.example.aiassistantcoder;
 import android.app.AlertDialog;
 import android.graphics.Canvas;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.InputType;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -24,9 +26,13 @@ import com.example.aiassistantcoder.ui.SnackBarApp;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.firebase.auth.FirebaseAuth;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ProjectsFragment extends Fragment implements ProjectRepository.ProjectsListener {
 
@@ -36,6 +42,12 @@ public class ProjectsFragment extends Fragment implements ProjectRepository.Proj
     private RecyclerView projectsRecyclerView;
     private FloatingActionButton fabNewProject;
 
+    // sorting runs off the main thread; AsyncListDiffer diffs off it too
+    private final ExecutorService sortExecutor = Executors.newSingleThreadExecutor();
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private String sortCriteria = "Name";
+    private int sortGeneration = 0;
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater,
@@ -73,11 +85,39 @@ public class ProjectsFragment extends Fragment implements ProjectRepository.Proj
     }
 
     @Override
-    public void onChanged(List<Project> projects) {
-        // refresh adapter when repo notifies
-        adapter = new ProjectAdapter(projects);
-        projectsRecyclerView.setAdapter(adapter);
-        attachSwipeHelper(); // make sure swipe works when list refreshes
+    public void onChanged(List<ProjectSummary> projects) {
+        submitProjects(projects);
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        sortExecutor.shutdownNow();
+    }
+
+    private void submitProjects(List<ProjectSummary> projects) {
+        if (adapter == null) return;
+        // copy here: the repository list is only touched on the main thread
+        List<ProjectSummary> copy = new ArrayList<>(projects);
+        Comparator<ProjectSummary> order = comparatorFor(sortCriteria);
+        int gen = ++sortGeneration;
+        sortExecutor.execute(() -> {
+            Collections.sort(copy, order);
+            main.post(() -> {
+                if (gen != sortGeneration || adapter == null) return;
+                adapter.submitList(copy);
+            });
+        });
+    }
+
+    private static Comparator<ProjectSummary> comparatorFor(String criteria) {
+        if ("Name".equals(criteria)) {
+            return Comparator.comparing(ProjectSummary::getTitle,
+                    Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+        }
+        // Date: newest first
+        return Comparator.comparing(ProjectSummary::getCreatedAt,
+                Comparator.nullsLast(Comparator.<Date>reverseOrder()));
     }
 
     private void updateProjectListView() {
@@ -94,11 +134,12 @@ public class ProjectsFragment extends Fragment implements ProjectRepository.Proj
 
     private void setupProjectsList(View view) {
         projectsRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
-        adapter = new ProjectAdapter(ProjectRepository.getInstance().getProjects());
+        adapter = new ProjectAdapter();
         projectsRecyclerView.setAdapter(adapter);
 
-        // attach swipe helper once initial adapter is set
+        // the adapter is never replaced, so the swipe helper is attached once
         attachSwipeHelper();
+        submitProjects(ProjectRepository.getInstance().getProjects());
 
         Spinner sortSpinner = view.findViewById(R.id.sort_spinner);
         String[] sortOptions = {"Name", "Date"};
@@ -172,19 +213,8 @@ public class ProjectsFragment extends Fragment implements ProjectRepository.Proj
     }
 
     private void sortProjects(String criteria) {
-        List<Project> currentProjects = ProjectRepository.getInstance().getProjects();
-        if ("Name".equals(criteria)) {
-            Collections.sort(
-                    currentProjects,
-                    Comparator.comparing(Project::getTitle, String.CASE_INSENSITIVE_ORDER)
-            );
-        } else { // Date
-            Collections.sort(
-                    currentProjects,
-                    (p1, p2) -> p2.getDate().compareTo(p1.getDate())
-            );
-        }
-        adapter.notifyDataSetChanged();
+        sortCriteria = criteria;
+        submitProjects(ProjectRepository.getInstance().getProjects());
     }
 
     /**
@@ -211,8 +241,7 @@ public class ProjectsFragment extends Fragment implements ProjectRepository.Proj
                         int position = viewHolder.getBindingAdapterPosition();
                         if (position == RecyclerView.NO_POSITION) return;
 
-                        Project project =
-                                ProjectRepository.getInstance().getProjects().get(position);
+                        ProjectSummary project = adapter.getItem(position);
 
                         if (direction == ItemTouchHelper.RIGHT) {
                             // Swipe RIGHT -> delete
@@ -297,17 +326,18 @@ public class ProjectsFragment extends Fragment implements ProjectRepository.Proj
         itemTouchHelper.attachToRecyclerView(projectsRecyclerView);
     }
 
-    private void showDeleteProjectDialog(Project project, int position) {
+    private void showDeleteProjectDialog(ProjectSummary project, int position) {
         new AlertDialog.Builder(requireContext())
                 .setTitle("Delete project")
                 .setMessage("Are you sure you want to delete \"" + project.getTitle() + "\"?")
                 .setPositiveButton("Delete", (dialog, which) -> {
-                    // Repository expects a Project, not an ID
-                    ProjectRepository.getInstance().deleteProject(project);
+                    ProjectRepository.getInstance().deleteProject(project.getId());
 
                     // rely on realtime listener to refresh,
                     // but remove immediately for instant feedback
-                    adapter.notifyItemRemoved(position);
+                    List<ProjectSummary> next = new ArrayList<>(adapter.getCurrentList());
+                    next.remove(project);
+                    adapter.submitList(next);
                 })
                 .setNegativeButton("Cancel", (dialog, which) -> {
                     // reset row position if user cancels
@@ -316,7 +346,7 @@ public class ProjectsFragment extends Fragment implements ProjectRepository.Proj
                 .show();
     }
 
-    private void showRenameProjectDialog(Project project, int position) {
+    private void showRenameProjectDialog(ProjectSummary project, int position) {
         final EditText input = new EditText(requireContext());
         input.setHint("New project name");
         input.setInputType(InputType.TYPE_CLASS_TEXT);
@@ -338,13 +368,11 @@ public class ProjectsFragment extends Fragment implements ProjectRepository.Proj
                         return;
                     }
 
-                    // update local object
-                    project.setTitle(newTitle);
-                    adapter.notifyItemChanged(position);
+                    adapter.notifyItemChanged(position); // snap row back
 
-                    // persist to Firestore (same as before in adapter)
+                    // title only: the list entry has no files/messages
                     ProjectRepository.getInstance()
-                            .saveProjectToFirestore(project, new ProjectRepository.ProjectSaveCallback() {
+                            .renameProject(project.getId(), newTitle, new ProjectRepository.ProjectSaveCallback() {
                                 @Override
                                 public void onSaved(String projectId) {
                                     SnackBarApp.INSTANCE.show(
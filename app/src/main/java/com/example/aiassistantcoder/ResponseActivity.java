@@ -6,6 +6,7 @@ import android.view.View;
 import android.widget.ImageButton;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.fragment.app.Fragment;
@@ -71,7 +72,10 @@ public class ResponseActivity extends AppCompatActivity implements CodeEditorFra
 
         // load/create project
         if (FirebaseAuth.getInstance().getCurrentUser() != null) {
-            currentProject = ProjectRepository.getInstance().getProjectByTitle(projectTitle);
+            String projectId = getIntent().getStringExtra("projectId");
+            currentProject = projectId != null
+                    ? ProjectRepository.getInstance().getProject(projectId)
+                    : ProjectRepository.getInstance().getProjectByTitle(projectTitle);
             Log.d(TAG, "Loaded project from repo (logged-in): title=" + projectTitle + ", project=" + currentProject);
         } else {
             String initialQuery = getIntent().getStringExtra("query");
@@ -94,6 +98,47 @@ public class ResponseActivity extends AppCompatActivity implements CodeEditorFra
             return;
         }
 
+        // messages / files live in subcollections and are fetched on open
+        loadContent();
+    }
+
+    private void loadContent() {
+        ProjectRepository.getInstance().loadProjectContent(currentProject,
+                new ProjectRepository.ProjectLoadCallback() {
+                    @Override
+                    public void onLoaded(Project project) {
+                        if (isFinishing() || isDestroyed()) return;
+                        setupPages();
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        Log.e(TAG, "loadProjectContent failed", e);
+                        if (isFinishing() || isDestroyed()) return;
+                        // without its content the project can't be saved, so don't open the editor
+                        new AlertDialog.Builder(ResponseActivity.this)
+                                .setTitle("Couldn't load project")
+                                .setMessage(e != null && e.getMessage() != null
+                                        ? e.getMessage() : "Check your connection and try again.")
+                                .setCancelable(false)
+                                .setPositiveButton("Retry", (d, w) -> loadContent())
+                                .setNegativeButton("Close", (d, w) -> finish())
+                                .show();
+                    }
+
+                    @Override
+                    public void onRemoteChanged(Project project) {
+                        if (isFinishing() || isDestroyed()) return;
+                        SnackBarApp.INSTANCE.show(
+                                findViewById(android.R.id.content),
+                                "This project changed on another device. Reopen it to merge.",
+                                SnackBarApp.Type.WARNING
+                        );
+                    }
+                });
+    }
+
+    private void setupPages() {
         viewPager = findViewById(R.id.view_pager);
         TabLayout tabLayout = findViewById(R.id.tab_layout);
 
@@ -0,0 +1,172 @@
+package com.example.aiassistantcoder;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Disk LRU of model answers in front of the Gemini proxy, so re-sending the
+ * same prompt (e.g. after a 503) doesn't pay for another generation.
+ * <p>
+ * The key is a hash of the whole request body: system instruction, the turns
+ * that were sent, the editor snapshot and any image. One file per entry under
+ * cache/gemini; the file's mtime is its last use, so LRU order survives
+ * restarts. Entries expire {@link #TTL_MS} after they were written and the
+ * least recently used go once the cache is over {@link #MAX_BYTES} or
+ * {@link #MAX_ENTRIES}.
+ * With {@link Prefs#bypassResponseCache} on, lookups always miss but fresh
+ * answers are still stored. Blocking; call off the main thread.
+ */
+public final class ResponseCache {
+
+    private static final String TAG = "ResponseCache";
+
+    static final long TTL_MS = 24L * 60 * 60 * 1000;
+    static final long MAX_BYTES = 4L * 1024 * 1024;
+    static final int MAX_ENTRIES = 200;
+
+    private static ResponseCache instance;
+
+    public static synchronized ResponseCache get(@NonNull Context context) {
+        if (instance == null) instance = new ResponseCache(context.getApplicationContext());
+        return instance;
+    }
+
+    private final Context appContext;
+    private final File dir;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    private ResponseCache(Context appContext) {
+        this.appContext = appContext;
+        this.dir = new File(appContext.getCacheDir(), "gemini");
+    }
+
+    /** Cache key for a serialized generate request. */
+    @NonNull
+    public static String keyOf(@NonNull String requestJson) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256")
+                    .digest(requestJson.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(d.length * 2);
+            for (byte b : d) sb.append(String.format(Locale.US, "%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);   // always present on Android
+        }
+    }
+
+    /** The stored model text, or null on a miss (or when bypassed). */
+    @Nullable
+    public synchronized String lookup(@NonNull String key) {
+        if (Prefs.bypassResponseCache(appContext)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        File f = new File(dir, key);
+        String text = null;
+        if (f.isFile()) {
+            String stored = read(f);
+            int nl = stored != null ? stored.indexOf('\n') : -1;
+            long written = nl > 0 ? parseLong(stored.substring(0, nl)) : 0L;
+            if (written > 0 && System.currentTimeMillis() - written <= TTL_MS) {
+                text = stored.substring(nl + 1);
+                //noinspection ResultOfMethodCallIgnored
+                f.setLastModified(System.currentTimeMillis());
+            } else {
+                //noinspection ResultOfMethodCallIgnored
+                f.delete();
+            }
+        }
+        if (text != null) hits.incrementAndGet();
+        else misses.incrementAndGet();
+        Log.d(TAG, (text != null ? "hit " : "miss ") + key.substring(0, 8) + " " + stats());
+        return text;
+    }
+
+    public synchronized void put(@NonNull String key, @NonNull String modelText) {
+        if (modelText.isEmpty()) return;
+        if (!dir.isDirectory() && !dir.mkdirs()) return;
+        File tmp = new File(dir, key + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write((System.currentTimeMillis() + "\n" + modelText).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.w(TAG, "put failed", e);
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(new File(dir, key))) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            return;
+        }
+        trim();
+    }
+
+    @NonNull
+    public String stats() {
+        return "(hits=" + hits.get() + ", misses=" + misses.get() + ")";
+    }
+
+    // ------------------------------------------------------------------------
+
+    // expired entries go first, then least recently used until under both caps
+    private void trim() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+
+        long now = System.currentTimeMillis();
+        long total = 0;
+        int kept = 0;
+        for (File f : files) {
+            // lastModified >= write time, so an entry unused for a TTL is surely expired
+            boolean drop = now - f.lastModified() > TTL_MS
+                    || kept >= MAX_ENTRIES
+                    || total + f.length() > MAX_BYTES;
+            if (drop) {
+                //noinspection ResultOfMethodCallIgnored
+                f.delete();
+            } else {
+                total += f.length();
+                kept++;
+            }
+        }
+    }
+
+    @Nullable
+    private static String read(File f) {
+        try (InputStream in = new FileInputStream(f)) {
+            byte[] buf = new byte[(int) f.length()];
+            int off = 0, n;
+            while (off < buf.length && (n = in.read(buf, off, buf.length - off)) > 0) off += n;
+            return new String(buf, 0, off, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static long parseLong(String s) {
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+}
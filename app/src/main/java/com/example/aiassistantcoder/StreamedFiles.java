@@ -0,0 +1,50 @@
+package com.example.aiassistantcoder;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Which files of a streamed answer the editor has already dealt with, so the
+ * final update (the whole file list) skips them.
+ * <p>
+ * A file counts as done once it was applied directly or its review reached
+ * the user. One whose review is still being diffed is not done: if the final
+ * update arrives first, it is diffed again from there, so a review that got
+ * cancelled or never delivered can't take the file with it.
+ * Main thread only.
+ */
+final class StreamedFiles {
+
+    private long streamId = 0;
+    private final Set<String> done = new HashSet<>();
+    private final Set<String> reviewing = new HashSet<>();
+
+    /** False if the file was already handled by an earlier partial update of this stream. */
+    boolean shouldApply(long streamId, boolean partial, @NonNull String fileId) {
+        if (streamId != this.streamId) {
+            this.streamId = streamId;
+            done.clear();
+            reviewing.clear();
+        }
+        if (streamId == 0) return true;
+        return partial || !done.contains(fileId);
+    }
+
+    /** A partial update applied the file, or queued its review when {@code reviewPending}. */
+    void applied(long streamId, boolean partial, @NonNull String fileId, boolean reviewPending) {
+        if (streamId == 0 || !partial || streamId != this.streamId) return;
+        if (reviewPending) {
+            reviewing.add(fileId);
+        } else {
+            reviewing.remove(fileId);
+            done.add(fileId);
+        }
+    }
+
+    /** The review of a streamed file was shown (or queued behind the open one). */
+    void reviewed(@NonNull String fileId) {
+        if (reviewing.remove(fileId)) done.add(fileId);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.aiassistantcoder;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * Bulk-upload body as a gzip-compressed ustar archive, written straight into
+ * the request: only one file's bytes are held at a time and nothing is
+ * escaped. Entries are the same path / content pairs the JSON format sends.
+ */
+final class TarUpload {
+
+    private TarUpload() {
+    }
+
+    static final MediaType TAR = MediaType.get("application/x-tar");
+    /** The server echoes this as "format" when it unpacked a tar upload. */
+    static final String FORMAT = "tar+gzip";
+
+    private static final int BLOCK = 512;
+    private static final byte[] ZEROS = new byte[BLOCK];
+
+    /** False if some path can't be stored in a plain ustar header. */
+    static boolean canEncode(@NonNull JSONArray files) {
+        for (int i = 0; i < files.length(); i++) {
+            JSONObject f = files.optJSONObject(i);
+            if (f == null) continue;
+            if (splitName(LiveRunManager.relPathOf(f).getBytes(StandardCharsets.UTF_8)) < 0) return false;
+        }
+        return true;
+    }
+
+    /** Send with {@code Content-Encoding: gzip}. */
+    @NonNull
+    static RequestBody gzipBody(@NonNull JSONArray files) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return TAR;
+            }
+
+            @Override
+            public void writeTo(@NonNull BufferedSink sink) throws IOException {
+                // finish(), not close(): the sink belongs to OkHttp.
+                // Fastest level: ~3.5x smaller than the JSON body at about JSON's encode cost.
+                GZIPOutputStream gz = new GZIPOutputStream(sink.outputStream(), 64 * 1024) {
+                    {
+                        def.setLevel(Deflater.BEST_SPEED);
+                    }
+                };
+                long mtime = System.currentTimeMillis() / 1000;
+                for (int i = 0; i < files.length(); i++) {
+                    JSONObject f = files.optJSONObject(i);
+                    if (f == null) continue;
+                    writeEntry(gz, LiveRunManager.relPathOf(f),
+                            f.optString("content", "").getBytes(StandardCharsets.UTF_8), mtime);
+                }
+                // end of archive: two empty blocks
+                gz.write(ZEROS);
+                gz.write(ZEROS);
+                gz.finish();
+            }
+        };
+    }
+
+    static void writeEntry(OutputStream out, String path, byte[] data, long mtime) throws IOException {
+        byte[] name = path.getBytes(StandardCharsets.UTF_8);
+        int split = splitName(name);
+        if (split < 0) throw new IOException("path too long for tar: " + path);
+
+        byte[] h = new byte[BLOCK];
+        if (split == 0) {
+            System.arraycopy(name, 0, h, 0, name.length);
+        } else {
+            // prefix (155 bytes at 345) + '/' + name (100 bytes at 0)
+            System.arraycopy(name, split + 1, h, 0, name.length - split - 1);
+            System.arraycopy(name, 0, h, 345, split);
+        }
+        octal(h, 100, 8, 0644);             // mode
+        octal(h, 108, 8, 0);                // uid
+        octal(h, 116, 8, 0);                // gid
+        octal(h, 124, 12, data.length);     // size
+        octal(h, 136, 12, mtime);
+        h[156] = '0';                       // regular file
+        put(h, 257, "ustar\0");
+        put(h, 263, "00");
+
+        // checksum is computed with its own field as spaces
+        Arrays.fill(h, 148, 156, (byte) ' ');
+        long sum = 0;
+        for (byte b : h) sum += b & 0xFF;
+        octal(h, 148, 7, sum);
+        h[155] = ' ';
+
+        out.write(h);
+        out.write(data);
+        int pad = (int) ((BLOCK - data.length % BLOCK) % BLOCK);
+        if (pad > 0) out.write(ZEROS, 0, pad);
+    }
+
+    // 0 = fits the name field; >0 = index of the '/' splitting prefix/name; -1 = too long
+    private static int splitName(byte[] name) {
+        if (name.length == 0) return -1;
+        if (name.length <= 100) return 0;
+        for (int i = Math.min(name.length - 1, 155); i > 0; i--) {
+            if (name[i] == '/' && name.length - i - 1 <= 100 && name.length - i - 1 > 0) return i;
+        }
+        return -1;
+    }
+
+    // zero-padded octal digits followed by NUL
+    private static void octal(byte[] h, int off, int len, long v) {
+        String s = Long.toOctalString(v);
+        int digits = len - 1;
+        for (int i = 0; i < digits; i++) {
+            int from = s.length() - digits + i;
+            h[off + i] = (byte) (from >= 0 ? s.charAt(from) : '0');
+        }
+        h[off + digits] = 0;
+    }
+
+    private static void put(byte[] h, int off, String s) {
+        byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(b, 0, h, off, b.length);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.aiassistantcoder;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.eclipse.tm4e.core.registry.IThemeSource;
+
+import io.github.rosemoe.sora.langs.textmate.registry.FileProviderRegistry;
+import io.github.rosemoe.sora.langs.textmate.registry.GrammarRegistry;
+import io.github.rosemoe.sora.langs.textmate.registry.ThemeRegistry;
+import io.github.rosemoe.sora.langs.textmate.registry.model.ThemeModel;
+import io.github.rosemoe.sora.langs.textmate.registry.provider.AssetsFileResolver;
+
+/**
+ * The bundled TextMate grammars (assets/tm) and themes (assets/themes),
+ * shared by the code editor and the chat's code-block highlighting.
+ * The registries are process-wide, so they are loaded once.
+ */
+final class TextMateGrammars {
+
+    private TextMateGrammars() {
+    }
+
+    private static boolean loaded = false;
+
+    /** Registers the asset grammars and the theme matching the app's dark/light setting. */
+    static synchronized void ensureLoaded(@NonNull Context context) throws Exception {
+        if (loaded) return;
+        FileProviderRegistry.getInstance().addFileProvider(
+                new AssetsFileResolver(context.getApplicationContext().getAssets())
+        );
+        GrammarRegistry.getInstance().loadGrammars("tm/languages.json");
+
+        SharedPreferences prefs =
+                context.getSharedPreferences("prefs", Context.MODE_PRIVATE);
+        boolean dark = prefs.getBoolean("dark_theme", false);
+        applyTheme(dark ? "dark" : "light");
+        loaded = true;
+    }
+
+    /** Loads themes/{@code themeName}.json and makes it current. */
+    static void applyTheme(@NonNull String themeName) throws Exception {
+        ThemeRegistry themeRegistry = ThemeRegistry.getInstance();
+        String themePath = "themes/" + themeName + ".json";
+
+        ThemeModel model = new ThemeModel(
+                IThemeSource.fromInputStream(
+                        FileProviderRegistry.getInstance().tryGetInputStream(themePath),
+                        themePath,
+                        null
+                ),
+                themeName
+        );
+
+        themeRegistry.loadTheme(model);
+        themeRegistry.setTheme(themeName);
+    }
+
+    /**
+     * Grammar scope for a language name as the model writes it ("Python",
+     * "node", "ts", a fence's info string...), or null when none fits.
+     */
+    @Nullable
+    static String scopeFor(@Nullable String language) {
+        if (language == null || language.trim().isEmpty()) return null;
+        String lang = language.trim().toLowerCase();
+        if (lang.contains("python") || lang.equals("py")) {
+            return "source.python";
+        } else if (lang.contains("typescript") || lang.equals("ts")) {
+            return "source.ts";
+        } else if (lang.contains("javascript") || lang.equals("js") || lang.contains("node")) {
+            if (lang.contains("react") || lang.contains("jsx")) {
+                return "source.jsx";
+            } else {
+                return "source.js";
+            }
+        } else if (lang.contains("html")) {
+            return "text.html.basic";
+        } else if (lang.contains("css")) {
+            return "source.css";
+        } else if (lang.contains("java")) {
+            return "source.java";
+        } else if (lang.contains("kotlin")) {
+            return "source.kotlin";
+        } else if (lang.contains("php")) {
+            return "source.php";
+        } else if (lang.contains("c#") || lang.contains("csharp")) {
+            return "source.cs";
+        } else if (lang.contains("c++") || lang.contains("cpp")) {
+            return "source.cpp";
+        }
+        return null;
+    }
+}
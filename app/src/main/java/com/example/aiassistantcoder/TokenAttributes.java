@@ -0,0 +1,22 @@
+package com.example.aiassistantcoder;
+
+import org.eclipse.tm4e.core.internal.grammar.tokenattrs.EncodedTokenAttributes;
+
+/**
+ * Reads the packed metadata ints of {@code IGrammar.tokenizeLine2}.
+ * <p>
+ * tm4e has no public decoder for them; the one it uses lives in an
+ * {@code internal} package and may move between releases. This is the only
+ * place that imports it, so a tm4e (sora-editor) upgrade that breaks it
+ * breaks here, loudly, and nowhere else.
+ */
+final class TokenAttributes {
+
+    private TokenAttributes() {
+    }
+
+    /** Index into the theme's color map; 0 = unset, 1 = default foreground. */
+    static int foreground(int metadata) {
+        return EncodedTokenAttributes.getForeground(metadata);
+    }
+}
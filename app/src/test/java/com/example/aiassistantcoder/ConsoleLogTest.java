@@ -0,0 +1,152 @@
+package com.example.aiassistantcoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ConsoleLogTest {
+
+    private static ConsoleLog consoleLog() {
+        return new ConsoleLog(ConsoleViewModel.MAX_LINES, ConsoleViewModel.MAX_CHARS);
+    }
+
+    private static String repeat(char c, int n) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) sb.append(c);
+        return sb.toString();
+    }
+
+    // chars held by completed lines, newlines excluded
+    private static long retainedChars(ConsoleLog log) {
+        ConsoleLog.Delta all = log.since(-1);
+        long n = 0;
+        for (String l : all.lines) n += l.length();
+        return n;
+    }
+
+    @Test
+    public void keepsAtMostMaxLines() {
+        ConsoleLog log = consoleLog();
+        for (int i = 0; i < 6000; i++) log.append("line " + i + "\n");
+
+        assertEquals(5000, log.lineCount());
+        ConsoleLog.Delta all = log.since(-1);
+        assertEquals(1000, all.firstLine);
+        assertEquals("line 1000", all.lines.get(0));
+        assertEquals("line 5999", all.lines.get(all.lines.size() - 1));
+    }
+
+    @Test
+    public void keepsAtMostMaxChars() {
+        ConsoleLog log = consoleLog();
+        String line = repeat('x', 1000);
+        for (int i = 0; i < 3000; i++) log.append(line + "\n");
+
+        long chars = retainedChars(log);
+        assertTrue(chars <= ConsoleViewModel.MAX_CHARS);
+        // evicts only what it has to
+        assertTrue(chars > ConsoleViewModel.MAX_CHARS - 1000);
+        assertEquals(ConsoleViewModel.MAX_CHARS / 1000, log.lineCount());
+    }
+
+    @Test
+    public void wrapsLongLines() {
+        ConsoleLog log = consoleLog();
+        int max = ConsoleLog.MAX_LINE_CHARS;
+        log.append(repeat('a', 2 * max + 100));
+
+        ConsoleLog.Delta d = log.since(-1);
+        assertEquals(2, d.lines.size());
+        assertEquals(max, d.lines.get(0).length());
+        assertEquals(max, d.lines.get(1).length());
+        assertEquals(100, d.tail.length());
+
+        // the rest is committed by the newline, still within the cap
+        log.append(repeat('b', 50) + "\n");
+        d = log.since(-1);
+        assertEquals(3, d.lines.size());
+        assertEquals(150, d.lines.get(2).length());
+        assertEquals("", d.tail);
+    }
+
+    @Test
+    public void wrapAcrossChunks() {
+        ConsoleLog log = consoleLog();
+        int max = ConsoleLog.MAX_LINE_CHARS;
+        // a long line arriving in small pieces is wrapped the same way
+        for (int i = 0; i < max + 10; i++) log.append("c");
+        ConsoleLog.Delta d = log.since(-1);
+        assertEquals(1, d.lines.size());
+        assertEquals(max, d.lines.get(0).length());
+        assertEquals(10, d.tail.length());
+    }
+
+    @Test
+    public void deltasOnlyCarryNewLines() {
+        ConsoleLog log = consoleLog();
+        log.append("a\nb\n");
+        ConsoleLog.Delta first = log.since(-1);
+        log.append("c\npartial");
+        ConsoleLog.Delta next = log.since(first.nextLine);
+
+        assertFalse(next.reset);
+        assertEquals(2, next.fromLine);
+        assertEquals(1, next.lines.size());
+        assertEquals("c", next.lines.get(0));
+        assertEquals("partial", next.tail);
+    }
+
+    @Test
+    public void cursorEvictedFromTheRingGetsAReset() {
+        ConsoleLog log = consoleLog();
+        log.append("old\n");
+        long cursor = log.since(-1).nextLine;
+        for (int i = 0; i < 6000; i++) log.append(i + "\n");
+
+        ConsoleLog.Delta d = log.since(cursor);
+        assertTrue(d.reset);
+        assertEquals(5000, d.lines.size());
+    }
+
+    @Test
+    public void clearStartsANewEpoch() {
+        ConsoleLog log = consoleLog();
+        log.append("a\nb");
+        int epoch = log.epoch();
+        log.clear();
+
+        assertEquals(epoch + 1, log.epoch());
+        assertEquals(0, log.lineCount());
+        assertEquals("", log.snapshot());
+    }
+
+    @Test
+    public void millionAppendsStayBounded() {
+        ConsoleLog log = consoleLog();
+        int total = 1_000_000;
+        for (int i = 0; i < total; i++) {
+            log.append("output line number " + i + " with some padding text\n");
+            if (i % 100_000 == 0) {
+                assertTrue(log.lineCount() <= log.capacity());
+                assertTrue(retainedChars(log) <= ConsoleViewModel.MAX_CHARS);
+            }
+        }
+
+        assertEquals(ConsoleViewModel.MAX_LINES, log.capacity());
+        assertEquals(ConsoleViewModel.MAX_LINES, log.lineCount());
+        assertTrue(retainedChars(log) <= ConsoleViewModel.MAX_CHARS);
+
+        // the window is the newest MAX_LINES lines, oldest first, nothing pending
+        ConsoleLog.Delta all = log.since(-1);
+        assertEquals(total, all.nextLine);
+        assertEquals(total - ConsoleViewModel.MAX_LINES, all.firstLine);
+        assertEquals(ConsoleViewModel.MAX_LINES, all.lines.size());
+        assertEquals("output line number " + (total - ConsoleViewModel.MAX_LINES) + " with some padding text",
+                all.lines.get(0));
+        assertEquals("output line number 999999 with some padding text",
+                all.lines.get(ConsoleViewModel.MAX_LINES - 1));
+        assertEquals("", all.tail);
+    }
+}
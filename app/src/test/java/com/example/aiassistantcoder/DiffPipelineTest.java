@@ -0,0 +1,114 @@
+package com.example.aiassistantcoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class DiffPipelineTest {
+
+    // stands in for the main looper: deliveries wait here until drained
+    private final BlockingQueue<Runnable> mainQueue = new LinkedBlockingQueue<>();
+    private final List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> batchesDone = Collections.synchronizedList(new ArrayList<>());
+    private DiffPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        pipeline = new DiffPipeline(new DiffPipeline.Listener() {
+            @Override
+            public void onFileDiff(@NonNull String fileId, @NonNull String newContent,
+                                   @NonNull List<CodeEditorFragment.DiffLine> diff, long tookMs) {
+                delivered.add(fileId + "=" + newContent);
+            }
+
+            @Override
+            public void onAllDone(int files, long totalMs) {
+                batchesDone.add(files);
+            }
+        }, mainQueue::add);
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.shutdown();
+    }
+
+    private static DiffPipeline.Job job(String id, String newContent) {
+        return new DiffPipeline.Job(id, "old\n" + id, newContent);
+    }
+
+    // runs posted work like the main thread would until n files were delivered
+    private void drainUntil(int n) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (delivered.size() < n) {
+            Runnable r = mainQueue.poll(100, TimeUnit.MILLISECONDS);
+            if (r != null) r.run();
+            assertTrue("timed out waiting for deliveries", System.currentTimeMillis() < deadline);
+        }
+        runPosted();
+    }
+
+    private void runPosted() {
+        Runnable r;
+        while ((r = mainQueue.poll()) != null) r.run();
+    }
+
+    @Test
+    public void updateForOneFileKeepsOthersReview() throws InterruptedException {
+        pipeline.submit(List.of(job("a.py", "A1")));
+        pipeline.submit(List.of(job("b.py", "B1")));
+        drainUntil(2);
+
+        assertEquals(2, delivered.size());
+        assertTrue(delivered.contains("a.py=A1"));
+        assertTrue(delivered.contains("b.py=B1"));
+    }
+
+    @Test
+    public void newerJobForSameFileSupersedesPostedResult() throws InterruptedException {
+        pipeline.submit(List.of(job("a.py", "A1")));
+        // A1's result is posted but not yet run on main when A2 arrives
+        Runnable staleDelivery = mainQueue.poll(5, TimeUnit.SECONDS);
+        pipeline.submit(List.of(job("a.py", "A2")));
+        staleDelivery.run();
+        drainUntil(1);
+
+        assertEquals(List.of("a.py=A2"), delivered);
+    }
+
+    @Test
+    public void cancelByIdLeavesOtherFilesAlone() throws InterruptedException {
+        pipeline.submit(List.of(job("a.py", "A1"), job("b.py", "B1")));
+        pipeline.cancel(List.of("a.py"));
+        // a.py may or may not have been posted already; either way it must not arrive
+        Thread.sleep(200);
+        runPosted();
+
+        assertEquals(List.of("b.py=B1"), delivered);
+        assertEquals(List.of(2), batchesDone);
+    }
+
+    @Test
+    public void streamedFilesEachGetTheirReview() throws InterruptedException {
+        // a streamed answer publishes one file per partial update
+        for (int i = 0; i < 5; i++) {
+            pipeline.submit(List.of(job("f" + i + ".py", "v" + i)));
+        }
+        drainUntil(5);
+
+        assertEquals(5, delivered.size());
+        for (int i = 0; i < 5; i++) assertTrue(delivered.contains("f" + i + ".py=v" + i));
+    }
+}
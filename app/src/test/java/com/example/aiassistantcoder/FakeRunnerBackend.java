@@ -0,0 +1,221 @@
+package com.example.aiassistantcoder;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * In-memory stand-in for the live runner's REST API, enough for
+ * LiveRunManager: projects (create / delete), bulk upload (tar+gzip or JSON), file stat and
+ * sessions. Records every bulk upload.
+ * <p>
+ * Served under a random {@link #root}: LiveRunManager keeps per-backend state
+ * for the process, and MockWebServer may hand a later test the same port.
+ */
+class FakeRunnerBackend extends Dispatcher {
+
+    static final class Upload {
+        final String projectId;
+        final boolean tar;
+        final Map<String, String> files;
+
+        Upload(String projectId, boolean tar, Map<String, String> files) {
+            this.projectId = projectId;
+            this.tar = tar;
+            this.files = files;
+        }
+    }
+
+    final String root = "/runner-" + UUID.randomUUID();
+    final Map<String, Map<String, String>> projects = Collections.synchronizedMap(new LinkedHashMap<>());
+    final List<Upload> uploads = Collections.synchronizedList(new ArrayList<>());
+    final List<String> deletedSessions = Collections.synchronizedList(new ArrayList<>());
+    /** 0 = tar accepted; otherwise the status a tar upload gets. */
+    volatile int tarRejectCode = 0;
+    /** Accepts a tar upload with 200 but doesn't say it unpacked it (an old server). */
+    volatile boolean tarIgnored = false;
+    volatile int tarAttempts = 0;
+
+    private int nextProject = 0;
+    private int nextSession = 0;
+
+    /** The server forgets a project, as its reaper would. */
+    void drop(String projectId) {
+        projects.remove(projectId);
+    }
+
+    Upload lastUpload() {
+        return uploads.get(uploads.size() - 1);
+    }
+
+    @NonNull
+    @Override
+    public MockResponse dispatch(@NonNull RecordedRequest req) {
+        try {
+            return handle(req);
+        } catch (IOException | JSONException e) {
+            return new MockResponse().setResponseCode(500).setBody(String.valueOf(e));
+        }
+    }
+
+    private MockResponse handle(RecordedRequest req) throws IOException, JSONException {
+        String method = req.getMethod();
+        String path = req.getPath();
+        String query = "";
+        int q = path.indexOf('?');
+        if (q >= 0) {
+            query = path.substring(q + 1);
+            path = path.substring(0, q);
+        }
+        if (!path.startsWith(root + "/")) return new MockResponse().setResponseCode(404);
+        path = path.substring(root.length());
+        String[] seg = path.substring(1).split("/");
+
+        if ("POST".equals(method) && path.equals("/projects")) {
+            String id;
+            synchronized (this) {
+                id = "p" + (++nextProject);
+            }
+            projects.put(id, Collections.synchronizedMap(new LinkedHashMap<>()));
+            return json(new JSONObject().put("projectId", id));
+        }
+        if ("DELETE".equals(method) && seg.length == 2 && seg[0].equals("projects")) {
+            return projects.remove(seg[1]) != null
+                    ? json(new JSONObject())
+                    : new MockResponse().setResponseCode(404);
+        }
+        if (seg.length >= 3 && seg[0].equals("projects") && seg[2].equals("files")) {
+            Map<String, String> files = projects.get(seg[1]);
+            if (files == null) return new MockResponse().setResponseCode(404).setBody("no such project");
+
+            if (seg.length == 4 && seg[3].equals("bulk") && "POST".equals(method)) {
+                byte[] body = req.getBody().readByteArray();
+                boolean tar = String.valueOf(req.getHeader("Content-Type")).startsWith("application/x-tar");
+                Map<String, String> got;
+                if (tar) {
+                    tarAttempts++;
+                    if (tarRejectCode != 0) return new MockResponse().setResponseCode(tarRejectCode);
+                    if (tarIgnored) return json(new JSONObject());
+                    got = readTar(body);
+                } else {
+                    got = new LinkedHashMap<>();
+                    JSONArray arr = new JSONObject(new String(body, StandardCharsets.UTF_8)).getJSONArray("files");
+                    for (int i = 0; i < arr.length(); i++) {
+                        JSONObject f = arr.getJSONObject(i);
+                        got.put(LiveRunManager.relPathOf(f), f.optString("content", ""));
+                    }
+                }
+                files.putAll(got);
+                uploads.add(new Upload(seg[1], tar, got));
+                JSONObject res = new JSONObject().put("files", got.size());
+                if (tar) res.put("format", TarUpload.FORMAT);
+                return json(res);
+            }
+            if (seg.length == 3 && "GET".equals(method)) {
+                String rel = null;
+                for (String kv : query.split("&")) {
+                    if (kv.startsWith("path=")) rel = URLDecoder.decode(kv.substring(5), "UTF-8");
+                }
+                String content = rel != null ? files.get(rel) : null;
+                if (content == null) return new MockResponse().setResponseCode(404).setBody("no such file");
+                byte[] b = content.getBytes(StandardCharsets.UTF_8);
+                return json(new JSONObject()
+                        .put("size", b.length)
+                        .put("sha256", LiveRunManager.sha256Hex(b)));
+            }
+        }
+        if ("POST".equals(method) && path.equals("/session")) {
+            String id;
+            synchronized (this) {
+                id = "s" + (++nextSession);
+            }
+            return json(new JSONObject().put("id", id).put("ws", "/ws/" + id));
+        }
+        if ("DELETE".equals(method) && seg.length == 2 && seg[0].equals("session")) {
+            deletedSessions.add(seg[1]);
+            return json(new JSONObject());
+        }
+        return new MockResponse().setResponseCode(404);
+    }
+
+    private static MockResponse json(JSONObject o) {
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(o.toString());
+    }
+
+    // ---------- tar ----------
+
+    /** Unpacks a gzip'd ustar archive, checking every header's checksum. */
+    static Map<String, String> readTar(byte[] gzipped) throws IOException {
+        Map<String, String> out = new LinkedHashMap<>();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            byte[] h = new byte[512];
+            while (true) {
+                readFully(in, h);
+                if (isZero(h)) break;
+                long sum = 0;
+                for (int i = 0; i < 512; i++) sum += (i >= 148 && i < 156) ? ' ' : h[i] & 0xFF;
+                if (sum != octal(h, 148, 8)) throw new IOException("bad header checksum");
+                if (!"ustar".equals(string(h, 257, 6))) throw new IOException("not ustar");
+                if (h[156] != '0') throw new IOException("not a regular file: " + (char) h[156]);
+
+                String name = string(h, 0, 100);
+                String prefix = string(h, 345, 155);
+                int size = (int) octal(h, 124, 12);
+                byte[] data = new byte[size];
+                readFully(in, data);
+                int pad = (512 - size % 512) % 512;
+                readFully(in, new byte[pad]);
+                out.put(prefix.isEmpty() ? name : prefix + "/" + name,
+                        new String(data, StandardCharsets.UTF_8));
+            }
+            // second end-of-archive block
+            readFully(in, h);
+            if (!isZero(h)) throw new IOException("missing end of archive");
+        }
+        return out;
+    }
+
+    private static void readFully(InputStream in, byte[] b) throws IOException {
+        int off = 0;
+        while (off < b.length) {
+            int n = in.read(b, off, b.length - off);
+            if (n < 0) throw new IOException("truncated archive");
+            off += n;
+        }
+    }
+
+    private static boolean isZero(byte[] b) {
+        for (byte x : b) if (x != 0) return false;
+        return true;
+    }
+
+    private static String string(byte[] h, int off, int len) {
+        int end = off;
+        while (end < off + len && h[end] != 0) end++;
+        return new String(h, off, end - off, StandardCharsets.UTF_8);
+    }
+
+    private static long octal(byte[] h, int off, int len) {
+        String s = string(h, off, len).trim();
+        return s.isEmpty() ? 0 : Long.parseLong(s, 8);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.aiassistantcoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class GeminiStreamTest {
+
+    private MockWebServer server;
+    private final StringBuilder streamed = new StringBuilder();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private static String event(String text, String finishReason) {
+        return "data: {\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + text + "\"}]}"
+                + (finishReason != null ? ",\"finishReason\":\"" + finishReason + "\"" : "")
+                + "}]}\n\n";
+    }
+
+    private GeminiStream.Result stream(String body) throws IOException {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "text/event-stream").setBody(body));
+        return GeminiStream.generate(server.url("/stream").toString(), "{}", streamed::append);
+    }
+
+    @Test
+    public void stopIsComplete() throws IOException {
+        GeminiStream.Result r = stream(event("Hel", null) + ": keep-alive\n\n" + event("lo", "STOP"));
+
+        assertEquals("Hello", r.text);
+        assertEquals("Hello", streamed.toString());
+        assertEquals("STOP", r.finishReason);
+        assertTrue(r.complete());
+    }
+
+    @Test
+    public void cutOffAnswerIsNotComplete() throws IOException {
+        GeminiStream.Result tokens = stream(event("{\\\"files\\\": [", "MAX_TOKENS"));
+        assertEquals("MAX_TOKENS", tokens.finishReason);
+        assertFalse(tokens.complete());
+
+        GeminiStream.Result safety = stream(event("partial", null) + event("", "SAFETY"));
+        assertEquals("partial", safety.text);
+        assertFalse(safety.complete());
+    }
+
+    @Test
+    public void streamEndingWithoutAReasonIsNotComplete() throws IOException {
+        GeminiStream.Result r = stream(event("half an ans", null) + "data: [DONE]\n\n" + event("ignored", "STOP"));
+
+        assertEquals("half an ans", r.text);
+        assertNull(r.finishReason);
+        assertFalse(r.complete());
+    }
+
+    @Test
+    public void errorEventThrows() {
+        try {
+            stream(event("a", null) + "data: {\"error\":{\"message\":\"quota\"}}\n\n");
+            fail("expected an IOException");
+        } catch (IOException e) {
+            assertEquals("quota", e.getMessage());
+        }
+    }
+}
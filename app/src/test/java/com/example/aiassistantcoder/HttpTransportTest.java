@@ -0,0 +1,170 @@
+package com.example.aiassistantcoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class HttpTransportTest {
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private String url(String path) {
+        return server.url(path).toString();
+    }
+
+    private interface Call {
+        void run() throws Exception;
+    }
+
+    private static HttpTransport.HttpStatusException statusOf(Call call) throws Exception {
+        try {
+            call.run();
+        } catch (HttpTransport.HttpStatusException e) {
+            return e;
+        }
+        fail("expected an HttpStatusException");
+        return null;
+    }
+
+    private void get(String path) throws Exception {
+        HttpTransport.getJson(url(path));
+    }
+
+    @Test
+    public void getJsonParsesTheBody() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"id\":\"p1\",\"files\":3}"));
+        JSONObject o = HttpTransport.getJson(url("/projects/p1"));
+
+        assertEquals("p1", o.getString("id"));
+        assertEquals(3, o.getInt("files"));
+        assertEquals("GET", server.takeRequest().getMethod());
+    }
+
+    @Test
+    public void statusCodesMapToHttpStatusException() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404).setBody("no such project"));
+        server.enqueue(new MockResponse().setResponseCode(410));
+        server.enqueue(new MockResponse().setResponseCode(500).setBody("boom"));
+        server.enqueue(new MockResponse().setResponseCode(422));
+
+        HttpTransport.HttpStatusException e404 = statusOf(() -> get("/a"));
+        assertEquals(404, e404.code);
+        assertTrue(e404.isGone());
+        assertTrue(e404.getMessage(), e404.getMessage().contains("no such project"));
+
+        HttpTransport.HttpStatusException e410 = statusOf(() -> get("/b"));
+        assertEquals(410, e410.code);
+        assertTrue(e410.isGone());
+
+        HttpTransport.HttpStatusException e500 = statusOf(() -> get("/c"));
+        assertEquals(500, e500.code);
+        assertFalse(e500.isGone());
+
+        HttpTransport.HttpStatusException e422 = statusOf(() -> get("/d"));
+        assertEquals(422, e422.code);
+        assertFalse(e422.isGone());
+    }
+
+    @Test
+    public void errorBodyIsConsumedSoTheConnectionIsReused() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500).setBody("boom"));
+        server.enqueue(new MockResponse().setBody("{}"));
+
+        statusOf(() -> get("/fail"));
+        HttpTransport.getJson(url("/ok"));
+
+        assertEquals(0, server.takeRequest().getSequenceNumber());
+        // second request on the same connection
+        assertEquals(1, server.takeRequest().getSequenceNumber());
+    }
+
+    @Test
+    public void jsonBodyIsStreamedNotBuffered() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"ok\":true}"));
+        int n = 20_000;
+
+        JSONObject answer = HttpTransport.postJson(url("/files"), w -> {
+            w.beginObject();
+            w.name("files").beginArray();
+            for (int i = 0; i < n; i++) {
+                w.beginObject().name("path").value("f" + i + ".py").name("content").value("print(" + i + ")").endObject();
+            }
+            w.endArray();
+            w.endObject();
+        });
+
+        assertTrue(answer.getBoolean("ok"));
+        RecordedRequest req = server.takeRequest();
+        // no length known up front: written chunk by chunk as the writer produced it
+        assertNull(req.getHeader("Content-Length"));
+        assertFalse(req.getChunkSizes().isEmpty());
+        assertTrue(req.getHeader("Content-Type").startsWith("application/json"));
+
+        JSONArray files = new JSONObject(req.getBody().readUtf8()).getJSONArray("files");
+        assertEquals(n, files.length());
+        assertEquals("f19999.py", files.getJSONObject(n - 1).getString("path"));
+    }
+
+    @Test
+    public void orgJsonValuesAreWrittenAsIs() throws Exception {
+        server.enqueue(new MockResponse().setBody("{}"));
+        JSONObject body = new JSONObject()
+                .put("name", "demo")
+                .put("count", 3)
+                .put("ratio", 0.5)
+                .put("live", true)
+                .put("none", JSONObject.NULL)
+                .put("tags", new JSONArray().put("a").put(new JSONObject().put("k", "v")));
+
+        HttpTransport.putJson(url("/projects/p1"), body);
+
+        RecordedRequest req = server.takeRequest();
+        assertEquals("PUT", req.getMethod());
+        JSONObject sent = new JSONObject(req.getBody().readUtf8());
+        assertEquals("demo", sent.getString("name"));
+        assertEquals(3, sent.getInt("count"));
+        assertEquals(0.5, sent.getDouble("ratio"), 0);
+        assertTrue(sent.getBoolean("live"));
+        assertTrue(sent.isNull("none"));
+        assertEquals("v", sent.getJSONArray("tags").getJSONObject(1).getString("k"));
+    }
+
+    @Test
+    public void postForJsonSendsContentEncoding() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"files\":2}"));
+        okhttp3.RequestBody raw = okhttp3.RequestBody.create(new byte[]{1, 2, 3},
+                okhttp3.MediaType.get("application/x-tar"));
+
+        JSONObject o = HttpTransport.postForJson(url("/upload"), raw, "gzip");
+
+        assertEquals(2, o.getInt("files"));
+        RecordedRequest req = server.takeRequest();
+        assertEquals("gzip", req.getHeader("Content-Encoding"));
+        assertEquals(3, req.getBodySize());
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.aiassistantcoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+public class LiveRunManagerTest {
+
+    // runs tasks on the calling thread, so a call has finished when it returns
+    static final class InlineExecutor extends AbstractExecutorService {
+        @Override
+        public void execute(Runnable r) {
+            r.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
+    private MockWebServer server;
+    private FakeRunnerBackend backend;
+    private LiveRunManager manager;
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> sessions = Collections.synchronizedList(new ArrayList<>());
+    // manifests live for the process; a fresh key keeps tests apart
+    private final String key = "project-" + UUID.randomUUID();
+
+    @Before
+    public void setUp() throws IOException {
+        backend = new FakeRunnerBackend();
+        server = new MockWebServer();
+        server.setDispatcher(backend);
+        server.start();
+        manager = managerFor(server.url(backend.root).toString());
+    }
+
+    private LiveRunManager managerFor(String baseUrl) {
+        return new LiveRunManager(baseUrl, new InlineExecutor(), new LiveRunManager.Listener() {
+            @Override
+            public void log(String msg) {
+            }
+
+            @Override
+            public void onSessionReady(String wsUrl, String sessionId) {
+                sessions.add(sessionId);
+            }
+
+            @Override
+            public void onError(String msg) {
+                errors.add(msg);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private static JSONArray files(String... pathsAndContents) throws JSONException {
+        JSONArray out = new JSONArray();
+        for (int i = 0; i < pathsAndContents.length; i += 2) {
+            out.put(new JSONObject().put("path", pathsAndContents[i]).put("content", pathsAndContents[i + 1]));
+        }
+        return out;
+    }
+
+    private void run(JSONArray files) {
+        manager.startLiveBulk(files, "python", "main.py", false, false, key);
+        assertEquals(Collections.emptyList(), errors);
+    }
+
+    private FakeRunnerBackend.Upload firstUpload() {
+        return backend.uploads.get(0);
+    }
+
+    @Test
+    public void firstRunUploadsEverything() throws Exception {
+        run(files("main.py", "print(1)", "util.py", "x = 1", "data.txt", "abc"));
+
+        assertEquals(1, backend.uploads.size());
+        assertEquals(Set.of("main.py", "util.py", "data.txt"), firstUpload().files.keySet());
+        assertFalse(manager.lastRunWasWarm());
+        assertEquals(1, sessions.size());
+    }
+
+    @Test
+    public void changedRunSendsOnlyTheDelta() throws Exception {
+        run(files("main.py", "print(1)", "util.py", "x = 1", "data.txt", "abc"));
+        run(files("main.py", "print(1)", "util.py", "x = 2", "data.txt", "abc"));
+
+        assertEquals(2, backend.uploads.size());
+        FakeRunnerBackend.Upload delta = backend.lastUpload();
+        assertEquals(Set.of("util.py"), delta.files.keySet());
+        assertEquals(firstUpload().projectId, delta.projectId);
+        assertEquals("x = 2", backend.projects.get(delta.projectId).get("util.py"));
+        assertFalse(manager.lastRunWasWarm());
+    }
+
+    @Test
+    public void unchangedRunIsWarmAndUploadsNothing() throws Exception {
+        JSONArray files = files("main.py", "print(1)");
+        run(files);
+        run(files);
+
+        assertEquals(1, backend.uploads.size());
+        assertTrue(manager.lastRunWasWarm());
+        assertEquals(2, sessions.size());
+    }
+
+    @Test
+    public void removedFileStartsAFreshProject() throws Exception {
+        run(files("main.py", "print(1)", "old.py", "gone soon"));
+        run(files("main.py", "print(1)"));
+
+        FakeRunnerBackend.Upload full = backend.lastUpload();
+        assertNotEquals(firstUpload().projectId, full.projectId);
+        assertEquals(Set.of("main.py"), full.files.keySet());
+        assertFalse(backend.projects.get(full.projectId).containsKey("old.py"));
+    }
+
+    @Test
+    public void goneProjectGetsAFullReupload() throws Exception {
+        run(files("main.py", "print(1)", "util.py", "x = 1"));
+        String first = firstUpload().projectId;
+        backend.drop(first);
+
+        run(files("main.py", "print(1)", "util.py", "x = 2"));
+
+        FakeRunnerBackend.Upload full = backend.lastUpload();
+        assertNotEquals(first, full.projectId);
+        assertEquals(Set.of("main.py", "util.py"), full.files.keySet());
+        assertEquals("x = 2", backend.projects.get(full.projectId).get("util.py"));
+
+        // and the manifest now points at the new project
+        run(files("main.py", "print(1)", "util.py", "x = 2"));
+        assertTrue(manager.lastRunWasWarm());
+        assertEquals(full, backend.lastUpload());
+    }
+
+    @Test
+    public void sameProjectOnAnotherBackendUploadsEverything() throws Exception {
+        JSONArray files = files("main.py", "print(1)", "util.py", "x = 1");
+        run(files);
+
+        FakeRunnerBackend other = new FakeRunnerBackend();
+        MockWebServer otherServer = new MockWebServer();
+        otherServer.setDispatcher(other);
+        otherServer.start();
+        try {
+            LiveRunManager elsewhere = managerFor(otherServer.url(other.root).toString());
+            elsewhere.startLiveBulk(files, "python", "main.py", false, false, key);
+
+            assertEquals(Collections.emptyList(), errors);
+            assertFalse(elsewhere.lastRunWasWarm());
+            assertEquals(1, other.uploads.size());
+            assertEquals(Set.of("main.py", "util.py"), other.uploads.get(0).files.keySet());
+        } finally {
+            otherServer.shutdown();
+        }
+    }
+
+    @Test
+    public void prepareNoticesAGoneProjectAndReuploads() throws Exception {
+        JSONArray files = files("main.py", "print(1)", "util.py", "x = 1");
+        run(files);
+        String first = firstUpload().projectId;
+        backend.drop(first);
+
+        // nothing changed, so prepare only touches the project and finds it gone
+        manager.prepare(files, "python", key);
+
+        FakeRunnerBackend.Upload full = backend.lastUpload();
+        assertNotEquals(first, full.projectId);
+        assertEquals(Set.of("main.py", "util.py"), full.files.keySet());
+    }
+
+    @Test
+    public void verifiedRunChecksEveryFile() throws Exception {
+        manager.startLiveBulk(files("main.py", "print(1)", "src/util.py", "x = 1"),
+                "python", "main.py", false, true, key);
+
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(1, sessions.size());
+    }
+
+    @Test
+    public void releaseSparesDeletesTheUnusedOnes() throws Exception {
+        run(files("main.py", "print(1)"));
+        String used = firstUpload().projectId;
+        // the run topped up the python pool
+        assertEquals(1 + LiveRunManager.sparesFor("python"), backend.projects.size());
+
+        manager.releaseSpares();
+
+        assertEquals(Set.of(used), backend.projects.keySet());
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.aiassistantcoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class LiveSocketTest {
+
+    private static final long WAIT_S = 5;
+
+    /**
+     * Pipes TCP to the server; {@link #dropAll()} cuts every connection like a
+     * network drop, {@link #freezeAll()} silently discards their traffic like
+     * a dead link. New connections are piped normally.
+     */
+    static final class DropProxy implements Closeable {
+        private final ServerSocket listen = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        private final List<Socket> open = Collections.synchronizedList(new ArrayList<>());
+        private final Set<Socket> frozen = ConcurrentHashMap.newKeySet();
+        private final int target;
+
+        DropProxy(int target) throws IOException {
+            this.target = target;
+            Thread t = new Thread(this::acceptLoop, "drop-proxy");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        int port() {
+            return listen.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            try {
+                while (true) {
+                    Socket in = listen.accept();
+                    Socket out = new Socket(InetAddress.getLoopbackAddress(), target);
+                    open.add(in);
+                    open.add(out);
+                    pipe(in, out);
+                    pipe(out, in);
+                }
+            } catch (IOException closed) {
+                // proxy closed
+            }
+        }
+
+        private void pipe(Socket from, Socket to) {
+            Thread t = new Thread(() -> {
+                byte[] buf = new byte[8192];
+                try (InputStream in = from.getInputStream(); OutputStream out = to.getOutputStream()) {
+                    int n;
+                    while ((n = in.read(buf)) >= 0) {
+                        if (frozen.contains(from)) continue;
+                        out.write(buf, 0, n);
+                        out.flush();
+                    }
+                } catch (IOException dropped) {
+                    // either side went away
+                }
+                closeQuietly(from);
+                closeQuietly(to);
+            }, "drop-proxy-pipe");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        void dropAll() {
+            synchronized (open) {
+                for (Socket s : open) closeQuietly(s);
+                open.clear();
+            }
+        }
+
+        void freezeAll() {
+            synchronized (open) {
+                frozen.addAll(open);
+            }
+        }
+
+        @Override
+        public void close() {
+            dropAll();
+            closeQuietly(listen);
+        }
+
+        private static void closeQuietly(Closeable c) {
+            try {
+                c.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private MockWebServer server;
+    private DropProxy proxy;
+    private OkHttpClient client = new OkHttpClient();
+    private LiveSocket socket;
+
+    // client side, as the listener saw it
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+    private final StringBuffer output = new StringBuffer();
+    // server side: the stdin it got
+    private final BlockingQueue<String> stdin = new LinkedBlockingQueue<>();
+    private volatile Runnable onReconnecting = () -> {
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        proxy = new DropProxy(server.getPort());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (socket != null) socket.close(1000, null);
+        proxy.close();
+        server.shutdown();
+    }
+
+    /** Accepts one connection, then runs {@code onOpen} with the server end. */
+    private MockResponse upgrade(ServerScript onOpen) {
+        return new MockResponse().withWebSocketUpgrade(new WebSocketListener() {
+            @Override
+            public void onOpen(@NonNull WebSocket ws, @NonNull Response response) {
+                onOpen.run(ws);
+            }
+
+            @Override
+            public void onMessage(@NonNull WebSocket ws, @NonNull String text) {
+                stdin.add(text);
+            }
+
+            // answer the client's close, or MockWebServer waits on the handshake at shutdown
+            @Override
+            public void onClosing(@NonNull WebSocket ws, int code, @NonNull String reason) {
+                ws.close(code, null);
+            }
+        });
+    }
+
+    private interface ServerScript {
+        void run(WebSocket ws);
+    }
+
+    private static String tagged(long seq, String data) {
+        return "{\"seq\":" + seq + ",\"data\":\"" + data + "\"}";
+    }
+
+    private void connect() {
+        String url = "ws://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + proxy.port() + "/ws/s1";
+        socket = new LiveSocket(client, url,
+                new LiveSocket.Listener() {
+                    @Override
+                    public void onOpen(boolean resumed) {
+                        events.add(resumed ? "resumed" : "open");
+                    }
+
+                    @Override
+                    public void onOutput(@NonNull String text) {
+                        output.append(text);
+                    }
+
+                    @Override
+                    public void onReconnecting(int attempt, long delayMs, @NonNull String why) {
+                        onReconnecting.run();
+                        events.add("reconnecting");
+                    }
+
+                    @Override
+                    public void onClosed(int code, @NonNull String reason) {
+                        events.add("closed " + code);
+                    }
+
+                    @Override
+                    public void onLost(@NonNull String why) {
+                        events.add("lost " + why);
+                    }
+                });
+        socket.connect();
+    }
+
+    private String nextEvent() throws InterruptedException {
+        String e = events.poll(WAIT_S, TimeUnit.SECONDS);
+        assertNotNull("no event", e);
+        return e;
+    }
+
+    private void awaitOutput(String expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_S * 1000;
+        while (!output.toString().equals(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, output.toString());
+    }
+
+    private RecordedRequest handshake() throws InterruptedException {
+        RecordedRequest r = server.takeRequest(WAIT_S, TimeUnit.SECONDS);
+        assertNotNull("no handshake", r);
+        return r;
+    }
+
+    // the connection dies without a close frame
+    private void dropConnection() {
+        proxy.dropAll();
+    }
+
+    @Test
+    public void dropResumesAfterLastSeqAndDropsReplayedFrames() throws Exception {
+        server.enqueue(upgrade(ws -> {
+            ws.send(tagged(1, "a"));
+            ws.send(tagged(2, "b"));
+            ws.send(tagged(3, "c"));
+        }));
+        // the server replays from an older point than asked; 2 and 3 are duplicates
+        server.enqueue(upgrade(ws -> {
+            ws.send(tagged(2, "b"));
+            ws.send(tagged(3, "c"));
+            ws.send(tagged(4, "d"));
+        }));
+        connect();
+
+        assertEquals("open", nextEvent());
+        assertNull(handshake().getRequestUrl().queryParameter("resume"));
+        awaitOutput("abc");
+
+        dropConnection();
+        assertEquals("reconnecting", nextEvent());
+        assertEquals("resumed", nextEvent());
+        assertEquals("3", handshake().getRequestUrl().queryParameter("resume"));
+        awaitOutput("abcd");
+    }
+
+    @Test
+    public void stdinWhileDownIsFlushedInOrder() throws Exception {
+        server.enqueue(upgrade(ws -> {
+        }));
+        server.enqueue(upgrade(ws -> {
+        }));
+        connect();
+        assertEquals("open", nextEvent());
+
+        socket.send("live\n");
+        assertEquals("live\n", stdin.poll(WAIT_S, TimeUnit.SECONDS));
+
+        // typed between the drop and the redial
+        onReconnecting = () -> {
+            socket.send("one\n");
+            socket.send("two\n");
+            socket.send("three\n");
+        };
+        dropConnection();
+        assertEquals("reconnecting", nextEvent());
+        assertEquals("resumed", nextEvent());
+
+        List<String> got = new ArrayList<>();
+        for (int i = 0; i < 3; i++) got.add(stdin.poll(WAIT_S, TimeUnit.SECONDS));
+        assertEquals(List.of("one\n", "two\n", "three\n"), got);
+    }
+
+    @Test
+    public void goneSessionIsLost() throws Exception {
+        server.enqueue(upgrade(ws -> {
+        }));
+        server.enqueue(new MockResponse().setResponseCode(410));
+        connect();
+        assertEquals("open", nextEvent());
+
+        dropConnection();
+        assertEquals("reconnecting", nextEvent());
+        String lost = nextEvent();
+        assertTrue(lost, lost.startsWith("lost") && lost.contains("410"));
+        assertFalse(socket.isOpen());
+    }
+
+    @Test
+    public void unknownSessionIsLostWithoutRetrying() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        connect();
+
+        String lost = nextEvent();
+        assertTrue(lost, lost.startsWith("lost") && lost.contains("404"));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void untaggedFramesAreNotResumedFrom() throws Exception {
+        server.enqueue(upgrade(ws -> {
+            ws.send("plain 1\n");
+            ws.send("plain 2\n");
+        }));
+        server.enqueue(upgrade(ws -> {
+        }));
+        connect();
+        assertEquals("open", nextEvent());
+        handshake();
+        awaitOutput("plain 1\nplain 2\n");
+
+        dropConnection();
+        assertEquals("reconnecting", nextEvent());
+        assertEquals("resumed", nextEvent());
+        // no position the server could honour, so none is claimed
+        assertNull(handshake().getRequestUrl().queryParameter("resume"));
+    }
+
+    @Test
+    public void serverCloseEndsTheSession() throws Exception {
+        server.enqueue(upgrade(ws -> ws.close(1000, "exited")));
+        connect();
+
+        assertEquals("open", nextEvent());
+        assertEquals("closed 1000", nextEvent());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void unansweredPingsReconnect() throws Exception {
+        assertEquals(LiveSocket.PING_INTERVAL_MS, HttpTransport.liveSocketClient().pingIntervalMillis());
+        // the app's socket client, pinging often enough for a test
+        client = HttpTransport.liveSocketClient().newBuilder()
+                .pingInterval(200, TimeUnit.MILLISECONDS)
+                .build();
+        server.enqueue(upgrade(ws -> ws.send(tagged(1, "a"))));
+        server.enqueue(upgrade(ws -> ws.send(tagged(2, "b"))));
+        connect();
+        assertEquals("open", nextEvent());
+        awaitOutput("a");
+
+        // no FIN, no RST: nothing but the missing pong says the link is dead
+        proxy.freezeAll();
+        assertEquals("reconnecting", nextEvent());
+        assertEquals("resumed", nextEvent());
+        awaitOutput("ab");
+    }
+}
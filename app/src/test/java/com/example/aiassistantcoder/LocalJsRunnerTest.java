@@ -0,0 +1,238 @@
+package com.example.aiassistantcoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+public class LocalJsRunnerTest {
+
+    private static final long WAIT_S = 10;
+    private static final LongSupplier THREAD_CPU = () -> ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+
+    // unit tests run from the module directory
+    private static String bootstrap() throws IOException {
+        return new String(Files.readAllBytes(Paths.get("src/main/assets/localjs/bootstrap.js")), StandardCharsets.UTF_8);
+    }
+
+    /** What one run reported. */
+    static final class Result implements LocalJsRunner.Output {
+        final StringBuffer stdout = new StringBuffer();
+        final StringBuffer stderr = new StringBuffer();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile int code = -1;
+        volatile String error;
+        volatile String unsupported;
+
+        @Override
+        public void stdout(@NonNull String text) {
+            stdout.append(text);
+        }
+
+        @Override
+        public void stderr(@NonNull String text) {
+            stderr.append(text);
+        }
+
+        @Override
+        public void onExit(int code, @Nullable String error, long startMs, long cpuMs, long wallMs) {
+            this.code = code;
+            this.error = error;
+            done.countDown();
+        }
+
+        @Override
+        public void onUnsupported(@NonNull String why) {
+            unsupported = why;
+            done.countDown();
+        }
+
+        Result await() throws InterruptedException {
+            assertTrue("run did not finish", done.await(WAIT_S, TimeUnit.SECONDS));
+            return this;
+        }
+    }
+
+    private LocalJsRunner runner;
+
+    @Before
+    public void setUp() throws IOException {
+        runner = new LocalJsRunner(bootstrap(), THREAD_CPU);
+    }
+
+    @After
+    public void tearDown() {
+        runner.shutdown();
+    }
+
+    private static Map<String, String> files(String... pathThenContent) {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (int i = 0; i < pathThenContent.length; i += 2) out.put(pathThenContent[i], pathThenContent[i + 1]);
+        return out;
+    }
+
+    private Result run(Map<String, String> files, String entry) throws InterruptedException {
+        Result r = new Result();
+        runner.run(files, entry, r);
+        return r.await();
+    }
+
+    @Test
+    public void requireResolvesRelativeIndexJsonAndVendoredModules() throws Exception {
+        Result r = run(files(
+                "main.js", "const math = require('./lib');\n"
+                        + "const cfg = require('./config.json');\n"
+                        + "const pad = require('left-pad');\n"
+                        + "console.log(math.add(2, 3), cfg.name, pad('x', 3));\n"
+                        + "console.log(require('./lib') === math);",
+                "lib/index.js", "exports.add = (a, b) => a + b;",
+                "config.json", "{\"name\": \"demo\"}",
+                "node_modules/left-pad/index.js", "module.exports = (s, n) => ' '.repeat(n - s.length) + s;"),
+                "main.js");
+
+        assertNull(r.unsupported);
+        assertEquals(0, r.code);
+        assertNull(r.error);
+        assertEquals("5 demo   x\ntrue\n", r.stdout.toString());
+    }
+
+    @Test
+    public void errorsNameTheModuleAndLine() throws Exception {
+        Result r = run(files(
+                "main.js", "console.error('about to fail');\nrequire('./util').boom();",
+                "util.js", "exports.boom = function () {\n  throw new Error('kaput');\n};"),
+                "main.js");
+
+        assertEquals(1, r.code);
+        assertEquals("about to fail\n", r.stderr.toString());
+        assertTrue(r.error, r.error.contains("kaput"));
+        assertTrue(r.error, r.error.contains("util.js:2"));
+    }
+
+    @Test
+    public void missingModuleIsAnError() throws Exception {
+        Result r = run(files("main.js", "require('./nope');"), "main.js");
+
+        assertEquals(1, r.code);
+        assertTrue(r.error, r.error.contains("Cannot find module './nope'"));
+    }
+
+    @Test
+    public void promisesThenTimersInOrder() throws Exception {
+        Result r = run(files("main.js",
+                "setTimeout(() => console.log('t300'), 300);\n"
+                        + "setTimeout(() => console.log('t0'), 0);\n"
+                        + "Promise.resolve().then(() => console.log('micro'));\n"
+                        + "let n = 0; const id = setInterval(() => { if (++n === 3) clearInterval(id); console.log('i' + n); }, 5);\n"
+                        + "console.log('sync');"),
+                "main.js");
+
+        assertEquals(0, r.code);
+        assertEquals("sync\nmicro\nt0\ni1\ni2\ni3\nt300\n", r.stdout.toString());
+    }
+
+    @Test
+    public void processExitEndsTheRunAndCannotBeCaught() throws Exception {
+        Result r = run(files("main.js",
+                "setTimeout(() => console.log('never'), 0);\n"
+                        + "try { process.exit(3); } catch (e) { console.log('caught'); }\n"
+                        + "console.log('after');"),
+                "main.js");
+
+        assertEquals(3, r.code);
+        assertNull(r.error);
+        assertEquals("", r.stdout.toString());
+    }
+
+    @Test
+    public void busyLoopHitsTheCpuLimit() throws Exception {
+        // every limit check sees another second of CPU
+        AtomicLong cpu = new AtomicLong();
+        LocalJsRunner fast = new LocalJsRunner(bootstrap(), () -> cpu.getAndAdd(TimeUnit.SECONDS.toNanos(1)));
+        try {
+            Result r = new Result();
+            fast.run(files("main.js", "try { while (true) {} } finally { console.log('finally'); }"), "main.js", r);
+            r.await();
+
+            assertEquals(LocalJsRunner.EXIT_LIMIT, r.code);
+            assertTrue(r.error, r.error.contains("CPU limit"));
+            assertEquals("", r.stdout.toString());
+        } finally {
+            fast.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelStopsABusyLoop() throws Exception {
+        Result r = new Result();
+        LocalJsRunner.Run run = runner.run(files("main.js", "while (true) {}"), "main.js", r);
+        Thread.sleep(100);
+        run.cancel();
+        r.await();
+
+        assertEquals(LocalJsRunner.EXIT_CANCELLED, r.code);
+        assertEquals("cancelled", r.error);
+    }
+
+    @Test
+    public void cancelWakesATimerWait() throws Exception {
+        Result r = new Result();
+        LocalJsRunner.Run run = runner.run(files("main.js", "setTimeout(() => console.log('late'), 30000);"),
+                "main.js", r);
+        Thread.sleep(100);
+        long t0 = System.nanoTime();
+        run.cancel();
+        r.await();
+
+        assertEquals(LocalJsRunner.EXIT_CANCELLED, r.code);
+        assertTrue(System.nanoTime() - t0 < TimeUnit.SECONDS.toNanos(2));
+        assertEquals("", r.stdout.toString());
+    }
+
+    @Test
+    public void runawayRecursionIsAnError() throws Exception {
+        Result r = run(files("main.js", "function down(n) { return down(n + 1) + 1; }\ndown(0);"), "main.js");
+
+        assertEquals(1, r.code);
+        assertTrue(r.error, r.error.toLowerCase().contains("stack"));
+    }
+
+    @Test
+    public void growingHeapHitsTheMemoryLimit() throws Exception {
+        Result r = run(files("main.js",
+                "const keep = [];\nwhile (true) keep.push(new Array(100000).join('x'));"), "main.js");
+
+        assertEquals(LocalJsRunner.EXIT_LIMIT, r.code);
+        assertTrue(r.error, r.error.contains("memory limit"));
+    }
+
+    @Test
+    public void syntaxRhinoCantParseFallsBackWithoutRunning() throws Exception {
+        Result r = run(files(
+                "main.js", "console.log('ran');\nrequire('./shape');",
+                "shape.js", "// modern syntax\nclass Shape {}\nmodule.exports = Shape;"),
+                "main.js");
+
+        assertTrue(r.unsupported, r.unsupported.startsWith("shape.js:2"));
+        assertEquals(-1, r.code);
+        assertEquals("", r.stdout.toString());
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.aiassistantcoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Real SQLite under Robolectric; App is swapped out so Firebase isn't started. */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)
+public class LocalProjectStoreTest {
+
+    private static final String OWNER = "uid-1";
+
+    private LocalProjectStore store;
+
+    @Before
+    public void setUp() {
+        store = new LocalProjectStore(ApplicationProvider.getApplicationContext());
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    private static ProjectSummary project(String id, String title) {
+        return new ProjectSummary(id, title, new Date(1_000L), 0, null);
+    }
+
+    private static Map<String, String> files(String... pathThenContent) {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (int i = 0; i < pathThenContent.length; i += 2) out.put(pathThenContent[i], pathThenContent[i + 1]);
+        return out;
+    }
+
+    private static List<Message> messages(String... texts) {
+        List<Message> out = new ArrayList<>();
+        for (String t : texts) out.add(new Message(t, "user"));
+        return out;
+    }
+
+    private static LocalProjectStore.FileRow row(LocalProjectStore.Content c, String path) {
+        for (LocalProjectStore.FileRow f : c.files) if (f.path.equals(path)) return f;
+        return null;
+    }
+
+    // ---------- summaries ----------
+
+    @Test
+    public void putSummaryUpsertsOneRow() {
+        store.putSummary(OWNER, project("p1", "first"));
+        store.putSummary(OWNER, new ProjectSummary("p1", "renamed", new Date(1_000L), 3, new Date(5_000L)));
+
+        List<ProjectSummary> list = store.loadSummaries(OWNER);
+        assertEquals(1, list.size());
+        assertEquals("renamed", list.get(0).getTitle());
+        assertEquals(3, list.get(0).getFileCount());
+        assertEquals(new Date(5_000L), list.get(0).getLastActivity());
+        // list fields only: nothing to open yet
+        assertNull(store.loadContent("p1"));
+    }
+
+    @Test
+    public void putSummaryLeavesContentAlone() {
+        ProjectSummary p = project("p1", "t");
+        store.writeLocal(OWNER, p, "code", files("a.py", "1"), messages("hi"), 10);
+
+        store.putSummary(OWNER, new ProjectSummary("p1", "renamed", new Date(1_000L), 1, null));
+
+        LocalProjectStore.Content c = store.loadContent("p1");
+        assertEquals("code", c.code);
+        assertEquals("1", row(c, "a.py").content);
+        assertEquals(1, c.messages.size());
+    }
+
+    // ---------- dirty flags ----------
+
+    @Test
+    public void writeLocalIsDirtyUntilMarkedSynced() {
+        ProjectSummary p = project("p1", "t");
+        Map<String, String> f = files("a.py", "1", "b.py", "2");
+        store.writeLocal(OWNER, p, "code", f, messages("hi", "there"), 10);
+
+        LocalProjectStore.Content c = store.loadContent("p1");
+        assertTrue(c.codeDirty);
+        assertTrue(row(c, "a.py").isDirty());
+        assertTrue(row(c, "b.py").isDirty());
+        assertEquals(0, c.syncedMessages);
+
+        store.markSynced("p1", "code", f, 2, 20);
+
+        c = store.loadContent("p1");
+        assertFalse(c.codeDirty);
+        assertFalse(row(c, "a.py").isDirty());
+        assertFalse(row(c, "b.py").isDirty());
+        assertEquals(2, c.syncedMessages);
+    }
+
+    @Test
+    public void onlyChangedFilesBecomeDirtyAgain() {
+        ProjectSummary p = project("p1", "t");
+        Map<String, String> f = files("a.py", "1", "b.py", "2", "c.py", "3");
+        store.writeLocal(OWNER, p, "code", f, messages("hi"), 10);
+        store.markSynced("p1", "code", f, 1, 20);
+
+        store.writeLocal(OWNER, p, "code", files("a.py", "1", "b.py", "22"), messages("hi", "more"), 30);
+
+        LocalProjectStore.Content c = store.loadContent("p1");
+        assertFalse(c.codeDirty);
+        assertFalse(row(c, "a.py").isDirty());
+        assertTrue(row(c, "b.py").isDirty());
+        assertEquals("22", row(c, "b.py").content);
+        assertNull(row(c, "c.py"));
+        assertEquals(2, c.files.size());
+        assertEquals(2, c.messages.size());
+        assertEquals(1, c.syncedMessages);
+    }
+
+    @Test
+    public void editDuringSaveStaysDirty() {
+        ProjectSummary p = project("p1", "t");
+        Map<String, String> sent = files("a.py", "1");
+        store.writeLocal(OWNER, p, "v1", sent, messages(), 10);
+        // edited again while the save was in flight
+        store.writeLocal(OWNER, p, "v2", files("a.py", "1 edited"), messages(), 15);
+
+        store.markSynced("p1", "v1", sent, 0, 20);
+
+        LocalProjectStore.Content c = store.loadContent("p1");
+        assertTrue(c.codeDirty);
+        assertEquals("v2", c.code);
+        assertTrue(row(c, "a.py").isDirty());
+        assertEquals("1 edited", row(c, "a.py").content);
+    }
+
+    @Test
+    public void replaceContentRoundTrips() {
+        ProjectSummary p = project("p1", "t");
+        store.writeLocal(OWNER, p, "old", files("gone.py", "x"), messages("stale"), 10);
+
+        LocalProjectStore.Content in = new LocalProjectStore.Content();
+        in.code = "merged";
+        in.codeDirty = true;
+        in.files.add(new LocalProjectStore.FileRow("a.py", "mine", 40, 30, true));
+        in.files.add(new LocalProjectStore.FileRow("b.py", "theirs", 30, 30, false));
+        in.messages.addAll(messages("one", "two", "three"));
+        in.syncedMessages = 2;
+        store.replaceContent(OWNER, p, in, 50);
+
+        LocalProjectStore.Content c = store.loadContent("p1");
+        assertEquals("merged", c.code);
+        assertTrue(c.codeDirty);
+        assertEquals(2, c.files.size());
+        assertNull(row(c, "gone.py"));
+        LocalProjectStore.FileRow a = row(c, "a.py");
+        assertTrue(a.isDirty());
+        assertTrue(a.conflict);
+        LocalProjectStore.FileRow b = row(c, "b.py");
+        assertFalse(b.isDirty());
+        assertFalse(b.conflict);
+        assertEquals(3, c.messages.size());
+        assertEquals("three", c.messages.get(2).getText());
+        assertEquals(2, c.syncedMessages);
+    }
+
+    @Test
+    public void editClearsConflict() {
+        ProjectSummary p = project("p1", "t");
+        LocalProjectStore.Content in = new LocalProjectStore.Content();
+        in.files.add(new LocalProjectStore.FileRow("a.py", "mine", 40, 30, true));
+        store.replaceContent(OWNER, p, in, 50);
+
+        store.writeLocal(OWNER, p, null, files("a.py", "resolved"), messages(), 60);
+
+        assertFalse(row(store.loadContent("p1"), "a.py").conflict);
+    }
+
+    // ---------- delete ----------
+
+    @Test
+    public void deleteProjectDropsItsFilesAndMessages() {
+        store.writeLocal(OWNER, project("p1", "t"), "code", files("a.py", "1"), messages("hi"), 10);
+        store.writeLocal(OWNER, project("p2", "u"), "code", files("a.py", "2"), messages("yo"), 10);
+
+        store.deleteProject("p1");
+
+        assertNull(store.loadContent("p1"));
+        assertEquals(1, store.loadSummaries(OWNER).size());
+        // re-created empty: no rows left over from the deleted project
+        store.writeLocal(OWNER, project("p1", "t"), null, files(), messages(), 20);
+        LocalProjectStore.Content c = store.loadContent("p1");
+        assertTrue(c.files.isEmpty());
+        assertTrue(c.messages.isEmpty());
+        assertEquals("2", row(store.loadContent("p2"), "a.py").content);
+    }
+
+    @Test
+    public void clearOnlyTouchesThatOwner() {
+        store.writeLocal(OWNER, project("p1", "t"), "code", files("a.py", "1"), messages("hi"), 10);
+        store.putSummary("uid-2", project("p2", "other"));
+
+        store.clear(OWNER);
+
+        assertTrue(store.loadSummaries(OWNER).isEmpty());
+        assertNull(store.loadContent("p1"));
+        assertEquals(1, store.loadSummaries("uid-2").size());
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.aiassistantcoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class MyersDiffTest {
+
+    // ---- the LCS table DiffUtilLite used before MyersDiff, kept as the reference ----
+    private static List<CodeEditorFragment.DiffLine> lcsDiff(String a, String b) {
+        String[] A = a.split("\n", -1);
+        String[] B = b.split("\n", -1);
+        int n = A.length, m = B.length;
+        int[][] dp = new int[n + 1][m + 1];
+        for (int i = n - 1; i >= 0; i--)
+            for (int j = m - 1; j >= 0; j--)
+                dp[i][j] = A[i].equals(B[j]) ? dp[i + 1][j + 1] + 1 : Math.max(dp[i + 1][j], dp[i][j + 1]);
+
+        List<CodeEditorFragment.DiffLine> out = new ArrayList<>();
+        int i = 0, j = 0;
+        while (i < n && j < m) {
+            if (A[i].equals(B[j])) {
+                out.add(new CodeEditorFragment.DiffLine(' ', A[i]));
+                i++;
+                j++;
+            } else if (dp[i + 1][j] >= dp[i][j + 1]) {
+                out.add(new CodeEditorFragment.DiffLine('-', A[i++]));
+            } else {
+                out.add(new CodeEditorFragment.DiffLine('+', B[j++]));
+            }
+        }
+        while (i < n) out.add(new CodeEditorFragment.DiffLine('-', A[i++]));
+        while (j < m) out.add(new CodeEditorFragment.DiffLine('+', B[j++]));
+        return out;
+    }
+
+    private static String render(List<CodeEditorFragment.DiffLine> diff) {
+        StringBuilder sb = new StringBuilder();
+        for (CodeEditorFragment.DiffLine l : diff) sb.append(l.type).append(l.text).append('\n');
+        return sb.toString();
+    }
+
+    // the side of the diff made of ' ' plus the given type, joined back into text
+    private static String side(List<CodeEditorFragment.DiffLine> diff, char type) {
+        StringBuilder sb = new StringBuilder();
+        boolean first = true;
+        for (CodeEditorFragment.DiffLine l : diff) {
+            if (l.type != ' ' && l.type != type) continue;
+            if (!first) sb.append('\n');
+            sb.append(l.text);
+            first = false;
+        }
+        return sb.toString();
+    }
+
+    private static int kept(List<CodeEditorFragment.DiffLine> diff) {
+        int n = 0;
+        for (CodeEditorFragment.DiffLine l : diff) if (l.type == ' ') n++;
+        return n;
+    }
+
+    private static void assertSameAsLcs(String a, String b) {
+        assertEquals(render(lcsDiff(a, b)), render(MyersDiff.diffLines(a, b)));
+    }
+
+    // both are minimal, so they keep the same number of lines even when they pick different ones
+    private static void assertEquivalent(String a, String b) {
+        List<CodeEditorFragment.DiffLine> myers = MyersDiff.diffLines(a, b);
+        List<CodeEditorFragment.DiffLine> lcs = lcsDiff(a, b);
+        String where = "a=" + a.replace("\n", "|") + " b=" + b.replace("\n", "|");
+        assertEquals(where, kept(lcs), kept(myers));
+        assertEquals(where, a, side(myers, '-'));
+        assertEquals(where, b, side(myers, '+'));
+        // inside a changed block removals come before additions
+        for (int i = 1; i < myers.size(); i++) {
+            assertTrue(where, !(myers.get(i - 1).type == '+' && myers.get(i).type == '-'));
+        }
+    }
+
+    @Test
+    public void emptyInputs() {
+        assertSameAsLcs("", "");
+        assertSameAsLcs("", "a\nb");
+        assertSameAsLcs("a\nb", "");
+    }
+
+    @Test
+    public void identical() {
+        String s = "one\ntwo\n\nthree\n";
+        assertSameAsLcs(s, s);
+        assertEquals(0, MyersDiff.diffLines(s, s).stream().filter(l -> l.type != ' ').count());
+    }
+
+    @Test
+    public void allChanged() {
+        assertSameAsLcs("a\nb\nc", "x\ny");
+        assertSameAsLcs("a", "b\nc\nd\ne");
+    }
+
+    @Test
+    public void crlfLinesDifferFromLf() {
+        // \r stays part of the line, as it always did
+        assertSameAsLcs("a\r\nb\r\nc", "a\nb\nc");
+        assertSameAsLcs("a\r\nb\r\n", "a\r\nx\r\n");
+    }
+
+    @Test
+    public void singleEdits() {
+        assertSameAsLcs("a\nb\nc", "a\nB\nc");
+        assertSameAsLcs("a\nb\nc", "a\nc");
+        assertSameAsLcs("a\nc", "a\nb\nc");
+        assertSameAsLcs("a\nb\nc\n", "a\nb\nc\nd\n");
+    }
+
+    @Test
+    public void randomInputsMatchTheOldDiff() {
+        Random rnd = new Random(42);
+        for (int round = 0; round < 5000; round++) {
+            String a = randomText(rnd, rnd.nextInt(20));
+            String b = rnd.nextBoolean() ? mutate(rnd, a) : randomText(rnd, rnd.nextInt(20));
+            assertEquivalent(a, b);
+        }
+    }
+
+    @Test
+    public void largeFileDoesNotNeedAQuadraticTable() {
+        // the old int[n+1][m+1] table would be ~3.6 GB here
+        StringBuilder a = new StringBuilder(), b = new StringBuilder();
+        for (int i = 0; i < 30_000; i++) {
+            a.append("line ").append(i).append('\n');
+            b.append(i % 1000 == 0 ? "changed " : "line ").append(i).append('\n');
+        }
+        List<CodeEditorFragment.DiffLine> diff = MyersDiff.diffLines(a.toString(), b.toString());
+        assertEquals(a.toString(), side(diff, '-'));
+        assertEquals(b.toString(), side(diff, '+'));
+        assertEquals(30_001 - 30, kept(diff));
+    }
+
+    // small alphabet, so lines repeat and there are many equally long matchings
+    private static String randomText(Random rnd, int lines) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) sb.append('\n');
+            sb.append((char) ('a' + rnd.nextInt(4)));
+        }
+        return sb.toString();
+    }
+
+    private static String mutate(Random rnd, String s) {
+        List<String> lines = new ArrayList<>(List.of(s.split("\n", -1)));
+        int edits = 1 + rnd.nextInt(4);
+        for (int e = 0; e < edits; e++) {
+            int at = rnd.nextInt(lines.size() + 1);
+            switch (rnd.nextInt(3)) {
+                case 0:
+                    lines.add(at, String.valueOf((char) ('a' + rnd.nextInt(6))));
+                    break;
+                case 1:
+                    if (at < lines.size() && lines.size() > 1) lines.remove(at);
+                    break;
+                default:
+                    if (at < lines.size()) lines.set(at, String.valueOf((char) ('a' + rnd.nextInt(6))));
+            }
+        }
+        return String.join("\n", lines);
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.aiassistantcoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ProjectReconcilerTest {
+
+    private static final long SYNCED = 1_000;   // last sync of the local copy
+    private static final long NOW = 5_000;
+
+    private static LocalProjectStore.FileRow clean(String path, String content) {
+        return new LocalProjectStore.FileRow(path, content, SYNCED, SYNCED, false);
+    }
+
+    private static LocalProjectStore.FileRow edited(String path, String content, long at) {
+        return new LocalProjectStore.FileRow(path, content, at, SYNCED, false);
+    }
+
+    private static LocalProjectStore.Content mine(String code, LocalProjectStore.FileRow... files) {
+        LocalProjectStore.Content c = new LocalProjectStore.Content();
+        c.code = code;
+        for (LocalProjectStore.FileRow f : files) c.files.add(f);
+        return c;
+    }
+
+    private static ProjectReconciler.Remote remote(String code, String... pathsAndContents) {
+        ProjectReconciler.Remote r = new ProjectReconciler.Remote();
+        r.code = code;
+        for (int i = 0; i < pathsAndContents.length; i += 2) {
+            r.files.put(pathsAndContents[i], pathsAndContents[i + 1]);
+            r.fileUpdated.put(pathsAndContents[i], SYNCED);
+        }
+        return r;
+    }
+
+    private static Map<String, LocalProjectStore.FileRow> byPath(ProjectReconciler.Merge m) {
+        Map<String, LocalProjectStore.FileRow> out = new HashMap<>();
+        for (LocalProjectStore.FileRow f : m.content.files) out.put(f.path, f);
+        return out;
+    }
+
+    @Test
+    public void noLocalCopyTakesTheServerAsSynced() {
+        ProjectReconciler.Remote r = remote("code", "a.py", "A");
+        r.messages.add(new Message("hi", "user"));
+
+        ProjectReconciler.Merge m = ProjectReconciler.reconcile(null, r, NOW);
+
+        assertFalse(m.localWins);
+        assertFalse(m.remoteWins);
+        assertEquals("code", m.content.code);
+        LocalProjectStore.FileRow a = byPath(m).get("a.py");
+        assertEquals("A", a.content);
+        assertFalse(a.isDirty());
+        assertEquals(1, m.content.syncedMessages);
+    }
+
+    @Test
+    public void sameOnBothSidesIsQuiet() {
+        ProjectReconciler.Merge m = ProjectReconciler.reconcile(
+                mine("code", clean("a.py", "A")), remote("code", "a.py", "A"), NOW);
+
+        assertFalse(m.localWins);
+        assertFalse(m.remoteWins);
+        assertFalse(byPath(m).get("a.py").isDirty());
+    }
+
+    @Test
+    public void localEditKeptWhenServerDidNotMove() {
+        ProjectReconciler.Merge m = ProjectReconciler.reconcile(
+                mine("code", edited("a.py", "mine", 2_000)), remote("code", "a.py", "A"), NOW);
+
+        assertTrue(m.localWins);
+        assertFalse(m.remoteWins);
+        LocalProjectStore.FileRow a = byPath(m).get("a.py");
+        assertEquals("mine", a.content);
+        assertTrue(a.isDirty());
+        assertFalse(a.conflict);
+    }
+
+    @Test
+    public void serverEditTakenWhenLocalIsClean() {
+        ProjectReconciler.Merge m = ProjectReconciler.reconcile(
+                mine("code", clean("a.py", "A")), remote("code", "a.py", "theirs"), NOW);
+
+        assertTrue(m.remoteWins);
+        assertFalse(m.localWins);
+        assertEquals("theirs", byPath(m).get("a.py").content);
+    }
+
+    @Test
+    public void bothEditedLaterWriteWinsAndIsFlagged() {
+        ProjectReconciler.Remote r = remote("code", "a.py", "theirs", "b.py", "theirs");
+        r.fileUpdated.put("a.py", 2_000L);
+        r.fileUpdated.put("b.py", 4_000L);
+        ProjectReconciler.Merge m = ProjectReconciler.reconcile(
+                mine("code", edited("a.py", "mine", 3_000), edited("b.py", "mine", 3_000)), r, NOW);
+
+        assertTrue(m.localWins);
+        assertTrue(m.remoteWins);
+        LocalProjectStore.FileRow a = byPath(m).get("a.py");
+        assertEquals("mine", a.content);
+        assertTrue(a.conflict);
+        assertTrue(a.isDirty());
+        LocalProjectStore.FileRow b = byPath(m).get("b.py");
+        assertEquals("theirs", b.content);
+        assertTrue(b.conflict);
+        assertFalse(b.isDirty());
+    }
+
+    @Test
+    public void fileOnlyHereIsKeptWhenNewAndDroppedWhenDeletedRemotely() {
+        ProjectReconciler.Merge m = ProjectReconciler.reconcile(
+                mine("code", edited("new.py", "N", 2_000), clean("gone.py", "G")),
+                remote("code"), NOW);
+
+        assertTrue(m.localWins);
+        assertTrue(m.remoteWins);
+        assertTrue(byPath(m).containsKey("new.py"));
+        assertFalse(byPath(m).containsKey("gone.py"));
+    }
+
+    @Test
+    public void fileOnlyOnServerIsAdded() {
+        ProjectReconciler.Merge m = ProjectReconciler.reconcile(
+                mine("code"), remote("code", "b.py", "B"), NOW);
+
+        assertTrue(m.remoteWins);
+        assertFalse(m.localWins);
+        assertEquals("B", byPath(m).get("b.py").content);
+    }
+
+    @Test
+    public void codeFollowsWhicheverSideChanged() {
+        LocalProjectStore.Content dirty = mine("local code");
+        dirty.codeDirty = true;
+        ProjectReconciler.Merge m = ProjectReconciler.reconcile(dirty, remote("server code"), NOW);
+        assertTrue(m.localWins);
+        assertEquals("local code", m.content.code);
+        assertTrue(m.content.codeDirty);
+
+        m = ProjectReconciler.reconcile(mine("old code"), remote("server code"), NOW);
+        assertTrue(m.remoteWins);
+        assertFalse(m.localWins);
+        assertEquals("server code", m.content.code);
+        assertFalse(m.content.codeDirty);
+    }
+
+    @Test
+    public void unsyncedMessagesFollowTheServerLog() {
+        LocalProjectStore.Content c = mine("code");
+        c.messages.add(new Message("q1", "user"));
+        c.messages.add(new Message("offline q", "user"));
+        c.syncedMessages = 1;
+        ProjectReconciler.Remote r = remote("code");
+        r.messages.add(new Message("q1", "user"));
+        r.messages.add(new Message("a1", "model"));
+
+        ProjectReconciler.Merge m = ProjectReconciler.reconcile(c, r, NOW);
+
+        assertTrue(m.localWins);
+        assertTrue(m.remoteWins);
+        assertEquals(3, m.content.messages.size());
+        assertEquals("a1", m.content.messages.get(1).getText());
+        assertEquals("offline q", m.content.messages.get(2).getText());
+        assertEquals(2, m.content.syncedMessages);
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.aiassistantcoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ProjectWritesTest {
+
+    /**
+     * One project as Firestore would hold it: the project document (with the
+     * legacy inline arrays, if any) and its two subcollections. Applies a
+     * plan batch by batch, as WriteBatch commits would.
+     */
+    static final class FakeProjectDoc {
+        final Map<String, Object> fields = new TreeMap<>();
+        final Map<String, Map<String, Object>> files = new TreeMap<>();
+        final Map<String, Map<String, Object>> messages = new TreeMap<>();
+        final List<Integer> batchSizes = new ArrayList<>();
+
+        void commit(ProjectWrites.Plan plan) {
+            for (List<ProjectWrites.Write> batch : ProjectWrites.inBatches(plan.writes)) {
+                batchSizes.add(batch.size());
+                for (ProjectWrites.Write w : batch) apply(w, plan.migrating);
+            }
+        }
+
+        private void apply(ProjectWrites.Write w, boolean migrating) {
+            if (w.isMeta()) {
+                fields.put("layout", 2L);
+                if (migrating) {
+                    fields.remove(ProjectWrites.FILES);
+                    fields.remove(ProjectWrites.MESSAGES);
+                }
+                return;
+            }
+            Map<String, Map<String, Object>> coll =
+                    ProjectWrites.FILES.equals(w.collection) ? files : messages;
+            if (w.isDelete()) {
+                coll.remove(w.docId);
+            } else {
+                coll.put(w.docId, w.fields);
+            }
+        }
+
+        Map<String, String> fileContents() {
+            Map<String, String> out = new TreeMap<>();
+            for (Map<String, Object> f : files.values()) out.put((String) f.get("path"), (String) f.get("content"));
+            return out;
+        }
+
+        List<String> messageTexts() {
+            List<String> out = new ArrayList<>();
+            for (Map<String, Object> m : messages.values()) out.add((String) m.get("text"));
+            return out;
+        }
+    }
+
+    private static Message msg(String role, String text) {
+        return new Message(text, role);
+    }
+
+    private static ProjectReconciler.Remote legacyRemote(Map<String, String> files, List<Message> msgs) {
+        ProjectReconciler.Remote r = new ProjectReconciler.Remote();
+        r.legacy = true;
+        r.code = "print(1)";
+        r.files.putAll(files);
+        r.messages.addAll(msgs);
+        return r;
+    }
+
+    private static FakeProjectDoc legacyDoc(Map<String, String> files, List<Message> msgs) {
+        FakeProjectDoc doc = new FakeProjectDoc();
+        doc.fields.put(ProjectWrites.FILES, new ArrayList<>(files.keySet()));
+        doc.fields.put(ProjectWrites.MESSAGES, new ArrayList<>(msgs));
+        return doc;
+    }
+
+    // ---------- legacy migration ----------
+
+    @Test
+    public void unchangedLegacySaveMovesEverythingIntoSubcollections() {
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put("main.py", "print(1)");
+        files.put("src/util.py", "x = 1");
+        List<Message> msgs = List.of(msg("user", "make it"), msg("model", "done"));
+        FakeProjectDoc doc = legacyDoc(files, msgs);
+
+        // load, then save with nothing changed
+        ProjectWrites.SyncState loaded = ProjectWrites.syncStateOf(legacyRemote(files, msgs));
+        ProjectWrites.Plan plan = ProjectWrites.plan(loaded, files, ProjectWrites.storedOf(msgs));
+        doc.commit(plan);
+
+        assertTrue(plan.migrating);
+        assertEquals(new TreeMap<>(files), doc.fileContents());
+        assertEquals(List.of("make it", "done"), doc.messageTexts());
+        assertFalse(doc.fields.containsKey(ProjectWrites.FILES));
+        assertFalse(doc.fields.containsKey(ProjectWrites.MESSAGES));
+        assertEquals(2, plan.filesWritten);
+        assertEquals(2, plan.messagesWritten);
+    }
+
+    @Test
+    public void migrationDropsTheArraysOnlyInItsLastWrite() {
+        Map<String, String> files = new LinkedHashMap<>();
+        for (int i = 0; i < ProjectWrites.MAX_BATCH_OPS + 10; i++) files.put("f" + i + ".txt", "v" + i);
+        List<Message> msgs = List.of(msg("user", "hi"));
+
+        ProjectWrites.SyncState loaded = ProjectWrites.syncStateOf(legacyRemote(files, msgs));
+        ProjectWrites.Plan plan = ProjectWrites.plan(loaded, files, ProjectWrites.storedOf(msgs));
+
+        List<ProjectWrites.Write> w = plan.writes;
+        assertTrue(w.get(w.size() - 1).isMeta());
+        for (int i = 0; i < w.size() - 1; i++) assertFalse(w.get(i).isMeta());
+
+        FakeProjectDoc doc = legacyDoc(files, msgs);
+        doc.commit(plan);
+        assertEquals(List.of(ProjectWrites.MAX_BATCH_OPS, 12), doc.batchSizes);
+        assertEquals(files.size(), doc.files.size());
+        assertFalse(doc.fields.containsKey(ProjectWrites.FILES));
+    }
+
+    @Test
+    public void afterMigrationOnlyChangesAreSent() {
+        Map<String, String> files = Collections.singletonMap("main.py", "print(1)");
+        List<Message> msgs = List.of(msg("user", "hi"));
+        ProjectReconciler.Remote r = legacyRemote(files, msgs);
+        r.legacy = false;
+
+        ProjectWrites.Plan plan = ProjectWrites.plan(ProjectWrites.syncStateOf(r), files,
+                ProjectWrites.storedOf(msgs));
+
+        assertFalse(plan.migrating);
+        assertEquals(1, plan.writes.size());
+        assertTrue(plan.writes.get(0).isMeta());
+    }
+
+    // ---------- split layout saves ----------
+
+    private static ProjectWrites.SyncState synced(Map<String, String> files, List<Message> msgs) {
+        ProjectWrites.SyncState s = new ProjectWrites.SyncState();
+        s.files.putAll(files);
+        s.messages.addAll(ProjectWrites.storedOf(msgs));
+        return s;
+    }
+
+    private static List<String> describe(ProjectWrites.Plan plan) {
+        List<String> out = new ArrayList<>();
+        for (ProjectWrites.Write w : plan.writes) {
+            out.add(w.isMeta() ? "meta" : (w.isDelete() ? "delete " : "set ") + w.collection + "/" + w.docId);
+        }
+        return out;
+    }
+
+    @Test
+    public void saveSendsOnlyChangedFilesAndMessages() {
+        Map<String, String> before = new LinkedHashMap<>();
+        before.put("main.py", "print(1)");
+        before.put("src/util.py", "x = 1");
+        List<Message> msgs = new ArrayList<>(List.of(msg("user", "a"), msg("model", "b")));
+        ProjectWrites.SyncState prev = synced(before, msgs);
+
+        Map<String, String> after = new LinkedHashMap<>(before);
+        after.put("src/util.py", "x = 2");
+        after.put("README.md", "hi");
+        msgs.add(msg("user", "c"));
+
+        ProjectWrites.Plan plan = ProjectWrites.plan(prev, after, ProjectWrites.storedOf(msgs));
+
+        assertEquals(List.of("meta", "set files/src%2Futil.py", "set files/README.md", "set messages/000002"),
+                describe(plan));
+        assertEquals(2, plan.filesWritten);
+        assertEquals(1, plan.messagesWritten);
+        assertEquals("x = 2".length() + "hi".length() + "c".length(), plan.bytesWritten);
+    }
+
+    @Test
+    public void editedMessageIsRewrittenInPlace() {
+        List<Message> msgs = List.of(msg("user", "a"), msg("model", "partial"));
+        ProjectWrites.SyncState prev = synced(Collections.emptyMap(), msgs);
+        // a streamed answer finished after the last save
+        List<Message> now = List.of(msg("user", "a"), msg("model", "partial answer, done"));
+
+        ProjectWrites.Plan plan = ProjectWrites.plan(prev, Collections.emptyMap(), ProjectWrites.storedOf(now));
+
+        assertEquals(List.of("meta", "set messages/000001"), describe(plan));
+    }
+
+    @Test
+    public void removedFilesAndMessagesAreDeleted() {
+        Map<String, String> before = new LinkedHashMap<>();
+        before.put("main.py", "print(1)");
+        before.put("old.py", "gone");
+        List<Message> msgs = List.of(msg("user", "a"), msg("model", "b"), msg("model", "failed"));
+        FakeProjectDoc doc = new FakeProjectDoc();
+        doc.commit(ProjectWrites.plan(new ProjectWrites.SyncState(), before, ProjectWrites.storedOf(msgs)));
+
+        Map<String, String> after = Collections.singletonMap("main.py", "print(1)");
+        List<Message> kept = msgs.subList(0, 2);
+        ProjectWrites.Plan plan = ProjectWrites.plan(synced(before, msgs), after, ProjectWrites.storedOf(kept));
+        doc.commit(plan);
+
+        assertEquals(List.of("meta", "delete files/old.py", "delete messages/000002"), describe(plan));
+        assertEquals(1, plan.filesDeleted);
+        assertEquals(1, plan.messagesDeleted);
+        assertEquals(new TreeMap<>(after), doc.fileContents());
+        assertEquals(List.of("a", "b"), doc.messageTexts());
+    }
+
+    @Test
+    public void unchangedSaveIsMetaOnly() {
+        Map<String, String> files = Collections.singletonMap("main.py", "print(1)");
+        List<Message> msgs = List.of(msg("user", "a"));
+
+        ProjectWrites.Plan plan = ProjectWrites.plan(synced(files, msgs), files, ProjectWrites.storedOf(msgs));
+
+        assertEquals(List.of("meta"), describe(plan));
+        assertEquals(0, plan.bytesWritten);
+    }
+
+    @Test
+    public void batchesSplitAtTheCap() {
+        int cap = ProjectWrites.MAX_BATCH_OPS;
+        // meta + files = exactly one full batch, then one more write
+        for (int[] c : new int[][]{{cap - 1, 1}, {cap, 2}, {2 * cap - 1, 2}, {2 * cap, 3}}) {
+            Map<String, String> files = new LinkedHashMap<>();
+            for (int i = 0; i < c[0]; i++) files.put("f" + i, "v");
+            FakeProjectDoc doc = new FakeProjectDoc();
+            doc.commit(ProjectWrites.plan(new ProjectWrites.SyncState(), files, Collections.emptyList()));
+
+            assertEquals("writes=" + (c[0] + 1), c[1], doc.batchSizes.size());
+            for (int size : doc.batchSizes) assertTrue(size <= cap);
+            assertEquals(c[0], doc.files.size());
+        }
+    }
+
+    @Test
+    public void batchesKeepOrder() {
+        List<Integer> ops = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) ops.add(i);
+        List<Integer> joined = new ArrayList<>();
+        for (List<Integer> b : ProjectWrites.inBatches(ops)) joined.addAll(b);
+
+        assertEquals(ops, joined);
+        assertTrue(ProjectWrites.inBatches(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void fileDocIdsAreSafe() {
+        assertEquals("src%2Fmain.py", ProjectWrites.fileDocId("src/main.py"));
+        assertEquals("100%25%2Fa", ProjectWrites.fileDocId("100%/a"));
+        assertEquals("%..", ProjectWrites.fileDocId(".."));
+        assertEquals("%", ProjectWrites.fileDocId(""));
+        assertEquals("000042", ProjectWrites.messageDocId(42));
+    }
+}
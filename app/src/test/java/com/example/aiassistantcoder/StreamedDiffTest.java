@@ -0,0 +1,299 @@
+package com.example.aiassistantcoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * A streamed answer end to end against a local SSE server: GeminiStream feeds
+ * ProjectJsonStream, each finished file is applied as a partial update, then
+ * the whole answer arrives as the final update. The editor side mirrors
+ * CodeEditorFragment's project-update observer.
+ */
+public class StreamedDiffTest {
+
+    private static final long STREAM_ID = 7;
+
+    private MockWebServer server;
+    // stands in for the main looper: diff results wait here until drained
+    private final BlockingQueue<Runnable> mainQueue = new LinkedBlockingQueue<>();
+    private final Map<String, String> editorFiles = new LinkedHashMap<>();
+    private final List<String> reviews = Collections.synchronizedList(new ArrayList<>());
+    private final StreamedFiles streamed = new StreamedFiles();
+    private DiffPipeline pipeline;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        pipeline = newPipeline();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        pipeline.shutdown();
+        server.shutdown();
+    }
+
+    private DiffPipeline newPipeline() {
+        return new DiffPipeline(new DiffPipeline.Listener() {
+            @Override
+            public void onFileDiff(@NonNull String fileId, @NonNull String newContent,
+                                   @NonNull List<CodeEditorFragment.DiffLine> diff, long tookMs) {
+                streamed.reviewed(fileId);
+                reviews.add(fileId + "=" + newContent);
+            }
+
+            @Override
+            public void onAllDone(int files, long totalMs) {
+            }
+        }, mainQueue::add);
+    }
+
+    // ---------- editor side ----------
+
+    private void applyUpdate(long streamId, boolean partial, Map<String, String> files) {
+        List<String> appliedIds = new ArrayList<>();
+        List<DiffPipeline.Job> jobs = new ArrayList<>();
+        for (Map.Entry<String, String> f : files.entrySet()) {
+            String id = f.getKey();
+            if (!streamed.shouldApply(streamId, partial, id)) continue;
+            appliedIds.add(id);
+            boolean reviewPending = false;
+            String old = editorFiles.get(id);
+            if (old != null && !old.equals(f.getValue())) {
+                jobs.add(new DiffPipeline.Job(id, old, f.getValue()));
+                reviewPending = true;
+            } else {
+                editorFiles.put(id, f.getValue());
+            }
+            streamed.applied(streamId, partial, id, reviewPending);
+        }
+        pipeline.cancel(appliedIds);
+        pipeline.submit(jobs);
+    }
+
+    private void drainUntil(int n) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (reviews.size() < n) {
+            Runnable r = mainQueue.poll(100, TimeUnit.MILLISECONDS);
+            if (r != null) r.run();
+            assertTrue("timed out waiting for reviews", System.currentTimeMillis() < deadline);
+        }
+        // anything stale still queued must not show up as a second review
+        Thread.sleep(100);
+        Runnable r;
+        while ((r = mainQueue.poll()) != null) r.run();
+    }
+
+    // ---------- model side ----------
+
+    private static String projectJson(Map<String, String> files) {
+        JsonObject root = new JsonObject();
+        root.addProperty("language", "python");
+        root.addProperty("runtime", "python3");
+        root.addProperty("entrypoint", "main.py");
+        JsonArray arr = new JsonArray();
+        for (Map.Entry<String, String> f : files.entrySet()) {
+            JsonObject o = new JsonObject();
+            o.addProperty("filename", f.getKey());
+            o.addProperty("content", f.getValue());
+            arr.add(o);
+        }
+        root.add("files", arr);
+        root.addProperty("notes", "done");
+        return root.toString();
+    }
+
+    // the answer in small pieces, cut wherever they fall (mid-key, mid-string, mid-escape)
+    private void enqueueSse(String modelText, int piece) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < modelText.length(); i += piece) {
+            String part = modelText.substring(i, Math.min(modelText.length(), i + piece));
+            JsonObject text = new JsonObject();
+            text.addProperty("text", part);
+            JsonArray parts = new JsonArray();
+            parts.add(text);
+            JsonObject content = new JsonObject();
+            content.add("parts", parts);
+            JsonObject candidate = new JsonObject();
+            candidate.add("content", content);
+            JsonArray candidates = new JsonArray();
+            candidates.add(candidate);
+            JsonObject event = new JsonObject();
+            event.add("candidates", candidates);
+            body.append("data: ").append(event).append("\n\n");
+        }
+        body.append("data: [DONE]\n\n");
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Type", "text/event-stream")
+                .setBody(body.toString()));
+    }
+
+    /** Streams the answer, applying each file as it completes; returns the whole text. */
+    private String streamAnswer(Runnable afterEachFile) throws IOException {
+        ProjectJsonStream parser = new ProjectJsonStream(new ProjectJsonStream.Listener() {
+            @Override
+            public void onField(@NonNull String name, @NonNull String value) {
+            }
+
+            @Override
+            public void onFile(int index, @NonNull JsonObject file) {
+                applyUpdate(STREAM_ID, true, Collections.singletonMap(
+                        file.get("filename").getAsString(), file.get("content").getAsString()));
+                afterEachFile.run();
+            }
+        });
+        return GeminiStream.generate(server.url("/stream").toString(), "{}", parser::feed).text;
+    }
+
+    private static Map<String, String> filesOf(String modelText) {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (JsonElement f : JsonParser.parseString(modelText).getAsJsonObject().getAsJsonArray("files")) {
+            JsonObject o = f.getAsJsonObject();
+            out.put(o.get("filename").getAsString(), o.get("content").getAsString());
+        }
+        return out;
+    }
+
+    private Map<String, String> answer() {
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put("main.py", "import util\nprint(util.greet(\"you\"))\n");
+        files.put("util.py", "def greet(name):\n    return f\"hi {name}\"\n");
+        files.put("data.txt", "a\tb\nc\\d\n");
+        return files;
+    }
+
+    private void openOldVersions() {
+        editorFiles.put("main.py", "print('old')\n");
+        editorFiles.put("util.py", "x = 1\n");
+        editorFiles.put("data.txt", "old\n");
+    }
+
+    private static List<String> sorted(List<String> in) {
+        List<String> out = new ArrayList<>(in);
+        Collections.sort(out);
+        return out;
+    }
+
+    private static List<String> expectedReviews(Map<String, String> files) {
+        List<String> out = new ArrayList<>();
+        for (Map.Entry<String, String> f : files.entrySet()) out.add(f.getKey() + "=" + f.getValue());
+        Collections.sort(out);
+        return out;
+    }
+
+    // ---------- tests ----------
+
+    @Test
+    public void finalUpdateBeforeAnyReviewStillReviewsEveryFileOnce() throws Exception {
+        openOldVersions();
+        Map<String, String> files = answer();
+        enqueueSse(projectJson(files), 5);
+
+        // the partials' diffs are still in flight when the final update lands
+        String text = streamAnswer(() -> {
+        });
+        assertEquals(filesOf(text), files);
+        applyUpdate(STREAM_ID, false, filesOf(text));
+        drainUntil(files.size());
+
+        assertEquals(expectedReviews(files), sorted(reviews));
+    }
+
+    @Test
+    public void reviewedFilesAreSkippedByTheFinalUpdate() throws Exception {
+        openOldVersions();
+        Map<String, String> files = answer();
+        enqueueSse(projectJson(files), 3);
+
+        // each partial's review arrives before the next file
+        int[] seen = {0};
+        String text = streamAnswer(() -> {
+            try {
+                drainUntil(++seen[0]);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        });
+        applyUpdate(STREAM_ID, false, filesOf(text));
+        drainUntil(files.size());
+
+        assertEquals(expectedReviews(files), sorted(reviews));
+    }
+
+    @Test
+    public void reviewLostWithThePipelineIsDiffedAgainByTheFinalUpdate() throws Exception {
+        openOldVersions();
+        Map<String, String> files = answer();
+        enqueueSse(projectJson(files), 11);
+
+        String text = streamAnswer(() -> {
+        });
+        // the editor's view went away before any review was shown
+        pipeline.shutdown();
+        mainQueue.clear();
+        pipeline = newPipeline();
+
+        applyUpdate(STREAM_ID, false, filesOf(text));
+        drainUntil(files.size());
+
+        assertEquals(expectedReviews(files), sorted(reviews));
+    }
+
+    @Test
+    public void newFilesAreAppliedOnceWithoutReview() throws Exception {
+        Map<String, String> files = answer();
+        enqueueSse(projectJson(files), 4);
+
+        String text = streamAnswer(() -> {
+        });
+        assertEquals(files, editorFiles);
+
+        // the final update must not touch them again; an edit in between survives
+        editorFiles.put("util.py", "edited by hand\n");
+        applyUpdate(STREAM_ID, false, filesOf(text));
+        assertEquals("edited by hand\n", editorFiles.get("util.py"));
+        assertTrue(reviews.isEmpty());
+        assertTrue(mainQueue.isEmpty());
+    }
+
+    @Test
+    public void nextStreamStartsClean() throws Exception {
+        Map<String, String> files = answer();
+        enqueueSse(projectJson(files), 6);
+        streamAnswer(() -> {
+        });
+
+        // a later answer's final update (no partials seen) applies everything
+        Map<String, String> next = new LinkedHashMap<>(files);
+        next.put("util.py", "def greet(name):\n    return name\n");
+        applyUpdate(STREAM_ID + 1, false, next);
+        drainUntil(1);
+
+        assertEquals(Collections.singletonList("util.py=" + next.get("util.py")), reviews);
+    }
+}
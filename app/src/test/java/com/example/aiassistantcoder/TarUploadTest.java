@@ -0,0 +1,212 @@
+package com.example.aiassistantcoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+
+public class TarUploadTest {
+
+    private MockWebServer server;
+    private FakeRunnerBackend backend;
+    private LiveRunManager manager;
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws IOException {
+        backend = new FakeRunnerBackend();
+        server = new MockWebServer();
+        server.setDispatcher(backend);
+        server.start();
+        String baseUrl = server.url(backend.root).toString();
+        manager = new LiveRunManager(baseUrl, new LiveRunManagerTest.InlineExecutor(), new LiveRunManager.Listener() {
+            @Override
+            public void log(String msg) {
+            }
+
+            @Override
+            public void onSessionReady(String wsUrl, String sessionId) {
+            }
+
+            @Override
+            public void onError(String msg) {
+                errors.add(msg);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private static JSONArray files(Map<String, String> byPath) throws JSONException {
+        JSONArray out = new JSONArray();
+        for (Map.Entry<String, String> e : byPath.entrySet()) {
+            out.put(new JSONObject().put("path", e.getKey()).put("content", e.getValue()));
+        }
+        return out;
+    }
+
+    private static byte[] gzipBytes(JSONArray files) throws IOException {
+        Buffer buf = new Buffer();
+        TarUpload.gzipBody(files).writeTo(buf);
+        return buf.readByteArray();
+    }
+
+    private static String repeat(char c, int n) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) sb.append(c);
+        return sb.toString();
+    }
+
+    // ---------- archive ----------
+
+    @Test
+    public void roundTripKeepsPathsAndBytes() throws Exception {
+        Map<String, String> in = new LinkedHashMap<>();
+        in.put("main.py", "print('hi')\n");
+        in.put("empty.txt", "");
+        in.put("src/pkg/util.py", "x = 1\r\ny = 2\n");
+        in.put("unicode.txt", "naïve café ☕ 漢字");
+        in.put("block.bin", repeat('a', 512));
+        in.put("big.txt", repeat('z', 100_000 + 7));
+        // over 100 bytes: split into the ustar prefix and name fields
+        String longPath = repeat('d', 120) + "/" + repeat('n', 90) + ".py";
+        in.put(longPath, "deep");
+
+        assertTrue(TarUpload.canEncode(files(in)));
+        Map<String, String> out = FakeRunnerBackend.readTar(gzipBytes(files(in)));
+
+        assertEquals(in, out);
+        // same order as sent
+        assertEquals(new ArrayList<>(in.keySet()), new ArrayList<>(out.keySet()));
+    }
+
+    @Test
+    public void directoryPathWithFilenameIsJoined() throws Exception {
+        JSONArray files = new JSONArray()
+                .put(new JSONObject().put("path", "src/").put("filename", "app.js").put("content", "1"));
+        assertEquals(Collections.singletonMap("src/app.js", "1"),
+                FakeRunnerBackend.readTar(gzipBytes(files)));
+    }
+
+    @Test
+    public void unsplittablePathsCantBeEncoded() throws Exception {
+        // no '/' to split a 101-byte name on, and a name part over 100 bytes
+        Map<String, String> flat = Collections.singletonMap(repeat('x', 101), "");
+        Map<String, String> longName = Collections.singletonMap("dir/" + repeat('x', 101), "");
+        assertFalse(TarUpload.canEncode(files(flat)));
+        assertFalse(TarUpload.canEncode(files(longName)));
+
+        try {
+            TarUpload.writeEntry(new ByteArrayOutputStream(), repeat('x', 300), new byte[0], 0);
+            fail("expected an IOException");
+        } catch (IOException expected) {
+            // too long for tar
+        }
+    }
+
+    @Test
+    public void unencodablePathGoesAsJson() throws Exception {
+        Map<String, String> in = Collections.singletonMap(repeat('x', 101), "long");
+        manager.startLiveBulk(files(in), "python", "main.py", false, false);
+
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(0, backend.tarAttempts);
+        assertFalse(backend.lastUpload().tar);
+        assertEquals(in, backend.lastUpload().files);
+    }
+
+    // ---------- fallback to JSON ----------
+
+    private void assertFallsBackOn(int code) throws Exception {
+        backend.tarRejectCode = code;
+        Map<String, String> in = new LinkedHashMap<>();
+        in.put("main.py", "print(1)");
+        in.put("lib/util.py", "x = 1");
+        String key = "project-" + UUID.randomUUID();
+
+        manager.startLiveBulk(files(in), "python", "main.py", false, false, key);
+
+        assertEquals(Collections.emptyList(), errors);
+        FakeRunnerBackend.Upload json = backend.lastUpload();
+        assertFalse(json.tar);
+        assertEquals(in, json.files);
+
+        // remembered for this backend: the next upload goes straight to JSON
+        in.put("main.py", "print(2)");
+        manager.startLiveBulk(files(in), "python", "main.py", false, false, key);
+        assertEquals(1, backend.tarAttempts);
+        assertFalse(backend.lastUpload().tar);
+        assertEquals(Collections.singletonMap("main.py", "print(2)"), backend.lastUpload().files);
+    }
+
+    @Test
+    public void badRequestFallsBackToJson() throws Exception {
+        assertFallsBackOn(400);
+    }
+
+    @Test
+    public void unsupportedMediaTypeFallsBackToJson() throws Exception {
+        assertFallsBackOn(415);
+    }
+
+    @Test
+    public void unprocessableFallsBackToJson() throws Exception {
+        assertFallsBackOn(422);
+    }
+
+    @Test
+    public void serverThatIgnoresTheTarGetsJsonToo() throws Exception {
+        // 200, but no "format": the tar wasn't unpacked
+        backend.tarIgnored = true;
+        Map<String, String> in = Collections.singletonMap("main.py", "print(1)");
+        manager.startLiveBulk(files(in), "python", "main.py", false, false);
+
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(1, backend.uploads.size());
+        assertFalse(backend.lastUpload().tar);
+        assertEquals("print(1)", backend.projects.get(backend.lastUpload().projectId).get("main.py"));
+    }
+
+    @Test
+    public void serverErrorIsNotAFallback() throws Exception {
+        backend.tarRejectCode = 500;
+        manager.startLiveBulk(files(Collections.singletonMap("main.py", "x")), "python", "main.py", false, false);
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0), errors.get(0).contains("500"));
+        assertTrue(backend.uploads.isEmpty());
+    }
+
+    @Test
+    public void acceptedTarIsUsedAgain() throws Exception {
+        String key = "project-" + UUID.randomUUID();
+        manager.startLiveBulk(files(Collections.singletonMap("a.py", "1")), "python", "a.py", false, false, key);
+        manager.startLiveBulk(files(Collections.singletonMap("a.py", "2")), "python", "a.py", false, false, key);
+
+        assertEquals(2, backend.tarAttempts);
+        assertTrue(backend.lastUpload().tar);
+        assertEquals("2", backend.projects.get(backend.lastUpload().projectId).get("a.py"));
+    }
+}
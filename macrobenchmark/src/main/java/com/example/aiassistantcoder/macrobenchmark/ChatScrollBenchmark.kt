@@ -0,0 +1,89 @@
+package com.example.aiassistantcoder.macrobenchmark
+
+import android.content.Intent
+import androidx.benchmark.macro.CompilationMode
+import androidx.benchmark.macro.FrameTimingMetric
+import androidx.benchmark.macro.MacrobenchmarkScope
+import androidx.benchmark.macro.StartupMode
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.uiautomator.By
+import androidx.test.uiautomator.Direction
+import androidx.test.uiautomator.Until
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Frame timing while flinging through a long chat of multi-file answers
+ * (ChatScrollActivity, benchmark build only).
+ *
+ * [scrollColdCache] starts a fresh process each iteration, so every row's
+ * markdown and code blocks are rendered while scrolling. [scrollWarmCache]
+ * scrolls once before measuring, so rows come from ChatRenderCache. The
+ * difference in frameDurationCpuMs / frameOverrunMs is what the cache buys.
+ */
+@RunWith(AndroidJUnit4::class)
+class ChatScrollBenchmark {
+
+    @get:Rule
+    val rule = MacrobenchmarkRule()
+
+    @Test
+    fun scrollColdCache() = rule.measureRepeated(
+        packageName = PACKAGE,
+        metrics = listOf(FrameTimingMetric()),
+        compilationMode = CompilationMode.DEFAULT,
+        iterations = ITERATIONS,
+        startupMode = StartupMode.COLD,
+        setupBlock = { openChat() }
+    ) {
+        flingThrough()
+    }
+
+    @Test
+    fun scrollWarmCache() = rule.measureRepeated(
+        packageName = PACKAGE,
+        metrics = listOf(FrameTimingMetric()),
+        compilationMode = CompilationMode.DEFAULT,
+        iterations = ITERATIONS,
+        setupBlock = {
+            openChat()
+            // fills the cache; the measured pass starts from the top again
+            flingThrough()
+            flingBack()
+        }
+    ) {
+        flingThrough()
+    }
+
+    private fun MacrobenchmarkScope.openChat() {
+        val intent = Intent()
+            .setClassName(PACKAGE, "$PACKAGE.ChatScrollActivity")
+            .putExtra("turns", TURNS)
+        startActivityAndWait(intent)
+        device.wait(Until.hasObject(By.res(PACKAGE, "chat_recycler_view")), WAIT_MS)
+    }
+
+    private fun MacrobenchmarkScope.flingThrough() = fling(Direction.DOWN)
+
+    private fun MacrobenchmarkScope.flingBack() = fling(Direction.UP)
+
+    private fun MacrobenchmarkScope.fling(direction: Direction) {
+        val list = device.findObject(By.res(PACKAGE, "chat_recycler_view"))
+        // keep the gesture off the system gesture areas
+        list.setGestureMargin(device.displayWidth / 5)
+        repeat(FLINGS) {
+            list.fling(direction)
+            device.waitForIdle()
+        }
+    }
+
+    private companion object {
+        const val PACKAGE = "com.example.aiassistantcoder"
+        const val TURNS = 40
+        const val FLINGS = 6
+        const val ITERATIONS = 5
+        const val WAIT_MS = 5_000L
+    }
+}
@@ -17,3 +17,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "AiAssistantCoder"
 include(":app")
+include(":macrobenchmark")